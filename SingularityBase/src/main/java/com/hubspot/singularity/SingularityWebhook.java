@@ -15,6 +15,7 @@ public class SingularityWebhook extends SingularityJsonObject {
 
   private final Optional<String> user;
   private final long timestamp;
+  private final Optional<Boolean> batch;
 
   private final String id;
 
@@ -26,13 +27,19 @@ public class SingularityWebhook extends SingularityJsonObject {
     }
   }
 
+  public SingularityWebhook(String uri, Optional<Long> timestamp, Optional<String> user, WebhookType type) {
+    this(uri, timestamp, user, type, Optional.<Boolean> absent());
+  }
+
   @JsonCreator
-  public SingularityWebhook(@JsonProperty("uri") String uri, @JsonProperty("timestamp") Optional<Long> timestamp, @JsonProperty("user") Optional<String> user, @JsonProperty("type") WebhookType type) {
+  public SingularityWebhook(@JsonProperty("uri") String uri, @JsonProperty("timestamp") Optional<Long> timestamp, @JsonProperty("user") Optional<String> user, @JsonProperty("type") WebhookType type,
+      @JsonProperty("batch") Optional<Boolean> batch) {
     this.uri = uri;
     this.timestamp = timestamp.or(System.currentTimeMillis());
     this.user = user;
     this.id = type.name() + "-" + JavaUtils.urlEncode(uri);
     this.type = type;
+    this.batch = batch;
   }
 
   public String getId() {
@@ -55,8 +62,12 @@ public class SingularityWebhook extends SingularityJsonObject {
     return type;
   }
 
+  public Optional<Boolean> getBatch() {
+    return batch;
+  }
+
   @Override
   public String toString() {
-    return "SingularityWebhook [uri=" + uri + ", timestamp=" + timestamp + ", id=" + id + ", user=" + user + ", type=" + type + "]";
+    return "SingularityWebhook [uri=" + uri + ", timestamp=" + timestamp + ", id=" + id + ", user=" + user + ", type=" + type + ", batch=" + batch + "]";
   }
 }
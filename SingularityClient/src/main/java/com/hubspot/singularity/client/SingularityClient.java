@@ -4,6 +4,7 @@ import static com.google.common.base.Preconditions.checkNotNull;
 
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Random;
 
@@ -79,6 +80,9 @@ public class SingularityClient {
   private static final String REQUEST_ACTIVE_TASKS_HISTORY_FORMAT = HISTORY_FORMAT + "/request/%s/tasks/active";
   private static final String REQUEST_INACTIVE_TASKS_HISTORY_FORMAT = HISTORY_FORMAT + "/request/%s/tasks";
   private static final String REQUEST_DEPLOY_HISTORY_FORMAT = HISTORY_FORMAT + "/request/%s/deploy/%s";
+  private static final String REQUEST_DEPLOYS_HISTORY_FORMAT = HISTORY_FORMAT + "/request/%s/deploys";
+  private static final String REQUEST_REQUESTS_HISTORY_FORMAT = HISTORY_FORMAT + "/request/%s/requests";
+  private static final String REQUESTS_HISTORY_SEARCH_FORMAT = HISTORY_FORMAT + "/requests/search";
 
   private static final String REQUESTS_FORMAT = "http://%s/%s/requests";
   private static final String REQUESTS_GET_ACTIVE_FORMAT = REQUESTS_FORMAT + "/active";
@@ -108,6 +112,8 @@ public class SingularityClient {
   private static final TypeReference<Collection<SingularityRequestCleanup>> CLEANUP_REQUESTS_COLLECTION = new TypeReference<Collection<SingularityRequestCleanup>>() {};
   private static final TypeReference<Collection<SingularityTask>> TASKS_COLLECTION = new TypeReference<Collection<SingularityTask>>() {};
   private static final TypeReference<Collection<SingularityTaskIdHistory>> TASKID_HISTORY_COLLECTION = new TypeReference<Collection<SingularityTaskIdHistory>>() {};
+  private static final TypeReference<Collection<SingularityDeployHistory>> DEPLOY_HISTORY_COLLECTION = new TypeReference<Collection<SingularityDeployHistory>>() {};
+  private static final TypeReference<Collection<String>> STRING_COLLECTION = new TypeReference<Collection<String>>() {};
   private static final TypeReference<Collection<SingularityRack>> RACKS_COLLECTION = new TypeReference<Collection<SingularityRack>>() {};
   private static final TypeReference<Collection<SingularitySlave>> SLAVES_COLLECTION = new TypeReference<Collection<SingularitySlave>>() {};
   private static final TypeReference<Collection<SingularityWebhook>> WEBHOOKS_COLLECTION = new TypeReference<Collection<SingularityWebhook>>() {};
@@ -192,11 +198,21 @@ public class SingularityClient {
   }
 
   private <T> Collection<T> getCollection(String uri, String type, TypeReference<Collection<T>> typeReference) {
+    return getCollection(uri, type, typeReference, Collections.<Pair<String, String>> emptyList());
+  }
+
+  private <T> Collection<T> getCollection(String uri, String type, TypeReference<Collection<T>> typeReference, List<Pair<String, String>> queryParams) {
     LOG.info("Getting all {} from {}", type, uri);
 
     final long start = System.currentTimeMillis();
 
-    HttpResponse response = httpClient.execute(HttpRequest.newBuilder().setUrl(uri).build());
+    HttpRequest.Builder request = HttpRequest.newBuilder().setUrl(uri);
+
+    for (Pair<String, String> queryParam : queryParams) {
+      request.addQueryParam(queryParam.getKey(), queryParam.getValue());
+    }
+
+    HttpResponse response = httpClient.execute(request.build());
 
     if (response.getStatusCode() == 404) {
       return ImmutableList.of();
@@ -634,12 +650,95 @@ public class SingularityClient {
     return getCollection(requestUri, type, TASKID_HISTORY_COLLECTION);
   }
 
+  /**
+   * Pages through a request's inactive task history, newest first. Pass the last task of the previous page to get the next page,
+   * or absent to get the first page.
+   */
+  public Collection<SingularityTaskIdHistory> getInactiveTaskHistoryForRequest(String requestId, int count, Optional<SingularityTaskIdHistory> lastTaskIdHistory) {
+    final String requestUri = String.format(REQUEST_INACTIVE_TASKS_HISTORY_FORMAT, getHost(), contextPath, requestId);
+
+    final String type = String.format("inactive (failed, killed, lost) task history for request %s", requestId);
+
+    List<Pair<String, String>> queryParams = Lists.newArrayList();
+
+    queryParams.add(Pair.of("count", Integer.toString(count)));
+
+    if (lastTaskIdHistory.isPresent()) {
+      queryParams.add(Pair.of("lastTaskId", lastTaskIdHistory.get().getTaskId().getId()));
+      queryParams.add(Pair.of("lastUpdatedAt", Long.toString(lastTaskIdHistory.get().getUpdatedAt())));
+    }
+
+    return getCollection(requestUri, type, TASKID_HISTORY_COLLECTION, queryParams);
+  }
+
   public Optional<SingularityDeployHistory> getHistoryForRequestDeploy(String requestId, String deployId) {
     final String requestUri = String.format(REQUEST_DEPLOY_HISTORY_FORMAT, getHost(), contextPath, requestId, deployId);
 
     return getSingle(requestUri, "deploy history", new SingularityDeployKey(requestId, deployId).getId(), SingularityDeployHistory.class);
   }
 
+  /**
+   * Pages through a request's deploy history, newest first. Pass the last deploy of the previous page to get the next page, or
+   * absent to get the first page.
+   */
+  public Collection<SingularityDeployHistory> getDeployHistoryForRequest(String requestId, int count, Optional<SingularityDeployHistory> lastDeployHistory) {
+    final String requestUri = String.format(REQUEST_DEPLOYS_HISTORY_FORMAT, getHost(), contextPath, requestId);
+
+    final String type = String.format("deploy history for request %s", requestId);
+
+    List<Pair<String, String>> queryParams = Lists.newArrayList();
+
+    queryParams.add(Pair.of("count", Integer.toString(count)));
+
+    if (lastDeployHistory.isPresent()) {
+      queryParams.add(Pair.of("lastDeployId", lastDeployHistory.get().getDeployMarker().getDeployId()));
+      queryParams.add(Pair.of("lastCreatedAt", Long.toString(lastDeployHistory.get().getDeployMarker().getTimestamp())));
+    }
+
+    return getCollection(requestUri, type, DEPLOY_HISTORY_COLLECTION, queryParams);
+  }
+
+  /**
+   * Pages through a request's history of updates, newest first. Pass the last update of the previous page to get the next page,
+   * or absent to get the first page.
+   */
+  public Collection<SingularityRequestHistory> getHistoryForRequest(String requestId, int count, Optional<SingularityRequestHistory> lastRequestHistory) {
+    final String requestUri = String.format(REQUEST_REQUESTS_HISTORY_FORMAT, getHost(), contextPath, requestId);
+
+    final String type = String.format("request history for request %s", requestId);
+
+    List<Pair<String, String>> queryParams = Lists.newArrayList();
+
+    queryParams.add(Pair.of("count", Integer.toString(count)));
+
+    if (lastRequestHistory.isPresent()) {
+      queryParams.add(Pair.of("lastCreatedAt", Long.toString(lastRequestHistory.get().getCreatedAt())));
+    }
+
+    return getCollection(requestUri, type, REQUEST_UPDATES_COLLECTION, queryParams);
+  }
+
+  /**
+   * Pages through the ids of requests with history which start with requestIdLike, in id order. Pass the last id of the previous
+   * page to get the next page, or absent to get the first page.
+   */
+  public Collection<String> searchRequestHistory(String requestIdLike, int count, Optional<String> lastRequestId) {
+    final String requestUri = String.format(REQUESTS_HISTORY_SEARCH_FORMAT, getHost(), contextPath);
+
+    final String type = String.format("request ids like %s", requestIdLike);
+
+    List<Pair<String, String>> queryParams = Lists.newArrayList();
+
+    queryParams.add(Pair.of("requestIdLike", requestIdLike));
+    queryParams.add(Pair.of("count", Integer.toString(count)));
+
+    if (lastRequestId.isPresent()) {
+      queryParams.add(Pair.of("lastRequestId", lastRequestId.get()));
+    }
+
+    return getCollection(requestUri, type, STRING_COLLECTION, queryParams);
+  }
+
   //
   // WEBHOOKS
   //
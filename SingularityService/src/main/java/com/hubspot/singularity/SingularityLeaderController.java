@@ -25,6 +25,7 @@ import com.hubspot.mesos.MesosUtils;
 import com.hubspot.singularity.SingularityAbort.AbortReason;
 import com.hubspot.singularity.config.SingularityConfiguration;
 import com.hubspot.singularity.data.StateManager;
+import com.hubspot.singularity.data.TaskManager;
 import com.hubspot.singularity.sentry.SingularityExceptionNotifier;
 
 @Singleton
@@ -33,6 +34,7 @@ public class SingularityLeaderController implements Managed, LeaderLatchListener
   private static final Logger LOG = LoggerFactory.getLogger(SingularityLeaderController.class);
 
   private final StateManager stateManager;
+  private final TaskManager taskManager;
   private final SingularityDriverManager driverManager;
   private final SingularityAbort abort;
   private final SingularityExceptionNotifier exceptionNotifier;
@@ -46,10 +48,11 @@ public class SingularityLeaderController implements Managed, LeaderLatchListener
   private volatile boolean master;
 
   @Inject
-  public SingularityLeaderController(StateManager stateManager, SingularityConfiguration configuration, SingularityDriverManager driverManager, SingularityAbort abort, SingularityExceptionNotifier exceptionNotifier,
+  public SingularityLeaderController(StateManager stateManager, TaskManager taskManager, SingularityConfiguration configuration, SingularityDriverManager driverManager, SingularityAbort abort, SingularityExceptionNotifier exceptionNotifier,
       @Named(SingularityMainModule.HOST_ADDRESS_PROPERTY) String hostAddress, @Named(SingularityMainModule.HTTP_HOST_AND_PORT) HostAndPort hostAndPort) {
     this.driverManager = driverManager;
     this.stateManager = stateManager;
+    this.taskManager = taskManager;
     this.abort = abort;
     this.exceptionNotifier = exceptionNotifier;
 
@@ -115,6 +118,15 @@ public class SingularityLeaderController implements Managed, LeaderLatchListener
 
     master = false;
 
+    try {
+      final int numPersisted = taskManager.flushLastActiveTaskStatuses();
+
+      LOG.info("Persisted {} task statuses after losing leadership", numPersisted);
+    } catch (Throwable t) {
+      LOG.error("While persisting task statuses after losing leadership", t);
+      exceptionNotifier.notify(t);
+    }
+
     if (driverManager.getCurrentStatus() == Protos.Status.DRIVER_RUNNING) {
       try {
         driverManager.stop();
@@ -43,8 +43,11 @@ import com.hubspot.singularity.config.SentryConfiguration;
 import com.hubspot.singularity.config.SingularityConfiguration;
 import com.hubspot.singularity.config.ZooKeeperConfiguration;
 import com.hubspot.singularity.guice.DropwizardObjectMapperProvider;
+import com.hubspot.singularity.hooks.BatchingLoadBalancerClient;
 import com.hubspot.singularity.hooks.LoadBalancerClient;
 import com.hubspot.singularity.hooks.LoadBalancerClientImpl;
+import com.hubspot.singularity.hooks.SingularityTaskWebhookPayloadCache;
+import com.hubspot.singularity.hooks.SingularityWebhookDispatcher;
 import com.hubspot.singularity.hooks.SingularityWebhookPoller;
 import com.hubspot.singularity.hooks.SingularityWebhookSender;
 import com.hubspot.singularity.sentry.NotifyingExceptionMapper;
@@ -86,13 +89,15 @@ public class SingularityMainModule implements Module {
 
     Multibinder<LeaderLatchListener> leaderLatchListeners = Multibinder.newSetBinder(binder, LeaderLatchListener.class);
     leaderLatchListeners.addBinding().to(SingularityLeaderController.class).in(Scopes.SINGLETON);
+    leaderLatchListeners.addBinding().to(SingularityWebhookDispatcher.class).in(Scopes.SINGLETON);
 
     binder.bind(SingularityDriverManager.class).in(Scopes.SINGLETON);
     binder.bind(SingularityLeaderController.class).in(Scopes.SINGLETON);
     binder.bind(SingularityMailer.class).in(Scopes.SINGLETON);
     binder.bind(SingularitySmtpSender.class).in(Scopes.SINGLETON);
     binder.bind(SingularityExceptionNotifier.class).in(Scopes.SINGLETON);
-    binder.bind(LoadBalancerClient.class).to(LoadBalancerClientImpl.class).in(Scopes.SINGLETON);
+    binder.bind(LoadBalancerClientImpl.class).in(Scopes.SINGLETON);
+    binder.bind(LoadBalancerClient.class).to(BatchingLoadBalancerClient.class).in(Scopes.SINGLETON);
 
     binder.bind(SingularityWebhookPoller.class).in(Scopes.SINGLETON);
 
@@ -103,6 +108,8 @@ public class SingularityMainModule implements Module {
     binder.bind(SingularityMailer.class).in(Scopes.SINGLETON);
     binder.bind(SingularityExceptionNotifierManaged.class).in(Scopes.SINGLETON);
     binder.bind(SingularityWebhookSender.class).in(Scopes.SINGLETON);
+    binder.bind(SingularityWebhookDispatcher.class).in(Scopes.SINGLETON);
+    binder.bind(SingularityTaskWebhookPayloadCache.class).in(Scopes.SINGLETON);
 
     binder.bind(NotifyingExceptionMapper.class).in(Scopes.SINGLETON);
 
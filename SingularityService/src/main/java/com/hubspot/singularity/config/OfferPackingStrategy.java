@@ -0,0 +1,17 @@
+package com.hubspot.singularity.config;
+
+public enum OfferPackingStrategy {
+
+  /**
+   * Place each task on the matching offer with the most resources left over, spreading tasks across offers. This is the
+   * default because it keeps the placement Singularity has always had - the shuffled offers spread a request's tasks across
+   * slaves - so a slave going away takes down as few instances as possible.
+   */
+  SPREAD,
+
+  /**
+   * Place each task on the matching offer with the least resources left over, packing tasks onto as few offers as possible.
+   */
+  BEST_FIT;
+
+}
@@ -51,9 +51,15 @@ public class SingularityConfiguration extends Configuration {
   @NotNull
   private long cacheStateForMillis = TimeUnit.SECONDS.toMillis(30);
 
+  @NotNull
+  private int cacheScheduleNextRunTimes = 5;
+
   @NotNull
   private long checkDeploysEverySeconds = 5;
 
+  @NotNull
+  private int checkDeploysThreads = 5;
+
   @NotNull
   private long checkNewTasksEverySeconds = 5;
 
@@ -66,15 +72,33 @@ public class SingularityConfiguration extends Configuration {
   @NotNull
   private long checkSchedulerEverySeconds = 5;
 
+  @NotNull
+  private long checkZkMirrorsEverySeconds = TimeUnit.MINUTES.toSeconds(1);
+
   @NotNull
   private long cleanupEverySeconds = 5;
 
+  @NotNull
+  private long taskCleanupRecheckMillis = TimeUnit.SECONDS.toMillis(10);
+
+  @NotNull
+  private long taskHistoryCacheMaxBytes = 64 * 1024 * 1024;
+
+  @NotNull
+  private long flushTaskStatusesEveryMillis = 500;
+
   @NotNull
   private long closeWaitSeconds = 5;
 
   @NotNull
   private boolean compressLargeDataObjects = true;
 
+  @NotNull
+  private int compressDataObjectsLargerThanBytes = 512;
+
+  @NotNull
+  private ZkDataFormat zookeeperDataFormat = ZkDataFormat.JSON;
+
   @NotNull
   private long considerTaskHealthyAfterRunningForSeconds = 5;
 
@@ -105,6 +129,12 @@ public class SingularityConfiguration extends Configuration {
   @NotNull
   private long healthcheckTimeoutSeconds = 5;
 
+  @NotNull
+  private int healthcheckMaxConcurrentPerHost = 10;
+
+  @NotNull
+  private double healthcheckMaxPerSecond = 200;
+
   private String commonHostnameSuffixToOmit;
 
   private String hostname;
@@ -121,6 +151,18 @@ public class SingularityConfiguration extends Configuration {
   @NotNull
   private long loadBalancerRequestTimeoutMillis = 2000;
 
+  @NotNull
+  private long loadBalancerBatchWindowMillis = 100;
+
+  @NotNull
+  private int maxLoadBalancerBatchSize = 100;
+
+  @NotNull
+  private int loadBalancerBatchThreads = 4;
+
+  @NotNull
+  private int loadBalancerCleanupThreads = 10;
+
   private String loadBalancerUri;
 
   @NotNull
@@ -133,23 +175,68 @@ public class SingularityConfiguration extends Configuration {
   private int maxHealthcheckResponseBodyBytes = 8192;
 
   @NotNull
-  private int maxQueuedUpdatesPerWebhook = 50;
+  private int maxHealthcheckResultsPerTask = 20;
+
+  @NotNull
+  private int maxQueuedUpdatesPerWebhook = 1000;
+
+  @NotNull
+  private int maxWebhookBatchSize = 25;
+
+  @NotNull
+  private int maxConcurrentRequestsPerWebhook = 2;
+
+  @NotNull
+  private int maxWebhookAttempts = 10;
+
+  @NotNull
+  private long webhookRetryInitialDelayMillis = TimeUnit.SECONDS.toMillis(1);
+
+  @NotNull
+  private long webhookRetryMaxDelayMillis = TimeUnit.MINUTES.toMillis(5);
+
+  @NotNull
+  private int webhookTaskPayloadCacheSize = 1000;
+
+  @NotNull
+  private long webhookTaskPayloadCacheExpireMillis = TimeUnit.MINUTES.toMillis(1);
+
+  @NotNull
+  private int webhookPayloadThreads = 2;
 
   @NotNull
   private int maxRequestIdSize = 100;
 
+  @NotNull
+  private boolean mirrorZkStateOnLeader = true;
+
   @NotNull
   private int newTaskCheckerBaseDelaySeconds = 1;
 
   @NotNull
   private long persistHistoryEverySeconds = TimeUnit.HOURS.toSeconds(1);
 
+  @NotNull
+  private int persistTaskHistoryBatchSize = 100;
+
+  @NotNull
+  private int persistTaskHistoryThreads = 2;
+
+  @NotNull
+  private double persistTaskHistoryMaxTasksPerSecond = 0;
+
   @NotNull
   private long checkReconcileWhenRunningEveryMillis = TimeUnit.SECONDS.toMillis(30);
 
   @NotNull
   private long startNewReconcileEverySeconds = TimeUnit.MINUTES.toSeconds(10);
 
+  @NotNull
+  private long maxReconcileBackoffMillis = TimeUnit.MINUTES.toMillis(5);
+
+  @NotNull
+  private int reconcileTasksPageSize = 500;
+
   @NotNull
   private boolean sandboxDefaultsToTaskId = false;
 
@@ -159,6 +246,12 @@ public class SingularityConfiguration extends Configuration {
   @NotNull
   private long zookeeperAsyncTimeout = 5000;
 
+  @NotNull
+  private int zookeeperAsyncMaxInFlight = 500;
+
+  @NotNull
+  private int zookeeperAsyncMaxRetries = 2;
+
   public boolean allowTestResourceCalls() {
     return allowTestResourceCalls;
   }
@@ -166,6 +259,30 @@ public class SingularityConfiguration extends Configuration {
   @NotNull
   private SlavePlacement defaultSlavePlacement = SlavePlacement.GREEDY;
 
+  @NotNull
+  private OfferPackingStrategy offerPackingStrategy = OfferPackingStrategy.SPREAD;
+
+  @NotNull
+  private int offerMatchingThreads = Runtime.getRuntime().availableProcessors();
+
+  @NotNull
+  private int offerMatchingOffersPerThread = 25;
+
+  @NotNull
+  private int statusUpdateThreads = Runtime.getRuntime().availableProcessors();
+
+  @NotNull
+  private int maxQueuedStatusUpdatesPerThread = 1000;
+
+  @NotNull
+  private long statusUpdateDrainMillis = 5000;
+
+  @NotNull
+  private long timerWheelTickMillis = 100;
+
+  @NotNull
+  private int timerWheelSize = 512;
+
   private boolean enableCorsFilter = false;
 
   public long getAskDriverToKillTasksAgainAfterMillis() {
@@ -176,10 +293,22 @@ public class SingularityConfiguration extends Configuration {
     return cacheStateForMillis;
   }
 
+  public int getCacheScheduleNextRunTimes() {
+    return cacheScheduleNextRunTimes;
+  }
+
+  public void setCacheScheduleNextRunTimes(int cacheScheduleNextRunTimes) {
+    this.cacheScheduleNextRunTimes = cacheScheduleNextRunTimes;
+  }
+
   public long getCheckDeploysEverySeconds() {
     return checkDeploysEverySeconds;
   }
 
+  public int getCheckDeploysThreads() {
+    return checkDeploysThreads;
+  }
+
   public Optional<String> getCommonHostnameSuffixToOmit() {
     return Optional.fromNullable(commonHostnameSuffixToOmit);
   }
@@ -200,10 +329,42 @@ public class SingularityConfiguration extends Configuration {
     return checkWebhooksEveryMillis;
   }
 
+  public long getCheckZkMirrorsEverySeconds() {
+    return checkZkMirrorsEverySeconds;
+  }
+
+  public void setCheckZkMirrorsEverySeconds(long checkZkMirrorsEverySeconds) {
+    this.checkZkMirrorsEverySeconds = checkZkMirrorsEverySeconds;
+  }
+
+  public long getFlushTaskStatusesEveryMillis() {
+    return flushTaskStatusesEveryMillis;
+  }
+
+  public void setFlushTaskStatusesEveryMillis(long flushTaskStatusesEveryMillis) {
+    this.flushTaskStatusesEveryMillis = flushTaskStatusesEveryMillis;
+  }
+
+  public boolean isMirrorZkStateOnLeader() {
+    return mirrorZkStateOnLeader;
+  }
+
+  public void setMirrorZkStateOnLeader(boolean mirrorZkStateOnLeader) {
+    this.mirrorZkStateOnLeader = mirrorZkStateOnLeader;
+  }
+
   public long getCleanupEverySeconds() {
     return cleanupEverySeconds;
   }
 
+  public long getTaskCleanupRecheckMillis() {
+    return taskCleanupRecheckMillis;
+  }
+
+  public long getTaskHistoryCacheMaxBytes() {
+    return taskHistoryCacheMaxBytes;
+  }
+
   public long getCloseWaitSeconds() {
     return closeWaitSeconds;
   }
@@ -256,6 +417,14 @@ public class SingularityConfiguration extends Configuration {
     return healthcheckTimeoutSeconds;
   }
 
+  public int getHealthcheckMaxConcurrentPerHost() {
+    return healthcheckMaxConcurrentPerHost;
+  }
+
+  public double getHealthcheckMaxPerSecond() {
+    return healthcheckMaxPerSecond;
+  }
+
   public String getHostname() {
     return hostname;
   }
@@ -276,6 +445,22 @@ public class SingularityConfiguration extends Configuration {
     return loadBalancerRequestTimeoutMillis;
   }
 
+  public long getLoadBalancerBatchWindowMillis() {
+    return loadBalancerBatchWindowMillis;
+  }
+
+  public int getMaxLoadBalancerBatchSize() {
+    return maxLoadBalancerBatchSize;
+  }
+
+  public int getLoadBalancerBatchThreads() {
+    return loadBalancerBatchThreads;
+  }
+
+  public int getLoadBalancerCleanupThreads() {
+    return loadBalancerCleanupThreads;
+  }
+
   public String getLoadBalancerUri() {
     return loadBalancerUri;
   }
@@ -292,10 +477,46 @@ public class SingularityConfiguration extends Configuration {
     return maxHealthcheckResponseBodyBytes;
   }
 
+  public int getMaxHealthcheckResultsPerTask() {
+    return maxHealthcheckResultsPerTask;
+  }
+
   public int getMaxQueuedUpdatesPerWebhook() {
     return maxQueuedUpdatesPerWebhook;
   }
 
+  public int getMaxWebhookBatchSize() {
+    return maxWebhookBatchSize;
+  }
+
+  public int getMaxConcurrentRequestsPerWebhook() {
+    return maxConcurrentRequestsPerWebhook;
+  }
+
+  public int getMaxWebhookAttempts() {
+    return maxWebhookAttempts;
+  }
+
+  public long getWebhookRetryInitialDelayMillis() {
+    return webhookRetryInitialDelayMillis;
+  }
+
+  public long getWebhookRetryMaxDelayMillis() {
+    return webhookRetryMaxDelayMillis;
+  }
+
+  public int getWebhookTaskPayloadCacheSize() {
+    return webhookTaskPayloadCacheSize;
+  }
+
+  public long getWebhookTaskPayloadCacheExpireMillis() {
+    return webhookTaskPayloadCacheExpireMillis;
+  }
+
+  public int getWebhookPayloadThreads() {
+    return webhookPayloadThreads;
+  }
+
   public int getMaxRequestIdSize() {
     return maxRequestIdSize;
   }
@@ -308,6 +529,22 @@ public class SingularityConfiguration extends Configuration {
     this.checkReconcileWhenRunningEveryMillis = checkReconcileWhenRunningEveryMillis;
   }
 
+  public long getMaxReconcileBackoffMillis() {
+    return maxReconcileBackoffMillis;
+  }
+
+  public void setMaxReconcileBackoffMillis(long maxReconcileBackoffMillis) {
+    this.maxReconcileBackoffMillis = maxReconcileBackoffMillis;
+  }
+
+  public int getReconcileTasksPageSize() {
+    return reconcileTasksPageSize;
+  }
+
+  public void setReconcileTasksPageSize(int reconcileTasksPageSize) {
+    this.reconcileTasksPageSize = reconcileTasksPageSize;
+  }
+
   public long getStartNewReconcileEverySeconds() {
     return startNewReconcileEverySeconds;
   }
@@ -328,6 +565,30 @@ public class SingularityConfiguration extends Configuration {
     return persistHistoryEverySeconds;
   }
 
+  public int getPersistTaskHistoryBatchSize() {
+    return persistTaskHistoryBatchSize;
+  }
+
+  public void setPersistTaskHistoryBatchSize(int persistTaskHistoryBatchSize) {
+    this.persistTaskHistoryBatchSize = persistTaskHistoryBatchSize;
+  }
+
+  public int getPersistTaskHistoryThreads() {
+    return persistTaskHistoryThreads;
+  }
+
+  public void setPersistTaskHistoryThreads(int persistTaskHistoryThreads) {
+    this.persistTaskHistoryThreads = persistTaskHistoryThreads;
+  }
+
+  public double getPersistTaskHistoryMaxTasksPerSecond() {
+    return persistTaskHistoryMaxTasksPerSecond;
+  }
+
+  public void setPersistTaskHistoryMaxTasksPerSecond(double persistTaskHistoryMaxTasksPerSecond) {
+    this.persistTaskHistoryMaxTasksPerSecond = persistTaskHistoryMaxTasksPerSecond;
+  }
+
   public Optional<S3Configuration> getS3Configuration() {
     return Optional.fromNullable(s3Configuration);
   }
@@ -352,6 +613,14 @@ public class SingularityConfiguration extends Configuration {
     return zookeeperAsyncTimeout;
   }
 
+  public int getZookeeperAsyncMaxInFlight() {
+    return zookeeperAsyncMaxInFlight;
+  }
+
+  public int getZookeeperAsyncMaxRetries() {
+    return zookeeperAsyncMaxRetries;
+  }
+
   public ZooKeeperConfiguration getZooKeeperConfiguration() {
     return zooKeeperConfiguration;
   }
@@ -364,6 +633,22 @@ public class SingularityConfiguration extends Configuration {
     return compressLargeDataObjects;
   }
 
+  public int getCompressDataObjectsLargerThanBytes() {
+    return compressDataObjectsLargerThanBytes;
+  }
+
+  public void setCompressDataObjectsLargerThanBytes(int compressDataObjectsLargerThanBytes) {
+    this.compressDataObjectsLargerThanBytes = compressDataObjectsLargerThanBytes;
+  }
+
+  public ZkDataFormat getZookeeperDataFormat() {
+    return zookeeperDataFormat;
+  }
+
+  public void setZookeeperDataFormat(ZkDataFormat zookeeperDataFormat) {
+    this.zookeeperDataFormat = zookeeperDataFormat;
+  }
+
   public boolean isDefaultValueForKillTasksOfPausedRequests() {
     return defaultValueForKillTasksOfPausedRequests;
   }
@@ -392,6 +677,10 @@ public class SingularityConfiguration extends Configuration {
     this.checkDeploysEverySeconds = checkDeploysEverySeconds;
   }
 
+  public void setCheckDeploysThreads(int checkDeploysThreads) {
+    this.checkDeploysThreads = checkDeploysThreads;
+  }
+
   public void setCheckNewTasksEverySeconds(long checkNewTasksEverySeconds) {
     this.checkNewTasksEverySeconds = checkNewTasksEverySeconds;
   }
@@ -408,6 +697,14 @@ public class SingularityConfiguration extends Configuration {
     this.cleanupEverySeconds = cleanupEverySeconds;
   }
 
+  public void setTaskCleanupRecheckMillis(long taskCleanupRecheckMillis) {
+    this.taskCleanupRecheckMillis = taskCleanupRecheckMillis;
+  }
+
+  public void setTaskHistoryCacheMaxBytes(long taskHistoryCacheMaxBytes) {
+    this.taskHistoryCacheMaxBytes = taskHistoryCacheMaxBytes;
+  }
+
   public void setCloseWaitSeconds(long closeWaitSeconds) {
     this.closeWaitSeconds = closeWaitSeconds;
   }
@@ -460,6 +757,14 @@ public class SingularityConfiguration extends Configuration {
     this.healthcheckTimeoutSeconds = healthcheckTimeoutSeconds;
   }
 
+  public void setHealthcheckMaxConcurrentPerHost(int healthcheckMaxConcurrentPerHost) {
+    this.healthcheckMaxConcurrentPerHost = healthcheckMaxConcurrentPerHost;
+  }
+
+  public void setHealthcheckMaxPerSecond(double healthcheckMaxPerSecond) {
+    this.healthcheckMaxPerSecond = healthcheckMaxPerSecond;
+  }
+
   public void setHostname(String hostname) {
     this.hostname = hostname;
   }
@@ -480,6 +785,22 @@ public class SingularityConfiguration extends Configuration {
     this.loadBalancerRequestTimeoutMillis = loadBalancerRequestTimeoutMillis;
   }
 
+  public void setLoadBalancerBatchWindowMillis(long loadBalancerBatchWindowMillis) {
+    this.loadBalancerBatchWindowMillis = loadBalancerBatchWindowMillis;
+  }
+
+  public void setMaxLoadBalancerBatchSize(int maxLoadBalancerBatchSize) {
+    this.maxLoadBalancerBatchSize = maxLoadBalancerBatchSize;
+  }
+
+  public void setLoadBalancerBatchThreads(int loadBalancerBatchThreads) {
+    this.loadBalancerBatchThreads = loadBalancerBatchThreads;
+  }
+
+  public void setLoadBalancerCleanupThreads(int loadBalancerCleanupThreads) {
+    this.loadBalancerCleanupThreads = loadBalancerCleanupThreads;
+  }
+
   public void setLoadBalancerUri(String loadBalancerUri) {
     this.loadBalancerUri = loadBalancerUri;
   }
@@ -496,10 +817,46 @@ public class SingularityConfiguration extends Configuration {
     this.maxHealthcheckResponseBodyBytes = maxHealthcheckResponseBodyBytes;
   }
 
+  public void setMaxHealthcheckResultsPerTask(int maxHealthcheckResultsPerTask) {
+    this.maxHealthcheckResultsPerTask = maxHealthcheckResultsPerTask;
+  }
+
   public void setMaxQueuedUpdatesPerWebhook(int maxQueuedUpdatesPerWebhook) {
     this.maxQueuedUpdatesPerWebhook = maxQueuedUpdatesPerWebhook;
   }
 
+  public void setMaxWebhookBatchSize(int maxWebhookBatchSize) {
+    this.maxWebhookBatchSize = maxWebhookBatchSize;
+  }
+
+  public void setMaxConcurrentRequestsPerWebhook(int maxConcurrentRequestsPerWebhook) {
+    this.maxConcurrentRequestsPerWebhook = maxConcurrentRequestsPerWebhook;
+  }
+
+  public void setMaxWebhookAttempts(int maxWebhookAttempts) {
+    this.maxWebhookAttempts = maxWebhookAttempts;
+  }
+
+  public void setWebhookRetryInitialDelayMillis(long webhookRetryInitialDelayMillis) {
+    this.webhookRetryInitialDelayMillis = webhookRetryInitialDelayMillis;
+  }
+
+  public void setWebhookRetryMaxDelayMillis(long webhookRetryMaxDelayMillis) {
+    this.webhookRetryMaxDelayMillis = webhookRetryMaxDelayMillis;
+  }
+
+  public void setWebhookTaskPayloadCacheSize(int webhookTaskPayloadCacheSize) {
+    this.webhookTaskPayloadCacheSize = webhookTaskPayloadCacheSize;
+  }
+
+  public void setWebhookTaskPayloadCacheExpireMillis(long webhookTaskPayloadCacheExpireMillis) {
+    this.webhookTaskPayloadCacheExpireMillis = webhookTaskPayloadCacheExpireMillis;
+  }
+
+  public void setWebhookPayloadThreads(int webhookPayloadThreads) {
+    this.webhookPayloadThreads = webhookPayloadThreads;
+  }
+
   public void setMaxRequestIdSize(int maxRequestIdSize) {
     this.maxRequestIdSize = maxRequestIdSize;
   }
@@ -544,6 +901,14 @@ public class SingularityConfiguration extends Configuration {
     this.zookeeperAsyncTimeout = zookeeperAsyncTimeout;
   }
 
+  public void setZookeeperAsyncMaxInFlight(int zookeeperAsyncMaxInFlight) {
+    this.zookeeperAsyncMaxInFlight = zookeeperAsyncMaxInFlight;
+  }
+
+  public void setZookeeperAsyncMaxRetries(int zookeeperAsyncMaxRetries) {
+    this.zookeeperAsyncMaxRetries = zookeeperAsyncMaxRetries;
+  }
+
   public void setZooKeeperConfiguration(ZooKeeperConfiguration zooKeeperConfiguration) {
     this.zooKeeperConfiguration = zooKeeperConfiguration;
   }
@@ -556,6 +921,70 @@ public class SingularityConfiguration extends Configuration {
     this.defaultSlavePlacement = defaultSlavePlacement;
   }
 
+  public OfferPackingStrategy getOfferPackingStrategy() {
+    return offerPackingStrategy;
+  }
+
+  public void setOfferPackingStrategy(OfferPackingStrategy offerPackingStrategy) {
+    this.offerPackingStrategy = offerPackingStrategy;
+  }
+
+  public int getOfferMatchingThreads() {
+    return offerMatchingThreads;
+  }
+
+  public void setOfferMatchingThreads(int offerMatchingThreads) {
+    this.offerMatchingThreads = offerMatchingThreads;
+  }
+
+  public int getStatusUpdateThreads() {
+    return statusUpdateThreads;
+  }
+
+  public void setStatusUpdateThreads(int statusUpdateThreads) {
+    this.statusUpdateThreads = statusUpdateThreads;
+  }
+
+  public int getMaxQueuedStatusUpdatesPerThread() {
+    return maxQueuedStatusUpdatesPerThread;
+  }
+
+  public void setMaxQueuedStatusUpdatesPerThread(int maxQueuedStatusUpdatesPerThread) {
+    this.maxQueuedStatusUpdatesPerThread = maxQueuedStatusUpdatesPerThread;
+  }
+
+  public long getStatusUpdateDrainMillis() {
+    return statusUpdateDrainMillis;
+  }
+
+  public void setStatusUpdateDrainMillis(long statusUpdateDrainMillis) {
+    this.statusUpdateDrainMillis = statusUpdateDrainMillis;
+  }
+
+  public long getTimerWheelTickMillis() {
+    return timerWheelTickMillis;
+  }
+
+  public void setTimerWheelTickMillis(long timerWheelTickMillis) {
+    this.timerWheelTickMillis = timerWheelTickMillis;
+  }
+
+  public int getTimerWheelSize() {
+    return timerWheelSize;
+  }
+
+  public void setTimerWheelSize(int timerWheelSize) {
+    this.timerWheelSize = timerWheelSize;
+  }
+
+  public int getOfferMatchingOffersPerThread() {
+    return offerMatchingOffersPerThread;
+  }
+
+  public void setOfferMatchingOffersPerThread(int offerMatchingOffersPerThread) {
+    this.offerMatchingOffersPerThread = offerMatchingOffersPerThread;
+  }
+
   public boolean isEnableCorsFilter() {
     return enableCorsFilter;
   }
@@ -0,0 +1,12 @@
+package com.hubspot.singularity.config;
+
+public enum ZkDataFormat {
+
+  JSON,
+
+  /**
+   * Jackson's binary JSON format. Payloads start with the smile header, so they can be told apart from JSON when read back.
+   */
+  SMILE;
+
+}
@@ -3,12 +3,14 @@ package com.hubspot.singularity.data;
 import java.util.List;
 
 import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.recipes.cache.ChildData;
 import org.apache.curator.utils.ZKPaths;
 import org.apache.zookeeper.KeeperException.NoNodeException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.base.Function;
 import com.google.common.base.Optional;
 import com.google.common.base.Throwables;
 import com.google.common.collect.Lists;
@@ -16,6 +18,7 @@ import com.hubspot.singularity.SingularityCreateResult;
 import com.hubspot.singularity.SingularityDeleteResult;
 import com.hubspot.singularity.SingularityMachineAbstraction;
 import com.hubspot.singularity.SingularityMachineAbstraction.SingularityMachineState;
+import com.hubspot.singularity.config.SingularityConfiguration;
 import com.hubspot.singularity.data.transcoders.Transcoder;
 
 public abstract class AbstractMachineManager<T extends SingularityMachineAbstraction> extends CuratorAsyncManager {
@@ -26,14 +29,51 @@ public abstract class AbstractMachineManager<T extends SingularityMachineAbstrac
   private static final String DECOMISSIONING_PATH = "decomissioning";
   private static final String DEAD_PATH = "dead";
 
-  private final ObjectMapper objectMapper;
   private final Transcoder<T> transcoder;
 
-  public AbstractMachineManager(CuratorFramework curator, long zkAsyncTimeout, ObjectMapper objectMapper, Transcoder<T> transcoder) {
-    super(curator, zkAsyncTimeout);
+  private final ZkChildrenMirror<String> activeMirror;
+  private final ZkChildrenMirror<String> deadMirror;
+  private final ZkChildrenMirror<T> decomissioningMirror;
+
+  public AbstractMachineManager(CuratorFramework curator, SingularityConfiguration configuration, Transcoder<T> transcoder, MetricRegistry registry) {
+    super(curator, configuration, registry);
 
-    this.objectMapper = objectMapper;
     this.transcoder = transcoder;
+
+    final Function<ChildData, String> childToId = new Function<ChildData, String>() {
+
+      @Override
+      public String apply(ChildData input) {
+        return ZKPaths.getNodeFromPath(input.getPath());
+      }
+    };
+
+    this.activeMirror = new ZkChildrenMirror<>(curator, registry, getActiveRoot(), false, childToId);
+    this.deadMirror = new ZkChildrenMirror<>(curator, registry, getDeadRoot(), false, childToId);
+
+    this.decomissioningMirror = new ZkChildrenMirror<>(curator, registry, getDecomissioningRoot(), true, new Function<ChildData, T>() {
+
+      @Override
+      public T apply(ChildData input) {
+        return AbstractMachineManager.this.transcoder.transcode(input.getData());
+      }
+    });
+  }
+
+  public void startMirrors() {
+    activeMirror.start();
+    deadMirror.start();
+    decomissioningMirror.start();
+  }
+
+  public void stopMirrors() {
+    activeMirror.stop();
+    deadMirror.stop();
+    decomissioningMirror.stop();
+  }
+
+  public int checkMirrors() {
+    return activeMirror.checkConsistency() + deadMirror.checkConsistency() + decomissioningMirror.checkConsistency();
   }
 
   public abstract String getRoot();
@@ -71,6 +111,10 @@ public abstract class AbstractMachineManager<T extends SingularityMachineAbstrac
   }
 
   public List<T> getDecomissioningObjects() {
+    if (decomissioningMirror.isActive()) {
+      return decomissioningMirror.getChildren();
+    }
+
     return getObjects(getDecomissioningRoot());
   }
 
@@ -119,14 +163,26 @@ public abstract class AbstractMachineManager<T extends SingularityMachineAbstrac
   }
 
   public int getNumActive() {
+    if (activeMirror.isActive()) {
+      return activeMirror.getNumChildren();
+    }
+
     return getNumChildren(getActiveRoot());
   }
 
   public int getNumDecomissioning() {
+    if (decomissioningMirror.isActive()) {
+      return decomissioningMirror.getNumChildren();
+    }
+
     return getNumChildren(getDecomissioningRoot());
   }
 
   public int getNumDead() {
+    if (deadMirror.isActive()) {
+      return deadMirror.getNumChildren();
+    }
+
     return getNumChildren(getDeadRoot());
   }
 
@@ -142,18 +198,22 @@ public abstract class AbstractMachineManager<T extends SingularityMachineAbstrac
       LOG.warn(String.format("Deleting active object at %s failed", getActivePath(objectId)));
     }
 
+    activeMirror.remove(objectId);
+
     activeObject.get().setState(SingularityMachineState.DEAD);
     activeObject.get().setDeadAt(Optional.of(System.currentTimeMillis()));
 
-    if (create(getDeadPath(objectId), Optional.of(activeObject.get().getAsBytes(objectMapper))) != SingularityCreateResult.CREATED) {
+    if (create(getDeadPath(objectId), Optional.of(transcoder.toBytes(activeObject.get()))) != SingularityCreateResult.CREATED) {
       LOG.warn(String.format("Creating dead object at %s failed", getDeadPath(objectId)));
     }
+
+    deadMirror.put(objectId, objectId);
   }
 
   private void mark(T object, String path, SingularityMachineState state) {
     object.setState(state);
 
-    final byte[] data = object.getAsBytes(objectMapper);
+    final byte[] data = transcoder.toBytes(object);
 
     try {
       curator.setData().forPath(path, data);
@@ -167,13 +227,19 @@ public abstract class AbstractMachineManager<T extends SingularityMachineAbstrac
   public void markAsDecomissioned(T object) {
     object.setDecomissionedAt(Optional.of(System.currentTimeMillis()));
     mark(object, getDecomissioningPath(object.getId()), SingularityMachineState.DECOMISSIONED);
+
+    decomissioningMirror.put(object.getId(), object);
   }
 
   public SingularityDeleteResult removeDecomissioning(String objectId) {
+    decomissioningMirror.remove(objectId);
+
     return delete(getDecomissioningPath(objectId));
   }
 
   public SingularityDeleteResult removeDead(String objectId) {
+    deadMirror.remove(objectId);
+
     return delete(getDeadPath(objectId));
   }
 
@@ -197,14 +263,21 @@ public abstract class AbstractMachineManager<T extends SingularityMachineAbstrac
     object.get().setDecomissioningAt(Optional.of(System.currentTimeMillis()));
     object.get().setDecomissioningBy(user);
 
-    create(getDecomissioningPath(objectId), Optional.of(object.get().getAsBytes(objectMapper)));
+    create(getDecomissioningPath(objectId), Optional.of(transcoder.toBytes(object.get())));
 
     delete(getActivePath(objectId));
 
+    decomissioningMirror.put(objectId, object.get());
+    activeMirror.remove(objectId);
+
     return DecomissionResult.SUCCESS_DECOMISSIONING;
   }
 
   public boolean isActive(String objectId) {
+    if (activeMirror.isActive()) {
+      return activeMirror.contains(objectId);
+    }
+
     return exists(getActivePath(objectId));
   }
 
@@ -213,6 +286,10 @@ public abstract class AbstractMachineManager<T extends SingularityMachineAbstrac
   }
 
   public boolean isDecomissioning(String objectId) {
+    if (decomissioningMirror.isActive()) {
+      return decomissioningMirror.contains(objectId);
+    }
+
     return exists(getDecomissioningPath(objectId));
   }
 
@@ -222,13 +299,18 @@ public abstract class AbstractMachineManager<T extends SingularityMachineAbstrac
     for (String active : getActive()) {
       numCleared += 1;
       delete(getActivePath(active));
+      activeMirror.remove(active);
     }
 
     return numCleared;
   }
 
   public SingularityCreateResult save(T object) {
-    return create(getActivePath(object.getId()), Optional.of(object.getAsBytes(objectMapper)));
+    final SingularityCreateResult result = create(getActivePath(object.getId()), Optional.of(transcoder.toBytes(object)));
+
+    activeMirror.put(object.getId(), object.getId());
+
+    return result;
   }
 
 }
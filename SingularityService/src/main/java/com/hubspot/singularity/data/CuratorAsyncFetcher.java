@@ -0,0 +1,348 @@
+package com.hubspot.singularity.data;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.api.BackgroundCallback;
+import org.apache.curator.framework.api.CuratorEvent;
+import org.apache.zookeeper.KeeperException;
+import org.apache.zookeeper.KeeperException.Code;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import com.hubspot.mesos.JavaUtils;
+
+/**
+ * Issues background ZK reads for a collection of paths with at most maxInFlight outstanding at once. Each completed read
+ * issues the next one from the curator event thread, so callers aren't blocked while a large fetch is in progress.
+ *
+ * Reads which fail with anything other than NONODE are retried up to maxRetries times; once a read runs out of retries the
+ * whole fetch fails. Missing nodes are skipped, as they always have been.
+ *
+ * The name passed with each fetch also names its metrics, so it has to be a fixed label (a root path or something like
+ * "task_updates") and never a path which includes a task or request id.
+ */
+public class CuratorAsyncFetcher {
+
+  private static final Logger LOG = LoggerFactory.getLogger(CuratorAsyncFetcher.class);
+
+  /**
+   * A single kind of background read and how to turn its result into objects. Returns an empty list if the node was missing.
+   */
+  public abstract static class AsyncRead<T> {
+
+    protected abstract void inBackground(CuratorFramework curator, String path, BackgroundCallback callback) throws Exception;
+
+    protected abstract List<T> getResults(CuratorEvent event) throws Exception;
+
+  }
+
+  /**
+   * Receives results as they arrive. Called from curator's event thread, so it must not block.
+   */
+  public interface ResultConsumer<T> {
+
+    void accept(T result);
+
+  }
+
+  private interface ResultSink<T> {
+
+    void accept(int index, List<T> results);
+
+    void finished(long start);
+
+  }
+
+  private final CuratorFramework curator;
+  private final MetricRegistry registry;
+  private final int maxInFlight;
+  private final int maxRetries;
+  private final long timeoutMillis;
+
+  public CuratorAsyncFetcher(CuratorFramework curator, MetricRegistry registry, int maxInFlight, int maxRetries, long timeoutMillis) {
+    this.curator = curator;
+    this.registry = registry;
+    this.maxInFlight = Math.max(1, maxInFlight);
+    this.maxRetries = Math.max(0, maxRetries);
+    this.timeoutMillis = timeoutMillis;
+  }
+
+  /**
+   * Fetches every path, returning the results in the same order as the paths.
+   */
+  public <T> ListenableFuture<List<T>> fetch(final String pathNameForLogs, final Collection<String> paths, final AsyncRead<T> read) {
+    if (paths.isEmpty()) {
+      return Futures.immediateFuture(Collections.<T> emptyList());
+    }
+
+    final SettableFuture<List<T>> future = SettableFuture.create();
+    final AtomicReferenceArray<List<T>> resultsByIndex = new AtomicReferenceArray<>(paths.size());
+    final AtomicInteger missing = new AtomicInteger();
+
+    start(pathNameForLogs, paths, read, future, new ResultSink<T>() {
+
+      @Override
+      public void accept(int index, List<T> results) {
+        if (results.isEmpty()) {
+          missing.incrementAndGet();
+        }
+
+        resultsByIndex.set(index, results);
+      }
+
+      @Override
+      public void finished(long start) {
+        final List<T> objects = Lists.newArrayListWithCapacity(resultsByIndex.length());
+
+        for (int i = 0; i < resultsByIndex.length(); i++) {
+          objects.addAll(resultsByIndex.get(i));
+        }
+
+        LOG.trace("Fetched {} objects from {} (missing {}) in {}", objects.size(), pathNameForLogs, missing.get(), JavaUtils.duration(start));
+
+        future.set(objects);
+      }
+
+    });
+
+    return future;
+  }
+
+  /**
+   * Fetches every path, returning the result for each path which was present keyed by that path.
+   */
+  public <T> ListenableFuture<Map<String, T>> fetchByPath(final String pathNameForLogs, final Collection<String> paths, final AsyncRead<T> read) {
+    if (paths.isEmpty()) {
+      return Futures.immediateFuture(Collections.<String, T> emptyMap());
+    }
+
+    final SettableFuture<Map<String, T>> future = SettableFuture.create();
+    final List<String> pathList = ImmutableList.copyOf(paths);
+    final Map<String, T> resultsByPath = Maps.newConcurrentMap();
+
+    start(pathNameForLogs, pathList, read, future, new ResultSink<T>() {
+
+      @Override
+      public void accept(int index, List<T> results) {
+        if (!results.isEmpty()) {
+          resultsByPath.put(pathList.get(index), results.get(0));
+        }
+      }
+
+      @Override
+      public void finished(long start) {
+        LOG.trace("Fetched {} objects from {} (missing {}) in {}", resultsByPath.size(), pathNameForLogs, pathList.size() - resultsByPath.size(), JavaUtils.duration(start));
+
+        future.set(resultsByPath);
+      }
+
+    });
+
+    return future;
+  }
+
+  /**
+   * Fetches every path, handing each result to the consumer as it arrives. The future holds the number of results.
+   */
+  public <T> ListenableFuture<Integer> stream(final String pathNameForLogs, final Collection<String> paths, final AsyncRead<T> read, final ResultConsumer<T> consumer) {
+    if (paths.isEmpty()) {
+      return Futures.immediateFuture(0);
+    }
+
+    final SettableFuture<Integer> future = SettableFuture.create();
+    final AtomicInteger numResults = new AtomicInteger();
+
+    start(pathNameForLogs, paths, read, future, new ResultSink<T>() {
+
+      @Override
+      public void accept(int index, List<T> results) {
+        for (T result : results) {
+          consumer.accept(result);
+        }
+
+        numResults.addAndGet(results.size());
+      }
+
+      @Override
+      public void finished(long start) {
+        LOG.trace("Streamed {} objects from {} in {}", numResults.get(), pathNameForLogs, JavaUtils.duration(start));
+
+        future.set(numResults.get());
+      }
+
+    });
+
+    return future;
+  }
+
+  /**
+   * Waits up to the configured timeout for a fetch, cancelling any reads which haven't been issued yet if it times out.
+   */
+  public <T> T get(ListenableFuture<T> future, String pathNameForLogs) {
+    try {
+      return future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+    } catch (TimeoutException te) {
+      future.cancel(false);
+      throw new IllegalStateException(String.format("Timed out waiting response for objects from %s, waited %s millis", pathNameForLogs, timeoutMillis));
+    } catch (ExecutionException ee) {
+      throw Throwables.propagate(ee.getCause());
+    } catch (Throwable t) {
+      throw Throwables.propagate(t);
+    }
+  }
+
+  private String getMetricName(String pathNameForLogs, String metric) {
+    String name = pathNameForLogs.replace('/', '.');
+
+    if (name.startsWith(".")) {
+      name = name.substring(1);
+    }
+
+    return MetricRegistry.name(CuratorAsyncFetcher.class, name, metric);
+  }
+
+  private <T> void start(String pathNameForLogs, Collection<String> paths, AsyncRead<T> read, SettableFuture<?> future, ResultSink<T> sink) {
+    final Fetch<T> fetch = new Fetch<>(pathNameForLogs, ImmutableList.copyOf(paths), read, future, sink);
+
+    final int initial = Math.min(maxInFlight, paths.size());
+
+    for (int i = 0; i < initial; i++) {
+      fetch.issueNext();
+    }
+  }
+
+  private class Fetch<T> {
+
+    private final String pathNameForLogs;
+    private final List<String> paths;
+    private final AsyncRead<T> read;
+    private final SettableFuture<?> future;
+    private final ResultSink<T> sink;
+
+    private final AtomicInteger nextIndex;
+    private final AtomicInteger remaining;
+    private final long start;
+
+    private final Histogram readHistogram;
+    private final Histogram fetchHistogram;
+    private final Counter retryCounter;
+
+    private Fetch(String pathNameForLogs, List<String> paths, AsyncRead<T> read, SettableFuture<?> future, ResultSink<T> sink) {
+      this.pathNameForLogs = pathNameForLogs;
+      this.paths = paths;
+      this.read = read;
+      this.future = future;
+      this.sink = sink;
+
+      this.nextIndex = new AtomicInteger();
+      this.remaining = new AtomicInteger(paths.size());
+      this.start = System.currentTimeMillis();
+
+      this.readHistogram = registry.histogram(getMetricName(pathNameForLogs, "readMillis"));
+      this.fetchHistogram = registry.histogram(getMetricName(pathNameForLogs, "fetchMillis"));
+      this.retryCounter = registry.counter(getMetricName(pathNameForLogs, "retries"));
+    }
+
+    private void issueNext() {
+      if (future.isDone()) {
+        return;
+      }
+
+      final int index = nextIndex.getAndIncrement();
+
+      if (index < paths.size()) {
+        issue(new Read(index, 0));
+      }
+    }
+
+    private void issue(Read pending) {
+      try {
+        read.inBackground(curator, paths.get(pending.index), pending);
+      } catch (Throwable t) {
+        pending.failed(t);
+      }
+    }
+
+    private void completed(int index, List<T> results) {
+      sink.accept(index, results);
+
+      if (remaining.decrementAndGet() == 0) {
+        fetchHistogram.update(System.currentTimeMillis() - start);
+        sink.finished(start);
+      } else {
+        issueNext();
+      }
+    }
+
+    private class Read implements BackgroundCallback {
+
+      private final int index;
+      private final int attempt;
+      private final long issuedAt;
+
+      private Read(int index, int attempt) {
+        this.index = index;
+        this.attempt = attempt;
+        this.issuedAt = System.currentTimeMillis();
+      }
+
+      @Override
+      public void processResult(CuratorFramework client, CuratorEvent event) throws Exception {
+        readHistogram.update(System.currentTimeMillis() - issuedAt);
+
+        final Code code = Code.get(event.getResultCode());
+
+        try {
+          if (code == Code.NONODE) {
+            LOG.trace("Expected node {} but it wasn't there", event.getPath());
+            completed(index, Collections.<T> emptyList());
+          } else if (code != Code.OK) {
+            failed(KeeperException.create(code, event.getPath()));
+          } else {
+            completed(index, read.getResults(event));
+          }
+        } catch (Throwable t) {
+          LOG.error("While handling result for {} from {}", event.getPath(), pathNameForLogs, t);
+          future.setException(t);
+        }
+      }
+
+      private void failed(Throwable t) {
+        if (future.isDone()) {
+          return;
+        }
+
+        if (attempt < maxRetries) {
+          LOG.debug("Retrying read of {} from {} after attempt {} failed ({})", paths.get(index), pathNameForLogs, attempt + 1, t.getMessage());
+          retryCounter.inc();
+          issue(new Read(index, attempt + 1));
+        } else {
+          LOG.warn("Read of {} from {} failed after {} attempts", paths.get(index), pathNameForLogs, attempt + 1, t);
+          future.setException(t);
+        }
+      }
+
+    }
+
+  }
+
+}
@@ -3,9 +3,7 @@ package com.hubspot.singularity.data;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
-import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.Map;
 
 import org.apache.curator.framework.CuratorFramework;
 import org.apache.curator.framework.api.BackgroundCallback;
@@ -14,10 +12,13 @@ import org.apache.curator.utils.ZKPaths;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.google.common.base.Throwables;
+import com.codahale.metrics.MetricRegistry;
 import com.google.common.collect.Lists;
-import com.hubspot.mesos.JavaUtils;
+import com.google.common.util.concurrent.ListenableFuture;
 import com.hubspot.singularity.SingularityId;
+import com.hubspot.singularity.config.SingularityConfiguration;
+import com.hubspot.singularity.data.CuratorAsyncFetcher.AsyncRead;
+import com.hubspot.singularity.data.CuratorAsyncFetcher.ResultConsumer;
 import com.hubspot.singularity.data.transcoders.IdTranscoder;
 import com.hubspot.singularity.data.transcoders.Transcoder;
 
@@ -25,15 +26,15 @@ public abstract class CuratorAsyncManager extends CuratorManager {
 
   private static final Logger LOG = LoggerFactory.getLogger(CuratorAsyncManager.class);
 
-  private final long zkAsyncTimeout;
+  private final CuratorAsyncFetcher fetcher;
 
-  public CuratorAsyncManager(CuratorFramework curator, long zkAsyncTimeout) {
+  public CuratorAsyncManager(CuratorFramework curator, SingularityConfiguration configuration, MetricRegistry registry) {
     super(curator);
 
-    this.zkAsyncTimeout = zkAsyncTimeout;
+    this.fetcher = new CuratorAsyncFetcher(curator, registry, configuration.getZookeeperAsyncMaxInFlight(), configuration.getZookeeperAsyncMaxRetries(), configuration.getZookeeperAsyncTimeout());
   }
 
-  private <T> List<T> getAsyncChildrenThrows(final String parent, final Transcoder<T> transcoder) throws Exception {
+  private List<String> getChildPaths(String parent) {
     final List<String> children = getChildren(parent);
 
     LOG.trace("Fetched {} children from path {}", children.size(), parent);
@@ -44,173 +45,149 @@ public abstract class CuratorAsyncManager extends CuratorManager {
       paths.add(ZKPaths.makePath(parent, child));
     }
 
-    return getAsyncThrows(parent, paths, transcoder);
+    return paths;
   }
 
-  private <T> List<T> getAsyncThrows(final String pathNameForLogs, final Collection<String> paths, final Transcoder<T> transcoder) throws Exception {
-    final List<T> objects = Lists.newArrayListWithCapacity(paths.size());
+  private <T> AsyncRead<T> getDataRead(final Transcoder<T> transcoder) {
+    return new AsyncRead<T>() {
 
-    if (paths.isEmpty()) {
-      return objects;
-    }
-
-    final CountDownLatch latch = new CountDownLatch(paths.size());
-    final AtomicInteger missing = new AtomicInteger();
-
-    final BackgroundCallback callback = new BackgroundCallback() {
+      @Override
+      protected void inBackground(CuratorFramework curator, String path, BackgroundCallback callback) throws Exception {
+        curator.getData().inBackground(callback).forPath(path);
+      }
 
       @Override
-      public void processResult(CuratorFramework client, CuratorEvent event) throws Exception {
+      protected List<T> getResults(CuratorEvent event) throws Exception {
         if (event.getData() == null || event.getData().length == 0) {
           LOG.trace("Expected active node {} but it wasn't there", event.getPath());
-
-          missing.incrementAndGet();
-          latch.countDown();
-
-          return;
+          return Collections.emptyList();
         }
 
-        objects.add(transcoder.transcode(event.getData()));
-
-        latch.countDown();
+        return Collections.singletonList(transcoder.transcode(event.getData()));
       }
-    };
-
-    final long start = System.currentTimeMillis();
 
-    for (String path : paths) {
-      curator.getData().inBackground(callback).forPath(path);
-    }
-
-    checkLatch(latch, pathNameForLogs);
-
-    LOG.trace("Fetched {} objects from {} (missing {}) in {}", objects.size(), pathNameForLogs, missing.intValue(), JavaUtils.duration(start));
-
-    return objects;
-  }
-
-  private void checkLatch(CountDownLatch latch, String path) throws InterruptedException {
-    if (!latch.await(zkAsyncTimeout, TimeUnit.MILLISECONDS)) {
-      throw new IllegalStateException(String.format("Timed out waiting response for objects from %s, waited %s millis", path, zkAsyncTimeout));
-    }
+    };
   }
 
-  private <T extends SingularityId> List<T> getChildrenAsIdsForParentsThrows(final String pathNameforLogs, final Collection<String> parents, final IdTranscoder<T> idTranscoder) throws Exception {
-    if (parents.isEmpty()) {
-      return Collections.emptyList();
-    }
+  private <T extends SingularityId> AsyncRead<T> getChildrenRead(final IdTranscoder<T> idTranscoder) {
+    return new AsyncRead<T>() {
 
-    final List<T> objects = Lists.newArrayListWithExpectedSize(parents.size());
-
-    final CountDownLatch latch = new CountDownLatch(parents.size());
-    final AtomicInteger missing = new AtomicInteger();
-
-    final BackgroundCallback callback = new BackgroundCallback() {
+      @Override
+      protected void inBackground(CuratorFramework curator, String path, BackgroundCallback callback) throws Exception {
+        curator.getChildren().inBackground(callback).forPath(path);
+      }
 
       @Override
-      public void processResult(CuratorFramework client, CuratorEvent event) throws Exception {
+      protected List<T> getResults(CuratorEvent event) throws Exception {
         if (event.getChildren() == null || event.getChildren().size() == 0) {
           LOG.trace("Expected children for node {} - but found none", event.getPath());
-
-          missing.incrementAndGet();
-          latch.countDown();
-
-          return;
+          return Collections.emptyList();
         }
 
-        objects.addAll(Lists.transform(event.getChildren(), idTranscoder));
-
-        latch.countDown();
+        return Lists.transform(event.getChildren(), idTranscoder);
       }
-    };
-
-    final long start = System.currentTimeMillis();
 
-    for (String parent : parents) {
-      curator.getChildren().inBackground(callback).forPath(parent);
-    }
+    };
+  }
 
-    checkLatch(latch, pathNameforLogs);
+  private AsyncRead<List<String>> getChildNamesRead() {
+    return new AsyncRead<List<String>>() {
 
-    LOG.trace("Fetched {} objects from {} (missing {}) in {}", objects.size(), pathNameforLogs, missing.intValue(), JavaUtils.duration(start));
+      @Override
+      protected void inBackground(CuratorFramework curator, String path, BackgroundCallback callback) throws Exception {
+        curator.getChildren().inBackground(callback).forPath(path);
+      }
 
-    return objects;
-  }
+      @Override
+      protected List<List<String>> getResults(CuratorEvent event) throws Exception {
+        if (event.getChildren() == null) {
+          return Collections.emptyList();
+        }
 
-  protected <T extends SingularityId> List<T> getChildrenAsIdsForParents(final String pathNameforLogs, final Collection<String> parents, final IdTranscoder<T> idTranscoder) {
-    try {
-      return getChildrenAsIdsForParentsThrows(pathNameforLogs, parents, idTranscoder);
-    } catch (Throwable t) {
-      throw Throwables.propagate(t);
-    }
-  }
+        return Collections.singletonList(event.getChildren());
+      }
 
-  protected <T extends SingularityId> List<T> getChildrenAsIds(final String rootPath, final IdTranscoder<T> idTranscoder) {
-    return Lists.transform(getChildren(rootPath), idTranscoder);
+    };
   }
 
-  private <T extends SingularityId> List<T> existsThrows(final String pathNameforLogs, final Collection<String> paths, final IdTranscoder<T> idTranscoder) throws Exception {
-    if (paths.isEmpty()) {
-      return Collections.emptyList();
-    }
-
-    final List<T> objects = Lists.newArrayListWithCapacity(paths.size());
+  private <T extends SingularityId> AsyncRead<T> getExistsRead(final IdTranscoder<T> idTranscoder) {
+    return new AsyncRead<T>() {
 
-    final CountDownLatch latch = new CountDownLatch(paths.size());
-
-    final BackgroundCallback callback = new BackgroundCallback() {
+      @Override
+      protected void inBackground(CuratorFramework curator, String path, BackgroundCallback callback) throws Exception {
+        curator.checkExists().inBackground(callback).forPath(path);
+      }
 
       @Override
-      public void processResult(CuratorFramework client, CuratorEvent event) throws Exception {
+      protected List<T> getResults(CuratorEvent event) throws Exception {
         if (event.getStat() == null) {
-          latch.countDown();
-
-          return;
+          return Collections.emptyList();
         }
 
-        objects.add(idTranscoder.apply(ZKPaths.getNodeFromPath(event.getPath())));
-
-        latch.countDown();
+        return Collections.singletonList(idTranscoder.apply(ZKPaths.getNodeFromPath(event.getPath())));
       }
+
     };
+  }
 
-    final long start = System.currentTimeMillis();
+  protected <T extends SingularityId> List<T> getChildrenAsIdsForParents(final String pathNameforLogs, final Collection<String> parents, final IdTranscoder<T> idTranscoder) {
+    return fetcher.get(fetcher.fetch(pathNameforLogs, parents, getChildrenRead(idTranscoder)), pathNameforLogs);
+  }
 
-    for (String path : paths) {
-      curator.checkExists().inBackground(callback).forPath(path);
-    }
+  /**
+   * The full paths of the children of every parent, listed with background reads. Missing parents are skipped.
+   */
+  protected List<String> getChildPathsForParents(final String pathNameForLogs, final Collection<String> parents) {
+    final Map<String, List<String>> childrenByParent = fetcher.get(fetcher.fetchByPath(pathNameForLogs, parents, getChildNamesRead()), pathNameForLogs);
 
-    checkLatch(latch, pathNameforLogs);
+    final List<String> paths = Lists.newArrayList();
 
-    LOG.trace("Found {} objects out of {} from {} in {}", objects.size(), paths.size(), pathNameforLogs, JavaUtils.duration(start));
+    for (Map.Entry<String, List<String>> entry : childrenByParent.entrySet()) {
+      for (String child : entry.getValue()) {
+        paths.add(ZKPaths.makePath(entry.getKey(), child));
+      }
+    }
 
-    return objects;
+    return paths;
   }
 
+  protected <T extends SingularityId> List<T> getChildrenAsIds(final String rootPath, final IdTranscoder<T> idTranscoder) {
+    return Lists.transform(getChildren(rootPath), idTranscoder);
+  }
 
   protected <T extends SingularityId> List<T> exists(final String pathNameForLogs, final Collection<String> paths, final IdTranscoder<T> idTranscoder) {
-    try {
-      return existsThrows(pathNameForLogs, paths, idTranscoder);
-    } catch (Throwable t) {
-      throw Throwables.propagate(t);
-    }
+    return fetcher.get(fetcher.fetch(pathNameForLogs, paths, getExistsRead(idTranscoder)), pathNameForLogs);
+  }
+
+  protected <T> ListenableFuture<List<T>> getAsyncFuture(final String pathNameForLogs, final Collection<String> paths, final Transcoder<T> transcoder) {
+    return fetcher.fetch(pathNameForLogs, paths, getDataRead(transcoder));
+  }
+
+  protected <T> ListenableFuture<Integer> streamAsync(final String pathNameForLogs, final Collection<String> paths, final Transcoder<T> transcoder, final ResultConsumer<T> consumer) {
+    return fetcher.stream(pathNameForLogs, paths, getDataRead(transcoder), consumer);
   }
 
   protected <T> List<T> getAsync(final String pathNameForLogs, final Collection<String> paths, final Transcoder<T> transcoder) {
-    try {
-      return getAsyncThrows(pathNameForLogs, paths, transcoder);
-    } catch (Throwable t) {
-      throw Throwables.propagate(t);
-    }
+    return fetcher.get(getAsyncFuture(pathNameForLogs, paths, transcoder), pathNameForLogs);
+  }
+
+  protected <T> Map<String, T> getAsyncByPath(final String pathNameForLogs, final Collection<String> paths, final Transcoder<T> transcoder) {
+    return fetcher.get(fetcher.fetchByPath(pathNameForLogs, paths, getDataRead(transcoder)), pathNameForLogs);
   }
 
   protected <T> List<T> getAsyncChildren(final String parent, final Transcoder<T> transcoder) {
-    try {
-      return getAsyncChildrenThrows(parent, transcoder);
-    } catch (Throwable t) {
-      throw Throwables.propagate(t);
-    }
+    return getAsyncChildren(parent, parent, transcoder);
   }
 
-}
+  /**
+   * For parents which vary (per task, per request) - the fetch is named after name, which should be fixed, rather than parent.
+   */
+  protected <T> List<T> getAsyncChildren(final String name, final String parent, final Transcoder<T> transcoder) {
+    final List<String> paths = getChildPaths(parent);
 
+    LOG.trace("Fetching {} children of {} as {}", paths.size(), parent, name);
+
+    return getAsync(name, paths, transcoder);
+  }
+
+}
@@ -13,6 +13,7 @@ import org.apache.zookeeper.data.Stat;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.codahale.metrics.MetricRegistry;
 import com.google.common.base.Optional;
 import com.google.common.base.Throwables;
 import com.hubspot.singularity.SingularityCreateResult;
@@ -30,6 +31,10 @@ public abstract class CuratorManager {
     this.curator = curator;
   }
 
+  protected ZkWriteBatch newWriteBatch(MetricRegistry registry, String name) {
+    return new ZkWriteBatch(this, curator, registry, name);
+  }
+
   protected int getNumChildren(String path) {
     try {
       Stat s = curator.checkExists().forPath(path);
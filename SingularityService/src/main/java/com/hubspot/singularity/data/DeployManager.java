@@ -5,10 +5,12 @@ import java.util.List;
 import java.util.Map;
 
 import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.recipes.cache.ChildData;
 import org.apache.curator.utils.ZKPaths;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.codahale.metrics.MetricRegistry;
 import com.google.common.base.Function;
 import com.google.common.base.Optional;
 import com.google.common.collect.Lists;
@@ -50,6 +52,9 @@ public class DeployManager extends CuratorAsyncManager {
   private final SingularityDeployStatisticsTranscoder deployStatisticsTranscoder;
   private final SingularityDeployStateTranscoder deployStateTranscoder;
   private final SingularityDeployKeyTranscoder deployKeyTranscoder;
+  private final StateAggregator stateAggregator;
+
+  private final ZkChildrenMirror<SingularityPendingDeploy> pendingDeploysMirror;
 
   private static final String DEPLOY_ROOT = "/deploys";
 
@@ -69,8 +74,8 @@ public class DeployManager extends CuratorAsyncManager {
   @Inject
   public DeployManager(SingularityConfiguration configuration, CuratorFramework curator, WebhookManager webhookManager, SingularityDeployTranscoder deployTranscoder, SingularityRequestDeployStateTranscoder requestDeployStateTranscoder,
       SingularityPendingDeployTranscoder pendingDeployTranscoder, SingularityDeployMarkerTranscoder deployMarkerTranscoder, SingularityDeployStatisticsTranscoder deployStatisticsTranscoder, SingularityDeployStateTranscoder deployStateTranscoder,
-      SingularityDeployKeyTranscoder deployKeyTranscoder) {
-    super(curator, configuration.getZookeeperAsyncTimeout());
+      SingularityDeployKeyTranscoder deployKeyTranscoder, StateAggregator stateAggregator, MetricRegistry registry) {
+    super(curator, configuration, registry);
 
     this.webhookManager = webhookManager;
     this.pendingDeployTranscoder = pendingDeployTranscoder;
@@ -80,6 +85,27 @@ public class DeployManager extends CuratorAsyncManager {
     this.requestDeployStateTranscoder = requestDeployStateTranscoder;
     this.deployStateTranscoder = deployStateTranscoder;
     this.deployKeyTranscoder = deployKeyTranscoder;
+    this.stateAggregator = stateAggregator;
+
+    this.pendingDeploysMirror = new ZkChildrenMirror<>(curator, registry, PENDING_ROOT, true, new Function<ChildData, SingularityPendingDeploy>() {
+
+      @Override
+      public SingularityPendingDeploy apply(ChildData input) {
+        return DeployManager.this.pendingDeployTranscoder.transcode(input.getData());
+      }
+    });
+  }
+
+  public void startMirrors() {
+    pendingDeploysMirror.start();
+  }
+
+  public void stopMirrors() {
+    pendingDeploysMirror.stop();
+  }
+
+  public int checkMirrors() {
+    return pendingDeploysMirror.checkConsistency();
   }
 
   public List<SingularityDeployKey> getDeployIdsFor(String requestId) {
@@ -125,6 +151,10 @@ public class DeployManager extends CuratorAsyncManager {
   }
 
   public List<SingularityPendingDeploy> getPendingDeploys() {
+    if (pendingDeploysMirror.isActive()) {
+      return pendingDeploysMirror.getChildren();
+    }
+
     return getAsyncChildren(PENDING_ROOT, pendingDeployTranscoder);
   }
 
@@ -254,7 +284,11 @@ public class DeployManager extends CuratorAsyncManager {
   }
 
   public SingularityCreateResult saveNewRequestDeployState(SingularityRequestDeployState newDeployState) {
-    return save(getRequestDeployStatePath(newDeployState.getRequestId()), newDeployState, requestDeployStateTranscoder);
+    final SingularityCreateResult result = save(getRequestDeployStatePath(newDeployState.getRequestId()), newDeployState, requestDeployStateTranscoder);
+
+    stateAggregator.requestDeployStateChanged(newDeployState);
+
+    return result;
   }
 
   public Optional<SingularityDeployStatistics> getDeployStatistics(String requestId, String deployId) {
@@ -278,7 +312,11 @@ public class DeployManager extends CuratorAsyncManager {
   }
 
   public SingularityDeleteResult deleteRequestDeployState(String requestId) {
-    return delete(getRequestDeployStatePath(requestId));
+    final SingularityDeleteResult result = delete(getRequestDeployStatePath(requestId));
+
+    stateAggregator.requestDeployStateDeleted(requestId);
+
+    return result;
   }
 
   public SingularityDeleteResult deleteDeployHistory(SingularityDeployKey deployKey) {
@@ -286,6 +324,8 @@ public class DeployManager extends CuratorAsyncManager {
   }
 
   public SingularityDeleteResult deletePendingDeploy(String requestId) {
+    pendingDeploysMirror.remove(requestId);
+
     return delete(getPendingDeployPath(requestId));
   }
 
@@ -294,11 +334,21 @@ public class DeployManager extends CuratorAsyncManager {
   }
 
   public SingularityCreateResult createPendingDeploy(SingularityPendingDeploy pendingDeploy) {
-    return create(getPendingDeployPath(pendingDeploy.getDeployMarker().getRequestId()), pendingDeploy, pendingDeployTranscoder);
+    final SingularityCreateResult result = create(getPendingDeployPath(pendingDeploy.getDeployMarker().getRequestId()), pendingDeploy, pendingDeployTranscoder);
+
+    if (result == SingularityCreateResult.CREATED) {
+      pendingDeploysMirror.put(pendingDeploy.getDeployMarker().getRequestId(), pendingDeploy);
+    }
+
+    return result;
   }
 
   public SingularityCreateResult savePendingDeploy(SingularityPendingDeploy pendingDeploy) {
-    return save(getPendingDeployPath(pendingDeploy.getDeployMarker().getRequestId()), pendingDeploy, pendingDeployTranscoder);
+    final SingularityCreateResult result = save(getPendingDeployPath(pendingDeploy.getDeployMarker().getRequestId()), pendingDeploy, pendingDeployTranscoder);
+
+    pendingDeploysMirror.put(pendingDeploy.getDeployMarker().getRequestId(), pendingDeploy);
+
+    return result;
   }
 
   public Optional<SingularityPendingDeploy> getPendingDeploy(String requestId) {
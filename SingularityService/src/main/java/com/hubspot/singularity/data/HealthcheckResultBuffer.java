@@ -0,0 +1,177 @@
+package com.hubspot.singularity.data;
+
+import java.util.List;
+import java.util.Map;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.base.Optional;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.hubspot.singularity.SingularityTaskHealthcheckResult;
+import com.hubspot.singularity.config.SingularityConfiguration;
+
+/**
+ * The leader's copy of the most recent healthcheck results of each active task, at most maxHealthcheckResultsPerTask per
+ * task. Every result rewrites the task's single results node from here rather than adding a node per attempt, and the last
+ * result is a lookup instead of a read from ZK.
+ */
+@Singleton
+public class HealthcheckResultBuffer {
+
+  /**
+   * Fixed size ring of results, oldest overwritten first.
+   */
+  public static class Ring {
+
+    private final SingularityTaskHealthcheckResult[] results;
+    private int next;
+    private int size;
+
+    public Ring(int capacity) {
+      this.results = new SingularityTaskHealthcheckResult[Math.max(1, capacity)];
+    }
+
+    public void add(SingularityTaskHealthcheckResult result) {
+      results[next] = result;
+      next = (next + 1) % results.length;
+      size = Math.min(size + 1, results.length);
+    }
+
+    public void addAll(List<SingularityTaskHealthcheckResult> results) {
+      for (SingularityTaskHealthcheckResult result : results) {
+        add(result);
+      }
+    }
+
+    public Optional<SingularityTaskHealthcheckResult> getLast() {
+      if (size == 0) {
+        return Optional.absent();
+      }
+
+      return Optional.of(results[(next + results.length - 1) % results.length]);
+    }
+
+    /**
+     * Oldest first.
+     */
+    public List<SingularityTaskHealthcheckResult> toList() {
+      final List<SingularityTaskHealthcheckResult> list = Lists.newArrayListWithCapacity(size);
+
+      for (int i = 0; i < size; i++) {
+        list.add(results[(next + results.length - size + i) % results.length]);
+      }
+
+      return list;
+    }
+
+  }
+
+  private final Map<String, Ring> rings;
+  private final int maxResultsPerTask;
+
+  private boolean active;
+
+  @Inject
+  public HealthcheckResultBuffer(SingularityConfiguration configuration, MetricRegistry registry) {
+    this.rings = Maps.newHashMap();
+    this.maxResultsPerTask = configuration.getMaxHealthcheckResultsPerTask();
+
+    registry.register(MetricRegistry.name(HealthcheckResultBuffer.class, "tasks"), new Gauge<Integer>() {
+
+      @Override
+      public Integer getValue() {
+        return getNumTasks();
+      }
+
+    });
+  }
+
+  public Ring newRing() {
+    return new Ring(maxResultsPerTask);
+  }
+
+  public synchronized void start() {
+    rings.clear();
+    active = true;
+  }
+
+  public synchronized void stop() {
+    active = false;
+    rings.clear();
+  }
+
+  public synchronized boolean isActive() {
+    return active;
+  }
+
+  public synchronized int getNumTasks() {
+    return rings.size();
+  }
+
+  public synchronized boolean contains(String taskId) {
+    return rings.containsKey(taskId);
+  }
+
+  /**
+   * Seeds a task's ring with the results already persisted for it, unless it has one.
+   */
+  public synchronized void load(String taskId, List<SingularityTaskHealthcheckResult> persistedResults) {
+    if (!active || rings.containsKey(taskId)) {
+      return;
+    }
+
+    final Ring ring = newRing();
+    ring.addAll(persistedResults);
+
+    rings.put(taskId, ring);
+  }
+
+  /**
+   * @return the task's recent results including this one, oldest first
+   */
+  public synchronized List<SingularityTaskHealthcheckResult> add(SingularityTaskHealthcheckResult result) {
+    final String taskId = result.getTaskId().getId();
+
+    Ring ring = rings.get(taskId);
+
+    if (ring == null) {
+      ring = newRing();
+
+      if (active) {
+        rings.put(taskId, ring);
+      }
+    }
+
+    ring.add(result);
+
+    return ring.toList();
+  }
+
+  public synchronized Optional<SingularityTaskHealthcheckResult> getLast(String taskId) {
+    final Ring ring = rings.get(taskId);
+
+    if (ring == null) {
+      return Optional.absent();
+    }
+
+    return ring.getLast();
+  }
+
+  public synchronized Optional<List<SingularityTaskHealthcheckResult>> getAll(String taskId) {
+    final Ring ring = rings.get(taskId);
+
+    if (ring == null) {
+      return Optional.absent();
+    }
+
+    return Optional.of(ring.toList());
+  }
+
+  public synchronized void remove(String taskId) {
+    rings.remove(taskId);
+  }
+
+}
@@ -0,0 +1,202 @@
+package com.hubspot.singularity.data;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeMap;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.base.Optional;
+import com.google.common.collect.HashMultiset;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Multiset;
+import com.google.common.collect.Sets;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.hubspot.singularity.SingularityPendingTask;
+import com.hubspot.singularity.SingularityPendingTaskId;
+
+/**
+ * Pending tasks indexed by due time and by request, kept up to date from the leader's mirror of the pending task nodes, so
+ * that finding due tasks doesn't mean reading and filtering every pending task on each offer cycle.
+ */
+@Singleton
+public class PendingTaskQueue {
+
+  private static final Comparator<SingularityPendingTask> PENDING_TASK_COMPARATOR = new Comparator<SingularityPendingTask>() {
+
+    @Override
+    public int compare(SingularityPendingTask o1, SingularityPendingTask o2) {
+      return o1.getPendingTaskId().compareTo(o2.getPendingTaskId());
+    }
+
+  };
+
+  private final TreeMap<SingularityPendingTaskId, SingularityPendingTask> pendingTasksByDueTime;
+  private final Map<String, NavigableSet<SingularityPendingTaskId>> pendingTaskIdsByRequestId;
+
+  private final Histogram waitHistogram;
+  private final ZkChildrenMirror.Listener<SingularityPendingTask> listener;
+
+  @Inject
+  public PendingTaskQueue(MetricRegistry registry) {
+    this.pendingTasksByDueTime = Maps.newTreeMap();
+    this.pendingTaskIdsByRequestId = Maps.newHashMap();
+
+    this.waitHistogram = registry.histogram(MetricRegistry.name(PendingTaskQueue.class, "waitMillis"));
+
+    registry.register(MetricRegistry.name(PendingTaskQueue.class, "depth"), new Gauge<Integer>() {
+
+      @Override
+      public Integer getValue() {
+        return getNumPendingTasks();
+      }
+
+    });
+
+    this.listener = new ZkChildrenMirror.Listener<SingularityPendingTask>() {
+
+      @Override
+      public void childChanged(String name, Optional<SingularityPendingTask> previous, Optional<SingularityPendingTask> current) {
+        if (previous.isPresent()) {
+          removePendingTask(previous.get().getPendingTaskId());
+        }
+        if (current.isPresent()) {
+          addPendingTask(current.get());
+        }
+      }
+
+    };
+  }
+
+  public ZkChildrenMirror.Listener<SingularityPendingTask> getListener() {
+    return listener;
+  }
+
+  private synchronized void addPendingTask(SingularityPendingTask pendingTask) {
+    final SingularityPendingTaskId pendingTaskId = pendingTask.getPendingTaskId();
+
+    pendingTasksByDueTime.put(pendingTaskId, pendingTask);
+
+    NavigableSet<SingularityPendingTaskId> requestPendingTaskIds = pendingTaskIdsByRequestId.get(pendingTaskId.getRequestId());
+
+    if (requestPendingTaskIds == null) {
+      requestPendingTaskIds = Sets.newTreeSet();
+      pendingTaskIdsByRequestId.put(pendingTaskId.getRequestId(), requestPendingTaskIds);
+    }
+
+    requestPendingTaskIds.add(pendingTaskId);
+  }
+
+  private synchronized void removePendingTask(SingularityPendingTaskId pendingTaskId) {
+    pendingTasksByDueTime.remove(pendingTaskId);
+
+    final NavigableSet<SingularityPendingTaskId> requestPendingTaskIds = pendingTaskIdsByRequestId.get(pendingTaskId.getRequestId());
+
+    if (requestPendingTaskIds != null) {
+      requestPendingTaskIds.remove(pendingTaskId);
+
+      if (requestPendingTaskIds.isEmpty()) {
+        pendingTaskIdsByRequestId.remove(pendingTaskId.getRequestId());
+      }
+    }
+  }
+
+  public synchronized int getNumPendingTasks() {
+    return pendingTasksByDueTime.size();
+  }
+
+  /**
+   * Pending tasks whose nextRunAt is at or before now, in fair share order.
+   */
+  public synchronized List<SingularityPendingTask> getDueTasks(long now) {
+    final List<SingularityPendingTask> dueTasks = Lists.newArrayList();
+
+    for (SingularityPendingTask pendingTask : pendingTasksByDueTime.values()) {
+      if (pendingTask.getPendingTaskId().getNextRunAt() > now) {
+        break;
+      }
+
+      dueTasks.add(pendingTask);
+    }
+
+    return orderFairly(dueTasks);
+  }
+
+  public synchronized List<SingularityPendingTaskId> getPendingTaskIdsForRequest(String requestId) {
+    final NavigableSet<SingularityPendingTaskId> requestPendingTaskIds = pendingTaskIdsByRequestId.get(requestId);
+
+    if (requestPendingTaskIds == null) {
+      return Collections.emptyList();
+    }
+
+    return Lists.newArrayList(requestPendingTaskIds);
+  }
+
+  public synchronized List<SingularityPendingTask> getPendingTasksForRequest(String requestId) {
+    final List<SingularityPendingTask> pendingTasks = Lists.newArrayList();
+
+    for (SingularityPendingTaskId pendingTaskId : getPendingTaskIdsForRequest(requestId)) {
+      pendingTasks.add(pendingTasksByDueTime.get(pendingTaskId));
+    }
+
+    return pendingTasks;
+  }
+
+  public void recordLaunched(SingularityPendingTaskId pendingTaskId, long launchedAt) {
+    waitHistogram.update(Math.max(0, launchedAt - pendingTaskId.getNextRunAt()));
+  }
+
+  /**
+   * Orders pending tasks so that priority tasks (immediate, one off and bounce) go first, and within each class every request
+   * gets its earliest task in before any request gets its second - a request with thousands of due tasks can't starve the
+   * others of offers. Ties go to the task which has been due longest.
+   */
+  public static List<SingularityPendingTask> orderFairly(List<SingularityPendingTask> pendingTasks) {
+    final List<SingularityPendingTask> sorted = Lists.newArrayList(pendingTasks);
+    Collections.sort(sorted, PENDING_TASK_COMPARATOR);
+
+    final List<SingularityPendingTask> priorityTasks = Lists.newArrayList();
+    final List<SingularityPendingTask> otherTasks = Lists.newArrayList();
+
+    for (SingularityPendingTask pendingTask : sorted) {
+      if (pendingTask.getPendingTaskId().getPendingType().hasPriority()) {
+        priorityTasks.add(pendingTask);
+      } else {
+        otherTasks.add(pendingTask);
+      }
+    }
+
+    final List<SingularityPendingTask> ordered = Lists.newArrayListWithCapacity(sorted.size());
+
+    addInRounds(priorityTasks, ordered);
+    addInRounds(otherTasks, ordered);
+
+    return ordered;
+  }
+
+  private static void addInRounds(List<SingularityPendingTask> sortedTasks, List<SingularityPendingTask> ordered) {
+    final List<List<SingularityPendingTask>> rounds = Lists.newArrayList();
+    final Multiset<String> numTasksByRequestId = HashMultiset.create();
+
+    for (SingularityPendingTask pendingTask : sortedTasks) {
+      final int round = numTasksByRequestId.add(pendingTask.getPendingTaskId().getRequestId(), 1);
+
+      if (rounds.size() <= round) {
+        rounds.add(Lists.<SingularityPendingTask> newArrayList());
+      }
+
+      rounds.get(round).add(pendingTask);
+    }
+
+    for (List<SingularityPendingTask> round : rounds) {
+      ordered.addAll(round);
+    }
+  }
+
+}
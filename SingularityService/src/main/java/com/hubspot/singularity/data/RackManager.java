@@ -2,7 +2,7 @@ package com.hubspot.singularity.data;
 
 import org.apache.curator.framework.CuratorFramework;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.codahale.metrics.MetricRegistry;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
 import com.hubspot.singularity.SingularityRack;
@@ -15,8 +15,8 @@ public class RackManager extends AbstractMachineManager<SingularityRack> {
   private static final String RACK_ROOT = "racks";
 
   @Inject
-  public RackManager(CuratorFramework curator, ObjectMapper objectMapper, SingularityConfiguration configuration, SingularityRackTranscoder rackTranscoder) {
-    super(curator, configuration.getZookeeperAsyncTimeout(), objectMapper, rackTranscoder);
+  public RackManager(CuratorFramework curator, SingularityConfiguration configuration, MetricRegistry registry, SingularityRackTranscoder rackTranscoder) {
+    super(curator, configuration, rackTranscoder, registry);
   }
 
   @Override
@@ -4,13 +4,17 @@ import java.util.Collection;
 import java.util.List;
 
 import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.recipes.cache.ChildData;
 import org.apache.curator.utils.ZKPaths;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.codahale.metrics.MetricRegistry;
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Function;
 import com.google.common.base.Optional;
 import com.google.common.base.Predicate;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import com.google.inject.Inject;
@@ -42,6 +46,11 @@ public class RequestManager extends CuratorAsyncManager {
   private final SingularityRequestHistoryTranscoder requestHistoryTranscoder;
 
   private final WebhookManager webhookManager;
+  private final ScheduleCache scheduleCache;
+
+  private final ZkChildrenMirror<SingularityRequestWithState> requestsMirror;
+  private final ZkChildrenMirror<String> pendingRequestsMirror;
+  private final ZkChildrenMirror<String> cleanupRequestsMirror;
 
   private static final String REQUEST_ROOT = "/requests";
 
@@ -52,14 +61,61 @@ public class RequestManager extends CuratorAsyncManager {
 
   @Inject
   public RequestManager(SingularityConfiguration configuration, CuratorFramework curator, WebhookManager webhookManager, SingularityRequestCleanupTranscoder requestCleanupTranscoder, SingularityRequestWithStateTranscoder requestTranscoder,
-      SingularityPendingRequestTranscoder pendingRequestTranscoder, SingularityRequestHistoryTranscoder requestHistoryTranscoder) {
-    super(curator, configuration.getZookeeperAsyncTimeout());
+      SingularityPendingRequestTranscoder pendingRequestTranscoder, SingularityRequestHistoryTranscoder requestHistoryTranscoder, ScheduleCache scheduleCache, StateAggregator stateAggregator, MetricRegistry registry) {
+    super(curator, configuration, registry);
 
     this.requestTranscoder = requestTranscoder;
     this.requestCleanupTranscoder = requestCleanupTranscoder;
     this.pendingRequestTranscoder = pendingRequestTranscoder;
     this.requestHistoryTranscoder = requestHistoryTranscoder;
     this.webhookManager = webhookManager;
+    this.scheduleCache = scheduleCache;
+
+    final Function<ChildData, String> childToName = new Function<ChildData, String>() {
+
+      @Override
+      public String apply(ChildData input) {
+        return ZKPaths.getNodeFromPath(input.getPath());
+      }
+    };
+
+    this.requestsMirror = new ZkChildrenMirror<>(curator, registry, NORMAL_PATH_ROOT, true, new Function<ChildData, SingularityRequestWithState>() {
+
+      @Override
+      public SingularityRequestWithState apply(ChildData input) {
+        return RequestManager.this.requestTranscoder.transcode(input.getData());
+      }
+    });
+    this.pendingRequestsMirror = new ZkChildrenMirror<>(curator, registry, PENDING_PATH_ROOT, false, childToName);
+    this.cleanupRequestsMirror = new ZkChildrenMirror<>(curator, registry, CLEANUP_PATH_ROOT, false, childToName);
+
+    this.requestsMirror.addListener(stateAggregator.getRequestListener());
+  }
+
+  private List<ZkChildrenMirror<?>> getMirrors() {
+    return ImmutableList.<ZkChildrenMirror<?>> of(requestsMirror, pendingRequestsMirror, cleanupRequestsMirror);
+  }
+
+  public void startMirrors() {
+    for (ZkChildrenMirror<?> mirror : getMirrors()) {
+      mirror.start();
+    }
+  }
+
+  public void stopMirrors() {
+    for (ZkChildrenMirror<?> mirror : getMirrors()) {
+      mirror.stop();
+    }
+  }
+
+  public int checkMirrors() {
+    int drift = 0;
+
+    for (ZkChildrenMirror<?> mirror : getMirrors()) {
+      drift += mirror.checkConsistency();
+    }
+
+    return drift;
   }
 
   private String getRequestPath(String requestId) {
@@ -74,8 +130,12 @@ public class RequestManager extends CuratorAsyncManager {
     return ZKPaths.makePath(getHistoryParentPath(history.getRequest().getId()), history.getEventType() + "-" + history.getCreatedAt());
   }
 
+  private String getPendingName(String requestId, String deployId) {
+    return new SingularityDeployKey(requestId, deployId).getId();
+  }
+
   private String getPendingPath(String requestId, String deployId) {
-    return ZKPaths.makePath(PENDING_PATH_ROOT, new SingularityDeployKey(requestId, deployId).getId());
+    return ZKPaths.makePath(PENDING_PATH_ROOT, getPendingName(requestId, deployId));
   }
 
   private String getCleanupPath(String requestId) {
@@ -83,19 +143,33 @@ public class RequestManager extends CuratorAsyncManager {
   }
 
   public int getSizeOfPendingQueue() {
+    if (pendingRequestsMirror.isActive()) {
+      return pendingRequestsMirror.getNumChildren();
+    }
+
     return getNumChildren(PENDING_PATH_ROOT);
   }
 
   public int getSizeOfCleanupQueue() {
+    if (cleanupRequestsMirror.isActive()) {
+      return cleanupRequestsMirror.getNumChildren();
+    }
+
     return getNumChildren(CLEANUP_PATH_ROOT);
   }
 
   public int getNumRequests() {
+    if (requestsMirror.isActive()) {
+      return requestsMirror.getNumChildren();
+    }
+
     return getNumChildren(NORMAL_PATH_ROOT);
   }
 
   public void deletePendingRequest(SingularityPendingRequest pendingRequest) {
     delete(getPendingPath(pendingRequest.getRequestId(), pendingRequest.getDeployId()));
+
+    pendingRequestsMirror.remove(getPendingName(pendingRequest.getRequestId(), pendingRequest.getDeployId()));
   }
 
   public void deleteHistoryParent(String requestId) {
@@ -108,6 +182,8 @@ public class RequestManager extends CuratorAsyncManager {
 
   public void deleteCleanRequest(String requestId) {
     delete(getCleanupPath(requestId));
+
+    cleanupRequestsMirror.remove(requestId);
   }
 
   public List<String> getAllRequestIds() {
@@ -119,11 +195,15 @@ public class RequestManager extends CuratorAsyncManager {
   }
 
   public List<SingularityRequestHistory> getRequestHistory(String requestId) {
-    return getAsyncChildren(getHistoryParentPath(requestId), requestHistoryTranscoder);
+    return getAsyncChildren("request_history", getHistoryParentPath(requestId), requestHistoryTranscoder);
   }
 
   public SingularityCreateResult createCleanupRequest(SingularityRequestCleanup cleanupRequest) {
-    return create(getCleanupPath(cleanupRequest.getRequestId()), cleanupRequest, requestCleanupTranscoder);
+    final SingularityCreateResult result = create(getCleanupPath(cleanupRequest.getRequestId()), cleanupRequest, requestCleanupTranscoder);
+
+    cleanupRequestsMirror.put(cleanupRequest.getRequestId(), cleanupRequest.getRequestId());
+
+    return result;
   }
 
   public SingularityCreateResult update(SingularityRequest request, Optional<String> user) {
@@ -133,7 +213,14 @@ public class RequestManager extends CuratorAsyncManager {
   private SingularityCreateResult save(SingularityRequest request, RequestState state, RequestHistoryType eventType, Optional<String> user) {
     saveHistory(new SingularityRequestHistory(System.currentTimeMillis(), user, eventType, request));
 
-    return save(getRequestPath(request.getId()), new SingularityRequestWithState(request, state), requestTranscoder);
+    scheduleCache.invalidate(request.getId());
+
+    final SingularityRequestWithState requestWithState = new SingularityRequestWithState(request, state);
+    final SingularityCreateResult result = save(getRequestPath(request.getId()), requestWithState, requestTranscoder);
+
+    requestsMirror.put(request.getId(), requestWithState);
+
+    return result;
   }
 
   public SingularityCreateResult pause(SingularityRequest request, Optional<String> user) {
@@ -151,6 +238,8 @@ public class RequestManager extends CuratorAsyncManager {
   public SingularityCreateResult addToPendingQueue(SingularityPendingRequest pendingRequest) {
     SingularityCreateResult result = create(getPendingPath(pendingRequest.getRequestId(), pendingRequest.getDeployId()), pendingRequest, pendingRequestTranscoder);
 
+    pendingRequestsMirror.put(getPendingName(pendingRequest.getRequestId(), pendingRequest.getDeployId()), pendingRequest.getRequestId());
+
     LOG.info("{} added to pending queue with result: {}", pendingRequest, result);
 
     return result;
@@ -186,6 +275,10 @@ public class RequestManager extends CuratorAsyncManager {
   }
 
   public List<String> getCleanupRequestIds() {
+    if (cleanupRequestsMirror.isActive()) {
+      return cleanupRequestsMirror.getChildren();
+    }
+
     return getChildren(CLEANUP_PATH_ROOT);
   }
 
@@ -239,6 +332,10 @@ public class RequestManager extends CuratorAsyncManager {
   }
 
   public List<SingularityRequestWithState> getRequests() {
+    if (requestsMirror.isActive()) {
+      return requestsMirror.getChildren();
+    }
+
     return getAsyncChildren(NORMAL_PATH_ROOT, requestTranscoder);
   }
 
@@ -256,6 +353,10 @@ public class RequestManager extends CuratorAsyncManager {
     saveHistory(new SingularityRequestHistory(System.currentTimeMillis(), user, RequestHistoryType.DELETED, request));
 
     delete(getRequestPath(request.getId()));
+
+    requestsMirror.remove(request.getId());
+
+    scheduleCache.invalidate(request.getId());
   }
 
 }
@@ -0,0 +1,199 @@
+package com.hubspot.singularity.data;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.base.Optional;
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.SetMultimap;
+import com.google.common.collect.Sets;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.hubspot.singularity.SingularityTaskId;
+
+/**
+ * The leader's index of the task ids under each request's history node, split into active and inactive, so that listing a
+ * request's tasks doesn't mean listing its history node and checking every id in it against the active tasks.
+ *
+ * Active task ids follow the active task mirror. Inactive task ids are loaded from a request's history node the first time
+ * they are asked for and then kept up to date as tasks finish and their history is deleted. A load is started before the
+ * history node is read, so tasks which finish or are deleted while it is being read are applied once it is loaded.
+ */
+@Singleton
+public class RequestTaskIdIndex {
+
+  /**
+   * The changes to a request's inactive task ids made while its history node is being read.
+   */
+  public static class Loading {
+
+    private final String requestId;
+    private final Set<SingularityTaskId> finished = Sets.newHashSet();
+    private final Set<SingularityTaskId> deleted = Sets.newHashSet();
+
+    private Loading(String requestId) {
+      this.requestId = requestId;
+    }
+
+  }
+
+  private final SetMultimap<String, SingularityTaskId> activeTaskIds;
+  private final Map<String, Set<SingularityTaskId>> inactiveTaskIds;
+  private final SetMultimap<String, Loading> loading;
+
+  private final ZkChildrenMirror.Listener<SingularityTaskId> activeTaskListener;
+
+  private boolean active;
+
+  @Inject
+  public RequestTaskIdIndex(MetricRegistry registry) {
+    this.activeTaskIds = HashMultimap.create();
+    this.inactiveTaskIds = Maps.newHashMap();
+    this.loading = HashMultimap.create();
+
+    this.activeTaskListener = new ZkChildrenMirror.Listener<SingularityTaskId>() {
+
+      @Override
+      public void childChanged(String name, Optional<SingularityTaskId> previous, Optional<SingularityTaskId> current) {
+        if (current.isPresent()) {
+          taskActive(current.get());
+        } else if (previous.isPresent()) {
+          taskInactive(previous.get());
+        }
+      }
+
+    };
+
+    registry.register(MetricRegistry.name(RequestTaskIdIndex.class, "loadedRequests"), new Gauge<Integer>() {
+
+      @Override
+      public Integer getValue() {
+        return getNumLoadedRequests();
+      }
+
+    });
+  }
+
+  public ZkChildrenMirror.Listener<SingularityTaskId> getActiveTaskListener() {
+    return activeTaskListener;
+  }
+
+  public synchronized void start() {
+    inactiveTaskIds.clear();
+    loading.clear();
+    active = true;
+  }
+
+  public synchronized void stop() {
+    active = false;
+    inactiveTaskIds.clear();
+    loading.clear();
+  }
+
+  public synchronized boolean isActive() {
+    return active;
+  }
+
+  public synchronized int getNumLoadedRequests() {
+    return inactiveTaskIds.size();
+  }
+
+  public synchronized List<SingularityTaskId> getActiveTaskIds(String requestId) {
+    return Lists.newArrayList(activeTaskIds.get(requestId));
+  }
+
+  /**
+   * @return absent if the request's inactive task ids haven't been loaded
+   */
+  public synchronized Optional<List<SingularityTaskId>> getInactiveTaskIds(String requestId) {
+    final Set<SingularityTaskId> requestInactiveTaskIds = inactiveTaskIds.get(requestId);
+
+    if (requestInactiveTaskIds == null) {
+      return Optional.absent();
+    }
+
+    return Optional.<List<SingularityTaskId>> of(Lists.newArrayList(requestInactiveTaskIds));
+  }
+
+  /**
+   * Must be called before the request's history node is read, and followed by loadInactiveTaskIds and finally stopLoading.
+   */
+  public synchronized Loading startLoading(String requestId) {
+    final Loading requestLoading = new Loading(requestId);
+
+    if (active) {
+      loading.put(requestId, requestLoading);
+    }
+
+    return requestLoading;
+  }
+
+  public synchronized void stopLoading(Loading requestLoading) {
+    loading.remove(requestLoading.requestId, requestLoading);
+  }
+
+  /**
+   * Indexes the ids under a request's history node which aren't active as its inactive task ids, along with the tasks
+   * which finished while the node was being read, less those whose history was deleted meanwhile.
+   *
+   * @return the request's inactive task ids
+   */
+  public synchronized List<SingularityTaskId> loadInactiveTaskIds(Loading requestLoading, Collection<SingularityTaskId> historyTaskIds) {
+    final Set<SingularityTaskId> requestInactiveTaskIds = Sets.newHashSet(historyTaskIds);
+
+    requestInactiveTaskIds.addAll(requestLoading.finished);
+    requestInactiveTaskIds.removeAll(requestLoading.deleted);
+    requestInactiveTaskIds.removeAll(activeTaskIds.get(requestLoading.requestId));
+
+    // a load started before the index was restarted has missed changes
+    if (active && loading.remove(requestLoading.requestId, requestLoading) && !inactiveTaskIds.containsKey(requestLoading.requestId)) {
+      inactiveTaskIds.put(requestLoading.requestId, requestInactiveTaskIds);
+    }
+
+    return Lists.newArrayList(requestInactiveTaskIds);
+  }
+
+  public synchronized void taskHistoryDeleted(SingularityTaskId taskId) {
+    final Set<SingularityTaskId> requestInactiveTaskIds = inactiveTaskIds.get(taskId.getRequestId());
+
+    if (requestInactiveTaskIds != null) {
+      requestInactiveTaskIds.remove(taskId);
+    }
+
+    for (Loading requestLoading : loading.get(taskId.getRequestId())) {
+      requestLoading.finished.remove(taskId);
+      requestLoading.deleted.add(taskId);
+    }
+  }
+
+  private synchronized void taskActive(SingularityTaskId taskId) {
+    activeTaskIds.put(taskId.getRequestId(), taskId);
+
+    final Set<SingularityTaskId> requestInactiveTaskIds = inactiveTaskIds.get(taskId.getRequestId());
+
+    if (requestInactiveTaskIds != null) {
+      requestInactiveTaskIds.remove(taskId);
+    }
+  }
+
+  private synchronized void taskInactive(SingularityTaskId taskId) {
+    activeTaskIds.remove(taskId.getRequestId(), taskId);
+
+    final Set<SingularityTaskId> requestInactiveTaskIds = inactiveTaskIds.get(taskId.getRequestId());
+
+    if (active && requestInactiveTaskIds != null) {
+      requestInactiveTaskIds.add(taskId);
+    }
+
+    for (Loading requestLoading : loading.get(taskId.getRequestId())) {
+      requestLoading.finished.add(taskId);
+    }
+  }
+
+}
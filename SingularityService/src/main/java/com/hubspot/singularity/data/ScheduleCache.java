@@ -0,0 +1,154 @@
+package com.hubspot.singularity.data;
+
+import java.text.ParseException;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import org.quartz.CronExpression;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.RatioGauge;
+import com.google.common.base.Optional;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.hubspot.singularity.config.SingularityConfiguration;
+
+/**
+ * Holds the parsed quartz schedule of each scheduled request along with its next few fire times, so that scheduling the next
+ * run of a request doesn't re-parse its schedule each time. Entries are keyed by request id and checked against the schedule
+ * string on every lookup, so a changed schedule is never served stale even if an invalidation is missed.
+ */
+@Singleton
+public class ScheduleCache {
+
+  private static final Logger LOG = LoggerFactory.getLogger(ScheduleCache.class);
+
+  private final int numNextRunTimes;
+  private final Map<String, CachedSchedule> schedules;
+
+  private final Meter hits;
+  private final Meter misses;
+
+  @Inject
+  public ScheduleCache(SingularityConfiguration configuration, MetricRegistry registry) {
+    this.numNextRunTimes = Math.max(1, configuration.getCacheScheduleNextRunTimes());
+    this.schedules = Maps.newHashMap();
+
+    this.hits = registry.meter(MetricRegistry.name(ScheduleCache.class, "hits"));
+    this.misses = registry.meter(MetricRegistry.name(ScheduleCache.class, "misses"));
+
+    registry.register(MetricRegistry.name(ScheduleCache.class, "hitRate"), new RatioGauge() {
+
+      @Override
+      protected Ratio getRatio() {
+        return Ratio.of(hits.getCount(), hits.getCount() + misses.getCount());
+      }
+
+    });
+  }
+
+  /**
+   * Equivalent to new CronExpression(schedule).getNextValidTimeAfter(from), or absent if the schedule never fires again.
+   */
+  public synchronized Optional<Date> getNextValidTimeAfter(String requestId, String schedule, Date from) throws ParseException {
+    final CachedSchedule cachedSchedule = schedules.get(requestId);
+
+    if (cachedSchedule != null && cachedSchedule.schedule.equals(schedule)) {
+      final Optional<Optional<Date>> nextRunAt = cachedSchedule.getNextRunAfter(from);
+
+      if (nextRunAt.isPresent()) {
+        hits.mark();
+        return nextRunAt.get();
+      }
+    }
+
+    misses.mark();
+
+    final CronExpression cronExpression;
+
+    if (cachedSchedule != null && cachedSchedule.schedule.equals(schedule)) {
+      cronExpression = cachedSchedule.cronExpression;
+    } else {
+      cronExpression = new CronExpression(schedule);
+    }
+
+    final CachedSchedule newCachedSchedule = computeSchedule(schedule, cronExpression, from);
+
+    LOG.trace("Computed next run times for {} (schedule: {}) from {}: {}", requestId, schedule, from, newCachedSchedule.nextRunTimes);
+
+    schedules.put(requestId, newCachedSchedule);
+
+    return newCachedSchedule.getNextRunAfter(from).get();
+  }
+
+  public synchronized void invalidate(String requestId) {
+    schedules.remove(requestId);
+  }
+
+  private CachedSchedule computeSchedule(String schedule, CronExpression cronExpression, Date from) {
+    final List<Date> nextRunTimes = Lists.newArrayListWithCapacity(numNextRunTimes);
+
+    Date after = from;
+
+    for (int i = 0; i < numNextRunTimes; i++) {
+      final Date nextRunAt = cronExpression.getNextValidTimeAfter(after);
+
+      if (nextRunAt == null) {
+        return new CachedSchedule(schedule, cronExpression, from.getTime(), nextRunTimes, true);
+      }
+
+      nextRunTimes.add(nextRunAt);
+      after = nextRunAt;
+    }
+
+    return new CachedSchedule(schedule, cronExpression, from.getTime(), nextRunTimes, false);
+  }
+
+  private static class CachedSchedule {
+
+    private final String schedule;
+    private final CronExpression cronExpression;
+    private final long computedFrom;
+    private final List<Date> nextRunTimes;
+    private final boolean exhausted;
+
+    private CachedSchedule(String schedule, CronExpression cronExpression, long computedFrom, List<Date> nextRunTimes, boolean exhausted) {
+      this.schedule = schedule;
+      this.cronExpression = cronExpression;
+      this.computedFrom = computedFrom;
+      this.nextRunTimes = Collections.unmodifiableList(nextRunTimes);
+      this.exhausted = exhausted;
+    }
+
+    /**
+     * Fire times fall on whole seconds, so the first cached time after from is the next fire time as long as the times were
+     * computed from no later than from. Returns absent when the cached times can't answer.
+     */
+    private Optional<Optional<Date>> getNextRunAfter(Date from) {
+      if (from.getTime() < computedFrom) {
+        return Optional.absent();
+      }
+
+      for (Date nextRunAt : nextRunTimes) {
+        if (nextRunAt.getTime() > from.getTime()) {
+          return Optional.of(Optional.of(nextRunAt));
+        }
+      }
+
+      if (exhausted) {
+        return Optional.of(Optional.<Date> absent());
+      }
+
+      return Optional.absent();
+    }
+
+  }
+
+}
@@ -20,5 +20,13 @@ public class SingularityDataModule extends AbstractModule {
 
     bind(ExecutorIdGenerator.class).in(Scopes.SINGLETON);
     bind(WebhookManager.class).in(Scopes.SINGLETON);
+    bind(ScheduleCache.class).in(Scopes.SINGLETON);
+    bind(StateAggregator.class).in(Scopes.SINGLETON);
+    bind(PendingTaskQueue.class).in(Scopes.SINGLETON);
+    bind(TaskStatusTable.class).in(Scopes.SINGLETON);
+    bind(HealthcheckResultBuffer.class).in(Scopes.SINGLETON);
+    bind(RequestTaskIdIndex.class).in(Scopes.SINGLETON);
+    bind(TaskCleanupQueue.class).in(Scopes.SINGLETON);
+    bind(TaskHistoryCache.class).in(Scopes.SINGLETON);
   }
 }
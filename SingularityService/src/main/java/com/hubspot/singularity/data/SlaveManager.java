@@ -2,7 +2,7 @@ package com.hubspot.singularity.data;
 
 import org.apache.curator.framework.CuratorFramework;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.codahale.metrics.MetricRegistry;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
 import com.hubspot.singularity.SingularitySlave;
@@ -15,8 +15,8 @@ public class SlaveManager extends AbstractMachineManager<SingularitySlave> {
   private static final String SLAVE_ROOT = "slaves";
 
   @Inject
-  public SlaveManager(CuratorFramework curator, ObjectMapper objectMapper, SingularityConfiguration configuration, SingularitySlaveTranscoder slaveTranscoder) {
-    super(curator, configuration.getZookeeperAsyncTimeout(), objectMapper, slaveTranscoder);
+  public SlaveManager(CuratorFramework curator, SingularityConfiguration configuration, MetricRegistry registry, SingularitySlaveTranscoder slaveTranscoder) {
+    super(curator, configuration, slaveTranscoder, registry);
   }
 
   @Override
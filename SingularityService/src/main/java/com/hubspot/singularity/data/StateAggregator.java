@@ -0,0 +1,266 @@
+package com.hubspot.singularity.data;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.BoundType;
+import com.google.common.collect.EnumMultiset;
+import com.google.common.collect.HashMultiset;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Multiset;
+import com.google.common.collect.Sets;
+import com.google.common.collect.TreeMultiset;
+import com.google.inject.Singleton;
+import com.hubspot.singularity.RequestState;
+import com.hubspot.singularity.SingularityPendingTask;
+import com.hubspot.singularity.SingularityRequest;
+import com.hubspot.singularity.SingularityRequestDeployState;
+import com.hubspot.singularity.SingularityRequestWithState;
+import com.hubspot.singularity.SingularityTaskId;
+
+/**
+ * Keeps the parts of SingularityState which would otherwise need a scan of every request and task - request state counts,
+ * tasks per request, over / under provisioned requests and pending task lag - up to date as the leader's ZK mirrors change.
+ *
+ * Whether a request has a deploy lives in a nested ZK node which can't be mirrored, so it is loaded when the aggregator
+ * starts, kept up to date by DeployManager and checked against ZK along with the mirrors.
+ */
+@Singleton
+public class StateAggregator {
+
+  private static final Logger LOG = LoggerFactory.getLogger(StateAggregator.class);
+
+  private final Multiset<String> numTasksByRequestId;
+  private final TreeMultiset<Long> pendingTaskNextRunAts;
+  private final Map<String, SingularityRequestWithState> requests;
+  private final Multiset<RequestState> requestStates;
+  private final Set<String> requestIdsWithDeploy;
+
+  private final Set<String> overProvisionedRequestIds;
+  private final Set<String> underProvisionedRequestIds;
+
+  private final ZkChildrenMirror.Listener<SingularityTaskId> activeTaskListener;
+  private final ZkChildrenMirror.Listener<SingularityPendingTask> pendingTaskListener;
+  private final ZkChildrenMirror.Listener<SingularityRequestWithState> requestListener;
+
+  private volatile boolean active;
+
+  public StateAggregator() {
+    this.numTasksByRequestId = HashMultiset.create();
+    this.pendingTaskNextRunAts = TreeMultiset.create();
+    this.requests = Maps.newHashMap();
+    this.requestStates = EnumMultiset.create(RequestState.class);
+    this.requestIdsWithDeploy = Sets.newHashSet();
+
+    this.overProvisionedRequestIds = Sets.newHashSet();
+    this.underProvisionedRequestIds = Sets.newHashSet();
+
+    this.activeTaskListener = new ZkChildrenMirror.Listener<SingularityTaskId>() {
+
+      @Override
+      public void childChanged(String name, Optional<SingularityTaskId> previous, Optional<SingularityTaskId> current) {
+        if (previous.isPresent() != current.isPresent()) {
+          taskChanged(previous.or(current).get().getRequestId(), current.isPresent());
+        }
+      }
+
+    };
+
+    this.pendingTaskListener = new ZkChildrenMirror.Listener<SingularityPendingTask>() {
+
+      @Override
+      public void childChanged(String name, Optional<SingularityPendingTask> previous, Optional<SingularityPendingTask> current) {
+        pendingTaskChanged(previous, current);
+      }
+
+    };
+
+    this.requestListener = new ZkChildrenMirror.Listener<SingularityRequestWithState>() {
+
+      @Override
+      public void childChanged(String name, Optional<SingularityRequestWithState> previous, Optional<SingularityRequestWithState> current) {
+        requestChanged(name, previous, current);
+      }
+
+    };
+  }
+
+  public ZkChildrenMirror.Listener<SingularityTaskId> getActiveTaskListener() {
+    return activeTaskListener;
+  }
+
+  public ZkChildrenMirror.Listener<SingularityPendingTask> getPendingTaskListener() {
+    return pendingTaskListener;
+  }
+
+  public ZkChildrenMirror.Listener<SingularityRequestWithState> getRequestListener() {
+    return requestListener;
+  }
+
+  public synchronized void start(Map<String, SingularityRequestDeployState> requestDeployStates) {
+    checkRequestDeployStates(requestDeployStates);
+
+    overProvisionedRequestIds.clear();
+    underProvisionedRequestIds.clear();
+
+    for (String requestId : requests.keySet()) {
+      updateProvisioning(requestId);
+    }
+
+    active = true;
+
+    LOG.info("Started aggregating state ({} requests, {} with deploys)", requests.size(), requestIdsWithDeploy.size());
+  }
+
+  public synchronized void stop() {
+    active = false;
+
+    requestIdsWithDeploy.clear();
+    overProvisionedRequestIds.clear();
+    underProvisionedRequestIds.clear();
+  }
+
+  public boolean isActive() {
+    return active;
+  }
+
+  private synchronized void taskChanged(String requestId, boolean added) {
+    if (added) {
+      numTasksByRequestId.add(requestId);
+    } else {
+      numTasksByRequestId.remove(requestId);
+    }
+
+    updateProvisioning(requestId);
+  }
+
+  private synchronized void pendingTaskChanged(Optional<SingularityPendingTask> previous, Optional<SingularityPendingTask> current) {
+    if (previous.isPresent()) {
+      pendingTaskNextRunAts.remove(previous.get().getPendingTaskId().getNextRunAt());
+    }
+    if (current.isPresent()) {
+      pendingTaskNextRunAts.add(current.get().getPendingTaskId().getNextRunAt());
+    }
+
+    if (previous.isPresent() != current.isPresent()) {
+      taskChanged(previous.or(current).get().getPendingTaskId().getRequestId(), current.isPresent());
+    }
+  }
+
+  private synchronized void requestChanged(String requestId, Optional<SingularityRequestWithState> previous, Optional<SingularityRequestWithState> current) {
+    if (previous.isPresent()) {
+      requestStates.remove(previous.get().getState());
+    }
+
+    if (current.isPresent()) {
+      requestStates.add(current.get().getState());
+      requests.put(requestId, current.get());
+    } else {
+      requests.remove(requestId);
+    }
+
+    updateProvisioning(requestId);
+  }
+
+  public synchronized void requestDeployStateChanged(SingularityRequestDeployState requestDeployState) {
+    if (requestDeployState.getActiveDeploy().isPresent() || requestDeployState.getPendingDeploy().isPresent()) {
+      requestIdsWithDeploy.add(requestDeployState.getRequestId());
+    } else {
+      requestIdsWithDeploy.remove(requestDeployState.getRequestId());
+    }
+
+    updateProvisioning(requestDeployState.getRequestId());
+  }
+
+  public synchronized void requestDeployStateDeleted(String requestId) {
+    requestIdsWithDeploy.remove(requestId);
+
+    updateProvisioning(requestId);
+  }
+
+  /**
+   * Replaces the known request deploy states, repairing any which were changed without this process noticing.
+   *
+   * @return the number of requests whose deploy presence was wrong
+   */
+  public synchronized int checkRequestDeployStates(Map<String, SingularityRequestDeployState> requestDeployStates) {
+    final Set<String> zkRequestIdsWithDeploy = Sets.newHashSetWithExpectedSize(requestDeployStates.size());
+
+    for (SingularityRequestDeployState requestDeployState : requestDeployStates.values()) {
+      if (requestDeployState.getActiveDeploy().isPresent() || requestDeployState.getPendingDeploy().isPresent()) {
+        zkRequestIdsWithDeploy.add(requestDeployState.getRequestId());
+      }
+    }
+
+    final Set<String> drifted = Sets.newHashSet(Sets.symmetricDifference(requestIdsWithDeploy, zkRequestIdsWithDeploy));
+
+    requestIdsWithDeploy.clear();
+    requestIdsWithDeploy.addAll(zkRequestIdsWithDeploy);
+
+    for (String requestId : drifted) {
+      updateProvisioning(requestId);
+    }
+
+    return drifted.size();
+  }
+
+  private void updateProvisioning(String requestId) {
+    overProvisionedRequestIds.remove(requestId);
+    underProvisionedRequestIds.remove(requestId);
+
+    final SingularityRequestWithState requestWithState = requests.get(requestId);
+
+    if (requestWithState == null || !requestWithState.getState().isRunnable() || requestWithState.getRequest().isOneOff()) {
+      return;
+    }
+
+    final SingularityRequest request = requestWithState.getRequest();
+    final int numTasks = numTasksByRequestId.count(requestId);
+
+    if (numTasks < request.getInstancesSafe()) {
+      if (requestIdsWithDeploy.contains(requestId)) {
+        underProvisionedRequestIds.add(requestId);
+      }
+    } else if (numTasks > request.getInstancesSafe()) {
+      overProvisionedRequestIds.add(requestId);
+    }
+  }
+
+  public synchronized int getNumRequests(RequestState state) {
+    return requestStates.count(state);
+  }
+
+  public synchronized List<String> getOverProvisionedRequestIds() {
+    return Lists.newArrayList(overProvisionedRequestIds);
+  }
+
+  public synchronized List<String> getUnderProvisionedRequestIds() {
+    return Lists.newArrayList(underProvisionedRequestIds);
+  }
+
+  /**
+   * Pending tasks whose nextRunAt is more than millisDeltaForLateTasks before now.
+   */
+  public synchronized int getNumLateTasks(long now, long millisDeltaForLateTasks) {
+    return pendingTaskNextRunAts.headMultiset(now - millisDeltaForLateTasks, BoundType.OPEN).size();
+  }
+
+  public synchronized int getNumFutureTasks(long now, long millisDeltaForLateTasks) {
+    return pendingTaskNextRunAts.size() - getNumLateTasks(now, millisDeltaForLateTasks);
+  }
+
+  public synchronized long getMaxTaskLag(long now) {
+    if (pendingTaskNextRunAts.isEmpty()) {
+      return 0;
+    }
+
+    return Math.max(0, now - pendingTaskNextRunAts.firstEntry().getElement());
+  }
+
+}
@@ -7,6 +7,7 @@ import java.util.Map;
 import javax.inject.Singleton;
 
 import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.recipes.cache.ChildData;
 import org.apache.curator.framework.imps.CuratorFrameworkState;
 import org.apache.curator.utils.ZKPaths;
 import org.apache.zookeeper.CreateMode;
@@ -14,13 +15,15 @@ import org.apache.zookeeper.KeeperException.NoNodeException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.base.Function;
 import com.google.common.base.Optional;
 import com.google.common.base.Throwables;
 import com.google.common.collect.Lists;
 import com.google.inject.Inject;
 import com.hubspot.mesos.CounterMap;
 import com.hubspot.mesos.JavaUtils;
+import com.hubspot.singularity.RequestState;
 import com.hubspot.singularity.SingularityHostState;
 import com.hubspot.singularity.SingularityPendingDeploy;
 import com.hubspot.singularity.SingularityPendingTaskId;
@@ -30,6 +33,7 @@ import com.hubspot.singularity.SingularityScheduledTasksInfo;
 import com.hubspot.singularity.SingularityState;
 import com.hubspot.singularity.SingularityTaskId;
 import com.hubspot.singularity.config.SingularityConfiguration;
+import com.hubspot.singularity.data.transcoders.SingularityHostStateTranscoder;
 import com.hubspot.singularity.data.transcoders.SingularityStateTranscoder;
 
 @Singleton
@@ -40,34 +44,59 @@ public class StateManager extends CuratorManager {
   private static final String ROOT_PATH = "/hosts";
   private static final String STATE_PATH = "STATE";
 
-  private final ObjectMapper objectMapper;
-
   private final RequestManager requestManager;
   private final TaskManager taskManager;
   private final DeployManager deployManager;
   private final SlaveManager slaveManager;
   private final RackManager rackManager;
   private final SingularityStateTranscoder stateTranscoder;
+  private final SingularityHostStateTranscoder hostStateTranscoder;
   private final SingularityConfiguration singularityConfiguration;
+  private final StateAggregator stateAggregator;
+
+  private final ZkChildrenMirror<SingularityHostState> hostStatesMirror;
+
+  private volatile long lastSavedAt;
 
   @Inject
-  public StateManager(CuratorFramework curatorFramework, ObjectMapper objectMapper, RequestManager requestManager, TaskManager taskManager, DeployManager deployManager, SlaveManager slaveManager, RackManager rackManager, SingularityStateTranscoder stateTranscoder,
-      SingularityConfiguration singularityConfiguration) {
+  public StateManager(CuratorFramework curatorFramework, RequestManager requestManager, TaskManager taskManager, DeployManager deployManager, SlaveManager slaveManager, RackManager rackManager, SingularityStateTranscoder stateTranscoder,
+      SingularityHostStateTranscoder hostStateTranscoder, SingularityConfiguration singularityConfiguration, StateAggregator stateAggregator, MetricRegistry registry) {
     super(curatorFramework);
 
-    this.objectMapper = objectMapper;
     this.requestManager = requestManager;
     this.taskManager = taskManager;
     this.stateTranscoder = stateTranscoder;
+    this.hostStateTranscoder = hostStateTranscoder;
     this.slaveManager = slaveManager;
     this.rackManager = rackManager;
     this.deployManager = deployManager;
     this.singularityConfiguration = singularityConfiguration;
+    this.stateAggregator = stateAggregator;
+
+    this.hostStatesMirror = new ZkChildrenMirror<>(curatorFramework, registry, ROOT_PATH, true, new Function<ChildData, SingularityHostState>() {
+
+      @Override
+      public SingularityHostState apply(ChildData input) {
+        return StateManager.this.hostStateTranscoder.transcode(input.getData());
+      }
+    });
+  }
+
+  public void startMirrors() {
+    hostStatesMirror.start();
+  }
+
+  public void stopMirrors() {
+    hostStatesMirror.stop();
+  }
+
+  public int checkMirrors() {
+    return hostStatesMirror.checkConsistency();
   }
 
   public void save(SingularityHostState hostState) throws InterruptedException {
     final String path = ZKPaths.makePath(ROOT_PATH, hostState.getHostname());
-    final byte[] data = hostState.getAsBytes(objectMapper);
+    final byte[] data = hostStateTranscoder.toBytes(hostState);
 
     if (curator.getState() == CuratorFrameworkState.STARTED) {
       try {
@@ -79,10 +108,16 @@ public class StateManager extends CuratorManager {
       } catch (Throwable t) {
         throw Throwables.propagate(t);
       }
+
+      hostStatesMirror.put(hostState.getHostname(), hostState);
     }
   }
 
   public List<SingularityHostState> getHostStates() {
+    if (hostStatesMirror.isActive()) {
+      return hostStatesMirror.getChildren();
+    }
+
     List<String> children = getChildren(ROOT_PATH);
     List<SingularityHostState> states = Lists.newArrayListWithCapacity(children.size());
 
@@ -91,7 +126,7 @@ public class StateManager extends CuratorManager {
       try {
         byte[] bytes = curator.getData().forPath(ZKPaths.makePath(ROOT_PATH, child));
 
-        states.add(SingularityHostState.fromBytes(bytes, objectMapper));
+        states.add(hostStateTranscoder.transcode(bytes));
       } catch (NoNodeException nne) {
       } catch (Exception e) {
         throw Throwables.propagate(e);
@@ -116,6 +151,10 @@ public class StateManager extends CuratorManager {
   }
 
   public SingularityState getState(boolean skipCache, boolean includeRequestIds) {
+    if (stateAggregator.isActive()) {
+      return getAggregatedState(skipCache, includeRequestIds);
+    }
+
     Optional<SingularityState> fromZk = Optional.absent();
 
     if (!skipCache) {
@@ -145,7 +184,25 @@ public class StateManager extends CuratorManager {
     return newState;
   }
 
+  /**
+   * On the leader the state is always current, but it is still saved for other instances to serve from ZK.
+   */
+  private SingularityState getAggregatedState(boolean skipCache, boolean includeRequestIds) {
+    final SingularityState newState = generateState(includeRequestIds);
+
+    if (!skipCache && newState.getGeneratedAt() - lastSavedAt >= singularityConfiguration.getCacheStateForMillis()) {
+      save(STATE_PATH, newState, stateTranscoder);
+      lastSavedAt = newState.getGeneratedAt();
+    }
+
+    return newState;
+  }
+
   public SingularityState generateState(boolean includeRequestIds) {
+    if (stateAggregator.isActive()) {
+      return generateAggregatedState(includeRequestIds);
+    }
+
     final int activeTasks = taskManager.getNumActiveTasks();
     final int scheduledTasks = taskManager.getNumScheduledTasks();
     final int cleaningTasks = taskManager.getNumCleanupTasks();
@@ -239,4 +296,32 @@ public class StateManager extends CuratorManager {
             includeRequestIds ? underProvisionedRequestIds : null, overProvisionedRequestIds.size(), underProvisionedRequestIds.size(), numFinishedRequests);
   }
 
+  /**
+   * Builds the state from the leader's mirrors and the state aggregator, without reading from ZK.
+   */
+  private SingularityState generateAggregatedState(boolean includeRequestIds) {
+    final long now = System.currentTimeMillis();
+    final long lateTasksDelta = singularityConfiguration.getDeltaAfterWhichTasksAreLateMillis();
+
+    final List<String> overProvisionedRequestIds = stateAggregator.getOverProvisionedRequestIds();
+    final List<String> underProvisionedRequestIds = stateAggregator.getUnderProvisionedRequestIds();
+
+    final int numActiveRequests = stateAggregator.getNumRequests(RequestState.ACTIVE) + stateAggregator.getNumRequests(RequestState.DEPLOYING_TO_UNPAUSE);
+
+    int numDeploys = 0;
+    long oldestDeploy = 0;
+
+    for (SingularityPendingDeploy pendingDeploy : deployManager.getPendingDeploys()) {
+      oldestDeploy = Math.max(oldestDeploy, now - pendingDeploy.getDeployMarker().getTimestamp());
+      numDeploys++;
+    }
+
+    return new SingularityState(taskManager.getNumActiveTasks(), numActiveRequests, stateAggregator.getNumRequests(RequestState.SYSTEM_COOLDOWN), stateAggregator.getNumRequests(RequestState.PAUSED),
+        taskManager.getNumScheduledTasks(), requestManager.getSizeOfPendingQueue(), taskManager.getNumLbCleanupTasks(), requestManager.getSizeOfCleanupQueue(), slaveManager.getNumActive(),
+        slaveManager.getNumDead(), slaveManager.getNumDecomissioning(), rackManager.getNumActive(), rackManager.getNumDead(), rackManager.getNumDecomissioning(), taskManager.getNumCleanupTasks(),
+        getHostStates(), oldestDeploy, numDeploys, stateAggregator.getNumLateTasks(now, lateTasksDelta), stateAggregator.getNumFutureTasks(now, lateTasksDelta), stateAggregator.getMaxTaskLag(now), now,
+        includeRequestIds ? overProvisionedRequestIds : null, includeRequestIds ? underProvisionedRequestIds : null, overProvisionedRequestIds.size(), underProvisionedRequestIds.size(),
+        stateAggregator.getNumRequests(RequestState.FINISHED));
+  }
+
 }
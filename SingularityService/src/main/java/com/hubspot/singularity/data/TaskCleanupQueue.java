@@ -0,0 +1,201 @@
+package com.hubspot.singularity.data;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.base.Optional;
+import com.google.common.collect.ComparisonChain;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.hubspot.singularity.SingularityTaskCleanup;
+
+/**
+ * The leader's queue of task cleanups, kept up to date from its mirror of the cleanup nodes. Each cleanup has a time it is
+ * next due to be checked - new cleanups are due straight away, and a cleanup which has to wait (for replacement tasks to
+ * become healthy, or for its task to be removed from the load balancer) is parked until its next check - so that a cleanup
+ * poll only looks at the cleanups which are due rather than every cleanup.
+ */
+@Singleton
+public class TaskCleanupQueue {
+
+  private static class Entry {
+
+    private final String taskId;
+    private SingularityTaskCleanup cleanup;
+    private long dueAt;
+
+    private Entry(String taskId, SingularityTaskCleanup cleanup, long dueAt) {
+      this.taskId = taskId;
+      this.cleanup = cleanup;
+      this.dueAt = dueAt;
+    }
+
+  }
+
+  private static final Comparator<Entry> DUE_AT_COMPARATOR = new Comparator<Entry>() {
+
+    @Override
+    public int compare(Entry o1, Entry o2) {
+      return ComparisonChain.start()
+          .compare(o1.dueAt, o2.dueAt)
+          .compare(o1.taskId, o2.taskId)
+          .result();
+    }
+
+  };
+
+  private final Map<String, Entry> entries;
+  private final TreeSet<Entry> entriesByDueAt;
+
+  private final Histogram latencyHistogram;
+  private final ZkChildrenMirror.Listener<SingularityTaskCleanup> listener;
+
+  private boolean active;
+
+  @Inject
+  public TaskCleanupQueue(MetricRegistry registry) {
+    this.entries = Maps.newHashMap();
+    this.entriesByDueAt = new TreeSet<>(DUE_AT_COMPARATOR);
+
+    this.latencyHistogram = registry.histogram(MetricRegistry.name(TaskCleanupQueue.class, "latencyMillis"));
+
+    registry.register(MetricRegistry.name(TaskCleanupQueue.class, "backlog"), new Gauge<Integer>() {
+
+      @Override
+      public Integer getValue() {
+        return getNumCleanups();
+      }
+
+    });
+
+    registry.register(MetricRegistry.name(TaskCleanupQueue.class, "due"), new Gauge<Integer>() {
+
+      @Override
+      public Integer getValue() {
+        return getNumDueCleanups(System.currentTimeMillis());
+      }
+
+    });
+
+    this.listener = new ZkChildrenMirror.Listener<SingularityTaskCleanup>() {
+
+      @Override
+      public void childChanged(String name, Optional<SingularityTaskCleanup> previous, Optional<SingularityTaskCleanup> current) {
+        if (current.isPresent()) {
+          addCleanup(name, current.get());
+        } else {
+          removeCleanup(name);
+        }
+      }
+
+    };
+  }
+
+  public ZkChildrenMirror.Listener<SingularityTaskCleanup> getListener() {
+    return listener;
+  }
+
+  public synchronized void start() {
+    entries.clear();
+    entriesByDueAt.clear();
+    active = true;
+  }
+
+  public synchronized void stop() {
+    active = false;
+    entries.clear();
+    entriesByDueAt.clear();
+  }
+
+  public synchronized boolean isActive() {
+    return active;
+  }
+
+  private synchronized void addCleanup(String taskId, SingularityTaskCleanup cleanup) {
+    if (!active) {
+      return;
+    }
+
+    final Entry existing = entries.get(taskId);
+
+    if (existing != null) {
+      existing.cleanup = cleanup;
+      return;
+    }
+
+    final Entry entry = new Entry(taskId, cleanup, System.currentTimeMillis());
+
+    entries.put(taskId, entry);
+    entriesByDueAt.add(entry);
+  }
+
+  private synchronized void removeCleanup(String taskId) {
+    final Entry entry = entries.remove(taskId);
+
+    if (entry == null) {
+      return;
+    }
+
+    entriesByDueAt.remove(entry);
+
+    latencyHistogram.update(Math.max(0, System.currentTimeMillis() - entry.cleanup.getTimestamp()));
+  }
+
+  public synchronized int getNumCleanups() {
+    return entries.size();
+  }
+
+  public synchronized int getNumDueCleanups(long now) {
+    int due = 0;
+
+    for (Entry entry : entriesByDueAt) {
+      if (entry.dueAt > now) {
+        break;
+      }
+
+      due++;
+    }
+
+    return due;
+  }
+
+  /**
+   * Cleanups which are due to be checked at or before now, longest due first.
+   */
+  public synchronized List<SingularityTaskCleanup> getDueCleanups(long now) {
+    final List<SingularityTaskCleanup> dueCleanups = Lists.newArrayList();
+
+    for (Entry entry : entriesByDueAt) {
+      if (entry.dueAt > now) {
+        break;
+      }
+
+      dueCleanups.add(entry.cleanup);
+    }
+
+    return dueCleanups;
+  }
+
+  /**
+   * Puts off checking a task's cleanup again until nextCheckAt.
+   */
+  public synchronized void park(String taskId, long nextCheckAt) {
+    final Entry entry = entries.get(taskId);
+
+    if (entry == null) {
+      return;
+    }
+
+    entriesByDueAt.remove(entry);
+    entry.dueAt = nextCheckAt;
+    entriesByDueAt.add(entry);
+  }
+
+}
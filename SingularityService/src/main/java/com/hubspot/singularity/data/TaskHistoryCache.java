@@ -0,0 +1,101 @@
+package com.hubspot.singularity.data;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.base.Optional;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.cache.Weigher;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.hubspot.singularity.SingularityTaskHistory;
+import com.hubspot.singularity.config.SingularityConfiguration;
+
+/**
+ * Keeps the histories of finished tasks, which no longer change, so that looking one up again doesn't mean reading (and
+ * decompressing) it from ZK or MySQL again. Entries are weighed by the bytes they were read from - the uncompressed blob from
+ * MySQL, or the total of the nodes read from ZK - and the cache is bounded to taskHistoryCacheMaxBytes. Only histories which
+ * can't change any more may be put in the cache.
+ */
+@Singleton
+public class TaskHistoryCache {
+
+  private static class CachedTaskHistory {
+
+    private final SingularityTaskHistory taskHistory;
+    private final int weight;
+
+    private CachedTaskHistory(SingularityTaskHistory taskHistory, int weight) {
+      this.taskHistory = taskHistory;
+      this.weight = weight;
+    }
+
+  }
+
+  private final Cache<String, CachedTaskHistory> taskHistories;
+
+  private final Meter hits;
+  private final Meter misses;
+  private final Meter evictions;
+
+  @Inject
+  public TaskHistoryCache(SingularityConfiguration configuration, MetricRegistry registry) {
+    this.hits = registry.meter(MetricRegistry.name(TaskHistoryCache.class, "hits"));
+    this.misses = registry.meter(MetricRegistry.name(TaskHistoryCache.class, "misses"));
+    this.evictions = registry.meter(MetricRegistry.name(TaskHistoryCache.class, "evictions"));
+
+    this.taskHistories = CacheBuilder.newBuilder()
+        .maximumWeight(configuration.getTaskHistoryCacheMaxBytes())
+        .weigher(new Weigher<String, CachedTaskHistory>() {
+
+          @Override
+          public int weigh(String key, CachedTaskHistory value) {
+            return value.weight;
+          }
+
+        })
+        .removalListener(new RemovalListener<String, CachedTaskHistory>() {
+
+          @Override
+          public void onRemoval(RemovalNotification<String, CachedTaskHistory> notification) {
+            if (notification.wasEvicted()) {
+              evictions.mark();
+            }
+          }
+
+        })
+        .build();
+
+    registry.register(MetricRegistry.name(TaskHistoryCache.class, "size"), new Gauge<Long>() {
+
+      @Override
+      public Long getValue() {
+        return taskHistories.size();
+      }
+
+    });
+  }
+
+  public Optional<SingularityTaskHistory> get(String taskId) {
+    final CachedTaskHistory cachedTaskHistory = taskHistories.getIfPresent(taskId);
+
+    if (cachedTaskHistory == null) {
+      misses.mark();
+      return Optional.absent();
+    }
+
+    hits.mark();
+    return Optional.of(cachedTaskHistory.taskHistory);
+  }
+
+  /**
+   * @param bytesRead the size of the serialized data the history was built from
+   */
+  public void put(SingularityTaskHistory taskHistory, int bytesRead) {
+    taskHistories.put(taskHistory.getTask().getTaskId().getId(), new CachedTaskHistory(taskHistory, bytesRead));
+  }
+
+}
@@ -1,24 +1,36 @@
 package com.hubspot.singularity.data;
 
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.recipes.cache.ChildData;
 import org.apache.curator.utils.ZKPaths;
 import org.apache.mesos.Protos.TaskStatus;
 
+import com.codahale.metrics.MetricRegistry;
 import com.google.common.base.Function;
 import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterables;
+import com.google.common.collect.ListMultimap;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.collect.Multimaps;
+import com.google.common.collect.Sets;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
 import com.google.inject.name.Named;
+import com.hubspot.baragon.models.BaragonRequestState;
 import com.hubspot.mesos.JavaUtils;
 import com.hubspot.singularity.ExtendedTaskState;
 import com.hubspot.singularity.LoadBalancerRequestType;
@@ -39,16 +51,19 @@ import com.hubspot.singularity.SingularityTaskHistoryUpdate;
 import com.hubspot.singularity.SingularityTaskId;
 import com.hubspot.singularity.SingularityTaskStatusHolder;
 import com.hubspot.singularity.config.SingularityConfiguration;
+import com.hubspot.singularity.data.transcoders.ByteCountingTranscoder;
 import com.hubspot.singularity.data.transcoders.SingularityKilledTaskIdRecordTranscoder;
 import com.hubspot.singularity.data.transcoders.SingularityLoadBalancerUpdateTranscoder;
 import com.hubspot.singularity.data.transcoders.SingularityPendingTaskIdTranscoder;
 import com.hubspot.singularity.data.transcoders.SingularityTaskCleanupTranscoder;
 import com.hubspot.singularity.data.transcoders.SingularityTaskHealthcheckResultTranscoder;
+import com.hubspot.singularity.data.transcoders.SingularityTaskHealthcheckResultsTranscoder;
 import com.hubspot.singularity.data.transcoders.SingularityTaskHistoryUpdateTranscoder;
 import com.hubspot.singularity.data.transcoders.SingularityTaskIdTranscoder;
 import com.hubspot.singularity.data.transcoders.SingularityTaskStatusTranscoder;
 import com.hubspot.singularity.data.transcoders.SingularityTaskTranscoder;
 import com.hubspot.singularity.data.transcoders.StringTranscoder;
+import com.hubspot.singularity.data.transcoders.Transcoder;
 
 @Singleton
 public class TaskManager extends CuratorAsyncManager {
@@ -65,6 +80,7 @@ public class TaskManager extends CuratorAsyncManager {
   private static final String HISTORY_PATH_ROOT = TASKS_ROOT + "/history";
 
   private static final String LAST_HEALTHCHECK_KEY = "LAST_HEALTHCHECK";
+  private static final String HEALTHCHECK_RESULTS_KEY = "HEALTHCHECK_RESULTS";
   private static final String DIRECTORY_KEY = "DIRECTORY";
   private static final String TASK_KEY = "TASK";
 
@@ -73,7 +89,18 @@ public class TaskManager extends CuratorAsyncManager {
   private static final String HEALTHCHECKS_PATH = "/healthchecks";
   private static final String UPDATES_PATH = "/updates";
 
+  private static final int TASK_STATUS_FLUSH_BATCH_SIZE = 250;
+
+  private static final Function<SingularityPendingTask, SingularityPendingTaskId> PENDING_TASK_TO_PENDING_TASK_ID = new Function<SingularityPendingTask, SingularityPendingTaskId>() {
+
+    @Override
+    public SingularityPendingTaskId apply(SingularityPendingTask input) {
+      return input.getPendingTaskId();
+    }
+  };
+
   private final SingularityTaskHealthcheckResultTranscoder healthcheckResultTranscoder;
+  private final SingularityTaskHealthcheckResultsTranscoder healthcheckResultsTranscoder;
   private final SingularityTaskCleanupTranscoder taskCleanupTranscoder;
   private final SingularityTaskTranscoder taskTranscoder;
   private final SingularityTaskStatusTranscoder taskStatusTranscoder;
@@ -85,16 +112,34 @@ public class TaskManager extends CuratorAsyncManager {
   private final Function<SingularityPendingTaskId, SingularityPendingTask> pendingTaskIdToPendingTaskFunction;
   private final WebhookManager webhookManager;
   private final String serverId;
+  private final MetricRegistry registry;
+  private final PendingTaskQueue pendingTaskQueue;
+  private final TaskStatusTable taskStatusTable;
+  private final HealthcheckResultBuffer healthcheckResultBuffer;
+  private final RequestTaskIdIndex requestTaskIdIndex;
+  private final TaskCleanupQueue taskCleanupQueue;
+  private final TaskHistoryCache taskHistoryCache;
+
+  // status writes which go straight to ZK share this lock, a flush of written behind statuses takes it exclusively so it can't overwrite a newer status
+  private final ReadWriteLock taskStatusWriteLock = new ReentrantReadWriteLock();
+
+  private final ZkChildrenMirror<SingularityTaskId> activeTaskIdsMirror;
+  private final ZkChildrenMirror<SingularityPendingTask> pendingTasksMirror;
+  private final ZkChildrenMirror<SingularityTaskCleanup> cleanupTasksMirror;
+  private final ZkChildrenMirror<SingularityTaskId> lbCleanupTaskIdsMirror;
 
   @Inject
   public TaskManager(SingularityConfiguration configuration, CuratorFramework curator, WebhookManager webhookManager, SingularityPendingTaskIdTranscoder pendingTaskIdTranscoder,
       SingularityTaskIdTranscoder taskIdTranscoder, SingularityLoadBalancerUpdateTranscoder taskLoadBalancerHistoryUpdateTranscoder, SingularityTaskStatusTranscoder taskStatusTranscoder,
-      SingularityTaskHealthcheckResultTranscoder healthcheckResultTranscoder, SingularityTaskTranscoder taskTranscoder, SingularityTaskCleanupTranscoder taskCleanupTranscoder,
+      SingularityTaskHealthcheckResultTranscoder healthcheckResultTranscoder, SingularityTaskHealthcheckResultsTranscoder healthcheckResultsTranscoder, SingularityTaskTranscoder taskTranscoder, SingularityTaskCleanupTranscoder taskCleanupTranscoder,
       SingularityTaskHistoryUpdateTranscoder taskHistoryUpdateTranscoder, SingularityKilledTaskIdRecordTranscoder killedTaskIdRecordTranscoder,
-      @Named(SingularityMainModule.SERVER_ID_PROPERTY) String serverId) {
-    super(curator, configuration.getZookeeperAsyncTimeout());
+      @Named(SingularityMainModule.SERVER_ID_PROPERTY) String serverId, StateAggregator stateAggregator, PendingTaskQueue pendingTaskQueue, TaskStatusTable taskStatusTable,
+      HealthcheckResultBuffer healthcheckResultBuffer, RequestTaskIdIndex requestTaskIdIndex, TaskCleanupQueue taskCleanupQueue, TaskHistoryCache taskHistoryCache,
+      MetricRegistry registry) {
+    super(curator, configuration, registry);
 
     this.healthcheckResultTranscoder = healthcheckResultTranscoder;
+    this.healthcheckResultsTranscoder = healthcheckResultsTranscoder;
     this.taskTranscoder = taskTranscoder;
     this.taskStatusTranscoder = taskStatusTranscoder;
     this.killedTaskIdRecordTranscoder = killedTaskIdRecordTranscoder;
@@ -106,6 +151,13 @@ public class TaskManager extends CuratorAsyncManager {
     this.webhookManager = webhookManager;
 
     this.serverId = serverId;
+    this.registry = registry;
+    this.pendingTaskQueue = pendingTaskQueue;
+    this.taskStatusTable = taskStatusTable;
+    this.healthcheckResultBuffer = healthcheckResultBuffer;
+    this.requestTaskIdIndex = requestTaskIdIndex;
+    this.taskCleanupQueue = taskCleanupQueue;
+    this.taskHistoryCache = taskHistoryCache;
 
     this.pendingTaskIdToPendingTaskFunction = new Function<SingularityPendingTaskId, SingularityPendingTask>() {
 
@@ -120,12 +172,97 @@ public class TaskManager extends CuratorAsyncManager {
         return new SingularityPendingTask(input, maybeCmdLineArgs);
       }
     };
+
+    final Function<ChildData, SingularityTaskId> childToTaskId = new Function<ChildData, SingularityTaskId>() {
+
+      @Override
+      public SingularityTaskId apply(ChildData input) {
+        return TaskManager.this.taskIdTranscoder.apply(ZKPaths.getNodeFromPath(input.getPath()));
+      }
+    };
+
+    this.activeTaskIdsMirror = new ZkChildrenMirror<>(curator, registry, ACTIVE_PATH_ROOT, false, childToTaskId);
+    this.cleanupTasksMirror = new ZkChildrenMirror<>(curator, registry, CLEANUP_PATH_ROOT, true, new Function<ChildData, SingularityTaskCleanup>() {
+
+      @Override
+      public SingularityTaskCleanup apply(ChildData input) {
+        return TaskManager.this.taskCleanupTranscoder.transcode(input.getData());
+      }
+    });
+    this.lbCleanupTaskIdsMirror = new ZkChildrenMirror<>(curator, registry, LB_CLEANUP_PATH_ROOT, false, childToTaskId);
+    this.pendingTasksMirror = new ZkChildrenMirror<>(curator, registry, PENDING_PATH_ROOT, true, new Function<ChildData, SingularityPendingTask>() {
+
+      @Override
+      public SingularityPendingTask apply(ChildData input) {
+        final SingularityPendingTaskId pendingTaskId = TaskManager.this.pendingTaskIdTranscoder.apply(ZKPaths.getNodeFromPath(input.getPath()));
+
+        Optional<String> maybeCmdLineArgs = Optional.absent();
+
+        if (((pendingTaskId.getPendingType() == PendingType.ONEOFF) || (pendingTaskId.getPendingType() == PendingType.IMMEDIATE)) && input.getData() != null && input.getData().length > 0) {
+          maybeCmdLineArgs = Optional.of(JavaUtils.toString(input.getData()));
+        }
+
+        return new SingularityPendingTask(pendingTaskId, maybeCmdLineArgs);
+      }
+    });
+
+    this.activeTaskIdsMirror.addListener(stateAggregator.getActiveTaskListener());
+    this.activeTaskIdsMirror.addListener(requestTaskIdIndex.getActiveTaskListener());
+    this.pendingTasksMirror.addListener(stateAggregator.getPendingTaskListener());
+    this.pendingTasksMirror.addListener(pendingTaskQueue.getListener());
+    this.cleanupTasksMirror.addListener(taskCleanupQueue.getListener());
+  }
+
+  private List<ZkChildrenMirror<?>> getMirrors() {
+    return ImmutableList.<ZkChildrenMirror<?>> of(activeTaskIdsMirror, pendingTasksMirror, cleanupTasksMirror, lbCleanupTaskIdsMirror);
+  }
+
+  public void startMirrors() {
+    requestTaskIdIndex.start();
+    taskCleanupQueue.start();
+
+    for (ZkChildrenMirror<?> mirror : getMirrors()) {
+      mirror.start();
+    }
+
+    taskStatusTable.start(getAsyncChildren(LAST_ACTIVE_TASK_STATUSES_PATH_ROOT, taskStatusTranscoder));
+    healthcheckResultBuffer.start();
+  }
+
+  public void stopMirrors() {
+    if (taskStatusTable.isActive()) {
+      flushLastActiveTaskStatuses();
+      taskStatusTable.stop();
+    }
+
+    healthcheckResultBuffer.stop();
+
+    for (ZkChildrenMirror<?> mirror : getMirrors()) {
+      mirror.stop();
+    }
+
+    taskCleanupQueue.stop();
+    requestTaskIdIndex.stop();
+  }
+
+  public int checkMirrors() {
+    int drift = 0;
+
+    for (ZkChildrenMirror<?> mirror : getMirrors()) {
+      drift += mirror.checkConsistency();
+    }
+
+    return drift;
   }
 
   private String getLastHealthcheckPath(SingularityTaskId taskId) {
     return ZKPaths.makePath(getHistoryPath(taskId), LAST_HEALTHCHECK_KEY);
   }
 
+  private String getHealthcheckResultsPath(SingularityTaskId taskId) {
+    return ZKPaths.makePath(getHistoryPath(taskId), HEALTHCHECK_RESULTS_KEY);
+  }
+
   private String getHealthcheckParentPath(SingularityTaskId taskId) {
     return ZKPaths.makePath(getHistoryPath(taskId), HEALTHCHECKS_PATH);
   }
@@ -134,10 +271,6 @@ public class TaskManager extends CuratorAsyncManager {
     return ZKPaths.makePath(LAST_ACTIVE_TASK_STATUSES_PATH_ROOT, taskId.getId());
   }
 
-  private String getHealthcheckPath(SingularityTaskHealthcheckResult healthcheck) {
-    return ZKPaths.makePath(getHealthcheckParentPath(healthcheck.getTaskId()), Long.toString(healthcheck.getTimestamp()));
-  }
-
   private String getTaskPath(SingularityTaskId taskId) {
     return ZKPaths.makePath(getHistoryPath(taskId), TASK_KEY);
   }
@@ -179,18 +312,34 @@ public class TaskManager extends CuratorAsyncManager {
   }
 
   public int getNumCleanupTasks() {
+    if (cleanupTasksMirror.isActive()) {
+      return cleanupTasksMirror.getNumChildren();
+    }
+
     return getNumChildren(CLEANUP_PATH_ROOT);
   }
 
   public int getNumLbCleanupTasks() {
+    if (lbCleanupTaskIdsMirror.isActive()) {
+      return lbCleanupTaskIdsMirror.getNumChildren();
+    }
+
     return getNumChildren(LB_CLEANUP_PATH_ROOT);
   }
 
   public int getNumActiveTasks() {
+    if (activeTaskIdsMirror.isActive()) {
+      return activeTaskIdsMirror.getNumChildren();
+    }
+
     return getNumChildren(ACTIVE_PATH_ROOT);
   }
 
   public int getNumScheduledTasks() {
+    if (pendingTasksMirror.isActive()) {
+      return pendingTasksMirror.getNumChildren();
+    }
+
     return getNumChildren(PENDING_PATH_ROOT);
   }
 
@@ -204,41 +353,124 @@ public class TaskManager extends CuratorAsyncManager {
     save(getDirectoryPath(taskId), Optional.of(JavaUtils.toBytes(directory)));
   }
 
+  /**
+   * While the leader's status table is active, a status which repeats the task's current state is written behind. Any
+   * other status is written to ZK before this returns.
+   */
   public void saveLastActiveTaskStatus(SingularityTaskStatusHolder taskStatus) {
-    save(getLastActiveTaskStatusPath(taskStatus.getTaskId()), taskStatus, taskStatusTranscoder);
-  }
+    if (taskStatusTable.isActive() && taskStatusTable.putIfSameState(taskStatus)) {
+      return;
+    }
 
-  public Optional<String> getDirectory(SingularityTaskId taskId) {
-    return getData(getDirectoryPath(taskId), StringTranscoder.STRING_TRANSCODER);
+    taskStatusWriteLock.readLock().lock();
+
+    try {
+      save(getLastActiveTaskStatusPath(taskStatus.getTaskId()), taskStatus, taskStatusTranscoder);
+
+      taskStatusTable.putPersisted(taskStatus);
+    } finally {
+      taskStatusWriteLock.readLock().unlock();
+    }
   }
 
-  public void saveHealthcheckResult(SingularityTaskHealthcheckResult healthcheckResult) {
-    final Optional<byte[]> bytes = Optional.of(healthcheckResultTranscoder.toBytes(healthcheckResult));
+  /**
+   * Writes the statuses which have been written behind in the leader's status table since the last flush, in batches.
+   *
+   * @return the number of statuses written
+   */
+  public int flushLastActiveTaskStatuses() {
+    taskStatusWriteLock.writeLock().lock();
 
-    save(getHealthcheckPath(healthcheckResult), bytes);
-    save(getLastHealthcheckPath(healthcheckResult.getTaskId()), bytes);
+    try {
+      return flushLastActiveTaskStatusesLocked();
+    } finally {
+      taskStatusWriteLock.writeLock().unlock();
+    }
   }
 
-  public void createPendingTasks(List<SingularityPendingTask> tasks) {
+  private int flushLastActiveTaskStatusesLocked() {
+    final Map<SingularityTaskId, SingularityTaskStatusHolder> unpersisted = taskStatusTable.drainUnpersisted();
+
+    if (unpersisted.isEmpty()) {
+      return 0;
+    }
+
+    final List<SingularityTaskId> taskIds = Lists.newArrayList(unpersisted.keySet());
+    int numPersisted = 0;
+
     try {
-      for (SingularityPendingTask task : tasks) {
-        createPendingTask(task);
+      for (List<SingularityTaskId> chunk : Lists.partition(taskIds, TASK_STATUS_FLUSH_BATCH_SIZE)) {
+        final ZkWriteBatch batch = newWriteBatch(registry, "flushTaskStatuses");
+
+        for (SingularityTaskId taskId : chunk) {
+          batch.set(getLastActiveTaskStatusPath(taskId), unpersisted.get(taskId), taskStatusTranscoder);
+        }
+
+        batch.commit();
+
+        numPersisted += chunk.size();
       }
     } catch (Throwable t) {
+      final Map<SingularityTaskId, SingularityTaskStatusHolder> failed = Maps.newLinkedHashMap(unpersisted);
+      failed.keySet().removeAll(taskIds.subList(0, numPersisted));
+
+      taskStatusTable.restoreUnpersisted(failed);
       throw Throwables.propagate(t);
+    } finally {
+      taskStatusTable.recordPersisted(numPersisted);
     }
+
+    return numPersisted;
+  }
+
+  public Optional<String> getDirectory(SingularityTaskId taskId) {
+    return getData(getDirectoryPath(taskId), StringTranscoder.STRING_TRANSCODER);
   }
 
-  private void createPendingTask(SingularityPendingTask task) throws Exception {
-    final String pendingPath = getPendingPath(task.getPendingTaskId());
+  /**
+   * Rewrites the task's results node with its most recent results, this one included.
+   */
+  public void saveHealthcheckResult(SingularityTaskHealthcheckResult healthcheckResult) {
+    final SingularityTaskId taskId = healthcheckResult.getTaskId();
+
+    List<SingularityTaskHealthcheckResult> recentResults;
+
+    if (healthcheckResultBuffer.isActive()) {
+      if (!healthcheckResultBuffer.contains(taskId.getId())) {
+        healthcheckResultBuffer.load(taskId.getId(), getPersistedHealthcheckResults(taskId));
+      }
 
-    Optional<byte[]> data = Optional.absent();
+      recentResults = healthcheckResultBuffer.add(healthcheckResult);
+    } else {
+      final HealthcheckResultBuffer.Ring ring = healthcheckResultBuffer.newRing();
 
-    if (task.getMaybeCmdLineArgs().isPresent()) {
-      data = Optional.of(JavaUtils.toBytes(task.getMaybeCmdLineArgs().get()));
+      ring.addAll(getPersistedHealthcheckResults(taskId));
+      ring.add(healthcheckResult);
+
+      recentResults = ring.toList();
     }
 
-    create(pendingPath, data);
+    save(getHealthcheckResultsPath(taskId), recentResults, healthcheckResultsTranscoder);
+  }
+
+  public void createPendingTasks(List<SingularityPendingTask> tasks) {
+    final ZkWriteBatch batch = newWriteBatch(registry, "createPendingTasks");
+
+    for (SingularityPendingTask task : tasks) {
+      Optional<byte[]> data = Optional.absent();
+
+      if (task.getMaybeCmdLineArgs().isPresent()) {
+        data = Optional.of(JavaUtils.toBytes(task.getMaybeCmdLineArgs().get()));
+      }
+
+      batch.create(getPendingPath(task.getPendingTaskId()), data);
+    }
+
+    batch.commit();
+
+    for (SingularityPendingTask task : tasks) {
+      pendingTasksMirror.put(task.getPendingTaskId().getId(), task);
+    }
   }
 
   public List<SingularityTaskId> getAllTaskIds() {
@@ -257,30 +489,76 @@ public class TaskManager extends CuratorAsyncManager {
   }
 
   public List<SingularityTaskId> getActiveTaskIds() {
+    if (activeTaskIdsMirror.isActive()) {
+      return activeTaskIdsMirror.getChildren();
+    }
+
     return getTaskIds(ACTIVE_PATH_ROOT);
   }
 
   public List<SingularityTaskId> getCleanupTaskIds() {
+    if (cleanupTasksMirror.isActive()) {
+      final List<SingularityTaskCleanup> cleanupTasks = cleanupTasksMirror.getChildren();
+      final List<SingularityTaskId> cleanupTaskIds = Lists.newArrayListWithCapacity(cleanupTasks.size());
+
+      for (SingularityTaskCleanup cleanupTask : cleanupTasks) {
+        cleanupTaskIds.add(cleanupTask.getTaskId());
+      }
+
+      return cleanupTaskIds;
+    }
+
     return getTaskIds(CLEANUP_PATH_ROOT);
   }
 
   public List<SingularityTaskCleanup> getCleanupTasks() {
+    if (cleanupTasksMirror.isActive()) {
+      return cleanupTasksMirror.getChildren();
+    }
+
     return getAsyncChildren(CLEANUP_PATH_ROOT, taskCleanupTranscoder);
   }
 
+  public boolean isCleanupQueueActive() {
+    return taskCleanupQueue.isActive();
+  }
+
+  /**
+   * Only available on the leader, see {@link #isCleanupQueueActive()}.
+   */
+  public List<SingularityTaskCleanup> getDueCleanupTasks(long now) {
+    return taskCleanupQueue.getDueCleanups(now);
+  }
+
+  public void parkCleanupTask(SingularityTaskId taskId, long nextCheckAt) {
+    taskCleanupQueue.park(taskId.getId(), nextCheckAt);
+  }
+
   public List<SingularityTask> getActiveTasks() {
     return getAsyncChildren(ACTIVE_PATH_ROOT, taskTranscoder);
   }
 
   public List<SingularityTaskStatusHolder> getLastActiveTaskStatuses() {
+    if (taskStatusTable.isActive()) {
+      return taskStatusTable.getAll();
+    }
+
     return getAsyncChildren(LAST_ACTIVE_TASK_STATUSES_PATH_ROOT, taskStatusTranscoder);
   }
 
   public Optional<SingularityTaskStatusHolder> getLastActiveTaskStatus(SingularityTaskId taskId) {
+    if (taskStatusTable.isActive()) {
+      return taskStatusTable.get(taskId);
+    }
+
     return getData(getLastActiveTaskStatusPath(taskId), taskStatusTranscoder);
   }
 
   public List<SingularityTaskStatusHolder> getLastActiveTaskStatusesFor(Collection<SingularityTaskId> activeTaskIds) {
+    if (taskStatusTable.isActive()) {
+      return taskStatusTable.getAll(activeTaskIds);
+    }
+
     List<String> paths = Lists.newArrayListWithExpectedSize(activeTaskIds.size());
     for (SingularityTaskId taskId : activeTaskIds) {
       paths.add(getLastActiveTaskStatusPath(taskId));
@@ -304,7 +582,11 @@ public class TaskManager extends CuratorAsyncManager {
   }
 
   public List<SingularityTaskHistoryUpdate> getTaskHistoryUpdates(SingularityTaskId taskId) {
-    List<SingularityTaskHistoryUpdate> updates = getAsyncChildren(getUpdatesPath(taskId), taskHistoryUpdateTranscoder);
+    return getTaskHistoryUpdates(taskId, taskHistoryUpdateTranscoder);
+  }
+
+  private List<SingularityTaskHistoryUpdate> getTaskHistoryUpdates(SingularityTaskId taskId, Transcoder<SingularityTaskHistoryUpdate> transcoder) {
+    List<SingularityTaskHistoryUpdate> updates = getAsyncChildren("task_updates", getUpdatesPath(taskId), transcoder);
     Collections.sort(updates);
     return updates;
   }
@@ -320,24 +602,84 @@ public class TaskManager extends CuratorAsyncManager {
   }
 
   public List<SingularityTaskHealthcheckResult> getHealthcheckResults(SingularityTaskId taskId) {
-    List<SingularityTaskHealthcheckResult> healthcheckResults = getAsyncChildren(getHealthcheckParentPath(taskId), healthcheckResultTranscoder);
-    Collections.sort(healthcheckResults);
-    return healthcheckResults;
+    final Optional<List<SingularityTaskHealthcheckResult>> bufferedResults = healthcheckResultBuffer.getAll(taskId.getId());
+
+    if (bufferedResults.isPresent()) {
+      return bufferedResults.get();
+    }
+
+    return getPersistedHealthcheckResults(taskId);
+  }
+
+  private List<SingularityTaskHealthcheckResult> getPersistedHealthcheckResults(SingularityTaskId taskId) {
+    return getPersistedHealthcheckResults(taskId, healthcheckResultsTranscoder, healthcheckResultTranscoder);
+  }
+
+  private List<SingularityTaskHealthcheckResult> getPersistedHealthcheckResults(SingularityTaskId taskId, Transcoder<List<SingularityTaskHealthcheckResult>> resultsTranscoder,
+      Transcoder<SingularityTaskHealthcheckResult> resultTranscoder) {
+    final Optional<List<SingularityTaskHealthcheckResult>> healthcheckResults = getData(getHealthcheckResultsPath(taskId), resultsTranscoder);
+
+    if (healthcheckResults.isPresent()) {
+      return healthcheckResults.get();
+    }
+
+    // tasks whose healthchecks were saved one node per result
+    List<SingularityTaskHealthcheckResult> legacyHealthcheckResults = getAsyncChildren("task_healthchecks", getHealthcheckParentPath(taskId), resultTranscoder);
+    Collections.sort(legacyHealthcheckResults);
+    return legacyHealthcheckResults;
   }
 
   public Optional<SingularityTaskHealthcheckResult> getLastHealthcheck(SingularityTaskId taskId) {
+    final Optional<SingularityTaskHealthcheckResult> bufferedResult = healthcheckResultBuffer.getLast(taskId.getId());
+
+    if (bufferedResult.isPresent()) {
+      return bufferedResult;
+    }
+
+    final Optional<List<SingularityTaskHealthcheckResult>> healthcheckResults = getData(getHealthcheckResultsPath(taskId), healthcheckResultsTranscoder);
+
+    if (healthcheckResults.isPresent()) {
+      return Optional.fromNullable(Iterables.getLast(healthcheckResults.get(), null));
+    }
+
     return getData(getLastHealthcheckPath(taskId), healthcheckResultTranscoder);
   }
 
   public Map<SingularityTaskId, SingularityTaskHealthcheckResult> getLastHealthcheck(Collection<SingularityTaskId> taskIds) {
-    List<String> paths = Lists.newArrayListWithCapacity(taskIds.size());
+    final Map<SingularityTaskId, SingularityTaskHealthcheckResult> lastHealthchecks = Maps.newHashMapWithExpectedSize(taskIds.size());
+    final Map<String, SingularityTaskId> unbufferedResultsPaths = Maps.newHashMap();
+
     for (SingularityTaskId taskId : taskIds) {
-      paths.add(getLastHealthcheckPath(taskId));
+      final Optional<SingularityTaskHealthcheckResult> bufferedResult = healthcheckResultBuffer.getLast(taskId.getId());
+
+      if (bufferedResult.isPresent()) {
+        lastHealthchecks.put(taskId, bufferedResult.get());
+      } else {
+        unbufferedResultsPaths.put(getHealthcheckResultsPath(taskId), taskId);
+      }
     }
 
-    List<SingularityTaskHealthcheckResult> healthcheckResults = getAsync("healthchecks_by_ids", paths, healthcheckResultTranscoder);
+    if (unbufferedResultsPaths.isEmpty()) {
+      return lastHealthchecks;
+    }
+
+    final Map<String, List<SingularityTaskHealthcheckResult>> healthcheckResults = getAsyncByPath("healthcheck_results_by_ids", unbufferedResultsPaths.keySet(), healthcheckResultsTranscoder);
+
+    final List<String> legacyPaths = Lists.newArrayList();
 
-    return Maps.uniqueIndex(healthcheckResults, healthcheckResultTranscoder);
+    for (Map.Entry<String, SingularityTaskId> entry : unbufferedResultsPaths.entrySet()) {
+      final List<SingularityTaskHealthcheckResult> taskResults = healthcheckResults.get(entry.getKey());
+
+      if (taskResults == null) {
+        legacyPaths.add(getLastHealthcheckPath(entry.getValue()));
+      } else if (!taskResults.isEmpty()) {
+        lastHealthchecks.put(entry.getValue(), Iterables.getLast(taskResults));
+      }
+    }
+
+    lastHealthchecks.putAll(Maps.uniqueIndex(getAsync("healthchecks_by_ids", legacyPaths, healthcheckResultTranscoder), healthcheckResultTranscoder));
+
+    return lastHealthchecks;
   }
 
   public boolean taskHistoryUpdateExists(SingularityTaskHistoryUpdate taskHistoryUpdate) {
@@ -350,13 +692,50 @@ public class TaskManager extends CuratorAsyncManager {
     return create(getUpdatePath(taskHistoryUpdate.getTaskId(), taskHistoryUpdate.getTaskState()), taskHistoryUpdate, taskHistoryUpdateTranscoder);
   }
 
+  /**
+   * Writes the history update for a status which doesn't complete the task together with the task's new last active status,
+   * in one transaction. The last active status is expected to exist already. While the leader's status table is active a
+   * status which repeats the task's current state is written behind instead.
+   */
+  public void saveTaskHistoryUpdateAndLastActiveTaskStatus(SingularityTaskHistoryUpdate taskHistoryUpdate, SingularityTaskStatusHolder taskStatus) {
+    if (taskStatusTable.isActive() && taskStatusTable.putIfSameState(taskStatus)) {
+      saveTaskHistoryUpdate(taskHistoryUpdate);
+      return;
+    }
+
+    taskStatusWriteLock.readLock().lock();
+
+    try {
+      final ZkWriteBatch batch = newWriteBatch(registry, "saveTaskStatusUpdate");
+
+      addTaskHistoryUpdate(batch, taskHistoryUpdate);
+      batch.set(getLastActiveTaskStatusPath(taskStatus.getTaskId()), taskStatus, taskStatusTranscoder);
+
+      batch.commit();
+
+      taskStatusTable.putPersisted(taskStatus);
+    } finally {
+      taskStatusWriteLock.readLock().unlock();
+    }
+  }
+
   public boolean isActiveTask(String taskId) {
+    if (activeTaskIdsMirror.isActive()) {
+      return activeTaskIdsMirror.contains(taskId);
+    }
+
     final String path = getActivePath(taskId);
 
     return exists(path);
   }
 
   public List<SingularityTaskId> getTaskIdsForRequest(String requestId) {
+    if (requestTaskIdIndex.isActive()) {
+      final List<SingularityTaskId> requestTaskIds = getActiveTaskIdsForRequest(requestId);
+      requestTaskIds.addAll(getInactiveTaskIdsForRequest(requestId));
+      return requestTaskIds;
+    }
+
     return getChildrenAsIds(getRequestPath(requestId), taskIdTranscoder);
   }
 
@@ -365,10 +744,30 @@ public class TaskManager extends CuratorAsyncManager {
   }
 
   public List<SingularityTaskId> getInactiveTaskIdsForRequest(String requestId) {
+    if (requestTaskIdIndex.isActive()) {
+      final Optional<List<SingularityTaskId>> inactiveTaskIds = requestTaskIdIndex.getInactiveTaskIds(requestId);
+
+      if (inactiveTaskIds.isPresent()) {
+        return inactiveTaskIds.get();
+      }
+
+      final RequestTaskIdIndex.Loading loading = requestTaskIdIndex.startLoading(requestId);
+
+      try {
+        return requestTaskIdIndex.loadInactiveTaskIds(loading, getChildrenAsIds(getRequestPath(requestId), taskIdTranscoder));
+      } finally {
+        requestTaskIdIndex.stopLoading(loading);
+      }
+    }
+
     return getTaskIdsForRequest(requestId, TaskFilter.INACTIVE);
   }
 
   public List<SingularityTaskId> getActiveTaskIdsForRequest(String requestId) {
+    if (requestTaskIdIndex.isActive()) {
+      return requestTaskIdIndex.getActiveTaskIds(requestId);
+    }
+
     return getTaskIdsForRequest(requestId, TaskFilter.ACTIVE);
   }
 
@@ -385,7 +784,7 @@ public class TaskManager extends CuratorAsyncManager {
   }
 
   private List<SingularityTaskId> getTaskIdsForRequest(String requestId, TaskFilter taskFilter) {
-    final List<SingularityTaskId> requestTaskIds = getTaskIdsForRequest(requestId);
+    final List<SingularityTaskId> requestTaskIds = getChildrenAsIds(getRequestPath(requestId), taskIdTranscoder);
     final List<SingularityTaskId> activeTaskIds = filterActiveTaskIds(requestTaskIds);
 
     if (taskFilter == TaskFilter.ACTIVE) {
@@ -398,26 +797,142 @@ public class TaskManager extends CuratorAsyncManager {
   }
 
   public Optional<SingularityTaskHistory> getTaskHistory(SingularityTaskId taskId) {
-    final Optional<SingularityTask> task = getTask(taskId);
+    final Optional<SingularityTaskHistory> cachedTaskHistory = taskHistoryCache.get(taskId.getId());
+
+    if (cachedTaskHistory.isPresent()) {
+      return cachedTaskHistory;
+    }
+
+    // the size of every node read, to weigh the history if it is cached
+    final AtomicInteger bytesRead = new AtomicInteger();
+
+    final Optional<SingularityTask> task = getData(getTaskPath(taskId), new ByteCountingTranscoder<>(taskTranscoder, bytesRead));
 
     if (!task.isPresent()) {
       return Optional.absent();
     }
 
-    List<SingularityTaskHistoryUpdate> taskUpdates = getTaskHistoryUpdates(taskId);
-    Optional<String> directory = getDirectory(taskId);
-    List<SingularityTaskHealthcheckResult> healthchecks = getHealthcheckResults(taskId);
+    List<SingularityTaskHistoryUpdate> taskUpdates = getTaskHistoryUpdates(taskId, new ByteCountingTranscoder<>(taskHistoryUpdateTranscoder, bytesRead));
+    Optional<String> directory = getData(getDirectoryPath(taskId), new ByteCountingTranscoder<>(StringTranscoder.STRING_TRANSCODER, bytesRead));
+
+    // buffered results were never read from ZK, so only persisted results count towards the size
+    final Optional<List<SingularityTaskHealthcheckResult>> bufferedResults = healthcheckResultBuffer.getAll(taskId.getId());
+    List<SingularityTaskHealthcheckResult> healthchecks = bufferedResults.isPresent() ? bufferedResults.get() : getPersistedHealthcheckResults(taskId,
+        new ByteCountingTranscoder<>(healthcheckResultsTranscoder, bytesRead), new ByteCountingTranscoder<>(healthcheckResultTranscoder, bytesRead));
 
     List<SingularityLoadBalancerUpdate> loadBalancerUpdates = Lists.newArrayListWithCapacity(2);
+    Transcoder<SingularityLoadBalancerUpdate> loadBalancerUpdateTranscoder = new ByteCountingTranscoder<>(taskLoadBalancerUpdateTranscoder, bytesRead);
+
+    checkLoadBalancerHistory(loadBalancerUpdates, taskId, LoadBalancerRequestType.ADD, loadBalancerUpdateTranscoder);
+    checkLoadBalancerHistory(loadBalancerUpdates, taskId, LoadBalancerRequestType.REMOVE, loadBalancerUpdateTranscoder);
 
-    checkLoadBalancerHistory(loadBalancerUpdates, taskId, LoadBalancerRequestType.ADD);
-    checkLoadBalancerHistory(loadBalancerUpdates, taskId, LoadBalancerRequestType.REMOVE);
+    final SingularityTaskHistory taskHistory = new SingularityTaskHistory(taskUpdates, directory, healthchecks, task.get(), loadBalancerUpdates);
 
-    return Optional.of(new SingularityTaskHistory(taskUpdates, directory, healthchecks, task.get(), loadBalancerUpdates));
+    if (isFinal(taskHistory)) {
+      taskHistoryCache.put(taskHistory, bytesRead.get());
+    }
+
+    return Optional.of(taskHistory);
   }
 
-  private void checkLoadBalancerHistory(List<SingularityLoadBalancerUpdate> loadBalancerUpdates, SingularityTaskId taskId, LoadBalancerRequestType lbRequestType) {
-    Optional<SingularityLoadBalancerUpdate> lbHistory = getLoadBalancerState(taskId, lbRequestType);
+  /**
+   * A task's history in ZK stops changing once the task is done and it has been taken out of the LB (or was never in it).
+   */
+  private boolean isFinal(SingularityTaskHistory taskHistory) {
+    if (taskHistory.getTaskUpdates().isEmpty() || !Iterables.getLast(taskHistory.getTaskUpdates()).getTaskState().isDone()) {
+      return false;
+    }
+
+    boolean added = false;
+
+    for (SingularityLoadBalancerUpdate loadBalancerUpdate : taskHistory.getLoadBalancerUpdates()) {
+      if (loadBalancerUpdate.getLoadBalancerRequestId().getRequestType() == LoadBalancerRequestType.REMOVE) {
+        return loadBalancerUpdate.getLoadBalancerState() == BaragonRequestState.SUCCESS;
+      }
+
+      added = true;
+    }
+
+    return !added;
+  }
+
+  /**
+   * Same as getTaskHistory for each task, but reads every node of every task with background reads rather than one task at
+   * a time. Tasks which are missing from ZK are left out.
+   */
+  public Map<SingularityTaskId, SingularityTaskHistory> getTaskHistories(Collection<SingularityTaskId> taskIds) {
+    final Map<SingularityTaskId, SingularityTask> tasks = getTasks(taskIds);
+
+    if (tasks.isEmpty()) {
+      return Collections.emptyMap();
+    }
+
+    final List<String> updateParents = Lists.newArrayListWithCapacity(tasks.size());
+    final List<String> healthcheckResultsPaths = Lists.newArrayListWithCapacity(tasks.size());
+    final List<String> directoryPaths = Lists.newArrayListWithCapacity(tasks.size());
+    final List<String> loadBalancerPaths = Lists.newArrayListWithCapacity(tasks.size() * 2);
+
+    for (SingularityTaskId taskId : tasks.keySet()) {
+      updateParents.add(getUpdatesPath(taskId));
+      healthcheckResultsPaths.add(getHealthcheckResultsPath(taskId));
+      directoryPaths.add(getDirectoryPath(taskId));
+      loadBalancerPaths.add(getLoadBalancerStatePath(taskId, LoadBalancerRequestType.ADD));
+      loadBalancerPaths.add(getLoadBalancerStatePath(taskId, LoadBalancerRequestType.REMOVE));
+    }
+
+    final List<SingularityTaskHistoryUpdate> updates = getAsync("task_updates", getChildPathsForParents("task_update_parents", updateParents), taskHistoryUpdateTranscoder);
+    final Map<String, List<SingularityTaskHealthcheckResult>> healthcheckResults = getAsyncByPath("task_healthcheck_results", healthcheckResultsPaths, healthcheckResultsTranscoder);
+    final Map<String, String> directories = getAsyncByPath("task_directories", directoryPaths, StringTranscoder.STRING_TRANSCODER);
+    final Map<String, SingularityLoadBalancerUpdate> loadBalancerUpdates = getAsyncByPath("task_load_balancer_updates", loadBalancerPaths, taskLoadBalancerUpdateTranscoder);
+
+    final ListMultimap<SingularityTaskId, SingularityTaskHistoryUpdate> updatesByTaskId = Multimaps.index(updates, taskHistoryUpdateTranscoder);
+    final List<String> legacyHealthcheckParents = Lists.newArrayList();
+
+    for (SingularityTaskId taskId : tasks.keySet()) {
+      if (!healthcheckResults.containsKey(getHealthcheckResultsPath(taskId))) {
+        legacyHealthcheckParents.add(getHealthcheckParentPath(taskId));
+      }
+    }
+
+    final List<SingularityTaskHealthcheckResult> legacyHealthchecks = getAsync("task_healthchecks", getChildPathsForParents("task_healthcheck_parents", legacyHealthcheckParents), healthcheckResultTranscoder);
+    final ListMultimap<SingularityTaskId, SingularityTaskHealthcheckResult> legacyHealthchecksByTaskId = Multimaps.index(legacyHealthchecks, healthcheckResultTranscoder);
+
+    final Map<SingularityTaskId, SingularityTaskHistory> histories = Maps.newHashMapWithExpectedSize(tasks.size());
+
+    for (Map.Entry<SingularityTaskId, SingularityTask> entry : tasks.entrySet()) {
+      final SingularityTaskId taskId = entry.getKey();
+
+      final List<SingularityTaskHistoryUpdate> taskUpdates = Lists.newArrayList(updatesByTaskId.get(taskId));
+      Collections.sort(taskUpdates);
+
+      List<SingularityTaskHealthcheckResult> taskHealthchecks = healthcheckResults.get(getHealthcheckResultsPath(taskId));
+
+      if (taskHealthchecks == null) {
+        taskHealthchecks = Lists.newArrayList(legacyHealthchecksByTaskId.get(taskId));
+        Collections.sort(taskHealthchecks);
+      }
+
+      final List<SingularityLoadBalancerUpdate> taskLoadBalancerUpdates = Lists.newArrayListWithCapacity(2);
+
+      for (LoadBalancerRequestType requestType : Arrays.asList(LoadBalancerRequestType.ADD, LoadBalancerRequestType.REMOVE)) {
+        final SingularityLoadBalancerUpdate loadBalancerUpdate = loadBalancerUpdates.get(getLoadBalancerStatePath(taskId, requestType));
+
+        if (loadBalancerUpdate != null) {
+          taskLoadBalancerUpdates.add(loadBalancerUpdate);
+        }
+      }
+
+      final Optional<String> directory = Optional.fromNullable(directories.get(getDirectoryPath(taskId)));
+
+      histories.put(taskId, new SingularityTaskHistory(taskUpdates, directory, taskHealthchecks, entry.getValue(), taskLoadBalancerUpdates));
+    }
+
+    return histories;
+  }
+
+  private void checkLoadBalancerHistory(List<SingularityLoadBalancerUpdate> loadBalancerUpdates, SingularityTaskId taskId, LoadBalancerRequestType lbRequestType,
+      Transcoder<SingularityLoadBalancerUpdate> transcoder) {
+    Optional<SingularityLoadBalancerUpdate> lbHistory = getData(getLoadBalancerStatePath(taskId, lbRequestType), transcoder);
 
     if (lbHistory.isPresent()) {
       loadBalancerUpdates.add(lbHistory.get());
@@ -445,51 +960,127 @@ public class TaskManager extends CuratorAsyncManager {
   }
 
   public List<SingularityPendingTaskId> getPendingTaskIds() {
+    if (pendingTasksMirror.isActive()) {
+      return Lists.transform(pendingTasksMirror.getChildren(), PENDING_TASK_TO_PENDING_TASK_ID);
+    }
+
     return getChildrenAsIds(PENDING_PATH_ROOT, pendingTaskIdTranscoder);
   }
 
   public List<SingularityPendingTask> getPendingTasks() {
+    if (pendingTasksMirror.isActive()) {
+      return pendingTasksMirror.getChildren();
+    }
+
     return Lists.transform(getPendingTaskIds(), pendingTaskIdToPendingTaskFunction);
   }
 
-  public void createTaskAndDeletePendingTask(SingularityTask task) {
-    try {
-      createTaskAndDeletePendingTaskPrivate(task);
-    } catch (Throwable t) {
-      throw Throwables.propagate(t);
+  /**
+   * Pending tasks whose nextRunAt is at or before now, in the fair share order of PendingTaskQueue.
+   */
+  public List<SingularityPendingTask> getDuePendingTasks(long now) {
+    if (pendingTasksMirror.isActive()) {
+      return pendingTaskQueue.getDueTasks(now);
     }
-  }
 
-  public Map<SingularityTaskId, SingularityTask> getTasks(Iterable<SingularityTaskId> taskIds) {
-    final List<String> paths = Lists.newArrayList();
+    final List<SingularityPendingTask> dueTasks = Lists.newArrayList();
 
-    for (SingularityTaskId taskId : taskIds) {
-      paths.add(getTaskPath(taskId));
+    for (SingularityPendingTask pendingTask : getPendingTasks()) {
+      if (pendingTask.getPendingTaskId().getNextRunAt() <= now) {
+        dueTasks.add(pendingTask);
+      }
     }
 
-    return Maps.uniqueIndex(getAsync("tasks_by_ids", paths, taskTranscoder), taskTranscoder);
+    return PendingTaskQueue.orderFairly(dueTasks);
+  }
+
+  public List<SingularityPendingTaskId> getPendingTaskIdsForRequest(String requestId) {
+    if (pendingTasksMirror.isActive()) {
+      return pendingTaskQueue.getPendingTaskIdsForRequest(requestId);
+    }
+
+    return Lists.newArrayList(Iterables.filter(getPendingTaskIds(), SingularityPendingTaskId.matchingRequestId(requestId)));
   }
 
-  private void createTaskAndDeletePendingTaskPrivate(SingularityTask task) throws Exception {
-    final String scheduledPath = getPendingPath(task.getTaskRequest().getPendingTask().getPendingTaskId());
-    final String activePath = getActivePath(task.getTaskId().getId());
+  public List<SingularityPendingTask> getPendingTasksForRequest(String requestId) {
+    if (pendingTasksMirror.isActive()) {
+      return pendingTaskQueue.getPendingTasksForRequest(requestId);
+    }
 
-    curator.delete().forPath(scheduledPath);
+    return Lists.newArrayList(Iterables.filter(getPendingTasks(), SingularityPendingTask.matchingRequest(requestId)));
+  }
 
-    final byte[] data = taskTranscoder.toBytes(task);
+  public void createTaskAndDeletePendingTask(SingularityTask task) {
+    createTasksAndDeletePendingTasks(Collections.singletonList(task));
+  }
 
-    // TODO - right now, for consistency, we double write this. should review this and check for what happens in failure cases
+  /**
+   * Writes every launched task (and deletes its pending task) in one ZK write batch. A transaction can't create parents,
+   * so the history parent of each request is created first. A pending task which is already gone fails the launch.
+   */
+  public void createTasksAndDeletePendingTasks(List<SingularityTask> tasks) {
+    final Set<String> requestIds = Sets.newHashSet();
+
+    for (SingularityTask task : tasks) {
+      if (requestIds.add(task.getTaskId().getRequestId())) {
+        create(getRequestPath(task.getTaskId().getRequestId()));
+      }
+    }
 
+    final ZkWriteBatch batch = newWriteBatch(registry, "createTasks");
     final long now = System.currentTimeMillis();
 
-    saveTaskHistoryUpdate(new SingularityTaskHistoryUpdate(task.getTaskId(), now, ExtendedTaskState.TASK_LAUNCHED, Optional.<String> absent()));
-    saveLastActiveTaskStatus(new SingularityTaskStatusHolder(task.getTaskId(), Optional.<TaskStatus> absent(), now, serverId, Optional.of(task.getOffer().getSlaveId().getValue())));
+    for (SingularityTask task : tasks) {
+      batch.deleteExisting(getPendingPath(task.getTaskRequest().getPendingTask().getPendingTaskId()));
+
+      final byte[] data = taskTranscoder.toBytes(task);
+
+      // TODO - right now, for consistency, we double write this. should review this and check for what happens in failure cases
+
+      batch.create(getHistoryPath(task.getTaskId()), Optional.of(new byte[0]));
+      batch.create(getTaskPath(task.getTaskId()), Optional.of(data));
+
+      addTaskHistoryUpdate(batch, new SingularityTaskHistoryUpdate(task.getTaskId(), now, ExtendedTaskState.TASK_LAUNCHED, Optional.<String> absent()));
+      batch.save(getLastActiveTaskStatusPath(task.getTaskId()), getLaunchedTaskStatus(task, now), taskStatusTranscoder);
+
+      batch.create(getActivePath(task.getTaskId().getId()), Optional.of(data));
+    }
+
+    batch.commit();
+
+    for (SingularityTask task : tasks) {
+      taskStatusTable.putPersisted(getLaunchedTaskStatus(task, now));
+      pendingTaskQueue.recordLaunched(task.getTaskRequest().getPendingTask().getPendingTaskId(), now);
+      pendingTasksMirror.remove(task.getTaskRequest().getPendingTask().getPendingTaskId().getId());
+      activeTaskIdsMirror.put(task.getTaskId().getId(), task.getTaskId());
+    }
+  }
+
+  private SingularityTaskStatusHolder getLaunchedTaskStatus(SingularityTask task, long now) {
+    return new SingularityTaskStatusHolder(task.getTaskId(), Optional.<TaskStatus> absent(), now, serverId, Optional.of(task.getOffer().getSlaveId().getValue()));
+  }
+
+  private void addTaskHistoryUpdate(ZkWriteBatch batch, SingularityTaskHistoryUpdate taskHistoryUpdate) {
+    webhookManager.enqueueTaskUpdate(taskHistoryUpdate);
+
+    batch.create(getUpdatePath(taskHistoryUpdate.getTaskId(), taskHistoryUpdate.getTaskState()), taskHistoryUpdate, taskHistoryUpdateTranscoder);
+  }
+
+  public Map<SingularityTaskId, SingularityTask> getTasks(Iterable<SingularityTaskId> taskIds) {
+    final List<String> paths = Lists.newArrayList();
 
-    curator.create().creatingParentsIfNeeded().forPath(getTaskPath(task.getTaskId()), data);
-    curator.create().creatingParentsIfNeeded().forPath(activePath, data);
+    for (SingularityTaskId taskId : taskIds) {
+      paths.add(getTaskPath(taskId));
+    }
+
+    return Maps.uniqueIndex(getAsync("tasks_by_ids", paths, taskTranscoder), taskTranscoder);
   }
 
   public List<SingularityTaskId> getLBCleanupTasks() {
+    if (lbCleanupTaskIdsMirror.isActive()) {
+      return lbCleanupTaskIdsMirror.getChildren();
+    }
+
     return getChildrenAsIds(LB_CLEANUP_PATH_ROOT, taskIdTranscoder);
   }
 
@@ -502,11 +1093,17 @@ public class TaskManager extends CuratorAsyncManager {
   }
 
   public SingularityDeleteResult deleteLBCleanupTask(SingularityTaskId taskId) {
+    lbCleanupTaskIdsMirror.remove(taskId.getId());
+
     return delete(getLBCleanupPath(taskId));
   }
 
   public SingularityCreateResult createLBCleanupTask(SingularityTaskId taskId) {
-    return create(getLBCleanupPath(taskId));
+    final SingularityCreateResult result = create(getLBCleanupPath(taskId));
+
+    lbCleanupTaskIdsMirror.put(taskId.getId(), taskId);
+
+    return result;
   }
 
   public SingularityCreateResult saveKilledRecord(SingularityKilledTaskIdRecord killedTaskIdRecord) {
@@ -522,10 +1119,20 @@ public class TaskManager extends CuratorAsyncManager {
   }
 
   public SingularityDeleteResult deleteLastActiveTaskStatus(SingularityTaskId taskId) {
-    return delete(getLastActiveTaskStatusPath(taskId));
+    taskStatusWriteLock.readLock().lock();
+
+    try {
+      final SingularityDeleteResult result = delete(getLastActiveTaskStatusPath(taskId));
+
+      taskStatusTable.removePersisted(taskId);
+
+      return result;
+    } finally {
+      taskStatusWriteLock.readLock().unlock();
+    }
   }
 
-  public SingularityCreateResult createCleanupTask(SingularityTaskCleanup cleanupTask) {
+  private SingularityTaskHistoryUpdate getCleaningUpdate(SingularityTaskCleanup cleanupTask) {
     StringBuilder msg = new StringBuilder(cleanupTask.getCleanupType().name());
 
     if (cleanupTask.getUser().isPresent()) {
@@ -533,21 +1140,57 @@ public class TaskManager extends CuratorAsyncManager {
       msg.append(cleanupTask.getUser().get());
     }
 
-    saveTaskHistoryUpdate(new SingularityTaskHistoryUpdate(cleanupTask.getTaskId(), cleanupTask.getTimestamp(), ExtendedTaskState.TASK_CLEANING, Optional.of(msg.toString())));
+    return new SingularityTaskHistoryUpdate(cleanupTask.getTaskId(), cleanupTask.getTimestamp(), ExtendedTaskState.TASK_CLEANING, Optional.of(msg.toString()));
+  }
+
+  /**
+   * Writes every cleanup task (and its cleaning history update) in one ZK write batch.
+   */
+  public void createCleanupTasks(List<SingularityTaskCleanup> cleanupTasks) {
+    final ZkWriteBatch batch = newWriteBatch(registry, "createCleanupTasks");
+
+    for (SingularityTaskCleanup cleanupTask : cleanupTasks) {
+      addTaskHistoryUpdate(batch, getCleaningUpdate(cleanupTask));
+      batch.create(getCleanupPath(cleanupTask.getTaskId().getId()), cleanupTask, taskCleanupTranscoder);
+    }
+
+    batch.commit();
+
+    for (SingularityTaskCleanup cleanupTask : cleanupTasks) {
+      cleanupTasksMirror.put(cleanupTask.getTaskId().getId(), cleanupTask);
+    }
+  }
+
+  public SingularityCreateResult createCleanupTask(SingularityTaskCleanup cleanupTask) {
+    saveTaskHistoryUpdate(getCleaningUpdate(cleanupTask));
+
+    final SingularityCreateResult result = create(getCleanupPath(cleanupTask.getTaskId().getId()), cleanupTask, taskCleanupTranscoder);
 
-    return create(getCleanupPath(cleanupTask.getTaskId().getId()), cleanupTask, taskCleanupTranscoder);
+    if (result == SingularityCreateResult.CREATED) {
+      cleanupTasksMirror.put(cleanupTask.getTaskId().getId(), cleanupTask);
+    }
+
+    return result;
   }
 
   public void deleteActiveTask(String taskId) {
     delete(getActivePath(taskId));
+
+    healthcheckResultBuffer.remove(taskId);
+
+    activeTaskIdsMirror.remove(taskId);
   }
 
   public void deletePendingTask(SingularityPendingTaskId pendingTaskId) {
     delete(getPendingPath(pendingTaskId));
+
+    pendingTasksMirror.remove(pendingTaskId.getId());
   }
 
   public void deleteCleanupTask(String taskId) {
     delete(getCleanupPath(taskId));
+
+    cleanupTasksMirror.remove(taskId);
   }
 
   public void deleteTaskHistory(SingularityTaskId taskId) {
@@ -556,6 +1199,8 @@ public class TaskManager extends CuratorAsyncManager {
     } catch (Exception e) {
       throw Throwables.propagate(e);
     }
+
+    requestTaskIdIndex.taskHistoryDeleted(taskId);
   }
 
 }
@@ -0,0 +1,189 @@
+package com.hubspot.singularity.data;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.hubspot.singularity.SingularityTaskId;
+import com.hubspot.singularity.SingularityTaskStatusHolder;
+
+/**
+ * The leader's copy of the last status of every active task. While active it is the source of truth for reads.
+ *
+ * A status which changes the task's state, and the removal of a task's status when it finishes, are written to ZK by the
+ * caller before they are recorded here, so a crash or failover never loses a transition. Only a status which repeats the
+ * task's current state (as reconciliation does for every task) is written behind: it replaces the in-memory holder right
+ * away, so its server timestamp shows that the task has reported recently, and only the latest such status of each task is
+ * flushed.
+ */
+@Singleton
+public class TaskStatusTable {
+
+  private final Map<SingularityTaskId, SingularityTaskStatusHolder> statuses;
+  private final Map<SingularityTaskId, SingularityTaskStatusHolder> unpersisted;
+
+  private final Counter writtenBehindCounter;
+  private final Counter coalescedCounter;
+  private final Counter persistedCounter;
+
+  private boolean active;
+
+  @Inject
+  public TaskStatusTable(MetricRegistry registry) {
+    this.statuses = Maps.newHashMap();
+    this.unpersisted = Maps.newLinkedHashMap();
+
+    this.writtenBehindCounter = registry.counter(MetricRegistry.name(TaskStatusTable.class, "writtenBehind"));
+    this.coalescedCounter = registry.counter(MetricRegistry.name(TaskStatusTable.class, "coalesced"));
+    this.persistedCounter = registry.counter(MetricRegistry.name(TaskStatusTable.class, "persisted"));
+
+    registry.register(MetricRegistry.name(TaskStatusTable.class, "unpersisted"), new Gauge<Integer>() {
+
+      @Override
+      public Integer getValue() {
+        return getNumUnpersisted();
+      }
+
+    });
+  }
+
+  public synchronized void start(List<SingularityTaskStatusHolder> persistedStatuses) {
+    statuses.clear();
+    unpersisted.clear();
+
+    for (SingularityTaskStatusHolder taskStatus : persistedStatuses) {
+      statuses.put(taskStatus.getTaskId(), taskStatus);
+    }
+
+    active = true;
+  }
+
+  public synchronized void stop() {
+    active = false;
+
+    statuses.clear();
+    unpersisted.clear();
+  }
+
+  public synchronized boolean isActive() {
+    return active;
+  }
+
+  public synchronized Optional<SingularityTaskStatusHolder> get(SingularityTaskId taskId) {
+    return Optional.fromNullable(statuses.get(taskId));
+  }
+
+  public synchronized List<SingularityTaskStatusHolder> getAll() {
+    return ImmutableList.copyOf(statuses.values());
+  }
+
+  public synchronized List<SingularityTaskStatusHolder> getAll(Collection<SingularityTaskId> taskIds) {
+    final List<SingularityTaskStatusHolder> found = Lists.newArrayListWithCapacity(taskIds.size());
+
+    for (SingularityTaskId taskId : taskIds) {
+      final SingularityTaskStatusHolder taskStatus = statuses.get(taskId);
+
+      if (taskStatus != null) {
+        found.add(taskStatus);
+      }
+    }
+
+    return found;
+  }
+
+  /**
+   * Records a status which has already been written to ZK.
+   */
+  public synchronized void putPersisted(SingularityTaskStatusHolder taskStatus) {
+    if (!active) {
+      return;
+    }
+
+    statuses.put(taskStatus.getTaskId(), taskStatus);
+    unpersisted.remove(taskStatus.getTaskId());
+  }
+
+  /**
+   * Records a status which repeats the task's current state, to be persisted with the next flush.
+   *
+   * @return false if the status changes the task's state (or the task has no status yet), in which case nothing was recorded
+   * and the caller has to write the status to ZK and then call putPersisted
+   */
+  public synchronized boolean putIfSameState(SingularityTaskStatusHolder taskStatus) {
+    if (!isSameState(statuses.get(taskStatus.getTaskId()), taskStatus)) {
+      return false;
+    }
+
+    statuses.put(taskStatus.getTaskId(), taskStatus);
+    writtenBehindCounter.inc();
+
+    if (unpersisted.put(taskStatus.getTaskId(), taskStatus) != null) {
+      coalescedCounter.inc();
+    }
+
+    return true;
+  }
+
+  /**
+   * Forgets a task whose status has already been deleted from ZK.
+   *
+   * @return whether the task had a status
+   */
+  public synchronized boolean removePersisted(SingularityTaskId taskId) {
+    unpersisted.remove(taskId);
+
+    return statuses.remove(taskId) != null;
+  }
+
+  private boolean isSameState(SingularityTaskStatusHolder previous, SingularityTaskStatusHolder current) {
+    if (previous == null || !previous.getTaskStatus().isPresent() || !current.getTaskStatus().isPresent()) {
+      return false;
+    }
+
+    return previous.getTaskStatus().get().getState() == current.getTaskStatus().get().getState();
+  }
+
+  public synchronized int getNumUnpersisted() {
+    return unpersisted.size();
+  }
+
+  /**
+   * Hands over every status written behind since the last drain.
+   */
+  public synchronized Map<SingularityTaskId, SingularityTaskStatusHolder> drainUnpersisted() {
+    final Map<SingularityTaskId, SingularityTaskStatusHolder> drained = Maps.newLinkedHashMap(unpersisted);
+
+    unpersisted.clear();
+
+    return drained;
+  }
+
+  /**
+   * Returns drained statuses which couldn't be persisted, unless the task has been written again or removed since.
+   */
+  public synchronized void restoreUnpersisted(Map<SingularityTaskId, SingularityTaskStatusHolder> failed) {
+    if (!active) {
+      return;
+    }
+
+    for (Map.Entry<SingularityTaskId, SingularityTaskStatusHolder> entry : failed.entrySet()) {
+      if (!unpersisted.containsKey(entry.getKey()) && statuses.get(entry.getKey()) == entry.getValue()) {
+        unpersisted.put(entry.getKey(), entry.getValue());
+      }
+    }
+  }
+
+  public void recordPersisted(int numPersisted) {
+    persistedCounter.inc(numPersisted);
+  }
+
+}
@@ -1,10 +1,12 @@
 package com.hubspot.singularity.data;
 
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import org.apache.curator.framework.CuratorFramework;
 import org.apache.curator.utils.ZKPaths;
 
+import com.codahale.metrics.MetricRegistry;
 import com.google.common.base.Predicate;
 import com.google.common.collect.Iterables;
 import com.google.inject.Inject;
@@ -35,14 +37,39 @@ public class WebhookManager extends CuratorAsyncManager {
   private final SingularityTaskHistoryUpdateTranscoder taskHistoryUpdateTranscoder;
   private final SingularityDeployWebhookTranscoder deployWebhookTranscoder;
 
+  private final List<QueueListener> listeners;
+
+  /**
+   * Told about each update after it has been queued for a webhook.
+   */
+  public interface QueueListener {
+
+    void requestUpdateQueued(SingularityWebhook webhook, SingularityRequestHistory requestUpdate);
+
+    void taskUpdateQueued(SingularityWebhook webhook, SingularityTaskHistoryUpdate taskUpdate);
+
+    void deployUpdateQueued(SingularityWebhook webhook, SingularityDeployWebhook deployUpdate);
+
+  }
+
   @Inject
   public WebhookManager(SingularityConfiguration configuration, CuratorFramework curator, SingularityWebhookTranscoder webhookTranscoder,
-      SingularityRequestHistoryTranscoder requestHistoryTranscoder, SingularityTaskHistoryUpdateTranscoder taskHistoryUpdateTranscoder, SingularityDeployWebhookTranscoder deployWebhookTranscoder) {
-    super(curator, configuration.getZookeeperAsyncTimeout());
+      SingularityRequestHistoryTranscoder requestHistoryTranscoder, SingularityTaskHistoryUpdateTranscoder taskHistoryUpdateTranscoder, SingularityDeployWebhookTranscoder deployWebhookTranscoder, MetricRegistry registry) {
+    super(curator, configuration, registry);
     this.webhookTranscoder = webhookTranscoder;
     this.taskHistoryUpdateTranscoder = taskHistoryUpdateTranscoder;
     this.requestHistoryTranscoder = requestHistoryTranscoder;
     this.deployWebhookTranscoder = deployWebhookTranscoder;
+
+    this.listeners = new CopyOnWriteArrayList<>();
+  }
+
+  public void addListener(QueueListener listener) {
+    listeners.add(listener);
+  }
+
+  public void removeListener(QueueListener listener) {
+    listeners.remove(listener);
   }
 
   public List<SingularityWebhook> getActiveWebhooks() {
@@ -60,15 +87,15 @@ public class WebhookManager extends CuratorAsyncManager {
     });
   }
 
-  private String getTaskHistoryUpdateId(SingularityTaskHistoryUpdate taskUpdate) {
+  public String getTaskHistoryUpdateId(SingularityTaskHistoryUpdate taskUpdate) {
     return taskUpdate.getTaskId() + "-" + taskUpdate.getTaskState().name();
   }
 
-  private String getRequestHistoryUpdateId(SingularityRequestHistory requestUpdate) {
+  public String getRequestHistoryUpdateId(SingularityRequestHistory requestUpdate) {
     return requestUpdate.getRequest().getId() + "-" + requestUpdate.getEventType().name() + "-" + requestUpdate.getCreatedAt();
   }
 
-  private String getDeployUpdateId(SingularityDeployWebhook deployUpdate) {
+  public String getDeployUpdateId(SingularityDeployWebhook deployUpdate) {
     return SingularityDeployKey.fromDeployMarker(deployUpdate.getDeployMarker()) + "-" + deployUpdate.getEventType().name();
   }
 
@@ -123,15 +150,15 @@ public class WebhookManager extends CuratorAsyncManager {
   }
 
   public List<SingularityDeployWebhook> getQueuedDeployUpdatesForHook(String webhookId) {
-    return getAsyncChildren(getEnqueuePathForWebhook(webhookId, WebhookType.DEPLOY), deployWebhookTranscoder);
+    return getAsyncChildren("webhook_deploy_updates", getEnqueuePathForWebhook(webhookId, WebhookType.DEPLOY), deployWebhookTranscoder);
   }
 
   public List<SingularityTaskHistoryUpdate> getQueuedTaskUpdatesForHook(String webhookId) {
-    return getAsyncChildren(getEnqueuePathForWebhook(webhookId, WebhookType.TASK), taskHistoryUpdateTranscoder);
+    return getAsyncChildren("webhook_task_updates", getEnqueuePathForWebhook(webhookId, WebhookType.TASK), taskHistoryUpdateTranscoder);
   }
 
   public List<SingularityRequestHistory> getQueuedRequestHistoryForHook(String webhookId) {
-    return getAsyncChildren(getEnqueuePathForWebhook(webhookId, WebhookType.REQUEST), requestHistoryTranscoder);
+    return getAsyncChildren("webhook_request_updates", getEnqueuePathForWebhook(webhookId, WebhookType.REQUEST), requestHistoryTranscoder);
   }
 
   //TODO consider caching the list of hooks (at the expense of needing to refresh the cache and not immediately make some webhooks)
@@ -140,6 +167,10 @@ public class WebhookManager extends CuratorAsyncManager {
       final String enqueuePath = getEnqueuePathForRequestUpdate(webhook.getId(), requestUpdate);
 
       save(enqueuePath, requestUpdate, requestHistoryTranscoder);
+
+      for (QueueListener listener : listeners) {
+        listener.requestUpdateQueued(webhook, requestUpdate);
+      }
     }
   }
 
@@ -148,6 +179,10 @@ public class WebhookManager extends CuratorAsyncManager {
       final String enqueuePath = getEnqueuePathForTaskUpdate(webhook.getId(), taskUpdate);
 
       save(enqueuePath, taskUpdate, taskHistoryUpdateTranscoder);
+
+      for (QueueListener listener : listeners) {
+        listener.taskUpdateQueued(webhook, taskUpdate);
+      }
     }
   }
 
@@ -156,6 +191,10 @@ public class WebhookManager extends CuratorAsyncManager {
       final String enqueuePath = getEnqueuePathForDeployUpdate(webhook.getId(), deployUpdate);
 
       save(enqueuePath, deployUpdate, deployWebhookTranscoder);
+
+      for (QueueListener listener : listeners) {
+        listener.deployUpdateQueued(webhook, deployUpdate);
+      }
     }
   }
 
@@ -0,0 +1,358 @@
+package com.hubspot.singularity.data;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.recipes.cache.ChildData;
+import org.apache.curator.framework.recipes.cache.PathChildrenCache;
+import org.apache.curator.framework.recipes.cache.PathChildrenCache.StartMode;
+import org.apache.curator.framework.recipes.cache.PathChildrenCacheEvent;
+import org.apache.curator.framework.recipes.cache.PathChildrenCacheListener;
+import org.apache.curator.utils.ZKPaths;
+import org.apache.zookeeper.KeeperException.NoNodeException;
+import org.apache.zookeeper.data.Stat;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.base.Function;
+import com.google.common.base.Optional;
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.hubspot.mesos.JavaUtils;
+
+/**
+ * Keeps an in-memory copy of the children of a single ZK path, fed by a curator PathChildrenCache watch.
+ *
+ * Writes made by this process should also be applied through put/remove so that readers see them immediately,
+ * without waiting for the watch to fire. checkConsistency() compares the mirror against ZK and repairs any drift: missing
+ * and extra children, and - when the mirror caches data - children whose data changed in ZK since the mirror last read it
+ * (compared by mzxid, one stat per child). A child put by this process is re-read by the next check unless a watch has
+ * delivered its stat in the meantime.
+ *
+ * Listeners are told about every change to the mirrored children, in the order the changes are applied.
+ */
+public class ZkChildrenMirror<T> implements PathChildrenCacheListener {
+
+  private static final Logger LOG = LoggerFactory.getLogger(ZkChildrenMirror.class);
+
+  private static final long RECENTLY_REMOVED_EXPIRES_SECONDS = 60;
+
+  private final CuratorFramework curator;
+  private final String path;
+  private final boolean cacheData;
+  private final Function<ChildData, T> transformer;
+
+  private final ConcurrentMap<String, T> children;
+  private final ConcurrentMap<String, Long> modifiedZxids;
+  private final Cache<String, Boolean> recentlyRemoved;
+  private final List<Listener<T>> listeners;
+
+  private final Histogram lagHistogram;
+  private final Counter driftCounter;
+
+  private volatile PathChildrenCache cache;
+  private volatile boolean active;
+
+  public ZkChildrenMirror(CuratorFramework curator, MetricRegistry registry, String path, boolean cacheData, Function<ChildData, T> transformer) {
+    this.curator = curator;
+    this.path = path;
+    this.cacheData = cacheData;
+    this.transformer = transformer;
+
+    this.children = Maps.newConcurrentMap();
+    this.modifiedZxids = Maps.newConcurrentMap();
+    this.recentlyRemoved = CacheBuilder.newBuilder().expireAfterWrite(RECENTLY_REMOVED_EXPIRES_SECONDS, TimeUnit.SECONDS).build();
+    this.listeners = Lists.newCopyOnWriteArrayList();
+
+    final String metricPrefix = MetricRegistry.name(ZkChildrenMirror.class, path.replace('/', '.').substring(1));
+
+    this.lagHistogram = registry.histogram(MetricRegistry.name(metricPrefix, "lagMillis"));
+    this.driftCounter = registry.counter(MetricRegistry.name(metricPrefix, "drift"));
+  }
+
+  public interface Listener<T> {
+
+    /**
+     * Called with the previous and current value of a child whenever it is added, updated or removed.
+     */
+    void childChanged(String name, Optional<T> previous, Optional<T> current);
+
+  }
+
+  public void addListener(Listener<T> listener) {
+    listeners.add(listener);
+  }
+
+  public synchronized void start() {
+    if (active) {
+      return;
+    }
+
+    final long start = System.currentTimeMillis();
+
+    try {
+      cache = new PathChildrenCache(curator, path, cacheData);
+      cache.getListenable().addListener(this);
+      cache.start(StartMode.BUILD_INITIAL_CACHE);
+
+      clearChildren();
+
+      for (ChildData childData : cache.getCurrentData()) {
+        putChild(childData);
+      }
+    } catch (Throwable t) {
+      throw Throwables.propagate(t);
+    }
+
+    active = true;
+
+    LOG.info("Started mirroring {} ({} children) in {}", path, children.size(), JavaUtils.duration(start));
+  }
+
+  public synchronized void stop() {
+    active = false;
+
+    if (cache == null) {
+      return;
+    }
+
+    try {
+      cache.close();
+    } catch (Throwable t) {
+      LOG.warn("While closing mirror of {}", path, t);
+    }
+
+    cache = null;
+    clearChildren();
+  }
+
+  public boolean isActive() {
+    return active;
+  }
+
+  public String getPath() {
+    return path;
+  }
+
+  public int getNumChildren() {
+    return children.size();
+  }
+
+  public boolean contains(String name) {
+    return children.containsKey(name);
+  }
+
+  public List<T> getChildren() {
+    return ImmutableList.copyOf(children.values());
+  }
+
+  public void put(String name, T object) {
+    if (!active) {
+      return;
+    }
+
+    recentlyRemoved.invalidate(name);
+    putChild(name, object, Optional.<Long> absent());
+  }
+
+  public void remove(String name) {
+    if (!active) {
+      return;
+    }
+
+    recentlyRemoved.put(name, Boolean.TRUE);
+    removeChild(name);
+  }
+
+  private void putChild(ChildData childData) {
+    putChild(getName(childData), transformer.apply(childData), childData.getStat() == null ? Optional.<Long> absent() : Optional.of(childData.getStat().getMzxid()));
+  }
+
+  private synchronized void putChild(String name, T object, Optional<Long> modifiedZxid) {
+    if (modifiedZxid.isPresent()) {
+      modifiedZxids.put(name, modifiedZxid.get());
+    } else {
+      modifiedZxids.remove(name);
+    }
+
+    notifyListeners(name, Optional.fromNullable(children.put(name, object)), Optional.of(object));
+  }
+
+  private synchronized void removeChild(String name) {
+    modifiedZxids.remove(name);
+
+    final T previous = children.remove(name);
+
+    if (previous != null) {
+      notifyListeners(name, Optional.of(previous), Optional.<T> absent());
+    }
+  }
+
+  private synchronized void clearChildren() {
+    for (Map.Entry<String, T> child : Lists.newArrayList(children.entrySet())) {
+      removeChild(child.getKey());
+    }
+  }
+
+  private void notifyListeners(String name, Optional<T> previous, Optional<T> current) {
+    for (Listener<T> listener : listeners) {
+      try {
+        listener.childChanged(name, previous, current);
+      } catch (Throwable t) {
+        LOG.error("Listener {} failed on change to {} under {}", listener, name, path, t);
+      }
+    }
+  }
+
+  private String getName(ChildData childData) {
+    return ZKPaths.getNodeFromPath(childData.getPath());
+  }
+
+  @Override
+  public void childEvent(CuratorFramework client, PathChildrenCacheEvent event) throws Exception {
+    if (!active) {
+      return;
+    }
+
+    switch (event.getType()) {
+      case CHILD_ADDED:
+      case CHILD_UPDATED:
+        childAddedOrUpdated(event.getData());
+        break;
+      case CHILD_REMOVED:
+        removeChild(getName(event.getData()));
+        break;
+      case CONNECTION_RECONNECTED:
+        LOG.info("Reconnected while mirroring {}, checking consistency", path);
+        checkConsistency();
+        break;
+      default:
+        break;
+    }
+  }
+
+  private void childAddedOrUpdated(ChildData childData) throws Exception {
+    final String name = getName(childData);
+
+    if (childData.getStat() != null) {
+      lagHistogram.update(Math.max(0, System.currentTimeMillis() - childData.getStat().getMtime()));
+    }
+
+    // a watch may deliver an add for a node this process has since deleted - make sure it still exists before resurrecting it
+    if (recentlyRemoved.getIfPresent(name) != null && curator.checkExists().forPath(childData.getPath()) == null) {
+      LOG.trace("Ignoring stale add of {} under {}", name, path);
+      return;
+    }
+
+    putChild(childData);
+  }
+
+  /**
+   * Compares the mirror against the children currently in ZK, repairing any differences.
+   *
+   * @return the number of children which were missing from, extra in or stale in the mirror
+   */
+  public int checkConsistency() {
+    if (!active) {
+      return 0;
+    }
+
+    final long start = System.currentTimeMillis();
+
+    final Collection<String> zkChildren;
+
+    try {
+      zkChildren = curator.getChildren().forPath(path);
+    } catch (NoNodeException nne) {
+      return repair(Sets.<String> newHashSet(), start);
+    } catch (Throwable t) {
+      throw Throwables.propagate(t);
+    }
+
+    return repair(Sets.newHashSet(zkChildren), start);
+  }
+
+  private int repair(Set<String> zkChildren, long start) {
+    final Set<String> mirroredChildren = Sets.newHashSet(children.keySet());
+
+    int drift = 0;
+
+    for (String name : Sets.difference(mirroredChildren, zkChildren)) {
+      LOG.debug("Mirror of {} had extra child {}", path, name);
+      removeChild(name);
+      drift++;
+    }
+
+    for (String name : Sets.difference(zkChildren, mirroredChildren)) {
+      final String childPath = ZKPaths.makePath(path, name);
+
+      try {
+        LOG.debug("Mirror of {} was missing child {}", path, name);
+        putChild(readChild(childPath));
+        drift++;
+      } catch (NoNodeException nne) {
+        LOG.trace("Child {} was removed while checking consistency of {}", name, path);
+      } catch (Throwable t) {
+        throw Throwables.propagate(t);
+      }
+    }
+
+    if (cacheData) {
+      for (String name : Sets.intersection(zkChildren, mirroredChildren)) {
+        final String childPath = ZKPaths.makePath(path, name);
+        final Long modifiedZxid = modifiedZxids.get(name);
+
+        try {
+          final Stat stat = curator.checkExists().forPath(childPath);
+
+          if (stat == null || (modifiedZxid != null && modifiedZxid.longValue() == stat.getMzxid())) {
+            continue;
+          }
+
+          // unknown after a put by this process, so the data can't be compared - re-read it, but don't count it as drift
+          if (modifiedZxid != null) {
+            LOG.debug("Mirror of {} had stale data for child {}", path, name);
+            drift++;
+          }
+
+          putChild(readChild(childPath));
+        } catch (NoNodeException nne) {
+          LOG.trace("Child {} was removed while checking consistency of {}", name, path);
+        } catch (Throwable t) {
+          throw Throwables.propagate(t);
+        }
+      }
+    }
+
+    driftCounter.inc(drift);
+
+    if (drift > 0) {
+      LOG.warn("Repaired {} drifted children in mirror of {} in {}", drift, path, JavaUtils.duration(start));
+    } else {
+      LOG.trace("Mirror of {} was consistent ({} children) in {}", path, children.size(), JavaUtils.duration(start));
+    }
+
+    return drift;
+  }
+
+  private ChildData readChild(String childPath) throws Exception {
+    final Stat stat = new Stat();
+    final byte[] data = cacheData ? curator.getData().storingStatIn(stat).forPath(childPath) : null;
+
+    return new ChildData(childPath, stat, data);
+  }
+
+}
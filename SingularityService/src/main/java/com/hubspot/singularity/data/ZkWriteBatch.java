@@ -0,0 +1,312 @@
+package com.hubspot.singularity.data;
+
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.api.transaction.CuratorTransaction;
+import org.apache.curator.framework.api.transaction.CuratorTransactionFinal;
+import org.apache.curator.utils.ZKPaths;
+import org.apache.zookeeper.KeeperException;
+import org.apache.zookeeper.KeeperException.Code;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.google.common.base.Optional;
+import com.google.common.base.Throwables;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.hubspot.mesos.JavaUtils;
+import com.hubspot.singularity.data.transcoders.Transcoder;
+
+/**
+ * Collects ZK writes and commits them in multi() transactions, so a scheduler pass that writes hundreds of nodes costs
+ * a few round trips instead of hundreds.
+ *
+ * A multi() is sent as one request, so it has to fit in jute.maxbuffer - the writes are committed in order, in
+ * transactions of at most MAX_TRANSACTION_OPERATIONS writes and roughly MAX_TRANSACTION_BYTES of paths and data. Each
+ * transaction is all or nothing, the batch as a whole is not.
+ *
+ * A multi() can't create parents. Parents beneath a node created earlier in the batch are added to the transaction,
+ * other parents are assumed to exist. If a transaction fails because of the state of a node (a missing parent, a node
+ * being created already exists, a node being deleted is already gone or still has children) nothing of it was applied,
+ * so its writes are replayed one by one with the usual create / save / delete semantics of CuratorManager. A
+ * deleteExisting stays strict when replayed - if its node is gone the replay stops there with a NoNodeException. Any
+ * other failure (a lost connection, an expired session) is thrown without replaying.
+ */
+public class ZkWriteBatch {
+
+  private static final Logger LOG = LoggerFactory.getLogger(ZkWriteBatch.class);
+
+  static final int MAX_TRANSACTION_OPERATIONS = 250;
+  static final int MAX_TRANSACTION_BYTES = 512 * 1024;
+
+  // a rough allowance for the op header, flags and acls serialized with each write
+  private static final int OPERATION_OVERHEAD_BYTES = 64;
+
+  private static final Set<KeeperException.Code> REPLAYABLE_FAILURES = EnumSet.of(Code.NODEEXISTS, Code.NONODE, Code.BADVERSION, Code.NOTEMPTY);
+
+  private enum OperationType {
+    CREATE, SAVE, SET, DELETE, DELETE_EXISTING;
+  }
+
+  private static class Operation {
+
+    private final OperationType type;
+    private final String path;
+    private final Optional<byte[]> data;
+
+    private Operation(OperationType type, String path, Optional<byte[]> data) {
+      this.type = type;
+      this.path = path;
+      this.data = data;
+    }
+
+    private int getEstimatedBytes() {
+      return OPERATION_OVERHEAD_BYTES + path.length() + (data.isPresent() ? data.get().length : 0);
+    }
+
+    @Override
+    public String toString() {
+      return type + " " + path;
+    }
+
+  }
+
+  private final CuratorManager manager;
+  private final CuratorFramework curator;
+  private final String name;
+  private final List<Operation> operations;
+
+  private final Timer commitTimer;
+  private final Histogram sizeHistogram;
+  private final Counter fallbackCounter;
+  private final Counter transactionCounter;
+
+  ZkWriteBatch(CuratorManager manager, CuratorFramework curator, MetricRegistry registry, String name) {
+    this.manager = manager;
+    this.curator = curator;
+    this.name = name;
+    this.operations = Lists.newArrayList();
+
+    this.commitTimer = registry.timer(MetricRegistry.name(ZkWriteBatch.class, name, "commit"));
+    this.sizeHistogram = registry.histogram(MetricRegistry.name(ZkWriteBatch.class, name, "size"));
+    this.fallbackCounter = registry.counter(MetricRegistry.name(ZkWriteBatch.class, name, "fallbacks"));
+    this.transactionCounter = registry.counter(MetricRegistry.name(ZkWriteBatch.class, name, "transactions"));
+  }
+
+  public ZkWriteBatch create(String path, Optional<byte[]> data) {
+    operations.add(new Operation(OperationType.CREATE, path, data));
+    return this;
+  }
+
+  public <T> ZkWriteBatch create(String path, T object, Transcoder<T> transcoder) {
+    return create(path, Optional.of(transcoder.toBytes(object)));
+  }
+
+  /**
+   * Inside the transaction a save is a create, if the node already exists the batch falls back to individual writes.
+   */
+  public <T> ZkWriteBatch save(String path, T object, Transcoder<T> transcoder) {
+    operations.add(new Operation(OperationType.SAVE, path, Optional.of(transcoder.toBytes(object))));
+    return this;
+  }
+
+  /**
+   * Inside the transaction a set requires the node to exist, if it doesn't the batch falls back to individual writes.
+   */
+  public <T> ZkWriteBatch set(String path, T object, Transcoder<T> transcoder) {
+    operations.add(new Operation(OperationType.SET, path, Optional.of(transcoder.toBytes(object))));
+    return this;
+  }
+
+  public ZkWriteBatch delete(String path) {
+    operations.add(new Operation(OperationType.DELETE, path, Optional.<byte[]> absent()));
+    return this;
+  }
+
+  /**
+   * Like delete, but the node must exist - when the batch is applied individually a missing node throws instead of being
+   * treated as deleted.
+   */
+  public ZkWriteBatch deleteExisting(String path) {
+    operations.add(new Operation(OperationType.DELETE_EXISTING, path, Optional.<byte[]> absent()));
+    return this;
+  }
+
+  public int size() {
+    return operations.size();
+  }
+
+  public boolean isEmpty() {
+    return operations.isEmpty();
+  }
+
+  public void commit() {
+    if (operations.isEmpty()) {
+      return;
+    }
+
+    final long start = System.currentTimeMillis();
+    final Timer.Context context = commitTimer.time();
+
+    sizeHistogram.update(operations.size());
+
+    try {
+      final List<List<Operation>> transactions = splitIntoTransactions(withParentsCreatedInBatch());
+
+      for (List<Operation> transaction : transactions) {
+        commit(transaction);
+      }
+
+      LOG.trace("Committed batch {} of {} writes in {} transaction(s) in {}", name, operations.size(), transactions.size(), JavaUtils.duration(start));
+    } finally {
+      context.stop();
+      operations.clear();
+    }
+  }
+
+  private void commit(List<Operation> transaction) {
+    transactionCounter.inc();
+
+    try {
+      commitTransaction(transaction);
+    } catch (KeeperException ke) {
+      if (!REPLAYABLE_FAILURES.contains(ke.code())) {
+        throw Throwables.propagate(ke);
+      }
+
+      LOG.info("Transaction of {} writes from batch {} failed ({}), applying individually", transaction.size(), name, ke.getMessage());
+      fallbackCounter.inc();
+
+      applyIndividually(transaction);
+    } catch (Exception e) {
+      throw Throwables.propagate(e);
+    }
+  }
+
+  private List<Operation> withParentsCreatedInBatch() {
+    final List<Operation> transactionOperations = Lists.newArrayListWithCapacity(operations.size());
+    final Set<String> createdPaths = Sets.newHashSet();
+
+    for (Operation operation : operations) {
+      if (operation.type == OperationType.CREATE || operation.type == OperationType.SAVE) {
+        addParentsCreatedInBatch(operation.path, createdPaths, transactionOperations);
+        createdPaths.add(operation.path);
+      }
+
+      transactionOperations.add(operation);
+    }
+
+    return transactionOperations;
+  }
+
+  /**
+   * Transactions are committed in order, so a parent created in an earlier transaction exists by the time a later one
+   * creates its children.
+   */
+  private List<List<Operation>> splitIntoTransactions(List<Operation> transactionOperations) {
+    final List<List<Operation>> transactions = Lists.newArrayList();
+
+    List<Operation> transaction = Lists.newArrayList();
+    int transactionBytes = 0;
+
+    for (Operation operation : transactionOperations) {
+      final int bytes = operation.getEstimatedBytes();
+
+      if (!transaction.isEmpty() && (transaction.size() >= MAX_TRANSACTION_OPERATIONS || transactionBytes + bytes > MAX_TRANSACTION_BYTES)) {
+        transactions.add(transaction);
+        transaction = Lists.newArrayList();
+        transactionBytes = 0;
+      }
+
+      transaction.add(operation);
+      transactionBytes += bytes;
+    }
+
+    transactions.add(transaction);
+
+    return transactions;
+  }
+
+  private void commitTransaction(List<Operation> transactionOperations) throws Exception {
+    CuratorTransaction transaction = curator.inTransaction();
+    CuratorTransactionFinal transactionFinal = null;
+
+    for (Operation operation : transactionOperations) {
+      switch (operation.type) {
+        case CREATE:
+        case SAVE:
+          if (operation.data.isPresent()) {
+            transactionFinal = transaction.create().forPath(operation.path, operation.data.get()).and();
+          } else {
+            transactionFinal = transaction.create().forPath(operation.path).and();
+          }
+          break;
+        case SET:
+          transactionFinal = transaction.setData().forPath(operation.path, operation.data.get()).and();
+          break;
+        case DELETE:
+        case DELETE_EXISTING:
+          transactionFinal = transaction.delete().forPath(operation.path).and();
+          break;
+      }
+
+      transaction = transactionFinal;
+    }
+
+    transactionFinal.commit();
+  }
+
+  private void addParentsCreatedInBatch(String path, Set<String> createdPaths, List<Operation> transactionOperations) {
+    final List<String> intermediates = Lists.newArrayList();
+
+    String parent = ZKPaths.getPathAndNode(path).getPath();
+
+    while (!parent.equals("/")) {
+      if (createdPaths.contains(parent)) {
+        for (String intermediate : Lists.reverse(intermediates)) {
+          transactionOperations.add(new Operation(OperationType.CREATE, intermediate, Optional.of(new byte[0])));
+          createdPaths.add(intermediate);
+        }
+        return;
+      }
+
+      intermediates.add(parent);
+      parent = ZKPaths.getPathAndNode(parent).getPath();
+    }
+  }
+
+  private void applyIndividually(List<Operation> transactionOperations) {
+    for (Operation operation : transactionOperations) {
+      try {
+        switch (operation.type) {
+          case CREATE:
+            manager.create(operation.path, operation.data);
+            break;
+          case SAVE:
+            manager.save(operation.path, operation.data);
+            break;
+          case SET:
+            manager.set(operation.path, operation.data);
+            break;
+          case DELETE:
+            manager.delete(operation.path);
+            break;
+          case DELETE_EXISTING:
+            curator.delete().forPath(operation.path);
+            break;
+        }
+      } catch (Throwable t) {
+        LOG.error("While applying {} from batch {}", operation, name, t);
+        throw Throwables.propagate(t);
+      }
+    }
+  }
+
+}
@@ -1,13 +1,25 @@
 package com.hubspot.singularity.data.history;
 
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 
+import com.google.common.base.Optional;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Ordering;
 
-public abstract class BlendedHistoryHelper<T> {
+public abstract class BlendedHistoryHelper<T extends Comparable<T>> {
 
   protected abstract List<T> getFromZk(String id);
   protected abstract List<T> getFromHistory(String id, int historyStart, int numFromHistory);
+  protected abstract List<T> getFromHistoryAfter(String id, T last, int numFromHistory);
+
+  /**
+   * The order keyset pages are returned in, which must match the order the history queries return them in.
+   */
+  protected Comparator<T> getKeysetOrder() {
+    return Ordering.natural();
+  }
 
   public List<T> getBlendedHistory(String id, Integer limitStart, Integer limitCount) {
     final List<T> fromZk = getFromZk(id);
@@ -30,4 +42,45 @@ public abstract class BlendedHistoryHelper<T> {
     return returned;
   }
 
+  /**
+   * The page which follows last (or the first page, if last is absent), merging ZK and history by keyset order so that a page
+   * never depends on how many items came before it.
+   */
+  public List<T> getBlendedHistoryAfter(String id, Optional<T> last, Integer limitCount) {
+    final Comparator<T> order = getKeysetOrder();
+
+    final List<T> candidates = Lists.newArrayList();
+
+    for (T fromZk : getFromZk(id)) {
+      if (!last.isPresent() || order.compare(fromZk, last.get()) > 0) {
+        candidates.add(fromZk);
+      }
+    }
+
+    if (last.isPresent()) {
+      candidates.addAll(getFromHistoryAfter(id, last.get(), limitCount));
+    } else {
+      candidates.addAll(getFromHistory(id, 0, limitCount));
+    }
+
+    Collections.sort(candidates, order);
+
+    final List<T> returned = Lists.newArrayListWithCapacity(limitCount);
+
+    for (T candidate : candidates) {
+      if (returned.size() == limitCount) {
+        break;
+      }
+
+      // an item which has just been persisted may briefly be in both ZK and history
+      if (!returned.isEmpty() && order.compare(returned.get(returned.size() - 1), candidate) == 0) {
+        continue;
+      }
+
+      returned.add(candidate);
+    }
+
+    return returned;
+  }
+
 }
@@ -46,6 +46,11 @@ public class DeployHistoryHelper extends BlendedHistoryHelper<SingularityDeployH
     return historyManager.getDeployHistoryForRequest(requestId, historyStart, numFromHistory);
   }
 
+  @Override
+  protected List<SingularityDeployHistory> getFromHistoryAfter(String requestId, SingularityDeployHistory last, int numFromHistory) {
+    return historyManager.getDeployHistoryForRequestAfter(requestId, last, numFromHistory);
+  }
+
   public boolean isDeployIdAvailable(String requestId, String deployId) {
     Optional<SingularityDeploy> deploy = deployManager.getDeploy(requestId, deployId);
 
@@ -4,6 +4,7 @@ import java.util.Date;
 import java.util.List;
 
 import org.skife.jdbi.v2.sqlobject.Bind;
+import org.skife.jdbi.v2.sqlobject.SqlBatch;
 import org.skife.jdbi.v2.sqlobject.SqlQuery;
 import org.skife.jdbi.v2.sqlobject.SqlUpdate;
 import org.skife.jdbi.v2.sqlobject.customizers.Define;
@@ -25,23 +26,41 @@ public interface HistoryJDBI {
   @SqlUpdate("INSERT INTO taskHistory (requestId, taskId, bytes, updatedAt, lastTaskStatus) VALUES (:requestId, :taskId, :bytes, :updatedAt, :lastTaskStatus)")
   void insertTaskHistory(@Bind("requestId") String requestId, @Bind("taskId") String taskId, @Bind("bytes") byte[] bytes, @Bind("updatedAt") Date updatedAt, @Bind("lastTaskStatus") String lastTaskStatus);
 
+  @SqlBatch("INSERT IGNORE INTO taskHistory (requestId, taskId, bytes, updatedAt, lastTaskStatus) VALUES (:requestId, :taskId, :bytes, :updatedAt, :lastTaskStatus)")
+  void insertTaskHistories(@Bind("requestId") List<String> requestIds, @Bind("taskId") List<String> taskIds, @Bind("bytes") List<byte[]> bytes, @Bind("updatedAt") List<Date> updatedAts, @Bind("lastTaskStatus") List<String> lastTaskStatuses);
+
   @SqlQuery("SELECT bytes FROM taskHistory WHERE taskId = :taskId")
   byte[] getTaskHistoryForTask(@Bind("taskId") String taskId);
 
   @SqlQuery("SELECT bytes FROM deployHistory WHERE requestId = :requestId AND deployId = :deployId")
   byte[] getDeployHistoryForDeploy(@Bind("requestId") String requestId, @Bind("deployId") String deployId);
 
-  @SqlQuery("SELECT requestId, deployId, createdAt, user, deployStateAt, deployState FROM deployHistory WHERE requestId = :requestId ORDER BY createdAt DESC LIMIT :limitStart, :limitCount")
+  @SqlQuery("SELECT requestId, deployId, createdAt, user, deployStateAt, deployState FROM deployHistory WHERE requestId = :requestId ORDER BY createdAt DESC, deployId DESC LIMIT :limitStart, :limitCount")
   List<SingularityDeployHistory> getDeployHistoryForRequest(@Bind("requestId") String requestId, @Bind("limitStart") Integer limitStart, @Bind("limitCount") Integer limitCount);
 
-  @SqlQuery("SELECT taskId, requestId, updatedAt, lastTaskStatus FROM taskHistory WHERE requestId = :requestId ORDER BY updatedAt DESC LIMIT :limitStart, :limitCount")
+  // keyset pages, which seek straight to the (requestId, createdAt) index entry after the last deploy returned instead of scanning past every earlier page - InnoDB
+  // appends the primary key to secondary indexes, so its entries are already ordered by deployId within a createdAt
+  @SqlQuery("SELECT requestId, deployId, createdAt, user, deployStateAt, deployState FROM deployHistory WHERE requestId = :requestId AND createdAt <= :createdAt AND (createdAt < :createdAt OR deployId < :deployId) ORDER BY createdAt DESC, deployId DESC LIMIT :limitCount")
+  List<SingularityDeployHistory> getDeployHistoryForRequestAfter(@Bind("requestId") String requestId, @Bind("createdAt") Date createdAt, @Bind("deployId") String deployId, @Bind("limitCount") Integer limitCount);
+
+  @SqlQuery("SELECT taskId, requestId, updatedAt, lastTaskStatus FROM taskHistory WHERE requestId = :requestId ORDER BY updatedAt DESC, taskId DESC LIMIT :limitStart, :limitCount")
   List<SingularityTaskIdHistory> getTaskHistoryForRequest(@Bind("requestId") String requestId, @Bind("limitStart") Integer limitStart, @Bind("limitCount") Integer limitCount);
 
+  @SqlQuery("SELECT taskId, requestId, updatedAt, lastTaskStatus FROM taskHistory WHERE requestId = :requestId AND updatedAt <= :updatedAt AND (updatedAt < :updatedAt OR taskId < :taskId) ORDER BY updatedAt DESC, taskId DESC LIMIT :limitCount")
+  List<SingularityTaskIdHistory> getTaskHistoryForRequestAfter(@Bind("requestId") String requestId, @Bind("updatedAt") Date updatedAt, @Bind("taskId") String taskId, @Bind("limitCount") Integer limitCount);
+
   @SqlQuery("SELECT request, createdAt, requestState, user FROM requestHistory WHERE requestId = :requestId ORDER BY createdAt <orderDirection> LIMIT :limitStart, :limitCount")
   List<SingularityRequestHistory> getRequestHistory(@Bind("requestId") String requestId, @Define("orderDirection") String orderDirection, @Bind("limitStart") Integer limitStart, @Bind("limitCount") Integer limitCount);
 
-  @SqlQuery("SELECT DISTINCT requestId FROM requestHistory WHERE requestId LIKE CONCAT(:requestIdLike, '%') LIMIT :limitStart, :limitCount")
+  @SqlQuery("SELECT request, createdAt, requestState, user FROM requestHistory WHERE requestId = :requestId AND createdAt <createdAtComparison> :createdAt ORDER BY createdAt <orderDirection> LIMIT :limitCount")
+  List<SingularityRequestHistory> getRequestHistoryAfter(@Bind("requestId") String requestId, @Define("createdAtComparison") String createdAtComparison, @Bind("createdAt") Date createdAt, @Define("orderDirection") String orderDirection,
+      @Bind("limitCount") Integer limitCount);
+
+  @SqlQuery("SELECT DISTINCT requestId FROM requestHistory WHERE requestId LIKE CONCAT(:requestIdLike, '%') ORDER BY requestId LIMIT :limitStart, :limitCount")
   List<String> getRequestHistoryLike(@Bind("requestIdLike") String requestIdLike, @Bind("limitStart") Integer limitStart, @Bind("limitCount") Integer limitCount);
 
+  @SqlQuery("SELECT DISTINCT requestId FROM requestHistory WHERE requestId LIKE CONCAT(:requestIdLike, '%') AND requestId > :requestId ORDER BY requestId LIMIT :limitCount")
+  List<String> getRequestHistoryLikeAfter(@Bind("requestIdLike") String requestIdLike, @Bind("requestId") String lastRequestId, @Bind("limitCount") Integer limitCount);
+
   void close();
 }
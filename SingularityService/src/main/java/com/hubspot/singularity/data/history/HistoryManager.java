@@ -18,18 +18,43 @@ public interface HistoryManager {
 
   void saveTaskHistory(SingularityTaskHistory taskHistory);
 
+  /**
+   * Saves every task history in one transaction, skipping any which were already saved.
+   */
+  void saveTaskHistories(List<SingularityTaskHistory> taskHistories);
+
   void saveDeployHistory(SingularityDeployHistory deployHistory);
 
   Optional<SingularityDeployHistory> getDeployHistory(String requestId, String deployId);
 
   List<SingularityDeployHistory> getDeployHistoryForRequest(String requestId, Integer limitStart, Integer limitCount);
 
+  /**
+   * The page of deploy history which follows lastDeployHistory, newest first.
+   */
+  List<SingularityDeployHistory> getDeployHistoryForRequestAfter(String requestId, SingularityDeployHistory lastDeployHistory, Integer limitCount);
+
   List<SingularityTaskIdHistory> getTaskHistoryForRequest(String requestId, Integer limitStart, Integer limitCount);
 
+  /**
+   * The page of task history which follows lastTaskIdHistory, by updatedAt and then taskId, newest first.
+   */
+  List<SingularityTaskIdHistory> getTaskHistoryForRequestAfter(String requestId, SingularityTaskIdHistory lastTaskIdHistory, Integer limitCount);
+
   Optional<SingularityTaskHistory> getTaskHistory(String taskId);
 
   List<SingularityRequestHistory> getRequestHistory(String requestId, Optional<OrderDirection> orderDirection, Integer limitStart, Integer limitCount);
 
+  /**
+   * The page of request history which follows lastRequestHistory in the given order, newest first by default.
+   */
+  List<SingularityRequestHistory> getRequestHistoryAfter(String requestId, Optional<OrderDirection> orderDirection, SingularityRequestHistory lastRequestHistory, Integer limitCount);
+
   List<String> getRequestHistoryLike(String requestIdLike, Integer limitStart, Integer limitCount);
 
+  /**
+   * The page of request ids which follows lastRequestId, in request id order.
+   */
+  List<String> getRequestHistoryLikeAfter(String requestIdLike, String lastRequestId, Integer limitCount);
+
 }
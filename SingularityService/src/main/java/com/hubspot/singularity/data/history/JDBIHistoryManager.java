@@ -5,12 +5,14 @@ import java.util.List;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.base.Optional;
+import com.google.common.collect.Lists;
 import com.google.inject.Inject;
 import com.hubspot.singularity.DeployState;
 import com.hubspot.singularity.SingularityDeployHistory;
 import com.hubspot.singularity.SingularityRequestHistory;
 import com.hubspot.singularity.SingularityTaskHistory;
 import com.hubspot.singularity.SingularityTaskIdHistory;
+import com.hubspot.singularity.data.TaskHistoryCache;
 import com.hubspot.singularity.data.transcoders.SingularityDeployHistoryTranscoder;
 import com.hubspot.singularity.data.transcoders.SingularityTaskHistoryTranscoder;
 
@@ -19,14 +21,17 @@ public class JDBIHistoryManager implements HistoryManager {
   private final HistoryJDBI history;
   private final SingularityTaskHistoryTranscoder taskHistoryTranscoder;
   private final SingularityDeployHistoryTranscoder deployHistoryTranscoder;
+  private final TaskHistoryCache taskHistoryCache;
   private final ObjectMapper objectMapper;
 
   // TODO jdbi timeouts / exceptions
 
   @Inject
-  public JDBIHistoryManager(HistoryJDBI history, ObjectMapper objectMapper, SingularityTaskHistoryTranscoder taskHistoryTranscoder, SingularityDeployHistoryTranscoder deployHistoryTranscoder) {
+  public JDBIHistoryManager(HistoryJDBI history, ObjectMapper objectMapper, SingularityTaskHistoryTranscoder taskHistoryTranscoder, SingularityDeployHistoryTranscoder deployHistoryTranscoder,
+      TaskHistoryCache taskHistoryCache) {
     this.taskHistoryTranscoder = taskHistoryTranscoder;
     this.deployHistoryTranscoder = deployHistoryTranscoder;
+    this.taskHistoryCache = taskHistoryCache;
     this.history = history;
     this.objectMapper = objectMapper;
   }
@@ -36,6 +41,11 @@ public class JDBIHistoryManager implements HistoryManager {
     return history.getTaskHistoryForRequest(requestId, limitStart, limitCount);
   }
 
+  @Override
+  public List<SingularityTaskIdHistory> getTaskHistoryForRequestAfter(String requestId, SingularityTaskIdHistory lastTaskIdHistory, Integer limitCount) {
+    return history.getTaskHistoryForRequestAfter(requestId, new Date(lastTaskIdHistory.getUpdatedAt()), lastTaskIdHistory.getTaskId().getId(), limitCount);
+  }
+
   @Override
   public void saveRequestHistoryUpdate(SingularityRequestHistory requestHistory) {
     history.insertRequestHistory(requestHistory.getRequest().getId(), requestHistory.getRequest().getAsBytes(objectMapper), new Date(requestHistory.getCreatedAt()), requestHistory.getEventType().name(), requestHistory.getUser().orNull());
@@ -68,6 +78,11 @@ public class JDBIHistoryManager implements HistoryManager {
     return history.getDeployHistoryForRequest(requestId, limitStart, limitCount);
   }
 
+  @Override
+  public List<SingularityDeployHistory> getDeployHistoryForRequestAfter(String requestId, SingularityDeployHistory lastDeployHistory, Integer limitCount) {
+    return history.getDeployHistoryForRequestAfter(requestId, new Date(lastDeployHistory.getDeployMarker().getTimestamp()), lastDeployHistory.getDeployMarker().getDeployId(), limitCount);
+  }
+
   private String getOrderDirection(Optional<OrderDirection> orderDirection) {
     return orderDirection.or(OrderDirection.DESC).name();
   }
@@ -77,11 +92,23 @@ public class JDBIHistoryManager implements HistoryManager {
     return history.getRequestHistory(requestId, getOrderDirection(orderDirection), limitStart, limitCount);
   }
 
+  @Override
+  public List<SingularityRequestHistory> getRequestHistoryAfter(String requestId, Optional<OrderDirection> orderDirection, SingularityRequestHistory lastRequestHistory, Integer limitCount) {
+    final String createdAtComparison = orderDirection.or(OrderDirection.DESC) == OrderDirection.ASC ? ">" : "<";
+
+    return history.getRequestHistoryAfter(requestId, createdAtComparison, new Date(lastRequestHistory.getCreatedAt()), getOrderDirection(orderDirection), limitCount);
+  }
+
   @Override
   public List<String> getRequestHistoryLike(String requestIdLike, Integer limitStart, Integer limitCount) {
     return history.getRequestHistoryLike(requestIdLike, limitStart, limitCount);
   }
 
+  @Override
+  public List<String> getRequestHistoryLikeAfter(String requestIdLike, String lastRequestId, Integer limitCount) {
+    return history.getRequestHistoryLikeAfter(requestIdLike, lastRequestId, limitCount);
+  }
+
   @Override
   public void saveTaskHistory(SingularityTaskHistory taskHistory) {
     if (history.getTaskHistoryForTask(taskHistory.getTask().getTaskId().getId()) != null) {
@@ -98,15 +125,49 @@ public class JDBIHistoryManager implements HistoryManager {
     history.insertTaskHistory(taskIdHistory.getTaskId().getRequestId(), taskIdHistory.getTaskId().getId(), taskHistoryTranscoder.toBytes(taskHistory), new Date(taskIdHistory.getUpdatedAt()), lastTaskStatus);
   }
 
+  @Override
+  public void saveTaskHistories(List<SingularityTaskHistory> taskHistories) {
+    final List<String> requestIds = Lists.newArrayListWithCapacity(taskHistories.size());
+    final List<String> taskIds = Lists.newArrayListWithCapacity(taskHistories.size());
+    final List<byte[]> bytes = Lists.newArrayListWithCapacity(taskHistories.size());
+    final List<Date> updatedAts = Lists.newArrayListWithCapacity(taskHistories.size());
+    final List<String> lastTaskStatuses = Lists.newArrayListWithCapacity(taskHistories.size());
+
+    for (SingularityTaskHistory taskHistory : taskHistories) {
+      SingularityTaskIdHistory taskIdHistory = SingularityTaskIdHistory.fromTaskIdAndUpdates(taskHistory.getTask().getTaskId(), taskHistory.getTaskUpdates());
+
+      requestIds.add(taskIdHistory.getTaskId().getRequestId());
+      taskIds.add(taskIdHistory.getTaskId().getId());
+      bytes.add(taskHistoryTranscoder.toBytes(taskHistory));
+      updatedAts.add(new Date(taskIdHistory.getUpdatedAt()));
+      lastTaskStatuses.add(taskIdHistory.getLastTaskState().isPresent() ? taskIdHistory.getLastTaskState().get().name() : null);
+    }
+
+    history.insertTaskHistories(requestIds, taskIds, bytes, updatedAts, lastTaskStatuses);
+  }
+
   @Override
   public Optional<SingularityTaskHistory> getTaskHistory(String taskId) {
+    final Optional<SingularityTaskHistory> cachedTaskHistory = taskHistoryCache.get(taskId);
+
+    if (cachedTaskHistory.isPresent()) {
+      return cachedTaskHistory;
+    }
+
     byte[] historyBytes = history.getTaskHistoryForTask(taskId);
 
     if (historyBytes == null) {
       return Optional.absent();
     }
 
-    return Optional.of(taskHistoryTranscoder.transcode(historyBytes));
+    final byte[] uncompressedBytes = taskHistoryTranscoder.uncompress(historyBytes);
+
+    // only finished tasks are moved to history, so their history won't change
+    final SingularityTaskHistory taskHistory = taskHistoryTranscoder.transcodeUncompressed(uncompressedBytes);
+
+    taskHistoryCache.put(taskHistory, uncompressedBytes.length);
+
+    return Optional.of(taskHistory);
   }
 
 }
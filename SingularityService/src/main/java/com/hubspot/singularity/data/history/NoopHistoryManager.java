@@ -27,6 +27,11 @@ public class NoopHistoryManager implements HistoryManager {
     throw new UnsupportedOperationException("NoopHistoryManager can not save");
   }
 
+  @Override
+  public void saveTaskHistories(List<SingularityTaskHistory> taskHistories) {
+    throw new UnsupportedOperationException("NoopHistoryManager can not save");
+  }
+
   @Override
   public void saveDeployHistory(SingularityDeployHistory deployHistory) {
     throw new UnsupportedOperationException("NoopHistoryManager can not save");
@@ -42,11 +47,21 @@ public class NoopHistoryManager implements HistoryManager {
     return Collections.emptyList();
   }
 
+  @Override
+  public List<SingularityDeployHistory> getDeployHistoryForRequestAfter(String requestId, SingularityDeployHistory lastDeployHistory, Integer limitCount) {
+    return Collections.emptyList();
+  }
+
   @Override
   public List<SingularityTaskIdHistory> getTaskHistoryForRequest(String requestId, Integer limitStart, Integer limitCount) {
     return Collections.emptyList();
   }
 
+  @Override
+  public List<SingularityTaskIdHistory> getTaskHistoryForRequestAfter(String requestId, SingularityTaskIdHistory lastTaskIdHistory, Integer limitCount) {
+    return Collections.emptyList();
+  }
+
   @Override
   public Optional<SingularityTaskHistory> getTaskHistory(String taskId) {
     return Optional.absent();
@@ -57,9 +72,19 @@ public class NoopHistoryManager implements HistoryManager {
     return Collections.emptyList();
   }
 
+  @Override
+  public List<SingularityRequestHistory> getRequestHistoryAfter(String requestId, Optional<OrderDirection> orderDirection, SingularityRequestHistory lastRequestHistory, Integer limitCount) {
+    return Collections.emptyList();
+  }
+
   @Override
   public List<String> getRequestHistoryLike(String requestIdLike, Integer limitStart, Integer limitCount) {
     return Collections.emptyList();
   }
 
+  @Override
+  public List<String> getRequestHistoryLikeAfter(String requestIdLike, String lastRequestId, Integer limitCount) {
+    return Collections.emptyList();
+  }
+
 }
@@ -37,6 +37,11 @@ public class RequestHistoryHelper extends BlendedHistoryHelper<SingularityReques
     return historyManager.getRequestHistory(requestId, Optional.of(OrderDirection.DESC), historyStart, numFromHistory);
   }
 
+  @Override
+  protected List<SingularityRequestHistory> getFromHistoryAfter(String requestId, SingularityRequestHistory last, int numFromHistory) {
+    return historyManager.getRequestHistoryAfter(requestId, Optional.of(OrderDirection.DESC), last, numFromHistory);
+  }
+
   public Optional<SingularityRequestHistory> getFirstHistory(String requestId) {
     Optional<SingularityRequestHistory> firstHistory = JavaUtils.getFirst(historyManager.getRequestHistory(requestId, Optional.of(OrderDirection.ASC), 0, 1));
 
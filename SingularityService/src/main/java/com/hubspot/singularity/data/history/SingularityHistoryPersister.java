@@ -44,6 +44,7 @@ public class SingularityHistoryPersister implements Managed {
   @Override
   public void stop() {
     MoreExecutors.shutdownAndAwaitTermination(executorService, 1, TimeUnit.SECONDS);
+    taskPersister.stop();
   }
 
   @Override
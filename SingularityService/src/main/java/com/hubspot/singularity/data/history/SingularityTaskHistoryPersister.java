@@ -1,23 +1,45 @@
 package com.hubspot.singularity.data.history;
 
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.inject.Singleton;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
 import com.google.common.base.Optional;
+import com.google.common.base.Throwables;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.RateLimiter;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.inject.Inject;
 import com.hubspot.mesos.JavaUtils;
 import com.hubspot.singularity.SingularityPendingDeploy;
 import com.hubspot.singularity.SingularityTaskHistory;
 import com.hubspot.singularity.SingularityTaskId;
+import com.hubspot.singularity.config.SingularityConfiguration;
 import com.hubspot.singularity.data.DeployManager;
 import com.hubspot.singularity.data.TaskManager;
 
+/**
+ * Moves the history of inactive tasks from ZK to the history database in chunks. Each chunk is read from ZK with background
+ * reads, inserted with a single batch and then deleted from ZK; chunks run on a small pool so that reading one chunk
+ * overlaps writing another.
+ */
 @Singleton
 public class SingularityTaskHistoryPersister {
 
@@ -26,12 +48,47 @@ public class SingularityTaskHistoryPersister {
   private final TaskManager taskManager;
   private final DeployManager deployManager;
   private final HistoryManager historyManager;
+  private final SingularityConfiguration configuration;
+  private final ExecutorService executorService;
+  private final Optional<RateLimiter> rateLimiter;
+
+  private final AtomicInteger remaining;
+  private final Meter transferredMeter;
+  private final Meter failedMeter;
+  private final Timer chunkTimer;
 
   @Inject
-  public SingularityTaskHistoryPersister(TaskManager taskManager, DeployManager deployManager, HistoryManager historyManager) {
+  public SingularityTaskHistoryPersister(TaskManager taskManager, DeployManager deployManager, HistoryManager historyManager, SingularityConfiguration configuration, MetricRegistry registry) {
     this.taskManager = taskManager;
     this.historyManager = historyManager;
     this.deployManager = deployManager;
+    this.configuration = configuration;
+
+    this.executorService = Executors.newFixedThreadPool(Math.max(1, configuration.getPersistTaskHistoryThreads()), new ThreadFactoryBuilder().setNameFormat("SingularityTaskHistoryPersister-%d").build());
+
+    if (configuration.getPersistTaskHistoryMaxTasksPerSecond() > 0) {
+      this.rateLimiter = Optional.of(RateLimiter.create(configuration.getPersistTaskHistoryMaxTasksPerSecond()));
+    } else {
+      this.rateLimiter = Optional.absent();
+    }
+
+    this.remaining = new AtomicInteger();
+    this.transferredMeter = registry.meter(MetricRegistry.name(SingularityTaskHistoryPersister.class, "transferred"));
+    this.failedMeter = registry.meter(MetricRegistry.name(SingularityTaskHistoryPersister.class, "failed"));
+    this.chunkTimer = registry.timer(MetricRegistry.name(SingularityTaskHistoryPersister.class, "chunk"));
+
+    registry.register(MetricRegistry.name(SingularityTaskHistoryPersister.class, "remaining"), new Gauge<Integer>() {
+
+      @Override
+      public Integer getValue() {
+        return remaining.get();
+      }
+
+    });
+  }
+
+  public void stop() {
+    MoreExecutors.shutdownAndAwaitTermination(executorService, 1, TimeUnit.SECONDS);
   }
 
   public void checkInactiveTaskIds() {
@@ -45,20 +102,46 @@ public class SingularityTaskHistoryPersister {
     final Set<SingularityTaskId> lbCleaningTaskIds = Sets.newHashSet(taskManager.getLBCleanupTasks());
     final List<SingularityPendingDeploy> pendingDeploys = deployManager.getPendingDeploys();
 
-    int numTotal = 0;
-    int numTransferred = 0;
+    final List<SingularityTaskId> inactiveTaskIds = Lists.newArrayList();
 
     for (SingularityTaskId taskId : allTaskIds) {
       if (activeTaskIds.contains(taskId) || lbCleaningTaskIds.contains(taskId) || isPartofPendingDeploy(pendingDeploys, taskId)) {
         continue;
       }
-      if (transferToHistoryDB(taskId)) {
-        numTransferred++;
+      inactiveTaskIds.add(taskId);
+    }
+
+    remaining.set(inactiveTaskIds.size());
+
+    final List<Future<Integer>> futures = Lists.newArrayList();
+
+    for (final List<SingularityTaskId> chunk : Lists.partition(inactiveTaskIds, Math.max(1, configuration.getPersistTaskHistoryBatchSize()))) {
+      futures.add(executorService.submit(new Callable<Integer>() {
+
+        @Override
+        public Integer call() {
+          return transferChunk(chunk);
+        }
+
+      }));
+    }
+
+    int numTransferred = 0;
+
+    try {
+      for (Future<Integer> future : futures) {
+        numTransferred += future.get();
+      }
+    } catch (Throwable t) {
+      for (Future<Integer> future : futures) {
+        future.cancel(false);
       }
-      numTotal++;
+      throw Throwables.propagate(t);
+    } finally {
+      remaining.set(0);
     }
 
-    LOG.info("Transferred {} out of {} inactive task ids (total {}) in {}", numTransferred, numTotal, allTaskIds.size(), JavaUtils.duration(start));
+    LOG.info("Transferred {} out of {} inactive task ids (total {}) in {}", numTransferred, inactiveTaskIds.size(), allTaskIds.size(), JavaUtils.duration(start));
   }
 
   private boolean isPartofPendingDeploy(List<SingularityPendingDeploy> pendingDeploys, SingularityTaskId taskId) {
@@ -71,27 +154,75 @@ public class SingularityTaskHistoryPersister {
     return false;
   }
 
-  private boolean transferToHistoryDB(SingularityTaskId inactiveTaskId) {
+  private int transferChunk(List<SingularityTaskId> taskIds) {
+    if (rateLimiter.isPresent()) {
+      rateLimiter.get().acquire(taskIds.size());
+    }
+
     final long start = System.currentTimeMillis();
+    final Timer.Context context = chunkTimer.time();
 
-    final Optional<SingularityTaskHistory> taskHistory = taskManager.getTaskHistory(inactiveTaskId);
+    try {
+      final Map<SingularityTaskId, SingularityTaskHistory> taskHistories = taskManager.getTaskHistories(taskIds);
 
-    if (taskHistory.isPresent()) {
-      try {
-        historyManager.saveTaskHistory(taskHistory.get());
-      } catch (Throwable t) {
-        LOG.warn("Failed to persist task into History for task {}", inactiveTaskId, t);
-        return false;
+      for (SingularityTaskId taskId : taskIds) {
+        if (!taskHistories.containsKey(taskId)) {
+          LOG.warn("Inactive task {} did not have a task to persist", taskId);
+        }
       }
-    } else {
-      LOG.warn("Inactive task {} did not have a task to persist", inactiveTaskId);
+
+      final List<SingularityTaskId> persistedTaskIds = saveTaskHistories(taskIds, taskHistories);
+
+      for (SingularityTaskId taskId : persistedTaskIds) {
+        taskManager.deleteTaskHistory(taskId);
+      }
+
+      transferredMeter.mark(persistedTaskIds.size());
+      failedMeter.mark(taskIds.size() - persistedTaskIds.size());
+
+      LOG.debug("Moved task history for {} of {} tasks from ZK to History in {}", persistedTaskIds.size(), taskIds.size(), JavaUtils.duration(start));
+
+      return persistedTaskIds.size();
+    } finally {
+      context.stop();
+      remaining.addAndGet(-taskIds.size());
+    }
+  }
+
+  /**
+   * Inserts the chunk as one batch, falling back to inserting each task on its own if the batch fails so that one bad task
+   * doesn't hold back the rest. Returns the task ids which can be removed from ZK.
+   */
+  private List<SingularityTaskId> saveTaskHistories(List<SingularityTaskId> taskIds, Map<SingularityTaskId, SingularityTaskHistory> taskHistories) {
+    if (taskHistories.isEmpty()) {
+      return taskIds;
+    }
+
+    try {
+      historyManager.saveTaskHistories(Lists.newArrayList(taskHistories.values()));
+      return taskIds;
+    } catch (Throwable t) {
+      LOG.warn("Failed to persist {} tasks into History as a batch, persisting individually", taskHistories.size(), t);
     }
 
-    taskManager.deleteTaskHistory(inactiveTaskId);
+    final List<SingularityTaskId> persistedTaskIds = Lists.newArrayListWithCapacity(taskIds.size());
+
+    for (SingularityTaskId taskId : taskIds) {
+      final SingularityTaskHistory taskHistory = taskHistories.get(taskId);
 
-    LOG.debug("Moved task history for {} from ZK to History in {}", inactiveTaskId, JavaUtils.duration(start));
+      if (taskHistory != null) {
+        try {
+          historyManager.saveTaskHistory(taskHistory);
+        } catch (Throwable t) {
+          LOG.warn("Failed to persist task into History for task {}", taskId, t);
+          continue;
+        }
+      }
+
+      persistedTaskIds.add(taskId);
+    }
 
-    return true;
+    return persistedTaskIds;
   }
 
 }
@@ -2,10 +2,12 @@ package com.hubspot.singularity.data.history;
 
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
 
 import com.google.common.base.Optional;
+import com.google.common.collect.ComparisonChain;
 import com.google.common.collect.Lists;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
@@ -19,6 +21,19 @@ import com.hubspot.singularity.data.TaskManager;
 @Singleton
 public class TaskHistoryHelper extends BlendedHistoryHelper<SingularityTaskIdHistory> {
 
+  // matches the (requestId, updatedAt) index, which ends with the taskId primary key, and which unlike the natural order breaks ties by descending task id
+  private static final Comparator<SingularityTaskIdHistory> KEYSET_ORDER = new Comparator<SingularityTaskIdHistory>() {
+
+    @Override
+    public int compare(SingularityTaskIdHistory o1, SingularityTaskIdHistory o2) {
+      return ComparisonChain.start()
+          .compare(o2.getUpdatedAt(), o1.getUpdatedAt())
+          .compare(o2.getTaskId().getId(), o1.getTaskId().getId())
+          .result();
+    }
+
+  };
+
   private final TaskManager taskManager;
   private final HistoryManager historyManager;
 
@@ -56,6 +71,16 @@ public class TaskHistoryHelper extends BlendedHistoryHelper<SingularityTaskIdHis
     return historyManager.getTaskHistoryForRequest(requestId, historyStart, numFromHistory);
   }
 
+  @Override
+  protected List<SingularityTaskIdHistory> getFromHistoryAfter(String requestId, SingularityTaskIdHistory last, int numFromHistory) {
+    return historyManager.getTaskHistoryForRequestAfter(requestId, last, numFromHistory);
+  }
+
+  @Override
+  protected Comparator<SingularityTaskIdHistory> getKeysetOrder() {
+    return KEYSET_ORDER;
+  }
+
   public Optional<SingularityTask> getTask(SingularityTaskId taskId) {
     Optional<SingularityTask> maybeTask = taskManager.getTask(taskId);
 
@@ -0,0 +1,35 @@
+package com.hubspot.singularity.data.transcoders;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.hubspot.singularity.SingularityJsonObject.SingularityJsonException;
+
+/**
+ * Adds the size of everything it transcodes to a shared count, so the nodes read for one object can be totalled. Async reads
+ * transcode on curator's threads, hence the atomic.
+ */
+public class ByteCountingTranscoder<T> implements Transcoder<T> {
+
+  private final Transcoder<T> transcoder;
+  private final AtomicInteger bytesRead;
+
+  public ByteCountingTranscoder(Transcoder<T> transcoder, AtomicInteger bytesRead) {
+    this.transcoder = transcoder;
+    this.bytesRead = bytesRead;
+  }
+
+  @Override
+  public T transcode(byte[] data) throws SingularityJsonException {
+    if (data != null) {
+      bytesRead.addAndGet(data.length);
+    }
+
+    return transcoder.transcode(data);
+  }
+
+  @Override
+  public byte[] toBytes(T object) throws SingularityJsonException {
+    return transcoder.toBytes(object);
+  }
+
+}
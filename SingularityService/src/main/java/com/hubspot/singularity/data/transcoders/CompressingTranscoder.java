@@ -1,25 +1,15 @@
 package com.hubspot.singularity.data.transcoders;
 
-import org.iq80.snappy.Snappy;
-
 import com.google.inject.Inject;
 import com.hubspot.singularity.SingularityJsonObject.SingularityJsonException;
-import com.hubspot.singularity.config.SingularityConfiguration;
 
 public abstract class CompressingTranscoder<T> implements Transcoder<T> {
 
-  private final SingularityConfiguration configuration;
+  private final ZkCompressor compressor;
 
   @Inject
-  public CompressingTranscoder(SingularityConfiguration configuration) {
-    this.configuration = configuration;
-  }
-
-  private byte[] getMaybeCompressedBytes(byte[] bytes) {
-    if (configuration.isCompressLargeDataObjects()) {
-      return Snappy.compress(bytes);
-    }
-    return bytes;
+  public CompressingTranscoder(ZkCompressor compressor) {
+    this.compressor = compressor;
   }
 
   protected abstract T actualTranscode(byte[] data);
@@ -27,19 +17,23 @@ public abstract class CompressingTranscoder<T> implements Transcoder<T> {
 
   @Override
   public T transcode(byte[] data) throws SingularityJsonException {
-    return actualTranscode(getMaybeUncompressedBytes(data));
+    return actualTranscode(compressor.uncompress(data));
   }
 
-  @Override
-  public byte[] toBytes(T object) throws SingularityJsonException {
-    return getMaybeCompressedBytes(actualToBytes(object));
+  /**
+   * For callers which need the uncompressed payload as well, followed by transcodeUncompressed.
+   */
+  public byte[] uncompress(byte[] data) {
+    return compressor.uncompress(data);
   }
 
-  private byte[] getMaybeUncompressedBytes(byte[] bytes) {
-    if (configuration.isCompressLargeDataObjects()) {
-      return Snappy.uncompress(bytes, 0, bytes.length);
-    }
-    return bytes;
+  public T transcodeUncompressed(byte[] data) throws SingularityJsonException {
+    return actualTranscode(data);
+  }
+
+  @Override
+  public byte[] toBytes(T object) throws SingularityJsonException {
+    return compressor.compress(actualToBytes(object));
   }
 
 }
@@ -2,30 +2,28 @@ package com.hubspot.singularity.data.transcoders;
 
 import javax.inject.Singleton;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.inject.Inject;
 import com.hubspot.singularity.SingularityDeployHistory;
-import com.hubspot.singularity.config.SingularityConfiguration;
 
 @Singleton
 public class SingularityDeployHistoryTranscoder extends CompressingTranscoder<SingularityDeployHistory> {
 
-  private final ObjectMapper objectMapper;
+  private final ZkObjectMappers objectMappers;
 
   @Inject
-  public SingularityDeployHistoryTranscoder(SingularityConfiguration configuration, ObjectMapper objectMapper) {
-    super(configuration);
-    this.objectMapper = objectMapper;
+  public SingularityDeployHistoryTranscoder(ZkCompressor compressor, ZkObjectMappers objectMappers) {
+    super(compressor);
+    this.objectMappers = objectMappers;
   }
 
   @Override
   protected byte[] actualToBytes(SingularityDeployHistory object) {
-    return object.getAsBytes(objectMapper);
+    return object.getAsBytes(objectMappers.forWriting());
   }
 
   @Override
   protected SingularityDeployHistory actualTranscode(byte[] data) {
-    return SingularityDeployHistory.fromBytes(data, objectMapper);
+    return SingularityDeployHistory.fromBytes(data, objectMappers.forReading(data));
   }
 
 }
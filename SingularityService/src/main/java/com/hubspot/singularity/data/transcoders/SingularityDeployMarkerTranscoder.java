@@ -2,28 +2,27 @@ package com.hubspot.singularity.data.transcoders;
 
 import javax.inject.Singleton;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.inject.Inject;
 import com.hubspot.singularity.SingularityDeployMarker;
 
 @Singleton
 public class SingularityDeployMarkerTranscoder implements Transcoder<SingularityDeployMarker> {
 
-  private final ObjectMapper objectMapper;
+  private final ZkObjectMappers objectMappers;
 
   @Inject
-  public SingularityDeployMarkerTranscoder(ObjectMapper objectMapper) {
-    this.objectMapper = objectMapper;
+  public SingularityDeployMarkerTranscoder(ZkObjectMappers objectMappers) {
+    this.objectMappers = objectMappers;
   }
 
   @Override
   public SingularityDeployMarker transcode(byte[] data) {
-    return SingularityDeployMarker.fromBytes(data, objectMapper);
+    return SingularityDeployMarker.fromBytes(data, objectMappers.forReading(data));
   }
 
   @Override
   public byte[] toBytes(SingularityDeployMarker object) {
-    return object.getAsBytes(objectMapper);
+    return object.getAsBytes(objectMappers.forWriting());
   }
 
 }
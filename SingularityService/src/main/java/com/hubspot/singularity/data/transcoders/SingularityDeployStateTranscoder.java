@@ -2,7 +2,6 @@ package com.hubspot.singularity.data.transcoders;
 
 import javax.inject.Singleton;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.inject.Inject;
 import com.hubspot.singularity.SingularityDeployResult;
 import com.hubspot.singularity.SingularityJsonObject.SingularityJsonException;
@@ -10,21 +9,21 @@ import com.hubspot.singularity.SingularityJsonObject.SingularityJsonException;
 @Singleton
 public class SingularityDeployStateTranscoder implements Transcoder<SingularityDeployResult> {
 
-  private final ObjectMapper objectMapper;
+  private final ZkObjectMappers objectMappers;
 
   @Inject
-  public SingularityDeployStateTranscoder(ObjectMapper objectMapper) {
-    this.objectMapper = objectMapper;
+  public SingularityDeployStateTranscoder(ZkObjectMappers objectMappers) {
+    this.objectMappers = objectMappers;
   }
 
   @Override
   public SingularityDeployResult transcode(byte[] data) {
-    return SingularityDeployResult.fromBytes(data, objectMapper);
+    return SingularityDeployResult.fromBytes(data, objectMappers.forReading(data));
   }
 
   @Override
   public byte[] toBytes(SingularityDeployResult object) throws SingularityJsonException {
-    return object.getAsBytes(objectMapper);
+    return object.getAsBytes(objectMappers.forWriting());
   }
 
 }
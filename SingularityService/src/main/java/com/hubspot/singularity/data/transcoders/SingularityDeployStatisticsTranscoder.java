@@ -2,7 +2,6 @@ package com.hubspot.singularity.data.transcoders;
 
 import javax.inject.Singleton;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.inject.Inject;
 import com.hubspot.singularity.SingularityDeployStatistics;
 import com.hubspot.singularity.SingularityJsonObject.SingularityJsonException;
@@ -10,21 +9,21 @@ import com.hubspot.singularity.SingularityJsonObject.SingularityJsonException;
 @Singleton
 public class SingularityDeployStatisticsTranscoder implements Transcoder<SingularityDeployStatistics> {
 
-  private final ObjectMapper objectMapper;
+  private final ZkObjectMappers objectMappers;
 
   @Inject
-  public SingularityDeployStatisticsTranscoder(ObjectMapper objectMapper) {
-    this.objectMapper = objectMapper;
+  public SingularityDeployStatisticsTranscoder(ZkObjectMappers objectMappers) {
+    this.objectMappers = objectMappers;
   }
 
   @Override
   public SingularityDeployStatistics transcode(byte[] data) {
-    return SingularityDeployStatistics.fromBytes(data, objectMapper);
+    return SingularityDeployStatistics.fromBytes(data, objectMappers.forReading(data));
   }
 
   @Override
   public byte[] toBytes(SingularityDeployStatistics object) throws SingularityJsonException {
-    return object.getAsBytes(objectMapper);
+    return object.getAsBytes(objectMappers.forWriting());
   }
 
 }
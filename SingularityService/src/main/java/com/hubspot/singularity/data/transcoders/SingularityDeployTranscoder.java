@@ -2,31 +2,29 @@ package com.hubspot.singularity.data.transcoders;
 
 import javax.inject.Singleton;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.inject.Inject;
 import com.hubspot.singularity.SingularityDeploy;
-import com.hubspot.singularity.config.SingularityConfiguration;
 
 @Singleton
 public class SingularityDeployTranscoder extends CompressingTranscoder<SingularityDeploy> {
 
-  private final ObjectMapper objectMapper;
+  private final ZkObjectMappers objectMappers;
 
   @Inject
-  public SingularityDeployTranscoder(ObjectMapper objectMapper, SingularityConfiguration configuration) {
-    super(configuration);
-    this.objectMapper = objectMapper;
+  public SingularityDeployTranscoder(ZkObjectMappers objectMappers, ZkCompressor compressor) {
+    super(compressor);
+    this.objectMappers = objectMappers;
   }
 
   @Override
   protected SingularityDeploy actualTranscode(byte[] data) {
-    return SingularityDeploy.fromBytes(data, objectMapper);
+    return SingularityDeploy.fromBytes(data, objectMappers.forReading(data));
   }
 
 
   @Override
   protected byte[] actualToBytes(SingularityDeploy object) {
-    return object.getAsBytes(objectMapper);
+    return object.getAsBytes(objectMappers.forWriting());
   }
 
 }
@@ -2,30 +2,28 @@ package com.hubspot.singularity.data.transcoders;
 
 import javax.inject.Singleton;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.inject.Inject;
 import com.hubspot.singularity.SingularityDeployWebhook;
-import com.hubspot.singularity.config.SingularityConfiguration;
 
 @Singleton
 public class SingularityDeployWebhookTranscoder extends CompressingTranscoder<SingularityDeployWebhook> {
 
-  private final ObjectMapper objectMapper;
+  private final ZkObjectMappers objectMappers;
 
   @Inject
-  public SingularityDeployWebhookTranscoder(SingularityConfiguration configuration, ObjectMapper objectMapper) {
-    super(configuration);
-    this.objectMapper = objectMapper;
+  public SingularityDeployWebhookTranscoder(ZkCompressor compressor, ZkObjectMappers objectMappers) {
+    super(compressor);
+    this.objectMappers = objectMappers;
   }
 
   @Override
   protected byte[] actualToBytes(SingularityDeployWebhook object) {
-    return object.getAsBytes(objectMapper);
+    return object.getAsBytes(objectMappers.forWriting());
   }
 
   @Override
   protected SingularityDeployWebhook actualTranscode(byte[] data) {
-    return SingularityDeployWebhook.fromBytes(data, objectMapper);
+    return SingularityDeployWebhook.fromBytes(data, objectMappers.forReading(data));
   }
 
 }
@@ -0,0 +1,29 @@
+package com.hubspot.singularity.data.transcoders;
+
+import javax.inject.Singleton;
+
+import com.google.inject.Inject;
+import com.hubspot.singularity.SingularityHostState;
+import com.hubspot.singularity.SingularityJsonObject.SingularityJsonException;
+
+@Singleton
+public class SingularityHostStateTranscoder implements Transcoder<SingularityHostState> {
+
+  private final ZkObjectMappers objectMappers;
+
+  @Inject
+  public SingularityHostStateTranscoder(ZkObjectMappers objectMappers) {
+    this.objectMappers = objectMappers;
+  }
+
+  @Override
+  public SingularityHostState transcode(byte[] data) {
+    return SingularityHostState.fromBytes(data, objectMappers.forReading(data));
+  }
+
+  @Override
+  public byte[] toBytes(SingularityHostState object) throws SingularityJsonException {
+    return object.getAsBytes(objectMappers.forWriting());
+  }
+
+}
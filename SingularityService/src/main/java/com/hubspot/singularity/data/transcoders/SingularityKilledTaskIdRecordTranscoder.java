@@ -2,28 +2,27 @@ package com.hubspot.singularity.data.transcoders;
 
 import javax.inject.Singleton;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.inject.Inject;
 import com.hubspot.singularity.SingularityKilledTaskIdRecord;
 
 @Singleton
 public class SingularityKilledTaskIdRecordTranscoder implements Transcoder<SingularityKilledTaskIdRecord> {
 
-  private final ObjectMapper objectMapper;
+  private final ZkObjectMappers objectMappers;
 
   @Inject
-  public SingularityKilledTaskIdRecordTranscoder(ObjectMapper objectMapper) {
-    this.objectMapper = objectMapper;
+  public SingularityKilledTaskIdRecordTranscoder(ZkObjectMappers objectMappers) {
+    this.objectMappers = objectMappers;
   }
 
   @Override
   public byte[] toBytes(SingularityKilledTaskIdRecord object)  {
-    return object.getAsBytes(objectMapper);
+    return object.getAsBytes(objectMappers.forWriting());
   }
 
   @Override
   public SingularityKilledTaskIdRecord transcode(byte[] data) {
-    return SingularityKilledTaskIdRecord.fromBytes(data, objectMapper);
+    return SingularityKilledTaskIdRecord.fromBytes(data, objectMappers.forReading(data));
   }
 
 }
@@ -2,28 +2,27 @@ package com.hubspot.singularity.data.transcoders;
 
 import javax.inject.Singleton;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.inject.Inject;
 import com.hubspot.singularity.SingularityLoadBalancerUpdate;
 
 @Singleton
 public class SingularityLoadBalancerUpdateTranscoder implements Transcoder<SingularityLoadBalancerUpdate> {
 
-  private final ObjectMapper objectMapper;
+  private final ZkObjectMappers objectMappers;
 
   @Inject
-  public SingularityLoadBalancerUpdateTranscoder(ObjectMapper objectMapper) {
-    this.objectMapper = objectMapper;
+  public SingularityLoadBalancerUpdateTranscoder(ZkObjectMappers objectMappers) {
+    this.objectMappers = objectMappers;
   }
 
   @Override
   public byte[] toBytes(SingularityLoadBalancerUpdate object)  {
-    return object.getAsBytes(objectMapper);
+    return object.getAsBytes(objectMappers.forWriting());
   }
 
   @Override
   public SingularityLoadBalancerUpdate transcode(byte[] data) {
-    return SingularityLoadBalancerUpdate.fromBytes(data, objectMapper);
+    return SingularityLoadBalancerUpdate.fromBytes(data, objectMappers.forReading(data));
   }
 
 }
@@ -2,7 +2,6 @@ package com.hubspot.singularity.data.transcoders;
 
 import javax.inject.Singleton;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.inject.Inject;
 import com.hubspot.singularity.SingularityJsonObject.SingularityJsonException;
 import com.hubspot.singularity.SingularityPendingDeploy;
@@ -10,20 +9,20 @@ import com.hubspot.singularity.SingularityPendingDeploy;
 @Singleton
 public class SingularityPendingDeployTranscoder implements Transcoder<SingularityPendingDeploy> {
 
-  private final ObjectMapper objectMapper;
+  private final ZkObjectMappers objectMappers;
 
   @Inject
-  public SingularityPendingDeployTranscoder(ObjectMapper objectMapper) {
-    this.objectMapper = objectMapper;
+  public SingularityPendingDeployTranscoder(ZkObjectMappers objectMappers) {
+    this.objectMappers = objectMappers;
   }
 
   @Override
   public SingularityPendingDeploy transcode(byte[] data) {
-    return SingularityPendingDeploy.fromBytes(data, objectMapper);
+    return SingularityPendingDeploy.fromBytes(data, objectMappers.forReading(data));
   }
 
   @Override
   public byte[] toBytes(SingularityPendingDeploy object) throws SingularityJsonException {
-    return object.getAsBytes(objectMapper);
+    return object.getAsBytes(objectMappers.forWriting());
   }
 }
@@ -2,7 +2,6 @@ package com.hubspot.singularity.data.transcoders;
 
 import javax.inject.Singleton;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.inject.Inject;
 import com.hubspot.singularity.SingularityJsonObject.SingularityJsonException;
 import com.hubspot.singularity.SingularityPendingRequest;
@@ -10,21 +9,21 @@ import com.hubspot.singularity.SingularityPendingRequest;
 @Singleton
 public class SingularityPendingRequestTranscoder implements Transcoder<SingularityPendingRequest> {
 
-  private final ObjectMapper objectMapper;
+  private final ZkObjectMappers objectMappers;
 
   @Inject
-  public SingularityPendingRequestTranscoder(ObjectMapper objectMapper) {
-    this.objectMapper = objectMapper;
+  public SingularityPendingRequestTranscoder(ZkObjectMappers objectMappers) {
+    this.objectMappers = objectMappers;
   }
 
   @Override
   public SingularityPendingRequest transcode(byte[] data) {
-    return SingularityPendingRequest.fromBytes(data, objectMapper);
+    return SingularityPendingRequest.fromBytes(data, objectMappers.forReading(data));
   }
 
   @Override
   public byte[] toBytes(SingularityPendingRequest object) throws SingularityJsonException {
-    return object.getAsBytes(objectMapper);
+    return object.getAsBytes(objectMappers.forWriting());
   }
 
 }
@@ -2,7 +2,6 @@ package com.hubspot.singularity.data.transcoders;
 
 import javax.inject.Singleton;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.inject.Inject;
 import com.hubspot.singularity.SingularityJsonObject.SingularityJsonException;
 import com.hubspot.singularity.SingularityRequestCleanup;
@@ -10,21 +9,21 @@ import com.hubspot.singularity.SingularityRequestCleanup;
 @Singleton
 public class SingularityRequestCleanupTranscoder implements Transcoder<SingularityRequestCleanup> {
 
-  private final ObjectMapper objectMapper;
+  private final ZkObjectMappers objectMappers;
 
   @Inject
-  public SingularityRequestCleanupTranscoder(ObjectMapper objectMapper) {
-    this.objectMapper = objectMapper;
+  public SingularityRequestCleanupTranscoder(ZkObjectMappers objectMappers) {
+    this.objectMappers = objectMappers;
   }
 
   @Override
   public SingularityRequestCleanup transcode(byte[] data) {
-    return SingularityRequestCleanup.fromBytes(data, objectMapper);
+    return SingularityRequestCleanup.fromBytes(data, objectMappers.forReading(data));
   }
 
   @Override
   public byte[] toBytes(SingularityRequestCleanup object) throws SingularityJsonException {
-    return object.getAsBytes(objectMapper);
+    return object.getAsBytes(objectMappers.forWriting());
   }
 
 
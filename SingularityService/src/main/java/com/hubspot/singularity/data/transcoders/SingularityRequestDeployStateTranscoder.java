@@ -2,28 +2,27 @@ package com.hubspot.singularity.data.transcoders;
 
 import javax.inject.Singleton;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.inject.Inject;
 import com.hubspot.singularity.SingularityRequestDeployState;
 
 @Singleton
 public class SingularityRequestDeployStateTranscoder implements Transcoder<SingularityRequestDeployState> {
 
-  private final ObjectMapper objectMapper;
+  private final ZkObjectMappers objectMappers;
 
   @Inject
-  public SingularityRequestDeployStateTranscoder(ObjectMapper objectMapper) {
-    this.objectMapper = objectMapper;
+  public SingularityRequestDeployStateTranscoder(ZkObjectMappers objectMappers) {
+    this.objectMappers = objectMappers;
   }
 
   @Override
   public SingularityRequestDeployState transcode(byte[] data) {
-    return SingularityRequestDeployState.fromBytes(data, objectMapper);
+    return SingularityRequestDeployState.fromBytes(data, objectMappers.forReading(data));
   }
 
   @Override
   public byte[] toBytes(SingularityRequestDeployState object) {
-    return object.getAsBytes(objectMapper);
+    return object.getAsBytes(objectMappers.forWriting());
   }
 
 }
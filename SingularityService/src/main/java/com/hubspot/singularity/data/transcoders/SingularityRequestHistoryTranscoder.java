@@ -2,31 +2,29 @@ package com.hubspot.singularity.data.transcoders;
 
 import javax.inject.Singleton;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.inject.Inject;
 import com.hubspot.singularity.SingularityRequestHistory;
-import com.hubspot.singularity.config.SingularityConfiguration;
 
 @Singleton
 public class SingularityRequestHistoryTranscoder extends CompressingTranscoder<SingularityRequestHistory> {
 
-  private final ObjectMapper objectMapper;
+  private final ZkObjectMappers objectMappers;
 
   @Inject
-  public SingularityRequestHistoryTranscoder(ObjectMapper objectMapper, SingularityConfiguration configuration) {
-    super(configuration);
+  public SingularityRequestHistoryTranscoder(ZkObjectMappers objectMappers, ZkCompressor compressor) {
+    super(compressor);
 
-    this.objectMapper = objectMapper;
+    this.objectMappers = objectMappers;
   }
 
   @Override
   protected SingularityRequestHistory actualTranscode(byte[] data) {
-    return SingularityRequestHistory.fromBytes(data, objectMapper);
+    return SingularityRequestHistory.fromBytes(data, objectMappers.forReading(data));
   }
 
   @Override
   protected byte[] actualToBytes(SingularityRequestHistory object) {
-    return object.getAsBytes(objectMapper);
+    return object.getAsBytes(objectMappers.forWriting());
   }
 
 }
@@ -2,28 +2,27 @@ package com.hubspot.singularity.data.transcoders;
 
 import javax.inject.Singleton;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.inject.Inject;
 import com.hubspot.singularity.SingularitySlave;
 
 @Singleton
 public class SingularitySlaveTranscoder implements Transcoder<SingularitySlave> {
 
-  private final ObjectMapper objectMapper;
+  private final ZkObjectMappers objectMappers;
 
   @Inject
-  public SingularitySlaveTranscoder(ObjectMapper objectMapper) {
-    this.objectMapper = objectMapper;
+  public SingularitySlaveTranscoder(ZkObjectMappers objectMappers) {
+    this.objectMappers = objectMappers;
   }
 
   @Override
   public SingularitySlave transcode(byte[] data) {
-    return SingularitySlave.fromBytes(data, objectMapper);
+    return SingularitySlave.fromBytes(data, objectMappers.forReading(data));
   }
 
   @Override
   public byte[] toBytes(SingularitySlave object) {
-    return object.getAsBytes(objectMapper);
+    return object.getAsBytes(objectMappers.forWriting());
   }
 
 }
@@ -2,28 +2,27 @@ package com.hubspot.singularity.data.transcoders;
 
 import javax.inject.Singleton;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.inject.Inject;
 import com.hubspot.singularity.SingularityTaskCleanup;
 
 @Singleton
 public class SingularityTaskCleanupTranscoder implements Transcoder<SingularityTaskCleanup> {
 
-  private final ObjectMapper objectMapper;
+  private final ZkObjectMappers objectMappers;
 
   @Inject
-  public SingularityTaskCleanupTranscoder(ObjectMapper objectMapper) {
-    this.objectMapper = objectMapper;
+  public SingularityTaskCleanupTranscoder(ZkObjectMappers objectMappers) {
+    this.objectMappers = objectMappers;
   }
 
   @Override
   public byte[] toBytes(SingularityTaskCleanup object)  {
-    return object.getAsBytes(objectMapper);
+    return object.getAsBytes(objectMappers.forWriting());
   }
 
   @Override
   public SingularityTaskCleanup transcode(byte[] data) {
-    return SingularityTaskCleanup.fromBytes(data, objectMapper);
+    return SingularityTaskCleanup.fromBytes(data, objectMappers.forReading(data));
   }
 
 }
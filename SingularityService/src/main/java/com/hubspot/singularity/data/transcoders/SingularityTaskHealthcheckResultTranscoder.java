@@ -2,30 +2,28 @@ package com.hubspot.singularity.data.transcoders;
 
 import javax.inject.Singleton;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.inject.Inject;
 import com.hubspot.singularity.SingularityTaskHealthcheckResult;
-import com.hubspot.singularity.config.SingularityConfiguration;
 
 @Singleton
 public class SingularityTaskHealthcheckResultTranscoder extends SingularityCompressingTaskIdHolderTranscoder<SingularityTaskHealthcheckResult> {
 
-  private final ObjectMapper objectMapper;
+  private final ZkObjectMappers objectMappers;
 
   @Inject
-  public SingularityTaskHealthcheckResultTranscoder(SingularityConfiguration configuration, ObjectMapper objectMapper) {
-    super(configuration);
-    this.objectMapper = objectMapper;
+  public SingularityTaskHealthcheckResultTranscoder(ZkCompressor compressor, ZkObjectMappers objectMappers) {
+    super(compressor);
+    this.objectMappers = objectMappers;
   }
 
   @Override
   protected SingularityTaskHealthcheckResult actualTranscode(byte[] data) {
-    return SingularityTaskHealthcheckResult.fromBytes(data, objectMapper);
+    return SingularityTaskHealthcheckResult.fromBytes(data, objectMappers.forReading(data));
   }
 
   @Override
   protected byte[] actualToBytes(SingularityTaskHealthcheckResult object) {
-    return object.getAsBytes(objectMapper);
+    return object.getAsBytes(objectMappers.forWriting());
   }
 
 }
@@ -0,0 +1,47 @@
+package com.hubspot.singularity.data.transcoders;
+
+import java.io.IOException;
+import java.util.List;
+
+import javax.inject.Singleton;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.google.inject.Inject;
+import com.hubspot.singularity.SingularityJsonObject.SingularityJsonException;
+import com.hubspot.singularity.SingularityTaskHealthcheckResult;
+
+/**
+ * A task's recent healthcheck results, stored together in one node.
+ */
+@Singleton
+public class SingularityTaskHealthcheckResultsTranscoder extends CompressingTranscoder<List<SingularityTaskHealthcheckResult>> {
+
+  private static final TypeReference<List<SingularityTaskHealthcheckResult>> RESULTS_TYPE = new TypeReference<List<SingularityTaskHealthcheckResult>>() {};
+
+  private final ZkObjectMappers objectMappers;
+
+  @Inject
+  public SingularityTaskHealthcheckResultsTranscoder(ZkCompressor compressor, ZkObjectMappers objectMappers) {
+    super(compressor);
+    this.objectMappers = objectMappers;
+  }
+
+  @Override
+  protected List<SingularityTaskHealthcheckResult> actualTranscode(byte[] data) {
+    try {
+      return objectMappers.forReading(data).readValue(data, RESULTS_TYPE);
+    } catch (IOException e) {
+      throw new SingularityJsonException(e);
+    }
+  }
+
+  @Override
+  protected byte[] actualToBytes(List<SingularityTaskHealthcheckResult> object) {
+    try {
+      return objectMappers.forWriting().writeValueAsBytes(object);
+    } catch (IOException e) {
+      throw new SingularityJsonException(e);
+    }
+  }
+
+}
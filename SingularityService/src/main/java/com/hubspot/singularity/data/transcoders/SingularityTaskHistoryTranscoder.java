@@ -2,30 +2,28 @@ package com.hubspot.singularity.data.transcoders;
 
 import javax.inject.Singleton;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.inject.Inject;
 import com.hubspot.singularity.SingularityTaskHistory;
-import com.hubspot.singularity.config.SingularityConfiguration;
 
 @Singleton
 public class SingularityTaskHistoryTranscoder extends CompressingTranscoder<SingularityTaskHistory> {
 
-  private final ObjectMapper objectMapper;
+  private final ZkObjectMappers objectMappers;
 
   @Inject
-  public SingularityTaskHistoryTranscoder(SingularityConfiguration configuration, ObjectMapper objectMapper) {
-    super(configuration);
-    this.objectMapper = objectMapper;
+  public SingularityTaskHistoryTranscoder(ZkCompressor compressor, ZkObjectMappers objectMappers) {
+    super(compressor);
+    this.objectMappers = objectMappers;
   }
 
   @Override
   protected SingularityTaskHistory actualTranscode(byte[] data) {
-    return SingularityTaskHistory.fromBytes(data, objectMapper);
+    return SingularityTaskHistory.fromBytes(data, objectMappers.forReading(data));
   }
 
   @Override
   protected byte[] actualToBytes(SingularityTaskHistory object) {
-    return object.getAsBytes(objectMapper);
+    return object.getAsBytes(objectMappers.forWriting());
   }
 
 }
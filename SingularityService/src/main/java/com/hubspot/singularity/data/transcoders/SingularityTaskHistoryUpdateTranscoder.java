@@ -2,28 +2,27 @@ package com.hubspot.singularity.data.transcoders;
 
 import javax.inject.Singleton;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.inject.Inject;
 import com.hubspot.singularity.SingularityTaskHistoryUpdate;
 
 @Singleton
 public class SingularityTaskHistoryUpdateTranscoder extends SingularityTaskIdHolderTranscoder<SingularityTaskHistoryUpdate> {
 
-  private final ObjectMapper objectMapper;
+  private final ZkObjectMappers objectMappers;
 
   @Inject
-  public SingularityTaskHistoryUpdateTranscoder(ObjectMapper objectMapper) {
-    this.objectMapper = objectMapper;
+  public SingularityTaskHistoryUpdateTranscoder(ZkObjectMappers objectMappers) {
+    this.objectMappers = objectMappers;
   }
 
   @Override
   public SingularityTaskHistoryUpdate transcode(byte[] data) {
-    return SingularityTaskHistoryUpdate.fromBytes(data, objectMapper);
+    return SingularityTaskHistoryUpdate.fromBytes(data, objectMappers.forReading(data));
   }
 
   @Override
   public byte[] toBytes(SingularityTaskHistoryUpdate object) {
-    return object.getAsBytes(objectMapper);
+    return object.getAsBytes(objectMappers.forWriting());
   }
 
 }
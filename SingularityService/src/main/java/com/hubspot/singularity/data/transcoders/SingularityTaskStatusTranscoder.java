@@ -2,31 +2,29 @@ package com.hubspot.singularity.data.transcoders;
 
 import javax.inject.Singleton;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.inject.Inject;
 import com.hubspot.singularity.SingularityTaskStatusHolder;
-import com.hubspot.singularity.config.SingularityConfiguration;
 
 @Singleton
 public class SingularityTaskStatusTranscoder extends CompressingTranscoder<SingularityTaskStatusHolder> {
 
-  private final ObjectMapper objectMapper;
+  private final ZkObjectMappers objectMappers;
 
   @Inject
-  public SingularityTaskStatusTranscoder(SingularityConfiguration configuration, ObjectMapper objectMapper) {
-    super(configuration);
+  public SingularityTaskStatusTranscoder(ZkCompressor compressor, ZkObjectMappers objectMappers) {
+    super(compressor);
 
-    this.objectMapper = objectMapper;
+    this.objectMappers = objectMappers;
   }
 
   @Override
   protected SingularityTaskStatusHolder actualTranscode(byte[] data) {
-    return SingularityTaskStatusHolder.fromBytes(data, objectMapper);
+    return SingularityTaskStatusHolder.fromBytes(data, objectMappers.forReading(data));
   }
 
   @Override
   protected byte[] actualToBytes(SingularityTaskStatusHolder object) {
-    return object.getAsBytes(objectMapper);
+    return object.getAsBytes(objectMappers.forWriting());
   }
 
 }
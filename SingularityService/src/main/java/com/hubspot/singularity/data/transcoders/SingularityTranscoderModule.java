@@ -7,6 +7,9 @@ public class SingularityTranscoderModule extends AbstractModule {
 
   @Override
   public void configure() {
+    bind(ZkObjectMappers.class).in(Scopes.SINGLETON);
+    bind(ZkCompressor.class).in(Scopes.SINGLETON);
+
     bind(SingularityDeployHistoryTranscoder.class).in(Scopes.SINGLETON);
     bind(SingularityKilledTaskIdRecordTranscoder.class).in(Scopes.SINGLETON);
     bind(SingularityLoadBalancerUpdateTranscoder.class).in(Scopes.SINGLETON);
@@ -14,6 +17,7 @@ public class SingularityTranscoderModule extends AbstractModule {
     bind(SingularityStateTranscoder.class).in(Scopes.SINGLETON);
     bind(SingularityTaskCleanupTranscoder.class).in(Scopes.SINGLETON);
     bind(SingularityTaskHealthcheckResultTranscoder.class).in(Scopes.SINGLETON);
+    bind(SingularityTaskHealthcheckResultsTranscoder.class).in(Scopes.SINGLETON);
     bind(SingularityTaskHistoryTranscoder.class).in(Scopes.SINGLETON);
     bind(SingularityTaskHistoryUpdateTranscoder.class).in(Scopes.SINGLETON);
     bind(SingularityTaskStatusTranscoder.class).in(Scopes.SINGLETON);
@@ -24,6 +28,7 @@ public class SingularityTranscoderModule extends AbstractModule {
     bind(SingularityDeployTranscoder.class).in(Scopes.SINGLETON);
     bind(SingularityPendingDeployTranscoder.class).in(Scopes.SINGLETON);
     bind(SingularityPendingRequestTranscoder.class).in(Scopes.SINGLETON);
+    bind(SingularityHostStateTranscoder.class).in(Scopes.SINGLETON);
     bind(SingularityRackTranscoder.class).in(Scopes.SINGLETON);
     bind(SingularityRequestCleanupTranscoder.class).in(Scopes.SINGLETON);
     bind(SingularityRequestDeployStateTranscoder.class).in(Scopes.SINGLETON);
@@ -0,0 +1,184 @@
+package com.hubspot.singularity.data.transcoders;
+
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Singleton;
+
+import org.iq80.snappy.CorruptionException;
+import org.iq80.snappy.Snappy;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.google.common.collect.Maps;
+import com.google.inject.Inject;
+import com.hubspot.singularity.config.SingularityConfiguration;
+import com.hubspot.singularity.config.ZkDataFormat;
+
+/**
+ * Frames compressed ZK objects as [magic][codec id][uncompressed length][body], so that every object says how it was written
+ * and the codec can be chosen per object - small objects are stored as is, larger ones with Snappy unless that doesn't save
+ * anything.
+ *
+ * Unframed payloads are still read: they are either plain data (written with compressLargeDataObjects off) or bare Snappy
+ * (written before framing existed).
+ */
+@Singleton
+public class ZkCompressor {
+
+  static final byte MAGIC = (byte) 0xC5;
+  static final int HEADER_LENGTH = 6;
+
+  public enum Codec {
+    NONE((byte) 0), SNAPPY((byte) 1);
+
+    private final byte id;
+
+    private Codec(byte id) {
+      this.id = id;
+    }
+
+    public byte getId() {
+      return id;
+    }
+
+    private static Codec fromId(byte id) {
+      for (Codec codec : values()) {
+        if (codec.id == id) {
+          return codec;
+        }
+      }
+      return null;
+    }
+  }
+
+  private final SingularityConfiguration configuration;
+
+  private final Counter uncompressedBytes;
+  private final Counter bytesSaved;
+  private final Map<Codec, Timer> compressTimers;
+  private final Map<Codec, Timer> uncompressTimers;
+
+  @Inject
+  public ZkCompressor(SingularityConfiguration configuration, MetricRegistry registry) {
+    this.configuration = configuration;
+
+    this.uncompressedBytes = registry.counter(MetricRegistry.name(ZkCompressor.class, "uncompressedBytes"));
+    this.bytesSaved = registry.counter(MetricRegistry.name(ZkCompressor.class, "bytesSaved"));
+    this.compressTimers = Maps.newEnumMap(Codec.class);
+    this.uncompressTimers = Maps.newEnumMap(Codec.class);
+
+    for (Codec codec : Codec.values()) {
+      compressTimers.put(codec, registry.timer(MetricRegistry.name(ZkCompressor.class, codec.name().toLowerCase(), "compress")));
+      uncompressTimers.put(codec, registry.timer(MetricRegistry.name(ZkCompressor.class, codec.name().toLowerCase(), "uncompress")));
+    }
+  }
+
+  public byte[] compress(byte[] bytes) {
+    if (!configuration.isCompressLargeDataObjects()) {
+      return bytes;
+    }
+
+    uncompressedBytes.inc(bytes.length);
+
+    if (bytes.length <= configuration.getCompressDataObjectsLargerThanBytes()) {
+      return frame(Codec.NONE, bytes.length, bytes);
+    }
+
+    final long start = System.nanoTime();
+
+    final byte[] compressed = Snappy.compress(bytes);
+
+    compressTimers.get(Codec.SNAPPY).update(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+
+    if (compressed.length >= bytes.length) {
+      return frame(Codec.NONE, bytes.length, bytes);
+    }
+
+    bytesSaved.inc(bytes.length - compressed.length);
+
+    return frame(Codec.SNAPPY, bytes.length, compressed);
+  }
+
+  private byte[] frame(Codec codec, int uncompressedLength, byte[] body) {
+    return ByteBuffer.allocate(HEADER_LENGTH + body.length)
+        .put(MAGIC)
+        .put(codec.getId())
+        .putInt(uncompressedLength)
+        .put(body)
+        .array();
+  }
+
+  public byte[] uncompress(byte[] bytes) {
+    final Codec codec = getFramedCodec(bytes);
+
+    if (codec != null) {
+      final long start = System.nanoTime();
+
+      try {
+        switch (codec) {
+          case SNAPPY:
+            return Snappy.uncompress(bytes, HEADER_LENGTH, bytes.length - HEADER_LENGTH);
+          case NONE:
+          default:
+            final byte[] body = new byte[bytes.length - HEADER_LENGTH];
+            System.arraycopy(bytes, HEADER_LENGTH, body, 0, body.length);
+            return body;
+        }
+      } finally {
+        uncompressTimers.get(codec).update(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+      }
+    }
+
+    return uncompressUnframed(bytes);
+  }
+
+  /**
+   * A payload is framed if it carries the magic byte, a known codec and an uncompressed length which matches its body. The
+   * length check keeps an unframed Snappy payload which happens to start with the magic byte from being misread.
+   */
+  private Codec getFramedCodec(byte[] bytes) {
+    if (bytes.length < HEADER_LENGTH || bytes[0] != MAGIC) {
+      return null;
+    }
+
+    final Codec codec = Codec.fromId(bytes[1]);
+
+    if (codec == null) {
+      return null;
+    }
+
+    final int uncompressedLength = ByteBuffer.wrap(bytes, 2, 4).getInt();
+
+    switch (codec) {
+      case SNAPPY:
+        try {
+          return Snappy.getUncompressedLength(bytes, HEADER_LENGTH) == uncompressedLength ? codec : null;
+        } catch (CorruptionException ce) {
+          return null;
+        }
+      case NONE:
+      default:
+        return bytes.length - HEADER_LENGTH == uncompressedLength ? codec : null;
+    }
+  }
+
+  private byte[] uncompressUnframed(byte[] bytes) {
+    if (!configuration.isCompressLargeDataObjects() && looksUncompressed(bytes)) {
+      return bytes;
+    }
+
+    try {
+      return Snappy.uncompress(bytes, 0, bytes.length);
+    } catch (CorruptionException ce) {
+      return bytes;
+    }
+  }
+
+  private boolean looksUncompressed(byte[] bytes) {
+    return bytes.length > 0 && (bytes[0] == '{' || ZkObjectMappers.getFormat(bytes) == ZkDataFormat.SMILE);
+  }
+
+}
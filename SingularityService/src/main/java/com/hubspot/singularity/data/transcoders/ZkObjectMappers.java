@@ -0,0 +1,87 @@
+package com.hubspot.singularity.data.transcoders;
+
+import javax.inject.Singleton;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.deser.DefaultDeserializationContext;
+import com.fasterxml.jackson.databind.ser.DefaultSerializerProvider;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.google.inject.Inject;
+import com.hubspot.singularity.config.SingularityConfiguration;
+import com.hubspot.singularity.config.ZkDataFormat;
+
+/**
+ * Picks the object mapper used to read and write ZK objects. Writes use the configured format, reads look at the payload
+ * itself, so nodes written in either format stay readable while a cluster switches between them.
+ */
+@Singleton
+public class ZkObjectMappers {
+
+  private static final byte[] SMILE_HEADER = { ':', ')', '\n' };
+
+  private final ObjectMapper jsonObjectMapper;
+  private final ObjectMapper smileObjectMapper;
+  private final ZkDataFormat writeFormat;
+
+  @Inject
+  public ZkObjectMappers(ObjectMapper jsonObjectMapper, SingularityConfiguration configuration) {
+    this.jsonObjectMapper = jsonObjectMapper;
+    this.smileObjectMapper = new SmileObjectMapper(jsonObjectMapper);
+    this.writeFormat = configuration.getZookeeperDataFormat();
+  }
+
+  /**
+   * Writes smile with exactly the configuration (modules, features, inclusion, mix-ins) of the injected JSON mapper, so the two
+   * formats can't drift apart. The configs are immutable, so sharing them with the JSON mapper is safe.
+   */
+  private static class SmileObjectMapper extends ObjectMapper {
+
+    private static final long serialVersionUID = 1L;
+
+    private SmileObjectMapper(ObjectMapper jsonObjectMapper) {
+      super(new SmileFactory());
+
+      _typeFactory = jsonObjectMapper.getTypeFactory();
+      _subtypeResolver = jsonObjectMapper.getSubtypeResolver();
+      _serializationConfig = jsonObjectMapper.getSerializationConfig();
+      _deserializationConfig = jsonObjectMapper.getDeserializationConfig();
+      _serializerFactory = jsonObjectMapper.getSerializerFactory();
+      _serializerProvider = (DefaultSerializerProvider) jsonObjectMapper.getSerializerProvider();
+      _deserializationContext = (DefaultDeserializationContext) jsonObjectMapper.getDeserializationContext();
+    }
+
+  }
+
+  public ObjectMapper forWriting() {
+    return getObjectMapper(writeFormat);
+  }
+
+  public ObjectMapper forReading(byte[] data) {
+    return getObjectMapper(getFormat(data));
+  }
+
+  public ObjectMapper getObjectMapper(ZkDataFormat format) {
+    switch (format) {
+      case SMILE:
+        return smileObjectMapper;
+      case JSON:
+      default:
+        return jsonObjectMapper;
+    }
+  }
+
+  public static ZkDataFormat getFormat(byte[] data) {
+    if (data == null || data.length < SMILE_HEADER.length) {
+      return ZkDataFormat.JSON;
+    }
+
+    for (int i = 0; i < SMILE_HEADER.length; i++) {
+      if (data[i] != SMILE_HEADER[i]) {
+        return ZkDataFormat.JSON;
+      }
+    }
+
+    return ZkDataFormat.SMILE;
+  }
+
+}
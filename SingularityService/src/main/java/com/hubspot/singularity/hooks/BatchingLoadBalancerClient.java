@@ -0,0 +1,418 @@
+package com.hubspot.singularity.hooks;
+
+import io.dropwizard.lifecycle.Managed;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Singleton;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.base.Objects;
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.inject.Inject;
+import com.hubspot.baragon.models.BaragonRequestState;
+import com.hubspot.singularity.LoadBalancerRequestType;
+import com.hubspot.singularity.LoadBalancerRequestType.LoadBalancerRequestId;
+import com.hubspot.singularity.SingularityDeploy;
+import com.hubspot.singularity.SingularityLoadBalancerUpdate;
+import com.hubspot.singularity.SingularityLoadBalancerUpdate.LoadBalancerMethod;
+import com.hubspot.singularity.SingularityRequest;
+import com.hubspot.singularity.SingularityTask;
+import com.hubspot.singularity.config.SingularityConfiguration;
+
+/**
+ * Coalesces task adds, and separately task removes, for the same request and deploy which arrive within
+ * loadBalancerBatchWindowMillis of each other into a single LB request, rather than one request per task. enqueue doesn't wait
+ * for the window: it returns WAITING straight away and the batch is sent from a background thread, so callers check on it
+ * with getState as they would on any other LB request which is still in progress.
+ *
+ * Every task keeps its own LB request id. Its state is that of the batch it was sent in, except that when a batch fails each
+ * of its tasks is sent again on its own, under its own id, so one bad task can't fail the others. A task can be canceled
+ * until its batch is sent, and after that only if it was sent on its own. Tasks are forgotten once their request has
+ * finished. Deploy requests already carry all of a deploy's tasks and are passed straight through, as are ids this client
+ * doesn't know about, e.g. ones enqueued before a leader change.
+ */
+@Singleton
+public class BatchingLoadBalancerClient implements LoadBalancerClient, Managed {
+
+  private static final Logger LOG = LoggerFactory.getLogger(BatchingLoadBalancerClient.class);
+
+  private static class BatchKey {
+
+    private final String requestId;
+    private final String deployId;
+    private final LoadBalancerRequestType requestType;
+
+    private BatchKey(String requestId, String deployId, LoadBalancerRequestType requestType) {
+      this.requestId = requestId;
+      this.deployId = deployId;
+      this.requestType = requestType;
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hashCode(requestId, deployId, requestType);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj) {
+        return true;
+      }
+      if (obj == null || getClass() != obj.getClass()) {
+        return false;
+      }
+      BatchKey other = (BatchKey) obj;
+      return Objects.equal(requestId, other.requestId) && Objects.equal(deployId, other.deployId) && requestType == other.requestType;
+    }
+
+  }
+
+  private static class Member {
+
+    private final LoadBalancerRequestId loadBalancerRequestId;
+    private final List<SingularityTask> add;
+    private final List<SingularityTask> remove;
+    private Batch batch;
+
+    private Member(LoadBalancerRequestId loadBalancerRequestId, List<SingularityTask> add, List<SingularityTask> remove) {
+      this.loadBalancerRequestId = loadBalancerRequestId;
+      this.add = add;
+      this.remove = remove;
+    }
+
+  }
+
+  private static class Batch {
+
+    private final BatchKey key;
+    private final SingularityRequest request;
+    private final SingularityDeploy deploy;
+    private final List<Member> members = Lists.newArrayList();
+    private boolean sent;
+    private LoadBalancerRequestId loadBalancerRequestId;
+    private Optional<SingularityLoadBalancerUpdate> enqueueUpdate = Optional.absent();
+
+    private Batch(BatchKey key, SingularityRequest request, SingularityDeploy deploy) {
+      this.key = key;
+      this.request = request;
+      this.deploy = deploy;
+    }
+
+    private boolean isSentAlone(Member member) {
+      return sent && loadBalancerRequestId.toString().equals(member.loadBalancerRequestId.toString());
+    }
+
+  }
+
+  private final LoadBalancerClientImpl delegate;
+  private final long batchWindowMillis;
+  private final int maxBatchSize;
+  private final ScheduledExecutorService executorService;
+
+  private final Map<BatchKey, Batch> pending;
+  private final Map<String, Member> members;
+
+  private final Meter batchMeter;
+  private final Meter splitMeter;
+  private final Histogram batchSizeHistogram;
+
+  @Inject
+  public BatchingLoadBalancerClient(SingularityConfiguration configuration, LoadBalancerClientImpl delegate, MetricRegistry registry) {
+    this.delegate = delegate;
+    this.batchWindowMillis = configuration.getLoadBalancerBatchWindowMillis();
+    this.maxBatchSize = Math.max(1, configuration.getMaxLoadBalancerBatchSize());
+    this.executorService = Executors.newScheduledThreadPool(Math.max(1, configuration.getLoadBalancerBatchThreads()), new ThreadFactoryBuilder().setNameFormat("SingularityLBBatch-%d").build());
+
+    this.pending = Maps.newHashMap();
+    this.members = Maps.newHashMap();
+
+    this.batchMeter = registry.meter(MetricRegistry.name(BatchingLoadBalancerClient.class, "batches"));
+    this.splitMeter = registry.meter(MetricRegistry.name(BatchingLoadBalancerClient.class, "splits"));
+    this.batchSizeHistogram = registry.histogram(MetricRegistry.name(BatchingLoadBalancerClient.class, "batchSize"));
+  }
+
+  @Override
+  public void start() {
+  }
+
+  @Override
+  public void stop() {
+    // batches which are waiting out their window are still sent
+    MoreExecutors.shutdownAndAwaitTermination(executorService, 1, TimeUnit.SECONDS);
+  }
+
+  @Override
+  public SingularityLoadBalancerUpdate enqueue(LoadBalancerRequestId loadBalancerRequestId, SingularityRequest request, SingularityDeploy deploy, List<SingularityTask> add, List<SingularityTask> remove) {
+    if (batchWindowMillis <= 0 || loadBalancerRequestId.getRequestType() == LoadBalancerRequestType.DEPLOY) {
+      return delegate.enqueue(loadBalancerRequestId, request, deploy, add, remove);
+    }
+
+    final BatchKey key = new BatchKey(request.getId(), deploy.getId(), loadBalancerRequestId.getRequestType());
+    final Member member = new Member(loadBalancerRequestId, ImmutableList.copyOf(add), ImmutableList.copyOf(remove));
+    final Batch batch;
+    final boolean isNew;
+    final boolean isFull;
+
+    synchronized (this) {
+      final Member existing = members.put(loadBalancerRequestId.toString(), member);
+
+      // enqueued again, e.g. after an UNKNOWN state
+      if (existing != null && !existing.batch.sent) {
+        existing.batch.members.remove(existing);
+      }
+
+      Batch existingBatch = pending.get(key);
+
+      isNew = existingBatch == null;
+
+      if (isNew) {
+        existingBatch = new Batch(key, request, deploy);
+        pending.put(key, existingBatch);
+      }
+
+      batch = existingBatch;
+      batch.members.add(member);
+      member.batch = batch;
+
+      isFull = batch.members.size() >= maxBatchSize;
+
+      if (isFull) {
+        pending.remove(key);
+      }
+    }
+
+    if (isFull) {
+      scheduleSend(batch, 0);
+    } else if (isNew) {
+      scheduleSend(batch, batchWindowMillis);
+    }
+
+    LOG.trace("LB request {} is waiting to be sent in a batch", loadBalancerRequestId);
+
+    return update(BaragonRequestState.WAITING, loadBalancerRequestId, Optional.of("Waiting to be sent in a batch"), LoadBalancerMethod.ENQUEUE);
+  }
+
+  private SingularityLoadBalancerUpdate update(BaragonRequestState state, LoadBalancerRequestId loadBalancerRequestId, Optional<String> message, LoadBalancerMethod method) {
+    return new SingularityLoadBalancerUpdate(state, loadBalancerRequestId, message, System.currentTimeMillis(), method, Optional.<String> absent());
+  }
+
+  private SingularityLoadBalancerUpdate forMember(SingularityLoadBalancerUpdate update, LoadBalancerRequestId loadBalancerRequestId) {
+    return new SingularityLoadBalancerUpdate(update.getLoadBalancerState(), loadBalancerRequestId, update.getMessage(), update.getTimestamp(), update.getMethod(), update.getUri());
+  }
+
+  private void scheduleSend(final Batch batch, long delayMillis) {
+    try {
+      executorService.schedule(new Runnable() {
+
+        @Override
+        public void run() {
+          try {
+            send(batch);
+          } catch (Throwable t) {
+            LOG.error("Uncaught throwable while sending LB batch for {}", batch.request.getId(), t);
+          }
+        }
+
+      }, delayMillis, TimeUnit.MILLISECONDS);
+    } catch (RejectedExecutionException ree) {
+      LOG.warn("Not sending LB batch for {}, client is stopped", batch.request.getId());
+    }
+  }
+
+  private void send(Batch batch) {
+    final List<Member> sending;
+
+    synchronized (this) {
+      if (batch.sent) {
+        return;
+      }
+
+      if (pending.get(batch.key) == batch) {
+        pending.remove(batch.key);
+      }
+
+      if (batch.members.isEmpty()) {
+        return;
+      }
+
+      sending = ImmutableList.copyOf(batch.members);
+
+      final LoadBalancerRequestId first = sending.get(0).loadBalancerRequestId;
+
+      batch.sent = true;
+      batch.loadBalancerRequestId = sending.size() == 1 ? first : new LoadBalancerRequestId(first.getId() + "-batch", first.getRequestType(), Optional.of(first.getAttemptNumber()));
+    }
+
+    final List<SingularityTask> add = Lists.newArrayList();
+    final List<SingularityTask> remove = Lists.newArrayList();
+
+    for (Member member : sending) {
+      add.addAll(member.add);
+      remove.addAll(member.remove);
+    }
+
+    LOG.debug("Sending LB batch {} for {} tasks ({} add, {} remove)", batch.loadBalancerRequestId, sending.size(), add.size(), remove.size());
+
+    final SingularityLoadBalancerUpdate update = enqueueWithDelegate(batch.loadBalancerRequestId, batch.request, batch.deploy, add, remove);
+
+    synchronized (this) {
+      batch.enqueueUpdate = Optional.of(update);
+    }
+
+    batchMeter.mark();
+    batchSizeHistogram.update(sending.size());
+  }
+
+  private SingularityLoadBalancerUpdate enqueueWithDelegate(LoadBalancerRequestId loadBalancerRequestId, SingularityRequest request, SingularityDeploy deploy, List<SingularityTask> add, List<SingularityTask> remove) {
+    try {
+      return delegate.enqueue(loadBalancerRequestId, request, deploy, add, remove);
+    } catch (Throwable t) {
+      LOG.error("LB request {} threw error", loadBalancerRequestId, t);
+      return update(BaragonRequestState.UNKNOWN, loadBalancerRequestId, Optional.of(String.format("Exception %s - %s", t.getClass().getSimpleName(), t.getMessage())), LoadBalancerMethod.ENQUEUE);
+    }
+  }
+
+  @Override
+  public SingularityLoadBalancerUpdate getState(LoadBalancerRequestId loadBalancerRequestId) {
+    final Member member;
+    final Batch batch;
+    final Optional<SingularityLoadBalancerUpdate> enqueueUpdate;
+
+    synchronized (this) {
+      member = members.get(loadBalancerRequestId.toString());
+
+      if (member == null) {
+        batch = null;
+        enqueueUpdate = Optional.absent();
+      } else {
+        batch = member.batch;
+        enqueueUpdate = batch.enqueueUpdate;
+      }
+    }
+
+    if (member == null) {
+      return delegate.getState(loadBalancerRequestId);
+    }
+
+    if (!enqueueUpdate.isPresent()) {
+      return update(BaragonRequestState.WAITING, loadBalancerRequestId, Optional.of("Waiting to be sent in a batch"), LoadBalancerMethod.CHECK_STATE);
+    }
+
+    final SingularityLoadBalancerUpdate batchUpdate;
+
+    switch (enqueueUpdate.get().getLoadBalancerState()) {
+      case FAILED:
+      case UNKNOWN:
+        batchUpdate = enqueueUpdate.get();
+        break;
+      default:
+        batchUpdate = delegate.getState(batch.loadBalancerRequestId);
+    }
+
+    if (batchUpdate.getLoadBalancerState() == BaragonRequestState.FAILED && !batch.isSentAlone(member)) {
+      return split(member, batch);
+    }
+
+    final SingularityLoadBalancerUpdate update = forMember(batchUpdate, loadBalancerRequestId);
+
+    switch (update.getLoadBalancerState()) {
+      case SUCCESS:
+      case FAILED:
+      case CANCELED:
+        forget(member);
+        break;
+      case UNKNOWN:
+        // the caller enqueues it again
+        if (batchUpdate == enqueueUpdate.get()) {
+          forget(member);
+        }
+        break;
+      default:
+    }
+
+    return update;
+  }
+
+  /**
+   * Sends a task from a failed batch again on its own, under its own id.
+   */
+  private SingularityLoadBalancerUpdate split(Member member, Batch failed) {
+    final Batch own = new Batch(failed.key, failed.request, failed.deploy);
+
+    synchronized (this) {
+      // another caller is already splitting it out
+      if (member.batch != failed) {
+        return update(BaragonRequestState.WAITING, member.loadBalancerRequestId, Optional.of("Waiting to be sent again on its own"), LoadBalancerMethod.CHECK_STATE);
+      }
+
+      own.members.add(member);
+      own.sent = true;
+      own.loadBalancerRequestId = member.loadBalancerRequestId;
+      member.batch = own;
+    }
+
+    LOG.debug("LB batch {} failed, sending {} on its own", failed.loadBalancerRequestId, member.loadBalancerRequestId);
+
+    splitMeter.mark();
+
+    final SingularityLoadBalancerUpdate update = enqueueWithDelegate(member.loadBalancerRequestId, own.request, own.deploy, member.add, member.remove);
+
+    synchronized (this) {
+      own.enqueueUpdate = Optional.of(update);
+    }
+
+    return update;
+  }
+
+  private synchronized void forget(Member member) {
+    if (members.get(member.loadBalancerRequestId.toString()) == member) {
+      members.remove(member.loadBalancerRequestId.toString());
+    }
+  }
+
+  @Override
+  public SingularityLoadBalancerUpdate cancel(LoadBalancerRequestId loadBalancerRequestId) {
+    final Member member;
+    final Optional<LoadBalancerRequestId> sentWith;
+
+    synchronized (this) {
+      member = members.get(loadBalancerRequestId.toString());
+
+      if (member != null && !member.batch.sent) {
+        member.batch.members.remove(member);
+        members.remove(loadBalancerRequestId.toString());
+
+        return update(BaragonRequestState.CANCELED, loadBalancerRequestId, Optional.of("Canceled before being sent"), LoadBalancerMethod.CANCEL);
+      }
+
+      sentWith = member != null && !member.batch.isSentAlone(member) ? Optional.of(member.batch.loadBalancerRequestId) : Optional.<LoadBalancerRequestId> absent();
+    }
+
+    if (!sentWith.isPresent()) {
+      return delegate.cancel(loadBalancerRequestId);
+    }
+
+    // canceling the batch would cancel other tasks' requests too
+    final SingularityLoadBalancerUpdate state = getState(loadBalancerRequestId);
+
+    return new SingularityLoadBalancerUpdate(state.getLoadBalancerState(), loadBalancerRequestId, Optional.of(String.format("Sent in batch %s with other tasks, can't be canceled on its own", sentWith.get())),
+        state.getTimestamp(), LoadBalancerMethod.CANCEL, state.getUri());
+  }
+
+}
@@ -0,0 +1,171 @@
+package com.hubspot.singularity.hooks;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Singleton;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.base.Optional;
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.ExecutionError;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import com.google.inject.Inject;
+import com.hubspot.singularity.SingularityTask;
+import com.hubspot.singularity.SingularityTaskHistoryUpdate;
+import com.hubspot.singularity.SingularityTaskId;
+import com.hubspot.singularity.SingularityTaskWebhook;
+import com.hubspot.singularity.config.SingularityConfiguration;
+import com.hubspot.singularity.data.history.TaskHistoryHelper;
+
+/**
+ * Every TASK webhook is sent the same payload for a task update, so the task is resolved and the payload serialized once and
+ * shared across webhooks for a short while, rather than once per webhook. Concurrent lookups of the same update or task wait
+ * for a single load. Tasks which can't be found aren't cached.
+ */
+@Singleton
+public class SingularityTaskWebhookPayloadCache {
+
+  private final TaskHistoryHelper taskHistoryHelper;
+  private final ObjectMapper objectMapper;
+
+  private final Cache<SingularityTaskId, SingularityTask> tasks;
+  private final Cache<String, byte[]> payloads;
+
+  private final Meter taskHits;
+  private final Meter taskMisses;
+  private final Meter payloadHits;
+  private final Meter payloadMisses;
+
+  @Inject
+  public SingularityTaskWebhookPayloadCache(SingularityConfiguration configuration, TaskHistoryHelper taskHistoryHelper, ObjectMapper objectMapper, MetricRegistry registry) {
+    this.taskHistoryHelper = taskHistoryHelper;
+    this.objectMapper = objectMapper;
+
+    this.tasks = CacheBuilder.newBuilder()
+        .maximumSize(configuration.getWebhookTaskPayloadCacheSize())
+        .expireAfterWrite(configuration.getWebhookTaskPayloadCacheExpireMillis(), TimeUnit.MILLISECONDS)
+        .build();
+
+    this.payloads = CacheBuilder.newBuilder()
+        .maximumSize(configuration.getWebhookTaskPayloadCacheSize())
+        .expireAfterWrite(configuration.getWebhookTaskPayloadCacheExpireMillis(), TimeUnit.MILLISECONDS)
+        .build();
+
+    this.taskHits = registry.meter(MetricRegistry.name(SingularityTaskWebhookPayloadCache.class, "tasks", "hits"));
+    this.taskMisses = registry.meter(MetricRegistry.name(SingularityTaskWebhookPayloadCache.class, "tasks", "misses"));
+    this.payloadHits = registry.meter(MetricRegistry.name(SingularityTaskWebhookPayloadCache.class, "payloads", "hits"));
+    this.payloadMisses = registry.meter(MetricRegistry.name(SingularityTaskWebhookPayloadCache.class, "payloads", "misses"));
+  }
+
+  /**
+   * Thrown by a loader when there is nothing to cache, so that concurrent lookups of the same key share the answer.
+   */
+  private static class NotFoundException extends Exception {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final NotFoundException INSTANCE = new NotFoundException();
+
+    private NotFoundException() {
+      super("Not found", null, false, false);
+    }
+
+  }
+
+  private abstract static class Loader<V> implements Callable<V> {
+
+    private final Meter misses;
+    private boolean loaded;
+
+    private Loader(Meter misses) {
+      this.misses = misses;
+    }
+
+    @Override
+    public V call() throws Exception {
+      loaded = true;
+      misses.mark();
+
+      final Optional<V> value = load();
+
+      if (!value.isPresent()) {
+        throw NotFoundException.INSTANCE;
+      }
+
+      return value.get();
+    }
+
+    protected abstract Optional<V> load();
+
+  }
+
+  /**
+   * Only one thread loads a missing key, others asking for it meanwhile wait for its result.
+   */
+  private <K, V> Optional<V> get(Cache<K, V> cache, K key, Loader<V> loader, Meter hits) {
+    try {
+      final V value = cache.get(key, loader);
+
+      if (!loader.loaded) {
+        hits.mark();
+      }
+
+      return Optional.of(value);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof NotFoundException) {
+        return Optional.absent();
+      }
+
+      throw Throwables.propagate(e.getCause());
+    } catch (UncheckedExecutionException | ExecutionError e) {
+      throw Throwables.propagate(e.getCause());
+    }
+  }
+
+  /**
+   * @return the serialized SingularityTaskWebhook for taskUpdate, or absent if its task can't be found
+   */
+  public Optional<byte[]> getPayload(final SingularityTaskHistoryUpdate taskUpdate) {
+    return get(payloads, getKey(taskUpdate), new Loader<byte[]>(payloadMisses) {
+
+      @Override
+      protected Optional<byte[]> load() {
+        final Optional<SingularityTask> task = getTask(taskUpdate.getTaskId());
+
+        if (!task.isPresent()) {
+          return Optional.absent();
+        }
+
+        try {
+          return Optional.of(objectMapper.writeValueAsBytes(new SingularityTaskWebhook(task.get(), taskUpdate)));
+        } catch (JsonProcessingException e) {
+          throw Throwables.propagate(e);
+        }
+      }
+
+    }, payloadHits);
+  }
+
+  public Optional<SingularityTask> getTask(final SingularityTaskId taskId) {
+    return get(tasks, taskId, new Loader<SingularityTask>(taskMisses) {
+
+      @Override
+      protected Optional<SingularityTask> load() {
+        return taskHistoryHelper.getTask(taskId);
+      }
+
+    }, taskHits);
+  }
+
+  private String getKey(SingularityTaskHistoryUpdate taskUpdate) {
+    return String.format("%s-%s-%s", taskUpdate.getTaskId().getId(), taskUpdate.getTimestamp(), taskUpdate.getTaskState().name());
+  }
+
+}
@@ -0,0 +1,644 @@
+package com.hubspot.singularity.hooks;
+
+import io.dropwizard.lifecycle.Managed;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Singleton;
+import javax.ws.rs.core.HttpHeaders;
+
+import org.apache.curator.framework.recipes.leader.LeaderLatchListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.base.Optional;
+import com.google.common.base.Throwables;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.inject.Inject;
+import com.hubspot.mesos.JavaUtils;
+import com.hubspot.singularity.SingularityDeployWebhook;
+import com.hubspot.singularity.SingularityRequestHistory;
+import com.hubspot.singularity.SingularityTaskHistoryUpdate;
+import com.hubspot.singularity.SingularityWebhook;
+import com.hubspot.singularity.config.SingularityConfiguration;
+import com.hubspot.singularity.data.WebhookManager;
+import com.ning.http.client.AsyncCompletionHandler;
+import com.ning.http.client.AsyncHttpClient;
+import com.ning.http.client.AsyncHttpClient.BoundRequestBuilder;
+import com.ning.http.client.Response;
+
+/**
+ * Delivers webhook updates as soon as they are queued rather than on the next poll. Each webhook has a bounded in memory
+ * queue in front of its ZK queue, which stays the durable copy until an update is delivered: updates which don't fit are
+ * picked up by the next SingularityWebhookSender sweep. At most maxConcurrentRequestsPerWebhook posts are in flight to a
+ * webhook, webhooks which opt in get up to maxWebhookBatchSize updates per post as a JSON array, and a failed post is
+ * retried with exponential backoff until its updates have been attempted maxWebhookAttempts times.
+ *
+ * Payloads are built on a separate pool so that slow task lookups don't hold up other webhooks. An update whose payload
+ * can't be built is retried on its own, with the same backoff, and the rest of its batch is still posted.
+ *
+ * Only the leader delivers updates: the dispatcher subscribes to the ZK queues when it becomes leader, and refuses updates
+ * and forgets its queues when it loses leadership.
+ */
+@Singleton
+public class SingularityWebhookDispatcher implements Managed, LeaderLatchListener, WebhookManager.QueueListener {
+
+  private static final Logger LOG = LoggerFactory.getLogger(SingularityWebhookDispatcher.class);
+
+  private abstract static class Delivery {
+
+    private final String id;
+    private final long queuedAt;
+    private int attempts;
+
+    private Delivery(String id) {
+      this.id = id;
+      this.queuedAt = System.currentTimeMillis();
+    }
+
+    /**
+     * @return absent if the update can no longer be delivered
+     */
+    protected abstract Optional<byte[]> getPayload();
+
+    protected abstract void deleteUpdate();
+
+  }
+
+  private static class WebhookQueue {
+
+    private final Deque<Delivery> queued = new ArrayDeque<>();
+    private final Set<String> ids = Sets.newHashSet();
+
+    // delivered or dropped since the last sweep started, which may have read them from ZK before they were deleted
+    private final Set<String> finishedIds = Sets.newHashSet();
+
+    private SingularityWebhook webhook;
+    private int inFlight;
+    private int consecutiveFailures;
+    private long retryAt;
+
+  }
+
+  private final SingularityConfiguration configuration;
+  private final AsyncHttpClient http;
+  private final ObjectMapper objectMapper;
+  private final WebhookManager webhookManager;
+  private final SingularityTaskWebhookPayloadCache taskPayloadCache;
+  private final ScheduledExecutorService executorService;
+  private final ExecutorService payloadExecutorService;
+
+  private final Map<String, WebhookQueue> queues;
+  private int numQueued;
+  private boolean leader;
+
+  private final Timer deliveryTimer;
+  private final Meter failedMeter;
+  private final Meter droppedMeter;
+  private final Meter rejectedMeter;
+
+  @Inject
+  public SingularityWebhookDispatcher(SingularityConfiguration configuration, AsyncHttpClient http, ObjectMapper objectMapper, WebhookManager webhookManager, SingularityTaskWebhookPayloadCache taskPayloadCache,
+      MetricRegistry registry) {
+    this.configuration = configuration;
+    this.http = http;
+    this.objectMapper = objectMapper;
+    this.webhookManager = webhookManager;
+    this.taskPayloadCache = taskPayloadCache;
+
+    this.executorService = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder().setNameFormat("SingularityWebhookDispatcher-%d").build());
+    this.payloadExecutorService = Executors.newFixedThreadPool(configuration.getWebhookPayloadThreads(), new ThreadFactoryBuilder().setNameFormat("SingularityWebhookDispatcher-payload-%d").build());
+
+    this.queues = Maps.newHashMap();
+
+    this.deliveryTimer = registry.timer(MetricRegistry.name(SingularityWebhookDispatcher.class, "delivery"));
+    this.failedMeter = registry.meter(MetricRegistry.name(SingularityWebhookDispatcher.class, "failed"));
+    this.droppedMeter = registry.meter(MetricRegistry.name(SingularityWebhookDispatcher.class, "dropped"));
+    this.rejectedMeter = registry.meter(MetricRegistry.name(SingularityWebhookDispatcher.class, "rejected"));
+
+    registry.register(MetricRegistry.name(SingularityWebhookDispatcher.class, "queued"), new Gauge<Integer>() {
+
+      @Override
+      public Integer getValue() {
+        return getNumQueued();
+      }
+
+    });
+  }
+
+  @Override
+  public void start() {}
+
+  @Override
+  public void stop() {
+    notLeader();
+
+    MoreExecutors.shutdownAndAwaitTermination(payloadExecutorService, 1, TimeUnit.SECONDS);
+    MoreExecutors.shutdownAndAwaitTermination(executorService, 1, TimeUnit.SECONDS);
+  }
+
+  @Override
+  public void isLeader() {
+    synchronized (this) {
+      leader = true;
+    }
+
+    webhookManager.addListener(this);
+  }
+
+  @Override
+  public void notLeader() {
+    webhookManager.removeListener(this);
+
+    synchronized (this) {
+      leader = false;
+
+      queues.clear();
+      numQueued = 0;
+    }
+  }
+
+  public synchronized int getNumQueued() {
+    return numQueued;
+  }
+
+  @Override
+  public void requestUpdateQueued(SingularityWebhook webhook, SingularityRequestHistory requestUpdate) {
+    enqueueRequestUpdate(webhook, requestUpdate);
+  }
+
+  @Override
+  public void taskUpdateQueued(SingularityWebhook webhook, SingularityTaskHistoryUpdate taskUpdate) {
+    enqueueTaskUpdate(webhook, taskUpdate);
+  }
+
+  @Override
+  public void deployUpdateQueued(SingularityWebhook webhook, SingularityDeployWebhook deployUpdate) {
+    enqueueDeployUpdate(webhook, deployUpdate);
+  }
+
+  /**
+   * @return false if the update was already queued or the webhook's queue is full
+   */
+  public boolean enqueueRequestUpdate(final SingularityWebhook webhook, final SingularityRequestHistory requestUpdate) {
+    return enqueue(webhook, new Delivery(webhookManager.getRequestHistoryUpdateId(requestUpdate)) {
+
+      @Override
+      protected Optional<byte[]> getPayload() {
+        return Optional.of(toBytes(requestUpdate));
+      }
+
+      @Override
+      protected void deleteUpdate() {
+        webhookManager.deleteRequestUpdate(webhook, requestUpdate);
+      }
+
+    });
+  }
+
+  public boolean enqueueTaskUpdate(final SingularityWebhook webhook, final SingularityTaskHistoryUpdate taskUpdate) {
+    return enqueue(webhook, new Delivery(webhookManager.getTaskHistoryUpdateId(taskUpdate)) {
+
+      @Override
+      protected Optional<byte[]> getPayload() {
+        final Optional<byte[]> payload = taskPayloadCache.getPayload(taskUpdate);
+
+        if (!payload.isPresent()) {
+          LOG.warn("Couldn't find task for taskUpdate {}", taskUpdate);
+        }
+
+        return payload;
+      }
+
+      @Override
+      protected void deleteUpdate() {
+        webhookManager.deleteTaskUpdate(webhook, taskUpdate);
+      }
+
+    });
+  }
+
+  public boolean enqueueDeployUpdate(final SingularityWebhook webhook, final SingularityDeployWebhook deployUpdate) {
+    return enqueue(webhook, new Delivery(webhookManager.getDeployUpdateId(deployUpdate)) {
+
+      @Override
+      protected Optional<byte[]> getPayload() {
+        return Optional.of(toBytes(deployUpdate));
+      }
+
+      @Override
+      protected void deleteUpdate() {
+        webhookManager.deleteDeployUpdate(webhook, deployUpdate);
+      }
+
+    });
+  }
+
+  /**
+   * Called at the start of each sweep, before the ZK queues are read. Forgets the queues of webhooks which have been
+   * removed, and the updates finished since the last sweep - their nodes were deleted before they were finished, so this
+   * sweep can't see them.
+   */
+  public synchronized void retainWebhooks(Collection<SingularityWebhook> activeWebhooks) {
+    final Set<String> activeWebhookIds = Sets.newHashSetWithExpectedSize(activeWebhooks.size());
+
+    for (SingularityWebhook webhook : activeWebhooks) {
+      activeWebhookIds.add(webhook.getId());
+    }
+
+    final Iterator<Map.Entry<String, WebhookQueue>> iterator = queues.entrySet().iterator();
+
+    while (iterator.hasNext()) {
+      final Map.Entry<String, WebhookQueue> entry = iterator.next();
+
+      if (!activeWebhookIds.contains(entry.getKey())) {
+        numQueued -= entry.getValue().queued.size();
+        iterator.remove();
+      } else {
+        entry.getValue().finishedIds.clear();
+      }
+    }
+  }
+
+  private byte[] toBytes(Object payload) {
+    try {
+      return objectMapper.writeValueAsBytes(payload);
+    } catch (JsonProcessingException e) {
+      throw Throwables.propagate(e);
+    }
+  }
+
+  private boolean enqueue(SingularityWebhook webhook, Delivery delivery) {
+    synchronized (this) {
+      if (!leader) {
+        return false;
+      }
+
+      WebhookQueue queue = queues.get(webhook.getId());
+
+      if (queue == null) {
+        queue = new WebhookQueue();
+        queues.put(webhook.getId(), queue);
+      }
+
+      queue.webhook = webhook;
+
+      if (queue.ids.contains(delivery.id) || queue.finishedIds.contains(delivery.id)) {
+        return false;
+      }
+
+      if (queue.queued.size() >= configuration.getMaxQueuedUpdatesPerWebhook()) {
+        rejectedMeter.mark();
+        return false;
+      }
+
+      queue.queued.add(delivery);
+      queue.ids.add(delivery.id);
+      numQueued++;
+    }
+
+    scheduleDrain(webhook.getId(), 0);
+
+    return true;
+  }
+
+  private void scheduleDrain(final String webhookId, long delayMillis) {
+    try {
+      executorService.schedule(new Runnable() {
+
+        @Override
+        public void run() {
+          try {
+            drain(webhookId);
+          } catch (Throwable t) {
+            LOG.error("Uncaught throwable while delivering updates to webhook {}", webhookId, t);
+          }
+        }
+
+      }, delayMillis, TimeUnit.MILLISECONDS);
+    } catch (RejectedExecutionException ree) {
+      LOG.trace("Not delivering updates to webhook {}, dispatcher is stopped", webhookId);
+    }
+  }
+
+  private void drain(String webhookId) {
+    while (true) {
+      final SingularityWebhook webhook;
+      final List<Delivery> batch = Lists.newArrayList();
+
+      synchronized (this) {
+        final WebhookQueue queue = queues.get(webhookId);
+
+        if (queue == null || queue.queued.isEmpty() || queue.inFlight >= configuration.getMaxConcurrentRequestsPerWebhook() || System.currentTimeMillis() < queue.retryAt) {
+          return;
+        }
+
+        webhook = queue.webhook;
+
+        final int batchSize = webhook.getBatch().or(Boolean.FALSE) ? Math.max(1, configuration.getMaxWebhookBatchSize()) : 1;
+
+        while (batch.size() < batchSize && !queue.queued.isEmpty()) {
+          batch.add(queue.queued.poll());
+          numQueued--;
+        }
+
+        queue.inFlight++;
+      }
+
+      sendAsync(webhook, batch);
+    }
+  }
+
+  private void sendAsync(final SingularityWebhook webhook, final List<Delivery> batch) {
+    try {
+      payloadExecutorService.execute(new Runnable() {
+
+        @Override
+        public void run() {
+          try {
+            send(webhook, batch);
+          } catch (Throwable t) {
+            LOG.error("Uncaught throwable while sending updates to webhook {}", webhook.getUri(), t);
+          }
+        }
+
+      });
+    } catch (RejectedExecutionException ree) {
+      LOG.trace("Not sending updates to webhook {}, dispatcher is stopped", webhook.getUri());
+    }
+  }
+
+  private void send(final SingularityWebhook webhook, List<Delivery> batch) {
+    final List<Delivery> deliverable = Lists.newArrayListWithCapacity(batch.size());
+    final List<byte[]> payloads = Lists.newArrayListWithCapacity(batch.size());
+    final List<Delivery> unbuildable = Lists.newArrayList();
+
+    for (Delivery delivery : batch) {
+      delivery.attempts++;
+
+      try {
+        final Optional<byte[]> payload = delivery.getPayload();
+
+        if (payload.isPresent()) {
+          deliverable.add(delivery);
+          payloads.add(payload.get());
+        } else {
+          delivery.deleteUpdate();
+          finished(webhook.getId(), delivery);
+        }
+      } catch (Throwable t) {
+        LOG.warn("Couldn't build update {} for webhook {}", delivery.id, webhook.getUri(), t);
+        unbuildable.add(delivery);
+      }
+    }
+
+    if (!unbuildable.isEmpty()) {
+      retryIndividually(webhook, unbuildable);
+    }
+
+    if (deliverable.isEmpty()) {
+      released(webhook.getId());
+      return;
+    }
+
+    final byte[] body = webhook.getBatch().or(Boolean.FALSE) ? toJsonArray(payloads) : payloads.get(0);
+    final long start = System.currentTimeMillis();
+
+    LOG.trace("Sending {} update(s) to {}", deliverable.size(), webhook.getUri());
+
+    try {
+      BoundRequestBuilder postRequest = http.preparePost(webhook.getUri());
+
+      postRequest.setHeader(HttpHeaders.CONTENT_TYPE, "application/json");
+      postRequest.setBody(body);
+
+      postRequest.execute(new AsyncCompletionHandler<Response>() {
+
+        @Override
+        public Response onCompleted(Response response) throws Exception {
+          LOG.trace("Webhook {} completed with {} after {}", webhook.getUri(), response.getStatusCode(), JavaUtils.duration(start));
+
+          completedAsync(webhook, deliverable, JavaUtils.isHttpSuccess(response.getStatusCode()));
+
+          return response;
+        }
+
+        @Override
+        public void onThrowable(Throwable t) {
+          LOG.trace("Webhook {} failed after {}", webhook.getUri(), JavaUtils.duration(start), t);
+
+          completedAsync(webhook, deliverable, false);
+        }
+
+      });
+    } catch (IOException | RuntimeException e) {
+      LOG.warn("Couldn't execute webhook to {}", webhook.getUri(), e);
+
+      completed(webhook, deliverable, false);
+    }
+  }
+
+  private byte[] toJsonArray(List<byte[]> payloads) {
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+    out.write('[');
+
+    for (int i = 0; i < payloads.size(); i++) {
+      if (i > 0) {
+        out.write(',');
+      }
+
+      out.write(payloads.get(i), 0, payloads.get(i).length);
+    }
+
+    out.write(']');
+
+    return out.toByteArray();
+  }
+
+  private void completedAsync(final SingularityWebhook webhook, final List<Delivery> deliveries, final boolean success) {
+    try {
+      executorService.execute(new Runnable() {
+
+        @Override
+        public void run() {
+          try {
+            completed(webhook, deliveries, success);
+          } catch (Throwable t) {
+            LOG.error("Uncaught throwable while completing updates to webhook {}", webhook.getUri(), t);
+          }
+        }
+
+      });
+    } catch (RejectedExecutionException ree) {
+      LOG.trace("Not completing updates to webhook {}, dispatcher is stopped", webhook.getUri());
+    }
+  }
+
+  private void completed(SingularityWebhook webhook, List<Delivery> deliveries, boolean success) {
+    if (success) {
+      final long now = System.currentTimeMillis();
+
+      for (Delivery delivery : deliveries) {
+        delivery.deleteUpdate();
+        deliveryTimer.update(now - delivery.queuedAt, TimeUnit.MILLISECONDS);
+      }
+    } else {
+      failedMeter.mark(deliveries.size());
+    }
+
+    final List<Delivery> dropped = Lists.newArrayList();
+    long retryDelayMillis = 0;
+
+    synchronized (this) {
+      final WebhookQueue queue = queues.get(webhook.getId());
+
+      if (queue == null) {
+        return;
+      }
+
+      queue.inFlight--;
+
+      if (success) {
+        queue.consecutiveFailures = 0;
+        queue.retryAt = 0;
+
+        for (Delivery delivery : deliveries) {
+          finished(queue, delivery);
+        }
+      } else {
+        queue.consecutiveFailures++;
+
+        retryDelayMillis = getRetryDelayMillis(queue.consecutiveFailures);
+        queue.retryAt = System.currentTimeMillis() + retryDelayMillis;
+
+        for (Delivery delivery : Lists.reverse(deliveries)) {
+          if (delivery.attempts >= configuration.getMaxWebhookAttempts()) {
+            dropped.add(delivery);
+          } else {
+            queue.queued.addFirst(delivery);
+            numQueued++;
+          }
+        }
+      }
+    }
+
+    for (Delivery delivery : dropped) {
+      LOG.warn("Giving up on update {} to webhook {} after {} attempts", delivery.id, webhook.getUri(), delivery.attempts);
+
+      delivery.deleteUpdate();
+      droppedMeter.mark();
+
+      finished(webhook.getId(), delivery);
+    }
+
+    scheduleDrain(webhook.getId(), retryDelayMillis);
+  }
+
+  private long getRetryDelayMillis(int failures) {
+    return Math.min(configuration.getWebhookRetryMaxDelayMillis(), configuration.getWebhookRetryInitialDelayMillis() << Math.min(failures - 1, 20));
+  }
+
+  /**
+   * Puts each update back on its webhook's queue once its own backoff has passed; it keeps its id meanwhile, so it isn't
+   * queued a second time by a sweep.
+   */
+  private void retryIndividually(final SingularityWebhook webhook, List<Delivery> deliveries) {
+    failedMeter.mark(deliveries.size());
+
+    for (final Delivery delivery : deliveries) {
+      if (delivery.attempts >= configuration.getMaxWebhookAttempts()) {
+        LOG.warn("Giving up on update {} to webhook {} after {} attempts", delivery.id, webhook.getUri(), delivery.attempts);
+
+        delivery.deleteUpdate();
+        droppedMeter.mark();
+
+        finished(webhook.getId(), delivery);
+        continue;
+      }
+
+      try {
+        executorService.schedule(new Runnable() {
+
+          @Override
+          public void run() {
+            if (requeue(webhook.getId(), delivery)) {
+              scheduleDrain(webhook.getId(), 0);
+            }
+          }
+
+        }, getRetryDelayMillis(delivery.attempts), TimeUnit.MILLISECONDS);
+      } catch (RejectedExecutionException ree) {
+        LOG.trace("Not retrying update {} to webhook {}, dispatcher is stopped", delivery.id, webhook.getUri());
+      }
+    }
+  }
+
+  private synchronized boolean requeue(String webhookId, Delivery delivery) {
+    final WebhookQueue queue = queues.get(webhookId);
+
+    // the webhook was removed while the update was waiting
+    if (queue == null || !queue.ids.contains(delivery.id)) {
+      return false;
+    }
+
+    queue.queued.add(delivery);
+    numQueued++;
+
+    return true;
+  }
+
+  private void released(String webhookId) {
+    synchronized (this) {
+      final WebhookQueue queue = queues.get(webhookId);
+
+      if (queue == null) {
+        return;
+      }
+
+      queue.inFlight--;
+    }
+
+    scheduleDrain(webhookId, 0);
+  }
+
+  /**
+   * Must only be called once the update's node has been deleted, otherwise a sweep could queue it again.
+   */
+  private synchronized void finished(String webhookId, Delivery delivery) {
+    final WebhookQueue queue = queues.get(webhookId);
+
+    if (queue != null) {
+      finished(queue, delivery);
+    }
+  }
+
+  private void finished(WebhookQueue queue, Delivery delivery) {
+    queue.ids.remove(delivery.id);
+    queue.finishedIds.add(delivery.id);
+  }
+
+}
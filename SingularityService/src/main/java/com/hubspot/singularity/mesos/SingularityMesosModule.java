@@ -11,8 +11,11 @@ public class SingularityMesosModule extends AbstractModule {
     bind(SingularityMesosScheduler.class).in(Scopes.SINGLETON);
     bind(SingularityMesosSchedulerDelegator.class).in(Scopes.SINGLETON);
     bind(SingularityMesosTaskBuilder.class).in(Scopes.SINGLETON);
+    bind(SingularityOfferMatcher.class).in(Scopes.SINGLETON);
+    bind(SingularitySchedulerLock.class).in(Scopes.SINGLETON);
     bind(SingularitySlaveAndRackManager.class).in(Scopes.SINGLETON);
     bind(SingularityStartup.class).in(Scopes.SINGLETON);
+    bind(SingularityStatusUpdatePipeline.class).in(Scopes.SINGLETON);
     bind(SchedulerDriverSupplier.class).in(Scopes.SINGLETON);
   }
 }
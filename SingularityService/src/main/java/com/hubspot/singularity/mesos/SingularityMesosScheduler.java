@@ -1,7 +1,5 @@
 package com.hubspot.singularity.mesos;
 
-import java.util.Collection;
-import java.util.Collections;
 import java.util.List;
 import java.util.Set;
 
@@ -23,7 +21,6 @@ import com.google.inject.Provider;
 import com.google.inject.name.Named;
 import com.hubspot.mesos.JavaUtils;
 import com.hubspot.mesos.MesosUtils;
-import com.hubspot.mesos.Resources;
 import com.hubspot.singularity.ExtendedTaskState;
 import com.hubspot.singularity.SingularityCreateResult;
 import com.hubspot.singularity.SingularityMainModule;
@@ -33,25 +30,23 @@ import com.hubspot.singularity.SingularityTaskHistoryUpdate;
 import com.hubspot.singularity.SingularityTaskId;
 import com.hubspot.singularity.SingularityTaskRequest;
 import com.hubspot.singularity.SingularityTaskStatusHolder;
-import com.hubspot.singularity.config.MesosConfiguration;
 import com.hubspot.singularity.data.DeployManager;
 import com.hubspot.singularity.data.TaskManager;
-import com.hubspot.singularity.mesos.SingularitySlaveAndRackManager.SlaveMatchState;
 import com.hubspot.singularity.scheduler.SingularityHealthchecker;
 import com.hubspot.singularity.scheduler.SingularityNewTaskChecker;
 import com.hubspot.singularity.scheduler.SingularityScheduler;
 import com.hubspot.singularity.scheduler.SingularitySchedulerStateCache;
+import com.hubspot.singularity.scheduler.SingularityTaskReconciliation;
 
 @Singleton
 public class SingularityMesosScheduler implements Scheduler {
 
   private static final Logger LOG = LoggerFactory.getLogger(SingularityMesosScheduler.class);
 
-  private final Resources defaultResources;
   private final TaskManager taskManager;
   private final DeployManager deployManager;
   private final SingularityScheduler scheduler;
-  private final SingularityMesosTaskBuilder mesosTaskBuilder;
+  private final SingularityOfferMatcher offerMatcher;
   private final SingularityHealthchecker healthchecker;
   private final SingularityNewTaskChecker newTaskChecker;
   private final SingularitySlaveAndRackManager slaveAndRackManager;
@@ -60,23 +55,27 @@ public class SingularityMesosScheduler implements Scheduler {
   private final Provider<SingularitySchedulerStateCache> stateCacheProvider;
   private final String serverId;
   private final SchedulerDriverSupplier schedulerDriverSupplier;
+  private final SingularitySchedulerLock schedulerLock;
+  private final SingularityTaskReconciliation taskReconciliation;
 
   @Inject
-  SingularityMesosScheduler(MesosConfiguration mesosConfiguration, TaskManager taskManager, SingularityScheduler scheduler, SingularitySlaveAndRackManager slaveAndRackManager,
-      SingularityNewTaskChecker newTaskChecker, SingularityMesosTaskBuilder mesosTaskBuilder, SingularityLogSupport logSupport, Provider<SingularitySchedulerStateCache> stateCacheProvider,
-      SingularityHealthchecker healthchecker, DeployManager deployManager, @Named(SingularityMainModule.SERVER_ID_PROPERTY) String serverId, SchedulerDriverSupplier schedulerDriverSupplier) {
-    this.defaultResources = new Resources(mesosConfiguration.getDefaultCpus(), mesosConfiguration.getDefaultMemory(), 0);
+  SingularityMesosScheduler(SingularityOfferMatcher offerMatcher, TaskManager taskManager, SingularityScheduler scheduler, SingularitySlaveAndRackManager slaveAndRackManager,
+      SingularityNewTaskChecker newTaskChecker, SingularityLogSupport logSupport, Provider<SingularitySchedulerStateCache> stateCacheProvider,
+      SingularityHealthchecker healthchecker, DeployManager deployManager, @Named(SingularityMainModule.SERVER_ID_PROPERTY) String serverId, SchedulerDriverSupplier schedulerDriverSupplier,
+      SingularitySchedulerLock schedulerLock, SingularityTaskReconciliation taskReconciliation) {
     this.taskManager = taskManager;
     this.deployManager = deployManager;
     this.newTaskChecker = newTaskChecker;
     this.slaveAndRackManager = slaveAndRackManager;
     this.scheduler = scheduler;
-    this.mesosTaskBuilder = mesosTaskBuilder;
+    this.offerMatcher = offerMatcher;
     this.logSupport = logSupport;
     this.stateCacheProvider = stateCacheProvider;
     this.healthchecker = healthchecker;
     this.serverId = serverId;
     this.schedulerDriverSupplier = schedulerDriverSupplier;
+    this.schedulerLock = schedulerLock;
+    this.taskReconciliation = taskReconciliation;
   }
 
   @Override
@@ -129,26 +128,16 @@ public class SingularityMesosScheduler implements Scheduler {
         offerHolders.add(new SingularityOfferHolder(offer, numDueTasks));
       }
 
-      boolean addedTaskInLastLoop = true;
+      offerMatcher.matchOffers(taskRequests, offerHolders, stateCache);
 
-      while (!taskRequests.isEmpty() && addedTaskInLastLoop) {
-        addedTaskInLastLoop = false;
-        Collections.shuffle(offerHolders);
+      final List<SingularityTask> acceptedTasks = Lists.newArrayListWithCapacity(numDueTasks);
 
-        for (SingularityOfferHolder offerHolder : offerHolders) {
-          Optional<SingularityTask> accepted = match(taskRequests, stateCache, offerHolder);
-          if (accepted.isPresent()) {
-            offerHolder.addMatchedTask(accepted.get());
-            addedTaskInLastLoop = true;
-            taskRequests.remove(accepted.get().getTaskRequest());
-          }
-
-          if (taskRequests.isEmpty()) {
-            break;
-          }
-        }
+      for (SingularityOfferHolder offerHolder : offerHolders) {
+        acceptedTasks.addAll(offerHolder.getAcceptedTasks());
       }
 
+      taskManager.createTasksAndDeletePendingTasks(acceptedTasks);
+
       for (SingularityOfferHolder offerHolder : offerHolders) {
         if (!offerHolder.getAcceptedTasks().isEmpty()) {
           offerHolder.launchTasks(driver);
@@ -177,41 +166,6 @@ public class SingularityMesosScheduler implements Scheduler {
         offers.size() - acceptedOffers.size(), numDueTasks - acceptedOffers.size());
   }
 
-  private Optional<SingularityTask> match(Collection<SingularityTaskRequest> taskRequests, SingularitySchedulerStateCache stateCache, SingularityOfferHolder offerHolder) {
-
-    for (SingularityTaskRequest taskRequest : taskRequests) {
-      Resources taskResources = defaultResources;
-
-      if (taskRequest.getDeploy().getResources().isPresent()) {
-        taskResources = taskRequest.getDeploy().getResources().get();
-      }
-
-      LOG.trace("Attempting to match task {} resources {} with remaining offer resources {}", taskRequest.getPendingTask().getPendingTaskId(), taskResources, offerHolder.getCurrentResources());
-
-      final boolean matchesResources = MesosUtils.doesOfferMatchResources(taskResources, offerHolder.getCurrentResources());
-      final SlaveMatchState slaveMatchState = slaveAndRackManager.doesOfferMatch(offerHolder.getOffer(), taskRequest, stateCache);
-
-      if (matchesResources && slaveMatchState.isMatchAllowed()) {
-        final SingularityTask task = mesosTaskBuilder.buildTask(offerHolder.getOffer(), offerHolder.getCurrentResources(), taskRequest, taskResources);
-
-        LOG.trace("Accepted and built task {}", task);
-
-        LOG.info("Launching task {} slot on slave {} ({})", task.getTaskId(), offerHolder.getOffer().getSlaveId().getValue(), offerHolder.getOffer().getHostname());
-
-        taskManager.createTaskAndDeletePendingTask(task);
-
-        stateCache.getActiveTaskIds().add(task.getTaskId());
-        stateCache.getScheduledTasks().remove(taskRequest.getPendingTask());
-
-        return Optional.of(task);
-      } else {
-        LOG.trace("Ignoring offer {} on {} for task {}; matched resources: {}, slave match state: {}", offerHolder.getOffer().getId(), offerHolder.getOffer().getHostname(), taskRequest.getPendingTask().getPendingTaskId(), matchesResources, slaveMatchState);
-      }
-    }
-
-    return Optional.absent();
-  }
-
   @Override
   public void offerRescinded(SchedulerDriver driver, Protos.OfferID offerId) {
     LOG.info("Offer {} rescinded", offerId);
@@ -257,6 +211,9 @@ public class SingularityMesosScheduler implements Scheduler {
     LOG.debug("Task {} is now {} ({}) at {} ", taskId, status.getState(), status.getMessage(), timestamp);
 
     final SingularityTaskId taskIdObj = SingularityTaskId.fromString(taskId);
+
+    taskReconciliation.statusUpdateReceived(taskIdObj);
+
     final SingularityTaskStatusHolder newTaskStatusHolder = new SingularityTaskStatusHolder(taskIdObj, Optional.of(status), System.currentTimeMillis(), serverId, Optional.<String> absent());
     final Optional<SingularityTaskStatusHolder> previousTaskStatusHolder = taskManager.getLastActiveTaskStatus(taskIdObj);
     final ExtendedTaskState taskState = ExtendedTaskState.fromTaskState(status.getState());
@@ -277,18 +234,32 @@ public class SingularityMesosScheduler implements Scheduler {
     }
 
     final SingularityTaskHistoryUpdate taskUpdate = new SingularityTaskHistoryUpdate(taskIdObj, timestamp, taskState, status.hasMessage() ? Optional.of(status.getMessage()) : Optional.<String> absent());
-    final SingularityCreateResult taskHistoryUpdateCreateResult = taskManager.saveTaskHistoryUpdate(taskUpdate);
 
     logSupport.checkDirectory(taskIdObj);
 
     if (taskState.isDone()) {
+      final SingularityCreateResult taskHistoryUpdateCreateResult = taskManager.saveTaskHistoryUpdate(taskUpdate);
+
       healthchecker.cancelHealthcheck(taskId);
       newTaskChecker.cancelNewTaskCheck(taskId);
 
       taskManager.deleteKilledRecord(taskIdObj);
 
-      scheduler.handleCompletedTask(maybeActiveTask, taskIdObj, timestamp, taskState, taskHistoryUpdateCreateResult, stateCacheProvider.get());
-    } else if (maybeActiveTask.isPresent()) {
+      // completing a task is the only step which changes scheduling state, everything else here is per task
+      schedulerLock.lock();
+
+      try {
+        scheduler.handleCompletedTask(maybeActiveTask, taskIdObj, timestamp, taskState, taskHistoryUpdateCreateResult, stateCacheProvider.get());
+      } finally {
+        schedulerLock.unlock();
+      }
+
+      taskManager.deleteLastActiveTaskStatus(taskIdObj);
+
+      return;
+    }
+
+    if (maybeActiveTask.isPresent()) {
       if (pendingDeploy == null) {
         pendingDeploy = deployManager.getPendingDeploy(taskIdObj.getRequestId());
       }
@@ -299,7 +270,7 @@ public class SingularityMesosScheduler implements Scheduler {
       }
     }
 
-    saveNewTaskStatusHolder(taskIdObj, newTaskStatusHolder, taskState);
+    taskManager.saveTaskHistoryUpdateAndLastActiveTaskStatus(taskUpdate, newTaskStatusHolder);
   }
 
   @Override
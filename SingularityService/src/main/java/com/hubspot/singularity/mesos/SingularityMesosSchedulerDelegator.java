@@ -36,11 +36,12 @@ public class SingularityMesosSchedulerDelegator implements Scheduler {
   private final SingularityExceptionNotifier exceptionNotifier;
 
   private final SingularityMesosScheduler scheduler;
+  private final SingularityStatusUpdatePipeline statusUpdatePipeline;
   private final SingularityStartup startup;
   private final SingularityAbort abort;
 
   private final Lock stateLock;
-  private final Lock lock;
+  private final SingularitySchedulerLock lock;
 
   private enum SchedulerState {
     STARTUP, RUNNING, STOPPED;
@@ -54,16 +55,18 @@ public class SingularityMesosSchedulerDelegator implements Scheduler {
   private final AtomicReference<MasterInfo> masterInfoHolder = new AtomicReference<>();
 
   @Inject
-  SingularityMesosSchedulerDelegator(SingularityExceptionNotifier exceptionNotifier, SingularityMesosScheduler scheduler, SingularityStartup startup, SingularityAbort abort) {
+  SingularityMesosSchedulerDelegator(SingularityExceptionNotifier exceptionNotifier, SingularityMesosScheduler scheduler, SingularityStatusUpdatePipeline statusUpdatePipeline,
+      SingularityStartup startup, SingularityAbort abort, SingularitySchedulerLock lock) {
     this.exceptionNotifier = exceptionNotifier;
 
     this.scheduler = scheduler;
+    this.statusUpdatePipeline = statusUpdatePipeline;
     this.startup = startup;
     this.abort = abort;
 
     this.queuedUpdates = Lists.newArrayList();
 
-    this.lock = new ReentrantLock();
+    this.lock = lock;
     this.stateLock = new ReentrantLock();
 
     this.state = SchedulerState.STARTUP;
@@ -218,15 +221,7 @@ public class SingularityMesosSchedulerDelegator implements Scheduler {
       stateLock.unlock();
     }
 
-    lock();
-
-    try {
-      scheduler.statusUpdate(driver, status);
-    } catch (Throwable t) {
-      handleUncaughtSchedulerException(t);
-    } finally {
-      release();
-    }
+    statusUpdatePipeline.enqueue(driver, status);
   }
 
   @Override
@@ -0,0 +1,297 @@
+package com.hubspot.singularity.mesos;
+
+import io.dropwizard.lifecycle.Managed;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinPool.ForkJoinWorkerThreadFactory;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Singleton;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.inject.Inject;
+import com.hubspot.mesos.MesosUtils;
+import com.hubspot.mesos.Resources;
+import com.hubspot.singularity.SingularityTask;
+import com.hubspot.singularity.SingularityTaskRequest;
+import com.hubspot.singularity.config.MesosConfiguration;
+import com.hubspot.singularity.config.OfferPackingStrategy;
+import com.hubspot.singularity.config.SingularityConfiguration;
+import com.hubspot.singularity.mesos.SingularitySlaveAndRackManager.SlaveMatchState;
+import com.hubspot.singularity.scheduler.SingularitySchedulerStateCache;
+
+/**
+ * Places due tasks onto offers. Tasks are taken in priority order; for each one every offer is scored on a fork join pool
+ * (offers are split between threads once there are more than offerMatchingOffersPerThread of them) and the task is placed
+ * on the best scoring offer. Placements are committed serially, so scoring the next task sees the previous placement.
+ *
+ * Scoring only reads the state cache, which is fully loaded up front so that no thread triggers a lazy load.
+ */
+@Singleton
+public class SingularityOfferMatcher implements Managed {
+
+  private static final Logger LOG = LoggerFactory.getLogger(SingularityOfferMatcher.class);
+
+  private static final int NO_MATCH = -1;
+
+  private final SingularityConfiguration configuration;
+  private final Resources defaultResources;
+  private final SingularitySlaveAndRackManager slaveAndRackManager;
+  private final SingularityMesosTaskBuilder mesosTaskBuilder;
+  private final ForkJoinPool pool;
+
+  private final Timer matchTimer;
+
+  @Inject
+  public SingularityOfferMatcher(SingularityConfiguration configuration, MesosConfiguration mesosConfiguration, SingularitySlaveAndRackManager slaveAndRackManager,
+      SingularityMesosTaskBuilder mesosTaskBuilder, MetricRegistry registry) {
+    this.configuration = configuration;
+    this.defaultResources = new Resources(mesosConfiguration.getDefaultCpus(), mesosConfiguration.getDefaultMemory(), 0);
+    this.slaveAndRackManager = slaveAndRackManager;
+    this.mesosTaskBuilder = mesosTaskBuilder;
+    this.pool = new ForkJoinPool(Math.max(1, configuration.getOfferMatchingThreads()), new ForkJoinWorkerThreadFactory() {
+
+      @Override
+      public ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+        final ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+        thread.setName("SingularityOfferMatcher-" + thread.getPoolIndex());
+        return thread;
+      }
+
+    }, null, false);
+
+    this.matchTimer = registry.timer(MetricRegistry.name(SingularityOfferMatcher.class, "matchOffers"));
+  }
+
+  @Override
+  public void start() {
+  }
+
+  @Override
+  public void stop() {
+    MoreExecutors.shutdownAndAwaitTermination(pool, 1, TimeUnit.SECONDS);
+  }
+
+  /**
+   * Matches as many of the task requests as possible to the offers, adding the built tasks to their offer holders and removing
+   * matched requests from taskRequests.
+   *
+   * @return the number of tasks matched
+   */
+  public int matchOffers(List<SingularityTaskRequest> taskRequests, List<SingularityOfferHolder> offerHolders, SingularitySchedulerStateCache stateCache) {
+    if (taskRequests.isEmpty() || offerHolders.isEmpty()) {
+      return 0;
+    }
+
+    final Timer.Context context = matchTimer.time();
+
+    try {
+      stateCache.loadForOfferMatching();
+
+      // ties are broken by offer order, so shuffle once to avoid always favoring the same slave
+      final List<SingularityOfferHolder> shuffledOfferHolders = Lists.newArrayList(offerHolders);
+      Collections.shuffle(shuffledOfferHolders);
+
+      final OfferPackingStrategy packingStrategy = configuration.getOfferPackingStrategy();
+      final double maxCpus = getMaxCpus(shuffledOfferHolders);
+      final double maxMemory = getMaxMemory(shuffledOfferHolders);
+
+      int numMatched = 0;
+
+      final Iterator<SingularityTaskRequest> iterator = taskRequests.iterator();
+
+      while (iterator.hasNext()) {
+        final SingularityTaskRequest taskRequest = iterator.next();
+        final Resources taskResources = getTaskResources(taskRequest);
+
+        final int bestIndex = findBestOffer(new ScoreOffers(shuffledOfferHolders, 0, shuffledOfferHolders.size(), taskRequest, taskResources, stateCache, packingStrategy, maxCpus, maxMemory));
+
+        if (bestIndex == NO_MATCH) {
+          LOG.trace("No offer matched task {}", taskRequest.getPendingTask().getPendingTaskId());
+          continue;
+        }
+
+        final SingularityOfferHolder offerHolder = shuffledOfferHolders.get(bestIndex);
+        final SingularityTask task = mesosTaskBuilder.buildTask(offerHolder.getOffer(), offerHolder.getCurrentResources(), taskRequest, taskResources);
+
+        LOG.trace("Accepted and built task {}", task);
+
+        LOG.info("Launching task {} slot on slave {} ({})", task.getTaskId(), offerHolder.getOffer().getSlaveId().getValue(), offerHolder.getOffer().getHostname());
+
+        offerHolder.addMatchedTask(task);
+
+        stateCache.addActiveTaskId(task.getTaskId());
+        stateCache.getScheduledTasks().remove(taskRequest.getPendingTask());
+
+        iterator.remove();
+        numMatched++;
+      }
+
+      return numMatched;
+    } finally {
+      context.stop();
+    }
+  }
+
+  private int findBestOffer(ScoreOffers scoreOffers) {
+    if (scoreOffers.to - scoreOffers.from <= configuration.getOfferMatchingOffersPerThread()) {
+      return scoreOffers.compute();
+    }
+
+    return pool.invoke(scoreOffers);
+  }
+
+  private Resources getTaskResources(SingularityTaskRequest taskRequest) {
+    if (taskRequest.getDeploy().getResources().isPresent()) {
+      return taskRequest.getDeploy().getResources().get();
+    }
+
+    return defaultResources;
+  }
+
+  private double getMaxCpus(List<SingularityOfferHolder> offerHolders) {
+    double maxCpus = 0;
+
+    for (SingularityOfferHolder offerHolder : offerHolders) {
+      maxCpus = Math.max(maxCpus, MesosUtils.getNumCpus(offerHolder.getOffer()));
+    }
+
+    return maxCpus;
+  }
+
+  private double getMaxMemory(List<SingularityOfferHolder> offerHolders) {
+    double maxMemory = 0;
+
+    for (SingularityOfferHolder offerHolder : offerHolders) {
+      maxMemory = Math.max(maxMemory, MesosUtils.getMemory(offerHolder.getOffer()));
+    }
+
+    return maxMemory;
+  }
+
+  /**
+   * Finds the index of the best matching offer in [from, to), or NO_MATCH. The score of an offer is the cpu and memory it would
+   * have left after the task, each relative to the largest offer in this cycle.
+   */
+  private class ScoreOffers extends RecursiveTask<Integer> {
+
+    private static final long serialVersionUID = 1L;
+
+    private final List<SingularityOfferHolder> offerHolders;
+    private final int from;
+    private final int to;
+    private final SingularityTaskRequest taskRequest;
+    private final Resources taskResources;
+    private final SingularitySchedulerStateCache stateCache;
+    private final OfferPackingStrategy packingStrategy;
+    private final double maxCpus;
+    private final double maxMemory;
+
+    private ScoreOffers(List<SingularityOfferHolder> offerHolders, int from, int to, SingularityTaskRequest taskRequest, Resources taskResources, SingularitySchedulerStateCache stateCache,
+        OfferPackingStrategy packingStrategy, double maxCpus, double maxMemory) {
+      this.offerHolders = offerHolders;
+      this.from = from;
+      this.to = to;
+      this.taskRequest = taskRequest;
+      this.taskResources = taskResources;
+      this.stateCache = stateCache;
+      this.packingStrategy = packingStrategy;
+      this.maxCpus = maxCpus;
+      this.maxMemory = maxMemory;
+    }
+
+    private ScoreOffers split(int from, int to) {
+      return new ScoreOffers(offerHolders, from, to, taskRequest, taskResources, stateCache, packingStrategy, maxCpus, maxMemory);
+    }
+
+    @Override
+    protected Integer compute() {
+      if (to - from > configuration.getOfferMatchingOffersPerThread()) {
+        final int middle = (from + to) >>> 1;
+
+        final ScoreOffers left = split(from, middle);
+        final ScoreOffers right = split(middle, to);
+
+        left.fork();
+
+        final int rightIndex = right.compute();
+        final int leftIndex = left.join();
+
+        return better(leftIndex, rightIndex);
+      }
+
+      int bestIndex = NO_MATCH;
+
+      for (int i = from; i < to; i++) {
+        if (matches(offerHolders.get(i))) {
+          bestIndex = better(bestIndex, i);
+        }
+      }
+
+      return bestIndex;
+    }
+
+    private boolean matches(SingularityOfferHolder offerHolder) {
+      LOG.trace("Attempting to match task {} resources {} with remaining offer resources {}", taskRequest.getPendingTask().getPendingTaskId(), taskResources, offerHolder.getCurrentResources());
+
+      final boolean matchesResources = MesosUtils.doesOfferMatchResources(taskResources, offerHolder.getCurrentResources());
+
+      if (!matchesResources) {
+        LOG.trace("Ignoring offer {} on {} for task {}; not enough resources", offerHolder.getOffer().getId(), offerHolder.getOffer().getHostname(), taskRequest.getPendingTask().getPendingTaskId());
+        return false;
+      }
+
+      final SlaveMatchState slaveMatchState = slaveAndRackManager.doesOfferMatch(offerHolder.getOffer(), taskRequest, stateCache);
+
+      if (!slaveMatchState.isMatchAllowed()) {
+        LOG.trace("Ignoring offer {} on {} for task {}; slave match state: {}", offerHolder.getOffer().getId(), offerHolder.getOffer().getHostname(), taskRequest.getPendingTask().getPendingTaskId(), slaveMatchState);
+        return false;
+      }
+
+      return true;
+    }
+
+    private double getLeftover(SingularityOfferHolder offerHolder) {
+      final double cpusLeft = MesosUtils.getNumCpus(offerHolder.getCurrentResources()) - taskResources.getCpus();
+      final double memoryLeft = MesosUtils.getMemory(offerHolder.getCurrentResources()) - taskResources.getMemoryMb();
+
+      return (maxCpus > 0 ? cpusLeft / maxCpus : 0) + (maxMemory > 0 ? memoryLeft / maxMemory : 0);
+    }
+
+    /**
+     * Prefers the lower index on a tie, so the result doesn't depend on how the offers were split.
+     */
+    private int better(int firstIndex, int secondIndex) {
+      if (firstIndex == NO_MATCH) {
+        return secondIndex;
+      }
+      if (secondIndex == NO_MATCH) {
+        return firstIndex;
+      }
+
+      final double firstLeftover = getLeftover(offerHolders.get(firstIndex));
+      final double secondLeftover = getLeftover(offerHolders.get(secondIndex));
+
+      switch (packingStrategy) {
+        case BEST_FIT:
+          return secondLeftover < firstLeftover ? secondIndex : firstIndex;
+        case SPREAD:
+        default:
+          return secondLeftover > firstLeftover ? secondIndex : firstIndex;
+      }
+    }
+
+  }
+
+}
@@ -0,0 +1,24 @@
+package com.hubspot.singularity.mesos;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+import javax.inject.Singleton;
+
+/**
+ * Serializes everything which changes scheduling state - offer processing, the locking pollers and task completion. The
+ * lock is reentrant so that a status update replayed during startup, while registration holds the lock, can take it again.
+ */
+@Singleton
+public class SingularitySchedulerLock {
+
+  private final ReentrantLock lock = new ReentrantLock();
+
+  public void lock() {
+    lock.lock();
+  }
+
+  public void unlock() {
+    lock.unlock();
+  }
+
+}
@@ -13,6 +13,7 @@ import org.slf4j.LoggerFactory;
 import com.google.common.base.Optional;
 import com.google.common.collect.Maps;
 import com.google.inject.Inject;
+import com.google.inject.Provider;
 import com.hubspot.mesos.JavaUtils;
 import com.hubspot.mesos.MesosUtils;
 import com.hubspot.mesos.client.MesosClient;
@@ -30,6 +31,7 @@ import com.hubspot.singularity.data.zkmigrations.ZkDataMigrationRunner;
 import com.hubspot.singularity.scheduler.SingularityHealthchecker;
 import com.hubspot.singularity.scheduler.SingularityNewTaskChecker;
 import com.hubspot.singularity.scheduler.SingularityTaskReconciliation;
+import com.hubspot.singularity.scheduler.SingularityZkMirrorPoller;
 
 @Singleton
 class SingularityStartup {
@@ -45,12 +47,14 @@ class SingularityStartup {
   private final SingularityTaskTranscoder taskTranscoder;
   private final SingularityTaskReconciliation taskReconciliation;
   private final ZkDataMigrationRunner zkDataMigrationRunner;
+  private final Provider<SingularityZkMirrorPoller> zkMirrorPollerProvider;
 
   @Inject
   SingularityStartup(MesosClient mesosClient, SingularityTaskTranscoder taskTranscoder, SingularityHealthchecker healthchecker, SingularityNewTaskChecker newTaskChecker,
       SingularitySlaveAndRackManager slaveAndRackManager, TaskManager taskManager, DeployManager deployManager, SingularityTaskReconciliation taskReconciliation,
-      ZkDataMigrationRunner zkDataMigrationRunner) {
+      ZkDataMigrationRunner zkDataMigrationRunner, Provider<SingularityZkMirrorPoller> zkMirrorPollerProvider) {
     this.mesosClient = mesosClient;
+    this.zkMirrorPollerProvider = zkMirrorPollerProvider;
     this.zkDataMigrationRunner = zkDataMigrationRunner;
     this.slaveAndRackManager = slaveAndRackManager;
     this.deployManager = deployManager;
@@ -70,6 +74,8 @@ class SingularityStartup {
 
     zkDataMigrationRunner.checkMigrations();
 
+    zkMirrorPollerProvider.get().startMirrors();
+
     MesosMasterStateObject state = mesosClient.getMasterState(uri);
 
     slaveAndRackManager.loadSlavesAndRacksFromMaster(state);
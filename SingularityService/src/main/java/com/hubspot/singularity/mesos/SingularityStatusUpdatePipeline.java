@@ -0,0 +1,192 @@
+package com.hubspot.singularity.mesos;
+
+import io.dropwizard.lifecycle.Managed;
+
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.inject.Singleton;
+
+import org.apache.mesos.Protos.TaskStatus;
+import org.apache.mesos.SchedulerDriver;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.inject.Inject;
+import com.hubspot.singularity.SingularityAbort;
+import com.hubspot.singularity.SingularityAbort.AbortReason;
+import com.hubspot.singularity.config.SingularityConfiguration;
+import com.hubspot.singularity.sentry.SingularityExceptionNotifier;
+
+/**
+ * Processes status updates off the driver thread. Updates are partitioned by task id onto single threaded workers, so updates
+ * for one task are applied in the order they arrived while updates for different tasks run in parallel; only task completion
+ * takes the scheduler lock (see SingularityMesosScheduler.statusUpdate).
+ *
+ * Each worker queues at most maxQueuedStatusUpdatesPerThread updates. When a worker's queue is full the driver thread
+ * blocks until there is room, rather than running the update itself, which could apply it ahead of earlier updates for
+ * the same task. On stop the queued updates get statusUpdateDrainMillis to be applied, any left after that are dropped
+ * and counted - the next task reconciliation picks up their state.
+ */
+@Singleton
+public class SingularityStatusUpdatePipeline implements Managed {
+
+  private static final Logger LOG = LoggerFactory.getLogger(SingularityStatusUpdatePipeline.class);
+
+  private final SingularityMesosScheduler scheduler;
+  private final SingularityExceptionNotifier exceptionNotifier;
+  private final SingularityAbort abort;
+  private final long drainMillis;
+  private final List<ThreadPoolExecutor> workers;
+
+  private final AtomicInteger queued;
+  private final Timer updateTimer;
+  private final Meter blockedMeter;
+  private final Meter droppedMeter;
+
+  @Inject
+  public SingularityStatusUpdatePipeline(SingularityMesosScheduler scheduler, SingularityConfiguration configuration, SingularityExceptionNotifier exceptionNotifier, SingularityAbort abort,
+      MetricRegistry registry) {
+    this.scheduler = scheduler;
+    this.exceptionNotifier = exceptionNotifier;
+    this.abort = abort;
+    this.drainMillis = configuration.getStatusUpdateDrainMillis();
+
+    this.queued = new AtomicInteger();
+    this.updateTimer = registry.timer(MetricRegistry.name(SingularityStatusUpdatePipeline.class, "statusUpdate"));
+    this.blockedMeter = registry.meter(MetricRegistry.name(SingularityStatusUpdatePipeline.class, "blocked"));
+    this.droppedMeter = registry.meter(MetricRegistry.name(SingularityStatusUpdatePipeline.class, "dropped"));
+
+    final int numWorkers = Math.max(1, configuration.getStatusUpdateThreads());
+    final int queueSize = Math.max(1, configuration.getMaxQueuedStatusUpdatesPerThread());
+
+    this.workers = Lists.newArrayListWithCapacity(numWorkers);
+
+    for (int i = 0; i < numWorkers; i++) {
+      workers.add(new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(queueSize), new ThreadFactoryBuilder().setNameFormat("SingularityStatusUpdatePipeline-" + i)
+          .build(), new BlockWhenFull()));
+    }
+
+    registry.register(MetricRegistry.name(SingularityStatusUpdatePipeline.class, "queued"), new Gauge<Integer>() {
+
+      @Override
+      public Integer getValue() {
+        return queued.get();
+      }
+
+    });
+  }
+
+  @Override
+  public void start() {
+  }
+
+  @Override
+  public void stop() {
+    for (ThreadPoolExecutor worker : workers) {
+      worker.shutdown();
+    }
+
+    final long deadline = System.currentTimeMillis() + drainMillis;
+    int numDropped = 0;
+
+    for (ThreadPoolExecutor worker : workers) {
+      try {
+        if (worker.awaitTermination(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS)) {
+          continue;
+        }
+      } catch (InterruptedException ie) {
+        Thread.currentThread().interrupt();
+      }
+
+      numDropped += worker.shutdownNow().size();
+    }
+
+    if (numDropped > 0) {
+      queued.addAndGet(-numDropped);
+      droppedMeter.mark(numDropped);
+
+      LOG.warn("Dropped {} status updates which weren't applied within {}ms of stopping", numDropped, drainMillis);
+    }
+  }
+
+  public int getNumQueued() {
+    return queued.get();
+  }
+
+  public void enqueue(final SchedulerDriver driver, final TaskStatus status) {
+    final String taskId = status.getTaskId().getValue();
+
+    queued.incrementAndGet();
+
+    try {
+      getWorker(taskId).execute(new Runnable() {
+
+        @Override
+        public void run() {
+          final Timer.Context context = updateTimer.time();
+
+          try {
+            scheduler.statusUpdate(driver, status);
+          } catch (Throwable t) {
+            LOG.error("Scheduler threw an uncaught exception processing status update {} for task {} - exiting", status.getState(), taskId, t);
+
+            exceptionNotifier.notify(t);
+
+            abort.abort(AbortReason.UNRECOVERABLE_ERROR);
+          } finally {
+            context.stop();
+            queued.decrementAndGet();
+          }
+        }
+
+      });
+    } catch (RejectedExecutionException ree) {
+      queued.decrementAndGet();
+      droppedMeter.mark();
+
+      LOG.warn("Dropped status update {} for task {}, pipeline is stopped", status.getState(), taskId);
+    }
+  }
+
+  private ThreadPoolExecutor getWorker(String taskId) {
+    return workers.get((taskId.hashCode() & Integer.MAX_VALUE) % workers.size());
+  }
+
+  private class BlockWhenFull implements RejectedExecutionHandler {
+
+    @Override
+    public void rejectedExecution(Runnable runnable, ThreadPoolExecutor worker) {
+      if (worker.isShutdown()) {
+        throw new RejectedExecutionException("Worker is stopped");
+      }
+
+      blockedMeter.mark();
+
+      try {
+        worker.getQueue().put(runnable);
+      } catch (InterruptedException ie) {
+        Thread.currentThread().interrupt();
+        throw new RejectedExecutionException(ie);
+      }
+
+      // stopped while we were waiting, the worker may already be gone
+      if (worker.isShutdown() && worker.remove(runnable)) {
+        throw new RejectedExecutionException("Worker is stopped");
+      }
+    }
+
+  }
+
+}
@@ -11,13 +11,21 @@ import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response.Status;
 
+import com.google.common.base.Optional;
 import com.google.inject.Inject;
+import com.hubspot.singularity.ExtendedTaskState;
+import com.hubspot.singularity.SingularityDeploy;
 import com.hubspot.singularity.SingularityDeployHistory;
+import com.hubspot.singularity.SingularityDeployMarker;
+import com.hubspot.singularity.SingularityDeployResult;
+import com.hubspot.singularity.SingularityDeployStatistics;
+import com.hubspot.singularity.SingularityRequestBuilder;
 import com.hubspot.singularity.SingularityRequestHistory;
 import com.hubspot.singularity.SingularityService;
 import com.hubspot.singularity.SingularityTaskHistory;
 import com.hubspot.singularity.SingularityTaskId;
 import com.hubspot.singularity.SingularityTaskIdHistory;
+import com.hubspot.singularity.WebExceptions;
 import com.hubspot.singularity.data.DeployManager;
 import com.hubspot.singularity.data.TaskManager;
 import com.hubspot.singularity.data.history.DeployHistoryHelper;
@@ -82,6 +90,27 @@ public class HistoryResource extends AbstractHistoryResource {
     return limitCount * (pageParam - 1);
   }
 
+  // pages are fetched by offset only when a page is asked for, otherwise by keyset from the last item of the previous page (if any)
+  private boolean isKeysetPage(Integer pageParam, Object... lastParams) {
+    int numLastParams = 0;
+
+    for (Object lastParam : lastParams) {
+      if (lastParam != null) {
+        numLastParams++;
+      }
+    }
+
+    if (numLastParams > 0 && numLastParams < lastParams.length) {
+      throw WebExceptions.badRequest("Provide every key of the last item of the previous page or none of them");
+    }
+
+    if (pageParam != null && numLastParams > 0) {
+      throw WebExceptions.badRequest("Provide either a page or the last item of the previous page, not both");
+    }
+
+    return pageParam == null;
+  }
+
   @GET
   @Path("/request/{requestId}/tasks/active")
   public List<SingularityTaskIdHistory> getTaskHistoryForRequest(@PathParam("requestId") String requestId) {
@@ -98,8 +127,20 @@ public class HistoryResource extends AbstractHistoryResource {
 
   @GET
   @Path("/request/{requestId}/tasks")
-  public List<SingularityTaskIdHistory> getTaskHistoryForRequest(@PathParam("requestId") String requestId, @QueryParam("count") Integer count, @QueryParam("page") Integer page) {
+  public List<SingularityTaskIdHistory> getTaskHistoryForRequest(@PathParam("requestId") String requestId, @QueryParam("count") Integer count, @QueryParam("page") Integer page,
+      @QueryParam("lastTaskId") String lastTaskId, @QueryParam("lastUpdatedAt") Long lastUpdatedAt) {
     final Integer limitCount = getLimitCount(count);
+
+    if (isKeysetPage(page, lastTaskId, lastUpdatedAt)) {
+      Optional<SingularityTaskIdHistory> last = Optional.absent();
+
+      if (lastTaskId != null) {
+        last = Optional.of(new SingularityTaskIdHistory(getTaskIdObject(lastTaskId), lastUpdatedAt, Optional.<ExtendedTaskState> absent()));
+      }
+
+      return taskHistoryHelper.getBlendedHistoryAfter(requestId, last, limitCount);
+    }
+
     final Integer limitStart = getLimitStart(limitCount, page);
 
     return taskHistoryHelper.getBlendedHistory(requestId, limitStart, limitCount);
@@ -107,8 +148,21 @@ public class HistoryResource extends AbstractHistoryResource {
 
   @GET
   @Path("/request/{requestId}/deploys")
-  public List<SingularityDeployHistory> getDeploys(@PathParam("requestId") String requestId, @QueryParam("count") Integer count, @QueryParam("page") Integer page) {
+  public List<SingularityDeployHistory> getDeploys(@PathParam("requestId") String requestId, @QueryParam("count") Integer count, @QueryParam("page") Integer page,
+      @QueryParam("lastDeployId") String lastDeployId, @QueryParam("lastCreatedAt") Long lastCreatedAt) {
     final Integer limitCount = getLimitCount(count);
+
+    if (isKeysetPage(page, lastDeployId, lastCreatedAt)) {
+      Optional<SingularityDeployHistory> last = Optional.absent();
+
+      if (lastDeployId != null) {
+        last = Optional.of(new SingularityDeployHistory(Optional.<SingularityDeployResult> absent(), new SingularityDeployMarker(requestId, lastDeployId, lastCreatedAt, Optional.<String> absent()),
+            Optional.<SingularityDeploy> absent(), Optional.<SingularityDeployStatistics> absent()));
+      }
+
+      return deployHistoryHelper.getBlendedHistoryAfter(requestId, last, limitCount);
+    }
+
     final Integer limitStart = getLimitStart(limitCount, page);
 
     return deployHistoryHelper.getBlendedHistory(requestId, limitStart, limitCount);
@@ -116,8 +170,20 @@ public class HistoryResource extends AbstractHistoryResource {
 
   @GET
   @Path("/request/{requestId}/requests")
-  public List<SingularityRequestHistory> getRequestHistoryForRequest(@PathParam("requestId") String requestId, @QueryParam("count") Integer count, @QueryParam("page") Integer page) {
+  public List<SingularityRequestHistory> getRequestHistoryForRequest(@PathParam("requestId") String requestId, @QueryParam("count") Integer count, @QueryParam("page") Integer page,
+      @QueryParam("lastCreatedAt") Long lastCreatedAt) {
     final Integer limitCount = getLimitCount(count);
+
+    if (isKeysetPage(page, lastCreatedAt)) {
+      Optional<SingularityRequestHistory> last = Optional.absent();
+
+      if (lastCreatedAt != null) {
+        last = Optional.of(new SingularityRequestHistory(lastCreatedAt, Optional.<String> absent(), null, new SingularityRequestBuilder(requestId).build()));
+      }
+
+      return requestHistoryHelper.getBlendedHistoryAfter(requestId, last, limitCount);
+    }
+
     final Integer limitStart = getLimitStart(limitCount, page);
 
     return requestHistoryHelper.getBlendedHistory(requestId, limitStart, limitCount);
@@ -125,8 +191,14 @@ public class HistoryResource extends AbstractHistoryResource {
 
   @GET
   @Path("/requests/search")
-  public List<String> getRequestHistoryForRequestLike(@QueryParam("requestIdLike") String requestIdLike, @QueryParam("count") Integer count, @QueryParam("page") Integer page) {
+  public List<String> getRequestHistoryForRequestLike(@QueryParam("requestIdLike") String requestIdLike, @QueryParam("count") Integer count, @QueryParam("page") Integer page,
+      @QueryParam("lastRequestId") String lastRequestId) {
     final Integer limitCount = getLimitCount(count);
+
+    if (isKeysetPage(page, lastRequestId) && lastRequestId != null) {
+      return historyManager.getRequestHistoryLikeAfter(requestIdLike, lastRequestId, limitCount);
+    }
+
     final Integer limitStart = getLimitStart(limitCount, page);
 
     return historyManager.getRequestHistoryLike(requestIdLike, limitStart, limitCount);
@@ -13,7 +13,6 @@ import javax.ws.rs.core.MediaType;
 
 import com.google.common.base.Optional;
 import com.google.common.collect.Iterables;
-import com.google.common.collect.Lists;
 import com.google.inject.Inject;
 import com.hubspot.jackson.jaxrs.PropertyFiltering;
 import com.hubspot.mesos.client.MesosClient;
@@ -97,7 +96,7 @@ public class TaskResource {
   @PropertyFiltering
   @Path("/scheduled/request/{requestId}")
   public List<SingularityTaskRequest> getScheduledTasksForRequest(@PathParam("requestId") String requestId) {
-    final List<SingularityPendingTask> tasks = Lists.newArrayList(Iterables.filter(taskManager.getPendingTasks(), SingularityPendingTask.matchingRequest(requestId)));
+    final List<SingularityPendingTask> tasks = taskManager.getPendingTasksForRequest(requestId);
 
     return taskRequestManager.getTaskRequests(tasks);
   }
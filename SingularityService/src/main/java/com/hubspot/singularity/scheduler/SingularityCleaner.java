@@ -1,7 +1,13 @@
 package com.hubspot.singularity.scheduler;
 
+import io.dropwizard.lifecycle.Managed;
+
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 
 import javax.inject.Singleton;
@@ -12,6 +18,9 @@ import org.slf4j.LoggerFactory;
 import com.google.common.base.Optional;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.inject.Inject;
 import com.hubspot.baragon.models.BaragonRequestState;
 import com.hubspot.mesos.JavaUtils;
@@ -41,7 +50,7 @@ import com.hubspot.singularity.scheduler.SingularityDeployHealthHelper.DeployHea
 import com.hubspot.singularity.sentry.SingularityExceptionNotifier;
 
 @Singleton
-public class SingularityCleaner {
+public class SingularityCleaner implements Managed {
 
   private static final Logger LOG = LoggerFactory.getLogger(SingularityCleaner.class);
 
@@ -56,6 +65,8 @@ public class SingularityCleaner {
   private final SingularityConfiguration configuration;
   private final long killNonLongRunningTasksInCleanupAfterMillis;
 
+  private final ExecutorService lbCleanupExecutorService;
+
   @Inject
   public SingularityCleaner(TaskManager taskManager, SingularityDeployHealthHelper deployHealthHelper, DeployManager deployManager, RequestManager requestManager,
       SingularityDriverManager driverManager, SingularityConfiguration configuration, LoadBalancerClient lbClient, SingularityExceptionNotifier exceptionNotifier) {
@@ -70,9 +81,20 @@ public class SingularityCleaner {
     this.configuration = configuration;
 
     this.killNonLongRunningTasksInCleanupAfterMillis = TimeUnit.SECONDS.toMillis(configuration.getKillNonLongRunningTasksInCleanupAfterSeconds());
+
+    this.lbCleanupExecutorService = Executors.newFixedThreadPool(Math.max(1, configuration.getLoadBalancerCleanupThreads()), new ThreadFactoryBuilder().setNameFormat("SingularityLBCleanup-%d").build());
+  }
+
+  @Override
+  public void start() {
   }
 
-  private boolean shouldKillTask(SingularityTaskCleanup taskCleanup, List<SingularityTaskId> activeTaskIds, List<SingularityTaskId> cleaningTasks) {
+  @Override
+  public void stop() {
+    MoreExecutors.shutdownAndAwaitTermination(lbCleanupExecutorService, 1, TimeUnit.SECONDS);
+  }
+
+  private boolean shouldKillTask(SingularityTaskCleanup taskCleanup, SingularityTaskIdIndex taskIdIndex) {
     final Optional<SingularityRequestWithState> requestWithState = requestManager.getRequest(taskCleanup.getTaskId().getRequestId());
 
     if (!requestWithState.isPresent()) {
@@ -123,7 +145,7 @@ public class SingularityCleaner {
     }
 
     // check to see if there are enough active tasks out there that have been active for long enough that we can safely shut this task down.
-    final List<SingularityTaskId> matchingTasks = SingularityTaskId.matchingAndNotIn(activeTaskIds, taskCleanup.getTaskId().getRequestId(), taskCleanup.getTaskId().getDeployId(), cleaningTasks);
+    final List<SingularityTaskId> matchingTasks = taskIdIndex.getActiveNotCleaningTaskIds(taskCleanup.getTaskId().getRequestId(), taskCleanup.getTaskId().getDeployId());
 
     if (matchingTasks.size() < request.getInstancesSafe()) {
       LOG.trace("Not killing a task {} yet, only {} matching out of a required {}", taskCleanup, matchingTasks.size(), request.getInstancesSafe());
@@ -273,41 +295,57 @@ public class SingularityCleaner {
     LOG.info("{} obsolete, {} waiting, {} rekilled tasks based on {} killedTaskIdRecords", obsolete, waiting, rekilled, killedTaskIdRecords.size());
   }
 
+  /**
+   * On the leader only the cleanups which are due are checked, and a cleanup which is still waiting - for its replacements to
+   * become healthy or for its task to be removed from the LB - is parked until taskCleanupRecheckMillis from now.
+   */
   private void drainTaskCleanupQueue() {
     final long start = System.currentTimeMillis();
 
-    final List<SingularityTaskCleanup> cleanupTasks = taskManager.getCleanupTasks();
+    final boolean useCleanupQueue = taskManager.isCleanupQueueActive();
+    final List<SingularityTaskCleanup> cleanupTasks = useCleanupQueue ? taskManager.getDueCleanupTasks(start) : taskManager.getCleanupTasks();
 
     if (cleanupTasks.isEmpty()) {
-      LOG.trace("Task cleanup queue is empty");
+      LOG.trace("Task cleanup queue has no due cleanups");
       return;
     }
 
-    final List<SingularityTaskId> cleaningTasks = Lists.newArrayListWithCapacity(cleanupTasks.size());
-    for (SingularityTaskCleanup cleanupTask : cleanupTasks) {
-      cleaningTasks.add(cleanupTask.getTaskId());
+    final List<SingularityTaskId> cleaningTasks;
+
+    if (useCleanupQueue) {
+      cleaningTasks = taskManager.getCleanupTaskIds();
+    } else {
+      cleaningTasks = Lists.newArrayListWithCapacity(cleanupTasks.size());
+      for (SingularityTaskCleanup cleanupTask : cleanupTasks) {
+        cleaningTasks.add(cleanupTask.getTaskId());
+      }
     }
 
-    LOG.info("Cleaning up {} tasks", cleanupTasks.size());
+    LOG.info("Cleaning up {} tasks ({} cleaning)", cleanupTasks.size(), cleaningTasks.size());
 
-    final List<SingularityTaskId> activeTaskIds = taskManager.getActiveTaskIds();
+    final SingularityTaskIdIndex taskIdIndex = new SingularityTaskIdIndex(taskManager.getActiveTaskIds(), cleaningTasks);
 
     int killedTasks = 0;
+    int parkedTasks = 0;
 
     for (SingularityTaskCleanup cleanupTask : cleanupTasks) {
       if (!isValidTask(cleanupTask)) {
         LOG.info("Couldn't find a matching active task for cleanup task {}, deleting..", cleanupTask);
         taskManager.deleteCleanupTask(cleanupTask.getTaskId().getId());
-      } else if (shouldKillTask(cleanupTask, activeTaskIds, cleaningTasks) && checkLBStateAndShouldKillTask(cleanupTask)) {
+      } else if (shouldKillTask(cleanupTask, taskIdIndex) && checkLBStateAndShouldKillTask(cleanupTask)) {
         driverManager.killAndRecord(cleanupTask.getTaskId(), cleanupTask.getCleanupType());
 
         taskManager.deleteCleanupTask(cleanupTask.getTaskId().getId());
 
         killedTasks++;
+      } else if (useCleanupQueue) {
+        taskManager.parkCleanupTask(cleanupTask.getTaskId(), start + configuration.getTaskCleanupRecheckMillis());
+
+        parkedTasks++;
       }
     }
 
-    LOG.info("Killed {} tasks in {}", killedTasks, JavaUtils.duration(start));
+    LOG.info("Killed {} tasks (parked {}) in {}", killedTasks, parkedTasks, JavaUtils.duration(start));
   }
 
   private boolean checkLBStateAndShouldKillTask(SingularityTaskCleanup cleanupTask) {
@@ -446,12 +484,29 @@ public class SingularityCleaner {
     int cleanedTasks = 0;
     int ignoredTasks = 0;
 
-    for (SingularityTaskId taskId : lbCleanupTasks) {
-      final long checkStart = System.currentTimeMillis();
+    // checked concurrently so that LB state lookups for different tasks overlap
+    final List<Future<CheckLBState>> checks = Lists.newArrayListWithCapacity(lbCleanupTasks.size());
+
+    for (final SingularityTaskId taskId : lbCleanupTasks) {
+      checks.add(lbCleanupExecutorService.submit(new Callable<CheckLBState>() {
+
+        @Override
+        public CheckLBState call() {
+          final long checkStart = System.currentTimeMillis();
 
-      final CheckLBState checkLbState = checkLbState(taskId);
+          final CheckLBState checkLbState = checkLbState(taskId);
+
+          LOG.debug("LB cleanup for task {} had state {} after {}", taskId, checkLbState, JavaUtils.duration(checkStart));
+
+          return checkLbState;
+        }
+
+      }));
+    }
 
-      LOG.debug("LB cleanup for task {} had state {} after {}", taskId, checkLbState, JavaUtils.duration(checkStart));
+    for (int i = 0; i < lbCleanupTasks.size(); i++) {
+      final SingularityTaskId taskId = lbCleanupTasks.get(i);
+      final CheckLBState checkLbState = Futures.getUnchecked(checks.get(i));
 
       switch (checkLbState) {
         case WAITING:
@@ -1,8 +1,16 @@
 package com.hubspot.singularity.scheduler;
 
+import io.dropwizard.lifecycle.Managed;
+
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 
 import javax.inject.Singleton;
@@ -11,10 +19,15 @@ import org.apache.commons.lang3.time.DurationFormatUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
 import com.google.common.base.Optional;
 import com.google.common.base.Predicates;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.common.util.concurrent.Uninterruptibles;
 import com.google.inject.Inject;
 import com.hubspot.baragon.models.BaragonRequestState;
 import com.hubspot.mesos.JavaUtils;
@@ -49,25 +62,83 @@ import com.hubspot.singularity.hooks.LoadBalancerClient;
 import com.hubspot.singularity.scheduler.SingularityDeployHealthHelper.DeployHealth;
 
 @Singleton
-public class SingularityDeployChecker {
+public class SingularityDeployChecker implements Managed {
 
   private static final Logger LOG = LoggerFactory.getLogger(SingularityDeployChecker.class);
 
+  /**
+   * The ZK writes a pending deploy's evaluation calls for, held back so that evaluating only reads state (and talks to the
+   * load balancer) and every write happens when the deploy is committed.
+   */
+  private static class DeployWrites {
+
+    private Optional<SingularityPendingDeploy> updatedPendingDeploy = Optional.absent();
+    private Optional<SingularityLoadBalancerUpdate> enqueuedLbUpdate = Optional.absent();
+    private Collection<SingularityTaskId> enqueuedTasks = Collections.emptyList();
+
+  }
+
+  /**
+   * The outcome of evaluating a pending deploy, to be committed once every pending deploy has been evaluated.
+   */
+  private static class DeployCheck {
+
+    private final SingularityPendingDeploy pendingDeploy;
+    private final Optional<SingularityRequestWithState> requestWithState;
+    private final Optional<SingularityDeploy> deploy;
+    private final Optional<SingularityDeployResult> deployResult;
+    private final List<SingularityTaskId> deployMatchingTasks;
+    private final List<SingularityTaskId> allOtherMatchingTasks;
+    private final DeployWrites writes;
+
+    private DeployCheck(SingularityPendingDeploy pendingDeploy, Optional<SingularityRequestWithState> requestWithState, Optional<SingularityDeploy> deploy, Optional<SingularityDeployResult> deployResult,
+        List<SingularityTaskId> deployMatchingTasks, List<SingularityTaskId> allOtherMatchingTasks, DeployWrites writes) {
+      this.pendingDeploy = pendingDeploy;
+      this.requestWithState = requestWithState;
+      this.deploy = deploy;
+      this.deployResult = deployResult;
+      this.deployMatchingTasks = deployMatchingTasks;
+      this.allOtherMatchingTasks = allOtherMatchingTasks;
+      this.writes = writes;
+    }
+
+    private static DeployCheck requestNotActive(SingularityPendingDeploy pendingDeploy) {
+      return new DeployCheck(pendingDeploy, Optional.<SingularityRequestWithState> absent(), Optional.<SingularityDeploy> absent(), Optional.<SingularityDeployResult> absent(),
+          Collections.<SingularityTaskId> emptyList(), Collections.<SingularityTaskId> emptyList(), new DeployWrites());
+    }
+
+  }
+
   private final DeployManager deployManager;
   private final TaskManager taskManager;
   private final SingularityDeployHealthHelper deployHealthHelper;
   private final RequestManager requestManager;
   private final SingularityConfiguration configuration;
   private final LoadBalancerClient lbClient;
+  private final ExecutorService executorService;
+  private final Timer checkTimer;
 
   @Inject
-  public SingularityDeployChecker(DeployManager deployManager, SingularityDeployHealthHelper deployHealthHelper, LoadBalancerClient lbClient, RequestManager requestManager, TaskManager taskManager, SingularityConfiguration configuration) {
+  public SingularityDeployChecker(DeployManager deployManager, SingularityDeployHealthHelper deployHealthHelper, LoadBalancerClient lbClient, RequestManager requestManager, TaskManager taskManager, SingularityConfiguration configuration,
+      MetricRegistry registry) {
     this.configuration = configuration;
     this.lbClient = lbClient;
     this.deployHealthHelper = deployHealthHelper;
     this.requestManager = requestManager;
     this.deployManager = deployManager;
     this.taskManager = taskManager;
+
+    this.executorService = Executors.newFixedThreadPool(Math.max(1, configuration.getCheckDeploysThreads()), new ThreadFactoryBuilder().setNameFormat("SingularityDeployChecker-%d").build());
+    this.checkTimer = registry.timer(MetricRegistry.name(SingularityDeployChecker.class, "checks"));
+  }
+
+  @Override
+  public void start() {
+  }
+
+  @Override
+  public void stop() {
+    MoreExecutors.shutdownAndAwaitTermination(executorService, 1, TimeUnit.SECONDS);
   }
 
   public int checkDeploys() {
@@ -81,10 +152,41 @@ public class SingularityDeployChecker {
     final Map<SingularityPendingDeploy, SingularityDeployKey> pendingDeployToKey = SingularityDeployKey.fromPendingDeploys(pendingDeploys);
     final Map<SingularityDeployKey, SingularityDeploy> deployKeyToDeploy = deployManager.getDeploysForKeys(pendingDeployToKey.values());
 
-    for (SingularityPendingDeploy pendingDeploy : pendingDeploys) {
-      LOG.debug("Checking a deploy {}", pendingDeploy);
+    // pending deploys are per request, so they can be evaluated (including any LB calls for them) concurrently - evaluating
+    // only reads, and every change to deploy, request and task state is then committed one at a time on this thread
+    final List<Future<DeployCheck>> deployChecks = Lists.newArrayListWithCapacity(pendingDeploys.size());
+
+    for (final SingularityPendingDeploy pendingDeploy : pendingDeploys) {
+      deployChecks.add(executorService.submit(new Callable<DeployCheck>() {
+
+        @Override
+        public DeployCheck call() {
+          LOG.debug("Checking a deploy {}", pendingDeploy);
 
-      checkDeploy(pendingDeploy, cancelDeploys, pendingDeployToKey, deployKeyToDeploy);
+          final Timer.Context context = checkTimer.time();
+
+          try {
+            return checkDeploy(pendingDeploy, cancelDeploys, pendingDeployToKey, deployKeyToDeploy);
+          } finally {
+            context.stop();
+          }
+        }
+
+      }));
+    }
+
+    for (int i = 0; i < deployChecks.size(); i++) {
+      final DeployCheck deployCheck;
+
+      try {
+        deployCheck = Uninterruptibles.getUninterruptibly(deployChecks.get(i));
+      } catch (ExecutionException e) {
+        // nothing was written for it, so it is simply evaluated again on the next check
+        LOG.error("Failed to check deploy {}", pendingDeploys.get(i), e.getCause());
+        continue;
+      }
+
+      commitDeploy(deployCheck);
     }
 
     for (SingularityDeployMarker cancelDeploy : cancelDeploys) {
@@ -96,7 +198,7 @@ public class SingularityDeployChecker {
     return pendingDeploys.size();
   }
 
-  private void checkDeploy(final SingularityPendingDeploy pendingDeploy, final List<SingularityDeployMarker> cancelDeploys, final Map<SingularityPendingDeploy, SingularityDeployKey> pendingDeployToKey, final Map<SingularityDeployKey, SingularityDeploy> deployKeyToDeploy) {
+  private DeployCheck checkDeploy(final SingularityPendingDeploy pendingDeploy, final List<SingularityDeployMarker> cancelDeploys, final Map<SingularityPendingDeploy, SingularityDeployKey> pendingDeployToKey, final Map<SingularityDeployKey, SingularityDeploy> deployKeyToDeploy) {
     final SingularityDeployKey deployKey = pendingDeployToKey.get(pendingDeploy);
     final Optional<SingularityDeploy> deploy = Optional.fromNullable(deployKeyToDeploy.get(deployKey));
 
@@ -106,11 +208,11 @@ public class SingularityDeployChecker {
       LOG.warn("Deploy {} request was {}, removing deploy", SingularityRequestWithState.getRequestState(maybeRequestWithState), pendingDeploy);
 
       if (shouldCancelLoadBalancer(pendingDeploy)) {
-        cancelLoadBalancer(pendingDeploy);
+        // the pending deploy is removed on commit, so there is nothing to update with the result
+        sendCancelToLoadBalancer(pendingDeploy);
       }
 
-      removePendingDeploy(pendingDeploy);
-      return;
+      return DeployCheck.requestNotActive(pendingDeploy);
     }
 
     final SingularityDeployMarker pendingDeployMarker = pendingDeploy.getDeployMarker();
@@ -120,17 +222,46 @@ public class SingularityDeployChecker {
     final SingularityRequestWithState requestWithState = maybeRequestWithState.get();
     final SingularityRequest request = requestWithState.getRequest();
 
-    final List<SingularityTaskId> requestTasks = taskManager.getTaskIdsForRequest(request.getId());
-    final List<SingularityTaskId> activeTasks = taskManager.filterActiveTaskIds(requestTasks);
+    final List<SingularityTaskId> activeTasks = taskManager.getActiveTaskIdsForRequest(request.getId());
+    final List<SingularityTaskId> inactiveTasks = taskManager.getInactiveTaskIdsForRequest(request.getId());
 
-    final List<SingularityTaskId> inactiveDeployMatchingTasks = SingularityTaskId.matchingAndNotIn(requestTasks, pendingDeployMarker.getRequestId(), pendingDeployMarker.getDeployId(), activeTasks);
+    final List<SingularityTaskId> inactiveDeployMatchingTasks = Lists.newArrayList(Iterables.filter(inactiveTasks, SingularityTaskId.matchingDeploy(pendingDeployMarker.getDeployId())));
     final List<SingularityTaskId> deployMatchingTasks = Lists.newArrayList(Iterables.filter(activeTasks, SingularityTaskId.matchingDeploy(pendingDeployMarker.getDeployId())));
     final List<SingularityTaskId> allOtherMatchingTasks = Lists.newArrayList(Iterables.filter(activeTasks, Predicates.not(SingularityTaskId.matchingDeploy(pendingDeployMarker.getDeployId()))));
 
-    SingularityDeployResult deployResult = getDeployResult(request, cancelRequest, pendingDeploy, deployKey, deploy, deployMatchingTasks, allOtherMatchingTasks, inactiveDeployMatchingTasks);
+    final DeployWrites writes = new DeployWrites();
+    final SingularityDeployResult deployResult = getDeployResult(request, cancelRequest, pendingDeploy, deployKey, deploy, deployMatchingTasks, allOtherMatchingTasks, inactiveDeployMatchingTasks, writes);
 
     LOG.info("Deploy {} had result {} after {}", pendingDeployMarker, deployResult, JavaUtils.durationFromMillis(System.currentTimeMillis() - pendingDeployMarker.getTimestamp()));
 
+    return new DeployCheck(pendingDeploy, maybeRequestWithState, deploy, Optional.of(deployResult), deployMatchingTasks, allOtherMatchingTasks, writes);
+  }
+
+  private void commitDeploy(DeployCheck deployCheck) {
+    final SingularityPendingDeploy pendingDeploy = deployCheck.pendingDeploy;
+
+    if (deployCheck.writes.enqueuedLbUpdate.isPresent()) {
+      updateLoadBalancerStateForTasks(deployCheck.writes.enqueuedTasks, LoadBalancerRequestType.ADD, deployCheck.writes.enqueuedLbUpdate.get());
+    }
+
+    if (deployCheck.writes.updatedPendingDeploy.isPresent()) {
+      deployManager.savePendingDeploy(deployCheck.writes.updatedPendingDeploy.get());
+    }
+
+    if (!deployCheck.requestWithState.isPresent()) {
+      removePendingDeploy(pendingDeploy);
+      return;
+    }
+
+    final SingularityDeployMarker pendingDeployMarker = pendingDeploy.getDeployMarker();
+    final SingularityRequestWithState requestWithState = deployCheck.requestWithState.get();
+    final SingularityRequest request = requestWithState.getRequest();
+    final Optional<SingularityDeploy> deploy = deployCheck.deploy;
+    final List<SingularityTaskId> deployMatchingTasks = deployCheck.deployMatchingTasks;
+    final List<SingularityTaskId> allOtherMatchingTasks = deployCheck.allOtherMatchingTasks;
+
+    SingularityDeployResult deployResult = deployCheck.deployResult.get();
+
     if (deployResult.getDeployState() == DeployState.SUCCEEDED) {
       if (saveNewDeployState(pendingDeployMarker, Optional.of(pendingDeployMarker))) {
         if (request.isLoadBalanced()) {
@@ -155,7 +286,7 @@ public class SingularityDeployChecker {
   }
 
   private void deleteObsoletePendingTasks(SingularityPendingDeploy pendingDeploy) {
-    for (SingularityPendingTaskId pendingTaskId : Iterables.filter(taskManager.getPendingTaskIds(), Predicates.and(SingularityPendingTaskId.matchingRequestId(pendingDeploy.getDeployMarker().getRequestId()), Predicates.not(SingularityPendingTaskId.matchingDeployId(pendingDeploy.getDeployMarker().getDeployId()))))) {
+    for (SingularityPendingTaskId pendingTaskId : Iterables.filter(taskManager.getPendingTaskIdsForRequest(pendingDeploy.getDeployMarker().getRequestId()), Predicates.not(SingularityPendingTaskId.matchingDeployId(pendingDeploy.getDeployMarker().getDeployId())))) {
       LOG.debug("Deleting obsolete pending task {}", pendingTaskId.getId());
       taskManager.deletePendingTask(pendingTaskId);
     }
@@ -178,9 +309,13 @@ public class SingularityDeployChecker {
   }
 
   private void cleanupTasks(Iterable<SingularityTaskId> tasksToKill, TaskCleanupType cleanupType, long timestamp) {
+    final List<SingularityTaskCleanup> cleanupTasks = Lists.newArrayList();
+
     for (SingularityTaskId matchingTask : tasksToKill) {
-      taskManager.createCleanupTask(new SingularityTaskCleanup(Optional.<String> absent(), cleanupType, timestamp, matchingTask));
+      cleanupTasks.add(new SingularityTaskCleanup(Optional.<String> absent(), cleanupType, timestamp, matchingTask));
     }
+
+    taskManager.createCleanupTasks(cleanupTasks);
   }
 
   private boolean saveNewDeployState(SingularityDeployMarker pendingDeployMarker, Optional<SingularityDeployMarker> newActiveDeploy) {
@@ -270,7 +405,8 @@ public class SingularityDeployChecker {
     return tasks;
   }
 
-  private SingularityDeployResult enqueueSwitchLoadBalancer(SingularityRequest request, SingularityDeploy deploy, SingularityPendingDeploy pendingDeploy, Collection<SingularityTaskId> deployTasks, Collection<SingularityTaskId> allOtherTasks) {
+  private SingularityDeployResult enqueueSwitchLoadBalancer(SingularityRequest request, SingularityDeploy deploy, SingularityPendingDeploy pendingDeploy, Collection<SingularityTaskId> deployTasks, Collection<SingularityTaskId> allOtherTasks,
+      DeployWrites writes) {
     if (configuration.getLoadBalancerUri() == null) {
       LOG.warn("Deploy {} required a load balancer URI but it wasn't set", pendingDeploy);
       return new SingularityDeployResult(DeployState.FAILED, "No valid load balancer URI was present");
@@ -280,21 +416,21 @@ public class SingularityDeployChecker {
 
     final LoadBalancerRequestId lbRequestId = getLoadBalancerRequestId(pendingDeploy.getDeployMarker());
 
-    updateLoadBalancerStateForTasks(deployTasks, LoadBalancerRequestType.ADD, new SingularityLoadBalancerUpdate(BaragonRequestState.UNKNOWN, lbRequestId, Optional.<String> absent(), System.currentTimeMillis(), LoadBalancerMethod.PRE_ENQUEUE, Optional.<String> absent()));
+    writes.enqueuedTasks = deployTasks;
+    writes.enqueuedLbUpdate = Optional.of(new SingularityLoadBalancerUpdate(BaragonRequestState.UNKNOWN, lbRequestId, Optional.<String> absent(), System.currentTimeMillis(), LoadBalancerMethod.PRE_ENQUEUE,
+        Optional.<String> absent()));
 
     SingularityLoadBalancerUpdate enqueueResult = lbClient.enqueue(lbRequestId, request, deploy, getTasks(deployTasks, tasks), getTasks(allOtherTasks, tasks));
 
     DeployState deployState = interpretLoadBalancerState(enqueueResult, DeployState.WAITING);
 
-    updatePendingDeploy(pendingDeploy, enqueueResult, deployState);
+    updatePendingDeploy(pendingDeploy, enqueueResult, deployState, writes);
 
     return fromLbState(deployState, enqueueResult);
   }
 
-  private void updatePendingDeploy(SingularityPendingDeploy pendingDeploy, SingularityLoadBalancerUpdate lbUpdate, DeployState deployState) {
-    SingularityPendingDeploy copy = new SingularityPendingDeploy(pendingDeploy.getDeployMarker(), Optional.of(lbUpdate), deployState);
-
-    deployManager.savePendingDeploy(copy);
+  private void updatePendingDeploy(SingularityPendingDeploy pendingDeploy, SingularityLoadBalancerUpdate lbUpdate, DeployState deployState, DeployWrites writes) {
+    writes.updatedPendingDeploy = Optional.of(new SingularityPendingDeploy(pendingDeploy.getDeployMarker(), Optional.of(lbUpdate), deployState));
   }
 
   private DeployState interpretLoadBalancerState(SingularityLoadBalancerUpdate lbUpdate, DeployState unknownState) {
@@ -319,12 +455,12 @@ public class SingularityDeployChecker {
     return lbClient.cancel(getLoadBalancerRequestId(pendingDeploy.getDeployMarker()));
   }
 
-  private SingularityDeployResult cancelLoadBalancer(SingularityPendingDeploy pendingDeploy) {
+  private SingularityDeployResult cancelLoadBalancer(SingularityPendingDeploy pendingDeploy, DeployWrites writes) {
     final SingularityLoadBalancerUpdate lbUpdate = sendCancelToLoadBalancer(pendingDeploy);
 
     final DeployState deployState = interpretLoadBalancerState(lbUpdate, DeployState.CANCELING);
 
-    updatePendingDeploy(pendingDeploy, lbUpdate, deployState);
+    updatePendingDeploy(pendingDeploy, lbUpdate, deployState, writes);
 
     return fromLbState(deployState, lbUpdate);
   }
@@ -346,7 +482,8 @@ public class SingularityDeployChecker {
   }
 
   private SingularityDeployResult getDeployResult(final SingularityRequest request, final Optional<SingularityDeployMarker> cancelRequest, final SingularityPendingDeploy pendingDeploy, final SingularityDeployKey deployKey,
-      final Optional<SingularityDeploy> deploy, final Collection<SingularityTaskId> deployActiveTasks, final Collection<SingularityTaskId> otherActiveTasks, final Collection<SingularityTaskId> inactiveDeployMatchingTasks) {
+      final Optional<SingularityDeploy> deploy, final Collection<SingularityTaskId> deployActiveTasks, final Collection<SingularityTaskId> otherActiveTasks, final Collection<SingularityTaskId> inactiveDeployMatchingTasks,
+      final DeployWrites writes) {
     if (!request.isDeployable()) {
       LOG.info("Succeeding a deploy {} because the request {} was not deployable", pendingDeploy, request);
 
@@ -367,7 +504,7 @@ public class SingularityDeployChecker {
 
       DeployState deployState = interpretLoadBalancerState(lbUpdate, pendingDeploy.getCurrentDeployState());
 
-      updatePendingDeploy(pendingDeploy, lbUpdate, deployState);
+      updatePendingDeploy(pendingDeploy, lbUpdate, deployState, writes);
 
       if (deployState != DeployState.WAITING) {
         return fromLbState(deployState, lbUpdate);
@@ -379,7 +516,7 @@ public class SingularityDeployChecker {
 
     if (isCancelRequestPresent || isDeployOverdue) {
       if (request.isLoadBalanced() && shouldCancelLoadBalancer(pendingDeploy)) {
-        return cancelLoadBalancer(pendingDeploy);
+        return cancelLoadBalancer(pendingDeploy, writes);
       }
 
       if (isCancelRequestPresent) {
@@ -417,7 +554,7 @@ public class SingularityDeployChecker {
         if (request.isLoadBalanced()) {
           // don't check overdue here because we want to give it a chance to enqueue the load
           // balancer request. the next check will determine its fate.
-          return enqueueSwitchLoadBalancer(request, deploy.get(), pendingDeploy, deployActiveTasks, otherActiveTasks);
+          return enqueueSwitchLoadBalancer(request, deploy.get(), pendingDeploy, deployActiveTasks, otherActiveTasks, writes);
         } else {
           return new SingularityDeployResult(DeployState.SUCCEEDED);
         }
@@ -0,0 +1,234 @@
+package com.hubspot.singularity.scheduler;
+
+import io.dropwizard.lifecycle.Managed;
+
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Singleton;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.google.common.base.Optional;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.RateLimiter;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.inject.Inject;
+import com.hubspot.singularity.config.SingularityConfiguration;
+import com.ning.http.client.AsyncHandler;
+import com.ning.http.client.AsyncHttpClient;
+import com.ning.http.client.AsyncHttpClientConfig;
+import com.ning.http.client.ListenableFuture;
+import com.ning.http.client.Request;
+
+/**
+ * Issues healthcheck requests on a dedicated client which keeps connections to task ports alive between checks. At most
+ * healthcheckMaxConcurrentPerHost checks are in flight against one slave at a time (the rest wait their turn in a per slave
+ * queue) and no more than healthcheckMaxPerSecond are started overall, so a deploy starting hundreds of instances doesn't
+ * flood its slaves or the client.
+ */
+@Singleton
+public class SingularityHealthcheckExecutor implements Managed {
+
+  private static final Logger LOG = LoggerFactory.getLogger(SingularityHealthcheckExecutor.class);
+
+  private static class Healthcheck {
+
+    private final String host;
+    private final Request request;
+    private final AsyncHandler<?> handler;
+
+    private Healthcheck(String host, Request request, AsyncHandler<?> handler) {
+      this.host = host;
+      this.request = request;
+      this.handler = handler;
+    }
+
+  }
+
+  private static class HostHealthchecks {
+
+    private final Queue<Healthcheck> waiting = new ArrayDeque<>();
+    private int inFlight;
+
+  }
+
+  private final AsyncHttpClient http;
+  private final ExecutorService executorService;
+  private final Optional<RateLimiter> rateLimiter;
+  private final int maxConcurrentPerHost;
+
+  private final Map<String, HostHealthchecks> hosts;
+  private int numInFlight;
+  private int numWaiting;
+
+  private final Timer healthcheckTimer;
+
+  @Inject
+  public SingularityHealthcheckExecutor(SingularityConfiguration configuration, MetricRegistry registry) {
+    this.maxConcurrentPerHost = Math.max(1, configuration.getHealthcheckMaxConcurrentPerHost());
+
+    AsyncHttpClientConfig.Builder configBldr = new AsyncHttpClientConfig.Builder();
+    configBldr.setAllowPoolingConnection(true);
+    configBldr.setMaximumConnectionsPerHost(maxConcurrentPerHost);
+    configBldr.setConnectionTimeoutInMs((int) TimeUnit.SECONDS.toMillis(configuration.getHealthcheckTimeoutSeconds()));
+
+    this.http = new AsyncHttpClient(configBldr.build());
+
+    this.executorService = Executors.newFixedThreadPool(Math.max(1, configuration.getHealthcheckStartThreads()), new ThreadFactoryBuilder().setNameFormat("SingularityHealthcheckExecutor-%d").build());
+
+    if (configuration.getHealthcheckMaxPerSecond() > 0) {
+      this.rateLimiter = Optional.of(RateLimiter.create(configuration.getHealthcheckMaxPerSecond()));
+    } else {
+      this.rateLimiter = Optional.absent();
+    }
+
+    this.hosts = Maps.newHashMap();
+
+    this.healthcheckTimer = registry.timer(MetricRegistry.name(SingularityHealthcheckExecutor.class, "healthchecks"));
+
+    registry.register(MetricRegistry.name(SingularityHealthcheckExecutor.class, "inFlight"), new Gauge<Integer>() {
+
+      @Override
+      public Integer getValue() {
+        return getNumInFlight();
+      }
+
+    });
+
+    registry.register(MetricRegistry.name(SingularityHealthcheckExecutor.class, "waiting"), new Gauge<Integer>() {
+
+      @Override
+      public Integer getValue() {
+        return getNumWaiting();
+      }
+
+    });
+  }
+
+  @Override
+  public void start() {
+  }
+
+  @Override
+  public void stop() {
+    MoreExecutors.shutdownAndAwaitTermination(executorService, 1, TimeUnit.SECONDS);
+    http.close();
+  }
+
+  public synchronized int getNumInFlight() {
+    return numInFlight;
+  }
+
+  public synchronized int getNumWaiting() {
+    return numWaiting;
+  }
+
+  /**
+   * Issues request once host has a free slot, passing the response (or failure) to handler.
+   */
+  public void execute(String host, Request request, AsyncHandler<?> handler) {
+    final Healthcheck healthcheck = new Healthcheck(host, request, handler);
+
+    synchronized (this) {
+      HostHealthchecks hostHealthchecks = hosts.get(host);
+
+      if (hostHealthchecks == null) {
+        hostHealthchecks = new HostHealthchecks();
+        hosts.put(host, hostHealthchecks);
+      }
+
+      if (hostHealthchecks.inFlight >= maxConcurrentPerHost) {
+        LOG.trace("{} healthchecks already in flight on {}, queueing {}", hostHealthchecks.inFlight, host, request.getUrl());
+
+        hostHealthchecks.waiting.add(healthcheck);
+        numWaiting++;
+        return;
+      }
+
+      hostHealthchecks.inFlight++;
+      numInFlight++;
+    }
+
+    submit(healthcheck);
+  }
+
+  private void submit(final Healthcheck healthcheck) {
+    try {
+      executorService.execute(new Runnable() {
+
+        @Override
+        public void run() {
+          issue(healthcheck);
+        }
+
+      });
+    } catch (RejectedExecutionException ree) {
+      LOG.warn("Couldn't issue healthcheck {}, executor is shutting down", healthcheck.request.getUrl());
+      release(healthcheck.host);
+    }
+  }
+
+  private void issue(final Healthcheck healthcheck) {
+    if (rateLimiter.isPresent()) {
+      rateLimiter.get().acquire();
+    }
+
+    final Timer.Context context = healthcheckTimer.time();
+
+    final Runnable onDone = new Runnable() {
+
+      @Override
+      public void run() {
+        context.stop();
+        release(healthcheck.host);
+      }
+
+    };
+
+    try {
+      ListenableFuture<?> future = http.executeRequest(healthcheck.request, healthcheck.handler);
+
+      future.addListener(onDone, MoreExecutors.sameThreadExecutor());
+    } catch (Throwable t) {
+      onDone.run();
+      healthcheck.handler.onThrowable(t);
+    }
+  }
+
+  private void release(String host) {
+    Healthcheck next = null;
+
+    synchronized (this) {
+      final HostHealthchecks hostHealthchecks = hosts.get(host);
+
+      next = hostHealthchecks.waiting.poll();
+
+      if (next != null) {
+        numWaiting--;
+      } else {
+        hostHealthchecks.inFlight--;
+        numInFlight--;
+
+        if (hostHealthchecks.inFlight == 0) {
+          hosts.remove(host);
+        }
+      }
+    }
+
+    if (next != null) {
+      submit(next);
+    }
+  }
+
+}
@@ -3,9 +3,8 @@ package com.hubspot.singularity.scheduler;
 import io.dropwizard.lifecycle.Managed;
 
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 
 import javax.inject.Singleton;
@@ -24,8 +23,8 @@ import com.hubspot.singularity.SingularityPendingDeploy;
 import com.hubspot.singularity.SingularityTask;
 import com.hubspot.singularity.config.SingularityConfiguration;
 import com.hubspot.singularity.data.TaskManager;
+import com.hubspot.singularity.scheduler.SingularityTimerWheel.Timeout;
 import com.hubspot.singularity.sentry.SingularityExceptionNotifier;
-import com.ning.http.client.AsyncHttpClient;
 import com.ning.http.client.PerRequestConfig;
 import com.ning.http.client.RequestBuilder;
 
@@ -35,21 +34,23 @@ public class SingularityHealthchecker implements Managed {
 
   private static final Logger LOG = LoggerFactory.getLogger(SingularityHealthchecker.class);
 
-  private final AsyncHttpClient http;
+  private final SingularityHealthcheckExecutor healthcheckExecutor;
   private final SingularityConfiguration configuration;
   private final TaskManager taskManager;
   private final SingularityAbort abort;
   private final SingularityNewTaskChecker newTaskChecker;
 
-  private final Map<String, ScheduledFuture<?>> taskIdToHealthcheck;
+  private final Map<String, Timeout> taskIdToHealthcheck;
 
-  private final ScheduledExecutorService executorService;
+  private final SingularityTimerWheel timerWheel;
+  private final ExecutorService executorService;
 
   private final SingularityExceptionNotifier exceptionNotifier;
 
   @Inject
-  public SingularityHealthchecker(AsyncHttpClient http, SingularityConfiguration configuration, SingularityNewTaskChecker newTaskChecker, TaskManager taskManager, SingularityAbort abort, SingularityExceptionNotifier exceptionNotifier) {
-    this.http = http;
+  public SingularityHealthchecker(SingularityHealthcheckExecutor healthcheckExecutor, SingularityConfiguration configuration, SingularityNewTaskChecker newTaskChecker, TaskManager taskManager, SingularityAbort abort, SingularityExceptionNotifier exceptionNotifier,
+      SingularityTimerWheel timerWheel) {
+    this.healthcheckExecutor = healthcheckExecutor;
     this.configuration = configuration;
     this.newTaskChecker = newTaskChecker;
     this.taskManager = taskManager;
@@ -58,7 +59,8 @@ public class SingularityHealthchecker implements Managed {
 
     this.taskIdToHealthcheck = Maps.newConcurrentMap();
 
-    this.executorService = Executors.newScheduledThreadPool(configuration.getHealthcheckStartThreads(), new ThreadFactoryBuilder().setNameFormat("SingularityHealthchecker-%d").build());
+    this.timerWheel = timerWheel;
+    this.executorService = Executors.newFixedThreadPool(configuration.getHealthcheckStartThreads(), new ThreadFactoryBuilder().setNameFormat("SingularityHealthchecker-%d").build());
   }
 
   @Override
@@ -71,12 +73,12 @@ public class SingularityHealthchecker implements Managed {
   }
 
   public void enqueueHealthcheck(SingularityTask task) {
-    ScheduledFuture<?> future = enqueueHealthcheckWithDelay(task, task.getTaskRequest().getDeploy().getHealthcheckIntervalSeconds().or(configuration.getHealthcheckIntervalSeconds()));
+    Timeout timeout = enqueueHealthcheckWithDelay(task, task.getTaskRequest().getDeploy().getHealthcheckIntervalSeconds().or(configuration.getHealthcheckIntervalSeconds()));
 
-    ScheduledFuture<?> existing = taskIdToHealthcheck.put(task.getTaskId().getId(), future);
+    Timeout existing = taskIdToHealthcheck.put(task.getTaskId().getId(), timeout);
 
     if (existing != null) {
-      boolean canceledExisting = existing.cancel(false);
+      boolean canceledExisting = timerWheel.cancel(existing);
       LOG.warn("Found existing overlapping healthcheck for task {} - cancel success: {}", task.getTaskId(), canceledExisting);
     }
   }
@@ -92,21 +94,21 @@ public class SingularityHealthchecker implements Managed {
   }
 
   public void cancelHealthcheck(String taskId) {
-    ScheduledFuture<?> future = taskIdToHealthcheck.remove(taskId);
+    Timeout timeout = taskIdToHealthcheck.remove(taskId);
 
-    if (future == null) {
+    if (timeout == null) {
       return;
     }
 
-    boolean canceled = future.cancel(false);
+    boolean canceled = timerWheel.cancel(timeout);
 
     LOG.trace("Canceling healthcheck ({}) for task {}", canceled, taskId);
   }
 
-  private ScheduledFuture<?> enqueueHealthcheckWithDelay(final SingularityTask task, long delaySeconds) {
+  private Timeout enqueueHealthcheckWithDelay(final SingularityTask task, long delaySeconds) {
     LOG.trace("Enqueing a healthcheck for task {} with delay {}", task.getTaskId(), DurationFormatUtils.formatDurationHMS(TimeUnit.SECONDS.toMillis(delaySeconds)));
 
-    return executorService.schedule(new Runnable() {
+    return timerWheel.schedule(new Runnable() {
 
       @Override
       public void run() {
@@ -120,7 +122,7 @@ public class SingularityHealthchecker implements Managed {
         }
       }
 
-    }, delaySeconds, TimeUnit.SECONDS);
+    }, delaySeconds, TimeUnit.SECONDS, executorService);
   }
 
   private Optional<String> getHealthcheckUri(SingularityTask task) {
@@ -184,7 +186,7 @@ public class SingularityHealthchecker implements Managed {
 
       LOG.trace("Issuing a healthcheck ({}) for task {} with timeout {}s", uri.get(), task.getTaskId(), timeoutSeconds);
 
-      http.prepareRequest(builder.build()).execute(handler);
+      healthcheckExecutor.execute(task.getOffer().getHostname(), builder.build(), handler);
     } catch (Throwable t) {
       LOG.debug("Exception while preparing healthcheck ({}) for task ({})", uri, task.getTaskId(), t);
       exceptionNotifier.notify(t);
@@ -4,10 +4,8 @@ import io.dropwizard.lifecycle.Managed;
 
 import java.util.Collections;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 
 import javax.inject.Singleton;
@@ -38,6 +36,7 @@ import com.hubspot.singularity.SingularityTaskHistoryUpdate.SimplifiedTaskState;
 import com.hubspot.singularity.config.SingularityConfiguration;
 import com.hubspot.singularity.data.TaskManager;
 import com.hubspot.singularity.hooks.LoadBalancerClient;
+import com.hubspot.singularity.scheduler.SingularityTimerWheel.Timeout;
 import com.hubspot.singularity.sentry.SingularityExceptionNotifier;
 
 /**
@@ -55,15 +54,17 @@ public class SingularityNewTaskChecker implements Managed {
   private final LoadBalancerClient lbClient;
   private final long killAfterUnhealthyMillis;
 
-  private final Map<String, Future<?>> taskIdToCheck;
+  private final Map<String, Timeout> taskIdToCheck;
 
-  private final ScheduledExecutorService executorService;
+  private final SingularityTimerWheel timerWheel;
+  private final ExecutorService executorService;
 
   private final SingularityAbort abort;
   private final SingularityExceptionNotifier exceptionNotifier;
 
   @Inject
-  public SingularityNewTaskChecker(SingularityConfiguration configuration, LoadBalancerClient lbClient, TaskManager taskManager, SingularityExceptionNotifier exceptionNotifier, SingularityAbort abort) {
+  public SingularityNewTaskChecker(SingularityConfiguration configuration, LoadBalancerClient lbClient, TaskManager taskManager, SingularityExceptionNotifier exceptionNotifier, SingularityAbort abort,
+      SingularityTimerWheel timerWheel) {
     this.configuration = configuration;
     this.taskManager = taskManager;
     this.lbClient = lbClient;
@@ -72,7 +73,8 @@ public class SingularityNewTaskChecker implements Managed {
     this.taskIdToCheck = Maps.newConcurrentMap();
     this.killAfterUnhealthyMillis = TimeUnit.SECONDS.toMillis(configuration.getKillAfterTasksDoNotRunDefaultSeconds());
 
-    this.executorService = Executors.newScheduledThreadPool(configuration.getCheckNewTasksScheduledThreads(), new ThreadFactoryBuilder().setNameFormat("SingularityNewTaskChecker-%d").build());
+    this.timerWheel = timerWheel;
+    this.executorService = Executors.newFixedThreadPool(configuration.getCheckNewTasksScheduledThreads(), new ThreadFactoryBuilder().setNameFormat("SingularityNewTaskChecker-%d").build());
 
     this.exceptionNotifier = exceptionNotifier;
   }
@@ -131,9 +133,9 @@ public class SingularityNewTaskChecker implements Managed {
       return;
     }
 
-    Future<?> future = executorService.submit(getTaskCheck(task));
+    Timeout timeout = timerWheel.schedule(getTaskCheck(task), 0, TimeUnit.SECONDS, executorService);
 
-    taskIdToCheck.put(taskId, future);
+    taskIdToCheck.put(taskId, timeout);
   }
 
   public static enum CancelState {
@@ -141,13 +143,13 @@ public class SingularityNewTaskChecker implements Managed {
   }
 
   public CancelState cancelNewTaskCheck(String taskId) {
-    Future<?> future = taskIdToCheck.remove(taskId);
+    Timeout timeout = taskIdToCheck.remove(taskId);
 
-    if (future == null) {
+    if (timeout == null) {
       return CancelState.NOT_PRESENT;
     }
 
-    boolean canceled = future.cancel(false);
+    boolean canceled = timerWheel.cancel(timeout);
 
     LOG.trace("Canceling new task check ({}) for task {}", canceled, taskId);
 
@@ -194,9 +196,9 @@ public class SingularityNewTaskChecker implements Managed {
   private void enqueueCheckWithDelay(final SingularityTask task, long delaySeconds) {
     LOG.trace("Enqueuing a new task check for task {} with delay {}", task.getTaskId(), DurationFormatUtils.formatDurationHMS(TimeUnit.SECONDS.toMillis(delaySeconds)));
 
-    ScheduledFuture<?> future = executorService.schedule(getTaskCheck(task), delaySeconds, TimeUnit.SECONDS);
+    Timeout timeout = timerWheel.schedule(getTaskCheck(task), delaySeconds, TimeUnit.SECONDS, executorService);
 
-    taskIdToCheck.put(task.getTaskId().getId(), future);
+    taskIdToCheck.put(task.getTaskId().getId(), timeout);
   }
 
   private enum CheckTaskState {
@@ -3,6 +3,7 @@ package com.hubspot.singularity.scheduler;
 import java.text.ParseException;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
@@ -11,7 +12,6 @@ import java.util.concurrent.TimeUnit;
 
 import javax.inject.Singleton;
 
-import org.quartz.CronExpression;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -49,6 +49,7 @@ import com.hubspot.singularity.config.SingularityConfiguration;
 import com.hubspot.singularity.data.DeployManager;
 import com.hubspot.singularity.data.RackManager;
 import com.hubspot.singularity.data.RequestManager;
+import com.hubspot.singularity.data.ScheduleCache;
 import com.hubspot.singularity.data.SlaveManager;
 import com.hubspot.singularity.data.TaskManager;
 import com.hubspot.singularity.data.TaskRequestManager;
@@ -66,6 +67,7 @@ public class SingularityScheduler {
   private final RequestManager requestManager;
   private final TaskRequestManager taskRequestManager;
   private final DeployManager deployManager;
+  private final ScheduleCache scheduleCache;
 
   private final SlaveManager slaveManager;
   private final RackManager rackManager;
@@ -74,7 +76,7 @@ public class SingularityScheduler {
 
   @Inject
   public SingularityScheduler(TaskRequestManager taskRequestManager, SingularityConfiguration configuration, SingularityCooldown cooldown, DeployManager deployManager,
-      TaskManager taskManager, RequestManager requestManager, SlaveManager slaveManager, RackManager rackManager, SingularityMailer mailer) {
+      TaskManager taskManager, RequestManager requestManager, SlaveManager slaveManager, RackManager rackManager, ScheduleCache scheduleCache, SingularityMailer mailer) {
     this.taskRequestManager = taskRequestManager;
     this.configuration = configuration;
     this.deployManager = deployManager;
@@ -82,18 +84,19 @@ public class SingularityScheduler {
     this.requestManager = requestManager;
     this.slaveManager = slaveManager;
     this.rackManager = rackManager;
+    this.scheduleCache = scheduleCache;
     this.mailer = mailer;
     this.cooldown = cooldown;
   }
 
-  private void cleanupTaskDueToDecomission(final Set<String> requestIdsToReschedule, final Set<SingularityTaskId> matchingTaskIds, SingularityTask task, String decomissioningObject) {
+  private void cleanupTaskDueToDecomission(final Set<String> requestIdsToReschedule, final Set<SingularityTaskId> matchingTaskIds, final List<SingularityTaskCleanup> cleanupTasks, SingularityTask task, String decomissioningObject) {
     requestIdsToReschedule.add(task.getTaskRequest().getRequest().getId());
 
     matchingTaskIds.add(task.getTaskId());
 
     LOG.trace("Scheduling a cleanup task for {} due to decomissioning {}", task.getTaskId(), decomissioningObject);
 
-    taskManager.createCleanupTask(new SingularityTaskCleanup(Optional.<String> absent(), TaskCleanupType.DECOMISSIONING, System.currentTimeMillis(), task.getTaskId()));
+    cleanupTasks.add(new SingularityTaskCleanup(Optional.<String> absent(), TaskCleanupType.DECOMISSIONING, System.currentTimeMillis(), task.getTaskId()));
   }
 
   public void checkForDecomissions(SingularitySchedulerStateCache stateCache) {
@@ -101,32 +104,33 @@ public class SingularityScheduler {
 
     final Set<String> requestIdsToReschedule = Sets.newHashSet();
     final Set<SingularityTaskId> matchingTaskIds = Sets.newHashSet();
+    final List<SingularityTaskCleanup> cleanupTasks = Lists.newArrayList();
 
-    final List<SingularityTaskId> activeTaskIds = stateCache.getActiveTaskIds();
+    final SingularityTaskIdIndex taskIdIndex = stateCache.getTaskIdIndex();
 
     final List<SingularitySlave> slaves = slaveManager.getDecomissioningObjectsFiltered(stateCache.getDecomissioningSlaves());
 
     for (SingularitySlave slave : slaves) {
-      for (SingularityTask activeTask : taskManager.getTasksOnSlave(activeTaskIds, slave)) {
-        cleanupTaskDueToDecomission(requestIdsToReschedule, matchingTaskIds, activeTask, slave.toString());
+      for (SingularityTask activeTask : taskManager.getTasksOnSlave(Lists.newArrayList(taskIdIndex.getTaskIdsOnHost(slave.getHost())), slave)) {
+        cleanupTaskDueToDecomission(requestIdsToReschedule, matchingTaskIds, cleanupTasks, activeTask, slave.toString());
       }
     }
 
     final List<SingularityRack> racks = rackManager.getDecomissioningObjectsFiltered(stateCache.getDecomissioningRacks());
 
     for (SingularityRack rack : racks) {
-      for (SingularityTaskId activeTaskId : activeTaskIds) {
+      for (SingularityTaskId activeTaskId : taskIdIndex.getTaskIdsOnRack(rack.getId())) {
         if (matchingTaskIds.contains(activeTaskId)) {
           continue;
         }
 
-        if (rack.getId().equals(activeTaskId.getRackId())) {
-          Optional<SingularityTask> maybeTask = taskManager.getActiveTask(activeTaskId.getId());
-          cleanupTaskDueToDecomission(requestIdsToReschedule, matchingTaskIds, maybeTask.get(), rack.toString());
-        }
+        Optional<SingularityTask> maybeTask = taskManager.getActiveTask(activeTaskId.getId());
+        cleanupTaskDueToDecomission(requestIdsToReschedule, matchingTaskIds, cleanupTasks, maybeTask.get(), rack.toString());
       }
     }
 
+    taskManager.createCleanupTasks(cleanupTasks);
+
     for (String requestId : requestIdsToReschedule) {
       LOG.trace("Rescheduling request {} due to decomissions", requestId);
 
@@ -197,7 +201,7 @@ public class SingularityScheduler {
       Optional<SingularityRequestWithState> maybeRequest = requestManager.getRequest(pendingRequest.getRequestId());
 
       if (shouldScheduleTasks(pendingRequest, maybeRequest)) {
-        checkForBounceAndAddToCleaningTasks(pendingRequest, stateCache.getActiveTaskIds(), stateCache.getCleaningTasks());
+        checkForBounceAndAddToCleaningTasks(pendingRequest, stateCache);
 
         final List<SingularityTaskId> matchingTaskIds = getMatchingTaskIds(stateCache, maybeRequest.get().getRequest(), pendingRequest);
         final SingularityDeployStatistics deployStatistics = getDeployStatistics(pendingRequest.getRequestId(), pendingRequest.getDeployId());
@@ -250,40 +254,53 @@ public class SingularityScheduler {
     return isDeployInUse(maybeRequestDeployState, pendingRequest.getDeployId(), false);
   }
 
-  private void checkForBounceAndAddToCleaningTasks(SingularityPendingRequest pendingRequest, final List<SingularityTaskId> activeTaskIds, final List<SingularityTaskId> cleaningTasks) {
+  private void checkForBounceAndAddToCleaningTasks(SingularityPendingRequest pendingRequest, SingularitySchedulerStateCache stateCache) {
     if (pendingRequest.getPendingType() != PendingType.BOUNCE) {
       return;
     }
 
     final long now = System.currentTimeMillis();
 
-    final List<SingularityTaskId> matchingTaskIds = SingularityTaskId.matchingAndNotIn(activeTaskIds, pendingRequest.getRequestId(), pendingRequest.getDeployId(), cleaningTasks);
+    final List<SingularityTaskId> matchingTaskIds = stateCache.getTaskIdIndex().getActiveNotCleaningTaskIds(pendingRequest.getRequestId(), pendingRequest.getDeployId());
+    final List<SingularityTaskCleanup> cleanupTasks = Lists.newArrayListWithCapacity(matchingTaskIds.size());
 
     for (SingularityTaskId matchingTaskId : matchingTaskIds) {
       LOG.debug("Adding task {} to cleanup (bounce)", matchingTaskId.getId());
 
-      taskManager.createCleanupTask(new SingularityTaskCleanup(pendingRequest.getUser(), TaskCleanupType.BOUNCING, now, matchingTaskId));
-      cleaningTasks.add(matchingTaskId);
+      cleanupTasks.add(new SingularityTaskCleanup(pendingRequest.getUser(), TaskCleanupType.BOUNCING, now, matchingTaskId));
+    }
+
+    taskManager.createCleanupTasks(cleanupTasks);
+
+    for (SingularityTaskId matchingTaskId : matchingTaskIds) {
+      stateCache.addCleaningTask(matchingTaskId);
     }
 
     LOG.info("Added {} tasks for request {} to cleanup bounce queue in {}", matchingTaskIds.size(), pendingRequest.getRequestId(), JavaUtils.duration(now));
   }
 
+  /**
+   * Due tasks in the fair share order of PendingTaskQueue, so that offers go round the requests with due tasks.
+   */
   public List<SingularityTaskRequest> getDueTasks() {
-    final List<SingularityPendingTask> tasks = taskManager.getPendingTasks();
-
-    final long now = System.currentTimeMillis();
+    final List<SingularityPendingTask> dueTasks = taskManager.getDuePendingTasks(System.currentTimeMillis());
 
-    final List<SingularityPendingTask> dueTasks = Lists.newArrayListWithCapacity(tasks.size());
+    final Map<String, Integer> positions = Maps.newHashMapWithExpectedSize(dueTasks.size());
 
-    for (SingularityPendingTask task : tasks) {
-      if (task.getPendingTaskId().getNextRunAt() <= now) {
-        dueTasks.add(task);
-      }
+    for (SingularityPendingTask dueTask : dueTasks) {
+      positions.put(dueTask.getPendingTaskId().getId(), positions.size());
     }
 
     final List<SingularityTaskRequest> dueTaskRequests = taskRequestManager.getTaskRequests(dueTasks);
-    Collections.sort(dueTaskRequests);
+
+    Collections.sort(dueTaskRequests, new Comparator<SingularityTaskRequest>() {
+
+      @Override
+      public int compare(SingularityTaskRequest o1, SingularityTaskRequest o2) {
+        return Integer.compare(positions.get(o1.getPendingTask().getPendingTaskId().getId()), positions.get(o2.getPendingTask().getPendingTaskId().getId()));
+      }
+
+    });
 
     return checkForStaleScheduledTasks(dueTasks, dueTaskRequests);
   }
@@ -343,9 +360,9 @@ public class SingularityScheduler {
 
   private List<SingularityTaskId> getMatchingTaskIds(SingularitySchedulerStateCache stateCache, SingularityRequest request, SingularityPendingRequest pendingRequest) {
     if (!request.isScheduled()) {
-      return SingularityTaskId.matchingAndNotIn(stateCache.getActiveTaskIds(), request.getId(), pendingRequest.getDeployId(), stateCache.getCleaningTasks());
+      return stateCache.getTaskIdIndex().getActiveNotCleaningTaskIds(request.getId(), pendingRequest.getDeployId());
     } else {
-      return Lists.newArrayList(Iterables.filter(stateCache.getActiveTaskIds(), SingularityTaskId.matchingRequest(request.getId())));
+      return Lists.newArrayList(stateCache.getTaskIdIndex().getTaskIdsForRequest(request.getId()));
     }
   }
 
@@ -372,14 +389,17 @@ public class SingularityScheduler {
       LOG.debug("Missing instances is negative: {}, request {}, matching tasks: {}", numMissingInstances, request, matchingTaskIds);
 
       final long now = System.currentTimeMillis();
+      final List<SingularityTaskCleanup> cleanupTasks = Lists.newArrayListWithCapacity(Math.abs(numMissingInstances));
 
       for (int i = 0; i < Math.abs(numMissingInstances); i++) {
         final SingularityTaskId toCleanup = matchingTaskIds.get(i);
 
         LOG.info("Cleaning up task {} due to new request {} - scaling down to {} instances", toCleanup.getId(), request.getId(), request.getInstancesSafe());
 
-        taskManager.createCleanupTask(new SingularityTaskCleanup(Optional.<String> absent(), TaskCleanupType.SCALING_DOWN, now, toCleanup));
+        cleanupTasks.add(new SingularityTaskCleanup(Optional.<String> absent(), TaskCleanupType.SCALING_DOWN, now, toCleanup));
       }
+
+      taskManager.createCleanupTasks(cleanupTasks);
     }
 
     return numMissingInstances;
@@ -624,14 +644,14 @@ public class SingularityScheduler {
         try {
           Date scheduleFrom = new Date(now);
 
-          CronExpression cronExpression = new CronExpression(request.getQuartzScheduleSafe());
+          final Optional<Date> maybeNextRunAtDate = scheduleCache.getNextValidTimeAfter(request.getId(), request.getQuartzScheduleSafe(), scheduleFrom);
 
-          final Date nextRunAtDate = cronExpression.getNextValidTimeAfter(scheduleFrom);
-
-          if (nextRunAtDate == null) {
+          if (!maybeNextRunAtDate.isPresent()) {
             return Optional.absent();
           }
 
+          final Date nextRunAtDate = maybeNextRunAtDate.get();
+
           LOG.trace("Calculating nextRunAtDate for {} (schedule: {}): {} (from: {})", request.getId(), request.getSchedule(), nextRunAtDate, scheduleFrom);
 
           nextRunAt = Math.max(nextRunAtDate.getTime(), now); // don't create a schedule that is overdue as this is used to indicate that singularity is not fulfilling requests.
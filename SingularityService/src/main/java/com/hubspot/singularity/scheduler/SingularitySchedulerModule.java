@@ -8,6 +8,7 @@ public class SingularitySchedulerModule extends AbstractModule {
   @Override
   protected void configure() {
     bind(SingularityHealthchecker.class).in(Scopes.SINGLETON);
+    bind(SingularityHealthcheckExecutor.class).in(Scopes.SINGLETON);
     bind(SingularityNewTaskChecker.class).in(Scopes.SINGLETON);
     bind(SingularityCleanupPoller.class).in(Scopes.SINGLETON);
     bind(SingularityCooldownPoller.class).in(Scopes.SINGLETON);
@@ -16,6 +17,8 @@ public class SingularitySchedulerModule extends AbstractModule {
     bind(SingularityDeployPoller.class).in(Scopes.SINGLETON);
     bind(SingularitySchedulerPoller.class).in(Scopes.SINGLETON);
     bind(SingularityTaskReconciliationPoller.class).in(Scopes.SINGLETON);
+    bind(SingularityTaskStatusFlushPoller.class).in(Scopes.SINGLETON);
+    bind(SingularityZkMirrorPoller.class).in(Scopes.SINGLETON);
     bind(SingularityScheduler.class).in(Scopes.SINGLETON);
     bind(SingularityCooldownChecker.class).in(Scopes.SINGLETON);
     bind(SingularityDeployChecker.class).in(Scopes.SINGLETON);
@@ -26,6 +29,7 @@ public class SingularitySchedulerModule extends AbstractModule {
     bind(SingularityHealthchecker.class).in(Scopes.SINGLETON);
     bind(SingularityNewTaskChecker.class).in(Scopes.SINGLETON);
     bind(SingularityTaskReconciliation.class).in(Scopes.SINGLETON);
+    bind(SingularityTimerWheel.class).in(Scopes.SINGLETON);
 
     bind(SingularitySchedulerStateCache.class);
   }
@@ -31,6 +31,7 @@ public class SingularitySchedulerStateCache {
   private Optional<List<SingularityTaskId>> cleaningTasks;
   private Optional<Integer> numActiveRacks;
   private Optional<Integer> numActiveSlaves;
+  private Optional<SingularityTaskIdIndex> taskIdIndex;
 
   @Inject
   public SingularitySchedulerStateCache(TaskManager taskManager, SlaveManager slaveManager, RackManager rackManager) {
@@ -47,6 +48,7 @@ public class SingularitySchedulerStateCache {
     cleaningTasks = Optional.absent();
     numActiveRacks = Optional.absent();
     numActiveSlaves = Optional.absent();
+    taskIdIndex = Optional.absent();
   }
 
   public List<SingularityTaskId> getActiveTaskIds() {
@@ -57,6 +59,42 @@ public class SingularitySchedulerStateCache {
     return activeTaskIds.get();
   }
 
+  public SingularityTaskIdIndex getTaskIdIndex() {
+    if (!taskIdIndex.isPresent()) {
+      taskIdIndex = Optional.of(new SingularityTaskIdIndex(getActiveTaskIds(), getCleaningTasks()));
+    }
+
+    return taskIdIndex.get();
+  }
+
+  public void addActiveTaskId(SingularityTaskId taskId) {
+    getActiveTaskIds().add(taskId);
+
+    if (taskIdIndex.isPresent()) {
+      taskIdIndex.get().addActiveTaskId(taskId);
+    }
+  }
+
+  public void addCleaningTask(SingularityTaskId taskId) {
+    getCleaningTasks().add(taskId);
+
+    if (taskIdIndex.isPresent()) {
+      taskIdIndex.get().addCleaningTaskId(taskId);
+    }
+  }
+
+  /**
+   * Loads everything offer matching reads, so that the cache can be read from several threads at once while offers
+   * are scored. Writes must still happen from a single thread.
+   */
+  public void loadForOfferMatching() {
+    getTaskIdIndex();
+    checkDecomissioningRacks();
+    checkDecomissioningSlaves();
+    getNumActiveRacks();
+    getNumActiveSlaves();
+  }
+
   public List<SingularityPendingTask> getScheduledTasks() {
     if (!scheduledTasks.isPresent()) {
       scheduledTasks = getMutableList(taskManager.getPendingTasks());
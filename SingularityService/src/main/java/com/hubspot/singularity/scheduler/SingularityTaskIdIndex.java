@@ -0,0 +1,129 @@
+package com.hubspot.singularity.scheduler;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import com.google.common.collect.LinkedHashMultimap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.SetMultimap;
+import com.google.common.collect.Sets;
+import com.hubspot.singularity.SingularityDeployKey;
+import com.hubspot.singularity.SingularityTaskId;
+
+/**
+ * Indexes a set of active task ids by request, deploy, host and rack so that placement and decomission
+ * checks are lookups instead of scans over every active task. Also tracks which task ids are cleaning.
+ *
+ * Not thread safe - like SingularitySchedulerStateCache, an index is meant to be used by a single scheduler pass.
+ */
+public class SingularityTaskIdIndex {
+
+  private final Set<SingularityTaskId> activeTaskIds;
+  private final Set<SingularityTaskId> cleaningTaskIds;
+
+  private final SetMultimap<String, SingularityTaskId> byRequest;
+  private final SetMultimap<SingularityDeployKey, SingularityTaskId> byDeploy;
+  private final SetMultimap<String, SingularityTaskId> byHost;
+  private final SetMultimap<String, SingularityTaskId> byRack;
+
+  public SingularityTaskIdIndex(Collection<SingularityTaskId> activeTaskIds, Collection<SingularityTaskId> cleaningTaskIds) {
+    this.activeTaskIds = Sets.newHashSetWithExpectedSize(activeTaskIds.size());
+    this.cleaningTaskIds = Sets.newHashSet(cleaningTaskIds);
+
+    this.byRequest = LinkedHashMultimap.create();
+    this.byDeploy = LinkedHashMultimap.create();
+    this.byHost = LinkedHashMultimap.create();
+    this.byRack = LinkedHashMultimap.create();
+
+    for (SingularityTaskId taskId : activeTaskIds) {
+      addActiveTaskId(taskId);
+    }
+  }
+
+  public void addActiveTaskId(SingularityTaskId taskId) {
+    if (!activeTaskIds.add(taskId)) {
+      return;
+    }
+
+    byRequest.put(taskId.getRequestId(), taskId);
+    byDeploy.put(getDeployKey(taskId.getRequestId(), taskId.getDeployId()), taskId);
+    byHost.put(taskId.getHost(), taskId);
+    byRack.put(taskId.getRackId(), taskId);
+  }
+
+  public void removeActiveTaskId(SingularityTaskId taskId) {
+    if (!activeTaskIds.remove(taskId)) {
+      return;
+    }
+
+    byRequest.remove(taskId.getRequestId(), taskId);
+    byDeploy.remove(getDeployKey(taskId.getRequestId(), taskId.getDeployId()), taskId);
+    byHost.remove(taskId.getHost(), taskId);
+    byRack.remove(taskId.getRackId(), taskId);
+  }
+
+  public void addCleaningTaskId(SingularityTaskId taskId) {
+    cleaningTaskIds.add(taskId);
+  }
+
+  public boolean isActive(SingularityTaskId taskId) {
+    return activeTaskIds.contains(taskId);
+  }
+
+  public boolean isCleaning(SingularityTaskId taskId) {
+    return cleaningTaskIds.contains(taskId);
+  }
+
+  public int getNumActiveTaskIds() {
+    return activeTaskIds.size();
+  }
+
+  public Set<SingularityTaskId> getTaskIdsForRequest(String requestId) {
+    return Collections.unmodifiableSet(byRequest.get(requestId));
+  }
+
+  public Set<SingularityTaskId> getTaskIdsForDeploy(String requestId, String deployId) {
+    return Collections.unmodifiableSet(byDeploy.get(getDeployKey(requestId, deployId)));
+  }
+
+  public Set<SingularityTaskId> getTaskIdsOnHost(String host) {
+    return Collections.unmodifiableSet(byHost.get(host));
+  }
+
+  public Set<SingularityTaskId> getTaskIdsOnRack(String rackId) {
+    return Collections.unmodifiableSet(byRack.get(rackId));
+  }
+
+  /**
+   * Equivalent to SingularityTaskId.matchingAndNotIn(activeTaskIds, requestId, deployId, cleaningTaskIds)
+   */
+  public List<SingularityTaskId> getActiveNotCleaningTaskIds(String requestId, String deployId) {
+    return filterNotCleaning(byDeploy.get(getDeployKey(requestId, deployId)));
+  }
+
+  /**
+   * Equivalent to SingularityTaskId.matchingAndNotIn(activeTaskIds, requestId, cleaningTaskIds)
+   */
+  public List<SingularityTaskId> getActiveNotCleaningTaskIds(String requestId) {
+    return filterNotCleaning(byRequest.get(requestId));
+  }
+
+  private List<SingularityTaskId> filterNotCleaning(Set<SingularityTaskId> taskIds) {
+    final List<SingularityTaskId> notCleaning = Lists.newArrayListWithCapacity(taskIds.size());
+
+    for (SingularityTaskId taskId : taskIds) {
+      if (!cleaningTaskIds.contains(taskId)) {
+        notCleaning.add(taskId);
+      }
+    }
+
+    return notCleaning;
+  }
+
+  private SingularityDeployKey getDeployKey(String requestId, String deployId) {
+    return new SingularityDeployKey(requestId, deployId);
+  }
+
+}
@@ -2,9 +2,10 @@ package com.hubspot.singularity.scheduler;
 
 import io.dropwizard.lifecycle.Managed;
 
-import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
@@ -20,9 +21,15 @@ import org.apache.mesos.SchedulerDriver;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Optional;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 import com.google.common.util.concurrent.MoreExecutors;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.inject.Inject;
@@ -38,11 +45,25 @@ import com.hubspot.singularity.data.TaskManager;
 import com.hubspot.singularity.mesos.SchedulerDriverSupplier;
 import com.hubspot.singularity.sentry.SingularityExceptionNotifier;
 
+/**
+ * Explicit task reconciliation. The active tasks at the start of a cycle are tracked in memory and dropped as they report,
+ * and the rest are re-requested from the master in bounded pages - one page per check, so a large cluster doesn't flood the
+ * master - backing off exponentially between rounds.
+ */
 @Singleton
 public class SingularityTaskReconciliation implements Managed {
 
   private static final Logger LOG = LoggerFactory.getLogger(SingularityTaskReconciliation.class);
 
+  private static final Comparator<SingularityTaskStatusHolder> TASK_ID_ORDER = new Comparator<SingularityTaskStatusHolder>() {
+
+    @Override
+    public int compare(SingularityTaskStatusHolder first, SingularityTaskStatusHolder second) {
+      return first.getTaskId().getId().compareTo(second.getTaskId().getId());
+    }
+
+  };
+
   private final TaskManager taskManager;
   private final String serverId;
   private final ScheduledExecutorService executorService;
@@ -52,13 +73,21 @@ public class SingularityTaskReconciliation implements Managed {
   private final SingularityExceptionNotifier exceptionNotifier;
   private final SchedulerDriverSupplier schedulerDriverSupplier;
 
+  private final Set<SingularityTaskId> outstandingTaskIds;
+  private volatile long reconciliationStart;
+  private volatile int numTasksToReconcile;
+
+  private final Meter requestedMeter;
+  private final Timer durationTimer;
+
   @Inject
   public SingularityTaskReconciliation(SingularityExceptionNotifier exceptionNotifier,
       TaskManager taskManager,
       SingularityConfiguration configuration,
       @Named(SingularityMainModule.SERVER_ID_PROPERTY) String serverId,
       SingularityAbort abort,
-      SchedulerDriverSupplier schedulerDriverSupplier) {
+      SchedulerDriverSupplier schedulerDriverSupplier,
+      MetricRegistry registry) {
     this.taskManager = taskManager;
     this.serverId = serverId;
 
@@ -69,6 +98,33 @@ public class SingularityTaskReconciliation implements Managed {
 
     this.isRunningReconciliation = new AtomicBoolean(false);
     this.executorService = Executors.newScheduledThreadPool(1, new ThreadFactoryBuilder().setNameFormat("SingularityTaskReconciliation-%d").build());
+
+    this.outstandingTaskIds = Collections.newSetFromMap(Maps.<SingularityTaskId, Boolean> newConcurrentMap());
+
+    this.requestedMeter = registry.meter(MetricRegistry.name(SingularityTaskReconciliation.class, "requested"));
+    this.durationTimer = registry.timer(MetricRegistry.name(SingularityTaskReconciliation.class, "duration"));
+
+    registry.register(MetricRegistry.name(SingularityTaskReconciliation.class, "outstanding"), new Gauge<Integer>() {
+
+      @Override
+      public Integer getValue() {
+        return isRunningReconciliation.get() ? outstandingTaskIds.size() : 0;
+      }
+
+    });
+
+    registry.register(MetricRegistry.name(SingularityTaskReconciliation.class, "progress"), new Gauge<Double>() {
+
+      @Override
+      public Double getValue() {
+        if (!isRunningReconciliation.get() || numTasksToReconcile == 0) {
+          return 1.0;
+        }
+
+        return 1.0 - ((double) outstandingTaskIds.size() / numTasksToReconcile);
+      }
+
+    });
   }
 
   @Override
@@ -107,23 +163,40 @@ public class SingularityTaskReconciliation implements Managed {
 
     LOG.info("Starting a reconciliation cycle - {} current active tasks", activeTaskIds.size());
 
+    this.reconciliationStart = reconciliationStart;
+    this.numTasksToReconcile = activeTaskIds.size();
+
+    outstandingTaskIds.clear();
+    outstandingTaskIds.addAll(activeTaskIds);
+
     SchedulerDriver driver = schedulerDriver.get();
     driver.reconcileTasks(Collections.<TaskStatus> emptyList());
 
-    scheduleReconciliationCheck(driver, reconciliationStart, activeTaskIds, 0);
+    final long initialBackoffMillis = configuration.getCheckReconcileWhenRunningEveryMillis();
+
+    scheduleReconciliationCheck(driver, 0, initialBackoffMillis, reconciliationStart + initialBackoffMillis, Optional.<String> absent());
 
     return ReconciliationState.STARTED;
   }
 
-  private void scheduleReconciliationCheck(final SchedulerDriver driver, final long reconciliationStart, final Collection<SingularityTaskId> remainingTaskIds, final int numTimes) {
-    LOG.info("Scheduling reconciliation check #{} - {} tasks left - waiting {}", numTimes + 1, remainingTaskIds.size(), JavaUtils.durationFromMillis(configuration.getCheckReconcileWhenRunningEveryMillis()));
+  /**
+   * Marks a task as reconciled, called for every status update which arrives while reconciliation is running.
+   */
+  public void statusUpdateReceived(SingularityTaskId taskId) {
+    if (isRunningReconciliation.get()) {
+      outstandingTaskIds.remove(taskId);
+    }
+  }
+
+  private void scheduleReconciliationCheck(final SchedulerDriver driver, final int numTimes, final long requestBackoffMillis, final long nextRequestAt, final Optional<String> lastRequestedTaskId) {
+    LOG.info("Scheduling reconciliation check #{} - {} tasks left - waiting {}", numTimes + 1, outstandingTaskIds.size(), JavaUtils.durationFromMillis(configuration.getCheckReconcileWhenRunningEveryMillis()));
 
     executorService.schedule(new Runnable() {
 
       @Override
       public void run() {
         try {
-          checkReconciliation(driver, reconciliationStart, remainingTaskIds, numTimes + 1);
+          checkReconciliation(driver, numTimes + 1, requestBackoffMillis, nextRequestAt, lastRequestedTaskId);
         } catch (Throwable t) {
           LOG.error("While checking for reconciliation tasks", t);
           exceptionNotifier.notify(t);
@@ -133,15 +206,34 @@ public class SingularityTaskReconciliation implements Managed {
     }, configuration.getCheckReconcileWhenRunningEveryMillis(), TimeUnit.MILLISECONDS);
   }
 
-  private void checkReconciliation(final SchedulerDriver driver, final long reconciliationStart, final Collection<SingularityTaskId> remainingTaskIds, final int numTimes) {
-    final List<SingularityTaskStatusHolder> taskStatusHolders = taskManager.getLastActiveTaskStatusesFor(remainingTaskIds);
+  /**
+   * Drops every outstanding task which has reported since reconciliation started or is no longer active, then - once the
+   * current backoff has passed - asks the master about the rest. Each check requests a single page, picking up after the
+   * last task id requested by the previous check (outstanding tasks are requested in task id order). Once a round of pages
+   * has covered every outstanding task the backoff doubles, up to maxReconcileBackoffMillis.
+   */
+  private void checkReconciliation(final SchedulerDriver driver, final int numTimes, final long requestBackoffMillis, final long nextRequestAt, final Optional<String> lastRequestedTaskId) {
+    final List<SingularityTaskStatusHolder> taskStatusHolders = Lists.newArrayList(taskManager.getLastActiveTaskStatusesFor(Lists.newArrayList(outstandingTaskIds)));
+    final Set<SingularityTaskId> stillOutstandingTaskIds = Sets.newHashSetWithExpectedSize(taskStatusHolders.size());
     final List<TaskStatus> taskStatuses = Lists.newArrayListWithCapacity(taskStatusHolders.size());
+    final List<String> requestedTaskIds = Lists.newArrayListWithCapacity(taskStatusHolders.size());
+
+    Collections.sort(taskStatusHolders, TASK_ID_ORDER);
 
     for (SingularityTaskStatusHolder taskStatusHolder : taskStatusHolders) {
       if (taskStatusHolder.getServerId().equals(serverId) && taskStatusHolder.getServerTimestamp() > reconciliationStart) {
         continue;
       }
 
+      stillOutstandingTaskIds.add(taskStatusHolder.getTaskId());
+
+      if (lastRequestedTaskId.isPresent() && taskStatusHolder.getTaskId().getId().compareTo(lastRequestedTaskId.get()) <= 0) {
+        // already requested earlier in this round
+        continue;
+      }
+
+      requestedTaskIds.add(taskStatusHolder.getTaskId().getId());
+
       if (taskStatusHolder.getTaskStatus().isPresent()) {
         LOG.debug("Re-requesting task status for {}", taskStatusHolder.getTaskId());
         taskStatuses.add(taskStatusHolder.getTaskStatus().get());
@@ -159,18 +251,42 @@ public class SingularityTaskReconciliation implements Managed {
       }
     }
 
-    if (taskStatuses.isEmpty()) {
+    outstandingTaskIds.retainAll(stillOutstandingTaskIds);
+
+    if (outstandingTaskIds.isEmpty()) {
       LOG.info("Task reconciliation ended after {} checks and {}", numTimes, JavaUtils.duration(reconciliationStart));
 
+      durationTimer.update(System.currentTimeMillis() - reconciliationStart, TimeUnit.MILLISECONDS);
       isRunningReconciliation.set(false);
 
       return;
     }
 
-    LOG.info("Requesting reconciliation of {} taskStatuses, task reconciliation has been running for {}", taskStatuses.size(), JavaUtils.duration(reconciliationStart));
+    final long now = System.currentTimeMillis();
+
+    if (!lastRequestedTaskId.isPresent() && now < nextRequestAt) {
+      scheduleReconciliationCheck(driver, numTimes, requestBackoffMillis, nextRequestAt, lastRequestedTaskId);
+      return;
+    }
+
+    final int pageSize = Math.max(1, configuration.getReconcileTasksPageSize());
+    final List<TaskStatus> page = taskStatuses.subList(0, Math.min(pageSize, taskStatuses.size()));
+
+    if (!page.isEmpty()) {
+      LOG.info("Requesting reconciliation of {} of {} remaining taskStatuses, task reconciliation has been running for {}", page.size(), taskStatuses.size(), JavaUtils.duration(reconciliationStart));
+
+      driver.reconcileTasks(page);
+
+      requestedMeter.mark(page.size());
+    }
+
+    if (taskStatuses.size() > page.size()) {
+      scheduleReconciliationCheck(driver, numTimes, requestBackoffMillis, nextRequestAt, Optional.of(requestedTaskIds.get(page.size() - 1)));
+      return;
+    }
 
-    driver.reconcileTasks(taskStatuses);
+    final long nextBackoffMillis = Math.min(requestBackoffMillis * 2, Math.max(requestBackoffMillis, configuration.getMaxReconcileBackoffMillis()));
 
-    scheduleReconciliationCheck(driver, reconciliationStart, remainingTaskIds, numTimes);
+    scheduleReconciliationCheck(driver, numTimes, nextBackoffMillis, now + nextBackoffMillis, Optional.<String> absent());
   }
 }
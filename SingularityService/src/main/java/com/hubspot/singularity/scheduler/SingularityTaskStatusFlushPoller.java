@@ -0,0 +1,45 @@
+package com.hubspot.singularity.scheduler;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Singleton;
+
+import org.apache.curator.framework.recipes.leader.LeaderLatch;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.inject.Inject;
+import com.hubspot.mesos.JavaUtils;
+import com.hubspot.singularity.SingularityAbort;
+import com.hubspot.singularity.config.SingularityConfiguration;
+import com.hubspot.singularity.data.TaskManager;
+import com.hubspot.singularity.mesos.SingularityMesosSchedulerDelegator;
+import com.hubspot.singularity.sentry.SingularityExceptionNotifier;
+
+@Singleton
+public class SingularityTaskStatusFlushPoller extends SingularityLeaderOnlyPoller {
+
+  private static final Logger LOG = LoggerFactory.getLogger(SingularityTaskStatusFlushPoller.class);
+
+  private final TaskManager taskManager;
+
+  @Inject
+  public SingularityTaskStatusFlushPoller(LeaderLatch leaderLatch, SingularityMesosSchedulerDelegator mesosScheduler, SingularityExceptionNotifier exceptionNotifier, SingularityConfiguration configuration,
+      SingularityAbort abort, TaskManager taskManager) {
+    super(leaderLatch, mesosScheduler, exceptionNotifier, abort, configuration.getFlushTaskStatusesEveryMillis(), TimeUnit.MILLISECONDS, SchedulerLockType.NO_LOCK);
+
+    this.taskManager = taskManager;
+  }
+
+  @Override
+  public void runActionOnPoll() {
+    final long start = System.currentTimeMillis();
+
+    final int numPersisted = taskManager.flushLastActiveTaskStatuses();
+
+    if (numPersisted > 0) {
+      LOG.debug("Persisted {} task statuses in {}", numPersisted, JavaUtils.duration(start));
+    }
+  }
+
+}
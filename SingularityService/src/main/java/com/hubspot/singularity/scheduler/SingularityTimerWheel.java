@@ -0,0 +1,262 @@
+package com.hubspot.singularity.scheduler;
+
+import io.dropwizard.lifecycle.Managed;
+
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Singleton;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.inject.Inject;
+import com.hubspot.singularity.config.SingularityConfiguration;
+
+/**
+ * A hashed timing wheel shared by the healthchecker and the new task checker. A pending check is one small record linked into
+ * the bucket for its deadline, so scheduling and canceling are O(1) and tens of thousands of pending checks don't each carry
+ * a ScheduledFutureTask in a delay queue. One thread advances the wheel every tick and hands expired checks to the executor
+ * they were scheduled with, so checks run up to one tick late. A check can be canceled until it starts running, including
+ * while it waits in its executor's queue.
+ */
+@Singleton
+public class SingularityTimerWheel implements Managed {
+
+  private static final Logger LOG = LoggerFactory.getLogger(SingularityTimerWheel.class);
+
+  private enum TimeoutState {
+    PENDING, DISPATCHED, RUNNING, CANCELED;
+  }
+
+  public static final class Timeout {
+
+    private final Runnable check;
+    private final Executor executor;
+    private final long deadline;
+
+    private TimeoutState state;
+    private long rounds;
+    private int bucket;
+    private Timeout prev;
+    private Timeout next;
+
+    private Timeout(Runnable check, Executor executor, long deadline) {
+      this.check = check;
+      this.executor = executor;
+      this.deadline = deadline;
+      this.state = TimeoutState.PENDING;
+    }
+
+    public long getDeadline() {
+      return deadline;
+    }
+
+  }
+
+  private final long tickMillis;
+  private final Timeout[] buckets;
+  private final int mask;
+  private final long startTime;
+
+  private final ScheduledExecutorService ticker;
+
+  private final Histogram latenessHistogram;
+  private final Meter checksMeter;
+
+  private long tick;
+  private int numScheduled;
+
+  @Inject
+  public SingularityTimerWheel(SingularityConfiguration configuration, MetricRegistry registry) {
+    this.tickMillis = Math.max(1, configuration.getTimerWheelTickMillis());
+
+    final int wheelSize = Integer.highestOneBit(Math.max(2, configuration.getTimerWheelSize() - 1)) << 1;
+
+    this.buckets = new Timeout[wheelSize];
+    this.mask = wheelSize - 1;
+    this.startTime = System.currentTimeMillis();
+
+    this.ticker = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder().setNameFormat("SingularityTimerWheel-%d").build());
+
+    this.latenessHistogram = registry.histogram(MetricRegistry.name(SingularityTimerWheel.class, "latenessMillis"));
+    this.checksMeter = registry.meter(MetricRegistry.name(SingularityTimerWheel.class, "checks"));
+
+    registry.register(MetricRegistry.name(SingularityTimerWheel.class, "scheduled"), new Gauge<Integer>() {
+
+      @Override
+      public Integer getValue() {
+        return getNumScheduled();
+      }
+
+    });
+  }
+
+  @Override
+  public void start() {
+    ticker.scheduleAtFixedRate(new Runnable() {
+
+      @Override
+      public void run() {
+        try {
+          advanceTo(System.currentTimeMillis());
+        } catch (Throwable t) {
+          LOG.error("Uncaught throwable while advancing timer wheel", t);
+        }
+      }
+
+    }, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+  }
+
+  @Override
+  public void stop() {
+    MoreExecutors.shutdownAndAwaitTermination(ticker, 1, TimeUnit.SECONDS);
+  }
+
+  public synchronized int getNumScheduled() {
+    return numScheduled;
+  }
+
+  /**
+   * Runs check on executor once delay has passed; a delay of zero or less hands it to the executor right away, and it can still
+   * be canceled until the executor runs it.
+   */
+  public Timeout schedule(Runnable check, long delay, TimeUnit unit, Executor executor) {
+    final long now = System.currentTimeMillis();
+    final Timeout timeout = new Timeout(check, executor, now + unit.toMillis(delay));
+
+    if (delay <= 0) {
+      timeout.state = TimeoutState.DISPATCHED;
+      dispatch(timeout, now);
+      return timeout;
+    }
+
+    synchronized (this) {
+      final long deadlineTick = Math.max(tick, (timeout.deadline - startTime + tickMillis - 1) / tickMillis);
+
+      timeout.rounds = (deadlineTick - tick) / buckets.length;
+      timeout.bucket = (int) (deadlineTick & mask);
+
+      timeout.next = buckets[timeout.bucket];
+      if (timeout.next != null) {
+        timeout.next.prev = timeout;
+      }
+      buckets[timeout.bucket] = timeout;
+
+      numScheduled++;
+    }
+
+    return timeout;
+  }
+
+  /**
+   * @return false if the check has already started running (or was canceled before)
+   */
+  public synchronized boolean cancel(Timeout timeout) {
+    switch (timeout.state) {
+      case PENDING:
+        unlink(timeout);
+        break;
+      case DISPATCHED:
+        break;
+      default:
+        return false;
+    }
+
+    timeout.state = TimeoutState.CANCELED;
+
+    return true;
+  }
+
+  private synchronized boolean markRunning(Timeout timeout) {
+    if (timeout.state != TimeoutState.DISPATCHED) {
+      return false;
+    }
+
+    timeout.state = TimeoutState.RUNNING;
+
+    return true;
+  }
+
+  private void unlink(Timeout timeout) {
+    if (timeout.prev != null) {
+      timeout.prev.next = timeout.next;
+    } else {
+      buckets[timeout.bucket] = timeout.next;
+    }
+
+    if (timeout.next != null) {
+      timeout.next.prev = timeout.prev;
+    }
+
+    timeout.prev = null;
+    timeout.next = null;
+
+    numScheduled--;
+  }
+
+  /**
+   * Expires every check in the ticks which have fully passed by now.
+   */
+  void advanceTo(long now) {
+    final List<Timeout> expired = Lists.newArrayList();
+
+    synchronized (this) {
+      while (startTime + (tick * tickMillis) <= now) {
+        Timeout timeout = buckets[(int) (tick & mask)];
+
+        while (timeout != null) {
+          final Timeout next = timeout.next;
+
+          if (timeout.rounds <= 0) {
+            unlink(timeout);
+            timeout.state = TimeoutState.DISPATCHED;
+            expired.add(timeout);
+          } else {
+            timeout.rounds--;
+          }
+
+          timeout = next;
+        }
+
+        tick++;
+      }
+    }
+
+    for (Timeout timeout : expired) {
+      dispatch(timeout, now);
+    }
+  }
+
+  private void dispatch(final Timeout timeout, long now) {
+    latenessHistogram.update(Math.max(0, now - timeout.deadline));
+    checksMeter.mark();
+
+    try {
+      timeout.executor.execute(new Runnable() {
+
+        @Override
+        public void run() {
+          if (markRunning(timeout)) {
+            timeout.check.run();
+          }
+        }
+
+      });
+    } catch (RejectedExecutionException ree) {
+      LOG.warn("Executor rejected a check due at {}, it is likely shutting down", timeout.deadline);
+    }
+  }
+
+}
@@ -0,0 +1,107 @@
+package com.hubspot.singularity.scheduler;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Singleton;
+
+import org.apache.curator.framework.recipes.leader.LeaderLatch;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.inject.Inject;
+import com.hubspot.mesos.JavaUtils;
+import com.hubspot.singularity.SingularityAbort;
+import com.hubspot.singularity.config.SingularityConfiguration;
+import com.hubspot.singularity.data.DeployManager;
+import com.hubspot.singularity.data.RackManager;
+import com.hubspot.singularity.data.RequestManager;
+import com.hubspot.singularity.data.SlaveManager;
+import com.hubspot.singularity.data.StateAggregator;
+import com.hubspot.singularity.data.StateManager;
+import com.hubspot.singularity.data.TaskManager;
+import com.hubspot.singularity.mesos.SingularityMesosSchedulerDelegator;
+import com.hubspot.singularity.sentry.SingularityExceptionNotifier;
+
+@Singleton
+public class SingularityZkMirrorPoller extends SingularityLeaderOnlyPoller {
+
+  private static final Logger LOG = LoggerFactory.getLogger(SingularityZkMirrorPoller.class);
+
+  private final SingularityConfiguration configuration;
+  private final TaskManager taskManager;
+  private final SlaveManager slaveManager;
+  private final RackManager rackManager;
+  private final RequestManager requestManager;
+  private final DeployManager deployManager;
+  private final StateManager stateManager;
+  private final StateAggregator stateAggregator;
+
+  @Inject
+  public SingularityZkMirrorPoller(LeaderLatch leaderLatch, SingularityMesosSchedulerDelegator mesosScheduler, SingularityExceptionNotifier exceptionNotifier, SingularityConfiguration configuration,
+      SingularityAbort abort, TaskManager taskManager, SlaveManager slaveManager, RackManager rackManager, RequestManager requestManager, DeployManager deployManager, StateManager stateManager,
+      StateAggregator stateAggregator) {
+    super(leaderLatch, mesosScheduler, exceptionNotifier, abort, configuration.getCheckZkMirrorsEverySeconds(), TimeUnit.SECONDS, SchedulerLockType.NO_LOCK);
+
+    this.configuration = configuration;
+    this.taskManager = taskManager;
+    this.slaveManager = slaveManager;
+    this.rackManager = rackManager;
+    this.requestManager = requestManager;
+    this.deployManager = deployManager;
+    this.stateManager = stateManager;
+    this.stateAggregator = stateAggregator;
+  }
+
+  public void startMirrors() {
+    if (!configuration.isMirrorZkStateOnLeader()) {
+      LOG.info("Not mirroring ZK state, scheduler will read directly from ZK");
+      return;
+    }
+
+    final long start = System.currentTimeMillis();
+
+    taskManager.startMirrors();
+    slaveManager.startMirrors();
+    rackManager.startMirrors();
+    requestManager.startMirrors();
+    deployManager.startMirrors();
+    stateManager.startMirrors();
+
+    stateAggregator.start(deployManager.getAllRequestDeployStatesByRequestId());
+
+    LOG.info("Started ZK mirrors in {}", JavaUtils.duration(start));
+  }
+
+  @Override
+  public void runActionOnPoll() {
+    if (!configuration.isMirrorZkStateOnLeader()) {
+      return;
+    }
+
+    final long start = System.currentTimeMillis();
+
+    final int drift = taskManager.checkMirrors() + slaveManager.checkMirrors() + rackManager.checkMirrors() + requestManager.checkMirrors() + deployManager.checkMirrors() + stateManager.checkMirrors()
+        + stateAggregator.checkRequestDeployStates(deployManager.getAllRequestDeployStatesByRequestId());
+
+    if (drift > 0) {
+      LOG.warn("ZK mirrors had {} drifted children ({})", drift, JavaUtils.duration(start));
+    } else {
+      LOG.debug("ZK mirrors were consistent ({})", JavaUtils.duration(start));
+    }
+  }
+
+  @Override
+  public void stop() {
+    super.stop();
+
+    stateAggregator.stop();
+
+    taskManager.stopMirrors();
+    slaveManager.stopMirrors();
+    rackManager.stopMirrors();
+    requestManager.stopMirrors();
+    deployManager.stopMirrors();
+    stateManager.stopMirrors();
+  }
+
+}
@@ -5,22 +5,33 @@ import static org.mockito.Mockito.when;
 
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 
 import org.junit.Assert;
 import org.junit.Test;
 import org.mockito.Matchers;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 
 import com.google.common.base.Optional;
+import com.google.common.collect.ComparisonChain;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
 import com.google.inject.Inject;
+import com.hubspot.singularity.ExtendedTaskState;
 import com.hubspot.singularity.SingularityCuratorTestBase;
 import com.hubspot.singularity.SingularityRequest;
 import com.hubspot.singularity.SingularityRequestBuilder;
 import com.hubspot.singularity.SingularityRequestHistory;
 import com.hubspot.singularity.SingularityRequestHistory.RequestHistoryType;
+import com.hubspot.singularity.SingularityTaskHistoryUpdate;
+import com.hubspot.singularity.SingularityTaskId;
+import com.hubspot.singularity.SingularityTaskIdHistory;
 import com.hubspot.singularity.data.history.HistoryManager;
 import com.hubspot.singularity.data.history.HistoryManager.OrderDirection;
 import com.hubspot.singularity.data.history.RequestHistoryHelper;
+import com.hubspot.singularity.data.history.TaskHistoryHelper;
 
 public class BlendedHistoryTest extends SingularityCuratorTestBase {
 
@@ -100,4 +111,130 @@ public class BlendedHistoryTest extends SingularityCuratorTestBase {
     Assert.assertTrue(rhh.getFirstHistory(rid).get().getCreatedAt() == 1);
     Assert.assertTrue(rhh.getLastHistory(rid).get().getCreatedAt() == 120);
   }
+
+  @Test
+  public void testKeysetBlendedRequestHistory() {
+    HistoryManager hm = mock(HistoryManager.class);
+    String rid = "rid";
+    request = new SingularityRequestBuilder(rid).build();
+    RequestHistoryHelper rhh = new RequestHistoryHelper(requestManager, hm);
+
+    saveHistory(120, RequestHistoryType.CREATED);
+    saveHistory(100, RequestHistoryType.DELETED);
+    // not yet removed from ZK after being persisted
+    saveHistory(52, RequestHistoryType.EXITED_COOLDOWN);
+
+    mockRequestHistory(hm, Arrays.asList(makeHistory(110, RequestHistoryType.UPDATED), makeHistory(52, RequestHistoryType.EXITED_COOLDOWN)));
+
+    List<SingularityRequestHistory> history = rhh.getBlendedHistoryAfter(rid, Optional.<SingularityRequestHistory> absent(), 3);
+
+    Assert.assertEquals(3, history.size());
+    Assert.assertEquals(120, history.get(0).getCreatedAt());
+    Assert.assertEquals(110, history.get(1).getCreatedAt());
+    Assert.assertEquals(100, history.get(2).getCreatedAt());
+
+    when(hm.getRequestHistoryAfter(Matchers.anyString(), Matchers.<Optional<OrderDirection>> any(), Matchers.<SingularityRequestHistory> any(), Matchers.anyInt())).thenReturn(Arrays.asList(makeHistory(52, RequestHistoryType.EXITED_COOLDOWN), makeHistory(51, RequestHistoryType.ENTERED_COOLDOWN)));
+
+    history = rhh.getBlendedHistoryAfter(rid, Optional.of(history.get(2)), 3);
+
+    Assert.assertEquals(2, history.size());
+    Assert.assertEquals(52, history.get(0).getCreatedAt());
+    Assert.assertEquals(51, history.get(1).getCreatedAt());
+  }
+
+  @Test
+  public void testKeysetTaskHistoryVisitsEveryTaskOnce() {
+    final String rid = "rid";
+
+    // several tasks share each updatedAt, so pages have to break ties on task id
+    final List<SingularityTaskIdHistory> persisted = Lists.newArrayList();
+
+    for (int i = 0; i < 40; i++) {
+      persisted.add(new SingularityTaskIdHistory(new SingularityTaskId(rid, "deploy", 1000 + i / 4, i % 4 + 1, "host", "rack"), 1000 + i / 4, Optional.<ExtendedTaskState> absent()));
+    }
+
+    // ORDER BY updatedAt DESC, taskId DESC
+    Collections.sort(persisted, new Comparator<SingularityTaskIdHistory>() {
+
+      @Override
+      public int compare(SingularityTaskIdHistory o1, SingularityTaskIdHistory o2) {
+        return ComparisonChain.start().compare(o2.getUpdatedAt(), o1.getUpdatedAt()).compare(o2.getTaskId().getId(), o1.getTaskId().getId()).result();
+      }
+
+    });
+
+    HistoryManager hm = mock(HistoryManager.class);
+
+    when(hm.getTaskHistoryForRequest(Matchers.anyString(), Matchers.anyInt(), Matchers.anyInt())).thenAnswer(new Answer<List<SingularityTaskIdHistory>>() {
+
+      @Override
+      public List<SingularityTaskIdHistory> answer(InvocationOnMock invocation) {
+        int limitStart = (Integer) invocation.getArguments()[1];
+        int limitCount = (Integer) invocation.getArguments()[2];
+
+        return Lists.newArrayList(Iterables.limit(Iterables.skip(persisted, limitStart), limitCount));
+      }
+
+    });
+
+    when(hm.getTaskHistoryForRequestAfter(Matchers.anyString(), Matchers.any(SingularityTaskIdHistory.class), Matchers.anyInt())).thenAnswer(new Answer<List<SingularityTaskIdHistory>>() {
+
+      @Override
+      public List<SingularityTaskIdHistory> answer(InvocationOnMock invocation) {
+        SingularityTaskIdHistory last = (SingularityTaskIdHistory) invocation.getArguments()[1];
+        int limitCount = (Integer) invocation.getArguments()[2];
+
+        List<SingularityTaskIdHistory> page = Lists.newArrayList();
+
+        // WHERE updatedAt <= :updatedAt AND (updatedAt < :updatedAt OR taskId < :taskId)
+        for (SingularityTaskIdHistory taskIdHistory : persisted) {
+          if (page.size() < limitCount && taskIdHistory.getUpdatedAt() <= last.getUpdatedAt()
+              && (taskIdHistory.getUpdatedAt() < last.getUpdatedAt() || taskIdHistory.getTaskId().getId().compareTo(last.getTaskId().getId()) < 0)) {
+            page.add(taskIdHistory);
+          }
+        }
+
+        return page;
+      }
+
+    });
+
+    // two tasks only in ZK, and the newest persisted ones not yet removed from it
+    final List<SingularityTaskId> inZk = Lists.newArrayList(new SingularityTaskId(rid, "deploy", 2000, 1, "host", "rack"), new SingularityTaskId(rid, "deploy", 2000, 2, "host", "rack"));
+
+    for (SingularityTaskIdHistory taskIdHistory : persisted.subList(0, 4)) {
+      inZk.add(taskIdHistory.getTaskId());
+    }
+
+    TaskManager taskManager = mock(TaskManager.class);
+    when(taskManager.getInactiveTaskIdsForRequest(rid)).thenReturn(inZk);
+    when(taskManager.getTaskHistoryUpdates(Matchers.anyCollectionOf(SingularityTaskId.class))).thenReturn(Collections.<SingularityTaskId, List<SingularityTaskHistoryUpdate>> emptyMap());
+
+    TaskHistoryHelper thh = new TaskHistoryHelper(taskManager, hm);
+
+    List<String> walked = Lists.newArrayList();
+    Optional<SingularityTaskIdHistory> last = Optional.absent();
+
+    while (true) {
+      List<SingularityTaskIdHistory> page = thh.getBlendedHistoryAfter(rid, last, 7);
+
+      if (page.isEmpty()) {
+        break;
+      }
+
+      for (SingularityTaskIdHistory taskIdHistory : page) {
+        walked.add(taskIdHistory.getTaskId().getId());
+      }
+
+      last = Optional.of(Iterables.getLast(page));
+    }
+
+    List<String> expected = Lists.newArrayList(inZk.get(1).getId(), inZk.get(0).getId());
+
+    for (SingularityTaskIdHistory taskIdHistory : persisted) {
+      expected.add(taskIdHistory.getTaskId().getId());
+    }
+
+    Assert.assertEquals(expected, walked);
+  }
 }
@@ -0,0 +1,90 @@
+package com.hubspot.singularity.data;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.api.BackgroundCallback;
+import org.apache.curator.framework.api.CuratorEvent;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Queues;
+import com.hubspot.mesos.JavaUtils;
+import com.hubspot.singularity.SingularityCuratorTestBase;
+import com.hubspot.singularity.data.CuratorAsyncFetcher.AsyncRead;
+import com.hubspot.singularity.data.CuratorAsyncFetcher.ResultConsumer;
+
+public class CuratorAsyncFetcherTest extends SingularityCuratorTestBase {
+
+  private final AsyncRead<String> stringRead = new AsyncRead<String>() {
+
+    @Override
+    protected void inBackground(CuratorFramework curator, String path, BackgroundCallback callback) throws Exception {
+      curator.getData().inBackground(callback).forPath(path);
+    }
+
+    @Override
+    protected List<String> getResults(CuratorEvent event) throws Exception {
+      return Collections.singletonList(JavaUtils.toString(event.getData()));
+    }
+
+  };
+
+  private List<String> createNodes(int numNodes) throws Exception {
+    List<String> paths = Lists.newArrayListWithCapacity(numNodes);
+
+    for (int i = 0; i < numNodes; i++) {
+      String path = "/fetcher/node" + i;
+      cf.create().creatingParentsIfNeeded().forPath(path, JavaUtils.toBytes(Integer.toString(i)));
+      paths.add(path);
+    }
+
+    return paths;
+  }
+
+  @Test
+  public void testFetchIsOrderedAndSkipsMissing() throws Exception {
+    List<String> paths = createNodes(200);
+    paths.add(50, "/fetcher/missing");
+
+    MetricRegistry registry = new MetricRegistry();
+    CuratorAsyncFetcher fetcher = new CuratorAsyncFetcher(cf, registry, 7, 1, 5000);
+
+    List<String> results = fetcher.get(fetcher.fetch("/fetcher", paths, stringRead), "/fetcher");
+
+    Assert.assertEquals(200, results.size());
+
+    for (int i = 0; i < results.size(); i++) {
+      Assert.assertEquals(Integer.toString(i), results.get(i));
+    }
+
+    Assert.assertEquals(201, registry.histogram("com.hubspot.singularity.data.CuratorAsyncFetcher.fetcher.readMillis").getCount());
+    Assert.assertEquals(1, registry.histogram("com.hubspot.singularity.data.CuratorAsyncFetcher.fetcher.fetchMillis").getCount());
+  }
+
+  @Test
+  public void testStream() throws Exception {
+    List<String> paths = createNodes(50);
+
+    CuratorAsyncFetcher fetcher = new CuratorAsyncFetcher(cf, new MetricRegistry(), 5, 1, 5000);
+
+    final Queue<String> streamed = Queues.newConcurrentLinkedQueue();
+
+    int numResults = fetcher.get(fetcher.stream("/fetcher", paths, stringRead, new ResultConsumer<String>() {
+
+      @Override
+      public void accept(String result) {
+        streamed.add(result);
+      }
+
+    }), "/fetcher");
+
+    Assert.assertEquals(50, numResults);
+    Assert.assertEquals(50, streamed.size());
+  }
+
+}
@@ -0,0 +1,69 @@
+package com.hubspot.singularity.data;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.base.Optional;
+import com.hubspot.singularity.SingularityTaskHealthcheckResult;
+import com.hubspot.singularity.SingularityTaskId;
+import com.hubspot.singularity.config.SingularityConfiguration;
+
+public class HealthcheckResultBufferTest {
+
+  private final SingularityTaskId taskId = new SingularityTaskId("request", "deploy", 1, 1, "host", "rack");
+
+  private SingularityTaskHealthcheckResult result(long timestamp) {
+    return new SingularityTaskHealthcheckResult(Optional.of(200), Optional.of(10L), timestamp, Optional.<String> absent(), Optional.<String> absent(), taskId);
+  }
+
+  private HealthcheckResultBuffer startedBuffer(int maxResultsPerTask) {
+    SingularityConfiguration configuration = new SingularityConfiguration();
+    configuration.setMaxHealthcheckResultsPerTask(maxResultsPerTask);
+
+    HealthcheckResultBuffer buffer = new HealthcheckResultBuffer(configuration, new MetricRegistry());
+    buffer.start();
+    return buffer;
+  }
+
+  @Test
+  public void testOnlyMostRecentResultsAreKept() {
+    HealthcheckResultBuffer buffer = startedBuffer(3);
+
+    buffer.load(taskId.getId(), Arrays.asList(result(1), result(2)));
+
+    Assert.assertEquals(Arrays.asList(result(1), result(2), result(3)), buffer.add(result(3)));
+    buffer.add(result(4));
+
+    Assert.assertEquals(Arrays.asList(result(3), result(4), result(5)), buffer.add(result(5)));
+    Assert.assertEquals(result(5), buffer.getLast(taskId.getId()).get());
+
+    buffer.remove(taskId.getId());
+
+    Assert.assertFalse(buffer.getLast(taskId.getId()).isPresent());
+    Assert.assertFalse(buffer.getAll(taskId.getId()).isPresent());
+  }
+
+  @Test
+  public void testLoadDoesNotReplaceNewerResults() {
+    HealthcheckResultBuffer buffer = startedBuffer(3);
+
+    buffer.add(result(2));
+    buffer.load(taskId.getId(), Collections.singletonList(result(1)));
+
+    Assert.assertEquals(Arrays.asList(result(2)), buffer.getAll(taskId.getId()).get());
+  }
+
+  @Test
+  public void testInactiveBufferKeepsNothing() {
+    HealthcheckResultBuffer buffer = startedBuffer(3);
+    buffer.stop();
+
+    Assert.assertEquals(Arrays.asList(result(1)), buffer.add(result(1)));
+    Assert.assertEquals(0, buffer.getNumTasks());
+  }
+
+}
@@ -0,0 +1,77 @@
+package com.hubspot.singularity.data;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.base.Optional;
+import com.google.common.collect.Lists;
+import com.hubspot.singularity.SingularityPendingRequest.PendingType;
+import com.hubspot.singularity.SingularityPendingTask;
+import com.hubspot.singularity.SingularityPendingTaskId;
+
+public class PendingTaskQueueTest {
+
+  private SingularityPendingTask pendingTask(String requestId, long nextRunAt, int instanceNo, PendingType pendingType) {
+    return new SingularityPendingTask(new SingularityPendingTaskId(requestId, "deploy", nextRunAt, instanceNo, pendingType), Optional.<String> absent());
+  }
+
+  private void add(PendingTaskQueue queue, SingularityPendingTask pendingTask) {
+    queue.getListener().childChanged(pendingTask.getPendingTaskId().getId(), Optional.<SingularityPendingTask> absent(), Optional.of(pendingTask));
+  }
+
+  private void remove(PendingTaskQueue queue, SingularityPendingTask pendingTask) {
+    queue.getListener().childChanged(pendingTask.getPendingTaskId().getId(), Optional.of(pendingTask), Optional.<SingularityPendingTask> absent());
+  }
+
+  private List<String> getRequestIds(List<SingularityPendingTask> pendingTasks) {
+    List<String> requestIds = Lists.newArrayList();
+    for (SingularityPendingTask pendingTask : pendingTasks) {
+      requestIds.add(pendingTask.getPendingTaskId().getRequestId());
+    }
+    return requestIds;
+  }
+
+  @Test
+  public void testOnlyDueTasksAreReturned() {
+    PendingTaskQueue queue = new PendingTaskQueue(new MetricRegistry());
+
+    SingularityPendingTask due = pendingTask("request", 100, 1, PendingType.NEW_DEPLOY);
+    SingularityPendingTask future = pendingTask("request", 200, 2, PendingType.NEW_DEPLOY);
+
+    add(queue, future);
+    add(queue, due);
+
+    Assert.assertEquals(Arrays.asList(due), queue.getDueTasks(150));
+    Assert.assertEquals(2, queue.getDueTasks(200).size());
+    Assert.assertEquals(2, queue.getPendingTasksForRequest("request").size());
+
+    remove(queue, due);
+
+    Assert.assertTrue(queue.getDueTasks(150).isEmpty());
+    Assert.assertEquals(Arrays.asList(future.getPendingTaskId()), queue.getPendingTaskIdsForRequest("request"));
+
+    remove(queue, future);
+
+    Assert.assertEquals(0, queue.getNumPendingTasks());
+    Assert.assertTrue(queue.getPendingTaskIdsForRequest("request").isEmpty());
+  }
+
+  @Test
+  public void testLargeRequestDoesNotStarveOthers() {
+    PendingTaskQueue queue = new PendingTaskQueue(new MetricRegistry());
+
+    for (int i = 1; i <= 5; i++) {
+      add(queue, pendingTask("large", i, i, PendingType.NEW_DEPLOY));
+    }
+
+    add(queue, pendingTask("small", 10, 1, PendingType.NEW_DEPLOY));
+    add(queue, pendingTask("oneoff", 20, 1, PendingType.ONEOFF));
+
+    Assert.assertEquals(Arrays.asList("oneoff", "large", "small", "large", "large", "large", "large"), getRequestIds(queue.getDueTasks(100)));
+  }
+
+}
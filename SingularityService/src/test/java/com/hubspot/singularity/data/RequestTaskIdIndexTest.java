@@ -0,0 +1,99 @@
+package com.hubspot.singularity.data;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.base.Optional;
+import com.google.common.collect.Ordering;
+import com.hubspot.singularity.SingularityTaskId;
+
+public class RequestTaskIdIndexTest {
+
+  private final SingularityTaskId first = new SingularityTaskId("request", "deploy", 1, 1, "host", "rack");
+  private final SingularityTaskId second = new SingularityTaskId("request", "deploy", 2, 2, "host", "rack");
+
+  private RequestTaskIdIndex startedIndex() {
+    RequestTaskIdIndex index = new RequestTaskIdIndex(new MetricRegistry());
+    index.start();
+    return index;
+  }
+
+  private List<SingularityTaskId> sorted(List<SingularityTaskId> taskIds) {
+    return Ordering.usingToString().sortedCopy(taskIds);
+  }
+
+  private void activeTaskChanged(RequestTaskIdIndex index, SingularityTaskId taskId, boolean active) {
+    index.getActiveTaskListener().childChanged(taskId.getId(), active ? Optional.<SingularityTaskId> absent() : Optional.of(taskId), active ? Optional.of(taskId) : Optional.<SingularityTaskId> absent());
+  }
+
+  @Test
+  public void testTasksMoveFromActiveToInactive() {
+    RequestTaskIdIndex index = startedIndex();
+
+    activeTaskChanged(index, first, true);
+    activeTaskChanged(index, second, true);
+
+    Assert.assertFalse(index.getInactiveTaskIds("request").isPresent());
+    Assert.assertTrue(index.loadInactiveTaskIds(index.startLoading("request"), Arrays.asList(first, second)).isEmpty());
+
+    activeTaskChanged(index, first, false);
+
+    Assert.assertEquals(Arrays.asList(second), index.getActiveTaskIds("request"));
+    Assert.assertEquals(Arrays.asList(first), index.getInactiveTaskIds("request").get());
+
+    index.taskHistoryDeleted(first);
+
+    Assert.assertTrue(index.getInactiveTaskIds("request").get().isEmpty());
+  }
+
+  @Test
+  public void testChangesWhileLoadingAreApplied() {
+    RequestTaskIdIndex index = startedIndex();
+
+    SingularityTaskId third = new SingularityTaskId("request", "deploy", 3, 3, "host", "rack");
+
+    activeTaskChanged(index, first, true);
+
+    RequestTaskIdIndex.Loading loading = index.startLoading("request");
+
+    // after the history node was read: second launches and finishes, first finishes and its history is deleted
+    activeTaskChanged(index, second, true);
+    activeTaskChanged(index, second, false);
+    activeTaskChanged(index, first, false);
+    index.taskHistoryDeleted(first);
+
+    Assert.assertEquals(Arrays.asList(second, third), sorted(index.loadInactiveTaskIds(loading, Arrays.asList(first, third))));
+    index.stopLoading(loading);
+
+    Assert.assertEquals(Arrays.asList(second, third), sorted(index.getInactiveTaskIds("request").get()));
+  }
+
+  @Test
+  public void testLoadStartedBeforeARestartIsNotKept() {
+    RequestTaskIdIndex index = startedIndex();
+
+    RequestTaskIdIndex.Loading loading = index.startLoading("request");
+
+    index.stop();
+    index.start();
+
+    index.loadInactiveTaskIds(loading, Collections.singletonList(first));
+
+    Assert.assertFalse(index.getInactiveTaskIds("request").isPresent());
+  }
+
+  @Test
+  public void testStoppedIndexLoadsNothing() {
+    RequestTaskIdIndex index = startedIndex();
+    index.stop();
+
+    Assert.assertEquals(Arrays.asList(first), index.loadInactiveTaskIds(index.startLoading("request"), Collections.singletonList(first)));
+    Assert.assertFalse(index.getInactiveTaskIds("request").isPresent());
+  }
+
+}
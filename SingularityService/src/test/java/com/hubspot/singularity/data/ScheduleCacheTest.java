@@ -0,0 +1,56 @@
+package com.hubspot.singularity.data;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.quartz.CronExpression;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.base.Optional;
+import com.hubspot.singularity.config.SingularityConfiguration;
+
+public class ScheduleCacheTest {
+
+  private static final String EVERY_MINUTE = "0 * * * * ?";
+  private static final String EVERY_HOUR = "0 0 * * * ?";
+
+  @Test
+  public void testMatchesCronExpression() throws Exception {
+    MetricRegistry registry = new MetricRegistry();
+    ScheduleCache scheduleCache = new ScheduleCache(new SingularityConfiguration(), registry);
+    CronExpression cronExpression = new CronExpression(EVERY_MINUTE);
+
+    long now = System.currentTimeMillis();
+
+    for (long from = now; from < now + TimeUnit.MINUTES.toMillis(20); from += 7531) {
+      Date fromDate = new Date(from);
+      Assert.assertEquals(cronExpression.getNextValidTimeAfter(fromDate), scheduleCache.getNextValidTimeAfter("request", EVERY_MINUTE, fromDate).get());
+    }
+
+    Assert.assertTrue(registry.meter("com.hubspot.singularity.data.ScheduleCache.hits").getCount() > registry.meter("com.hubspot.singularity.data.ScheduleCache.misses").getCount());
+  }
+
+  @Test
+  public void testChangedScheduleIsRecomputed() throws Exception {
+    ScheduleCache scheduleCache = new ScheduleCache(new SingularityConfiguration(), new MetricRegistry());
+
+    Date from = new Date();
+
+    Assert.assertEquals(new CronExpression(EVERY_MINUTE).getNextValidTimeAfter(from), scheduleCache.getNextValidTimeAfter("request", EVERY_MINUTE, from).get());
+    Assert.assertEquals(new CronExpression(EVERY_HOUR).getNextValidTimeAfter(from), scheduleCache.getNextValidTimeAfter("request", EVERY_HOUR, from).get());
+
+    scheduleCache.invalidate("request");
+
+    Assert.assertEquals(new CronExpression(EVERY_HOUR).getNextValidTimeAfter(from), scheduleCache.getNextValidTimeAfter("request", EVERY_HOUR, from).get());
+  }
+
+  @Test
+  public void testExpiredSchedule() throws Exception {
+    ScheduleCache scheduleCache = new ScheduleCache(new SingularityConfiguration(), new MetricRegistry());
+
+    Assert.assertEquals(Optional.<Date> absent(), scheduleCache.getNextValidTimeAfter("request", "0 0 0 1 1 ? 2001", new Date()));
+  }
+
+}
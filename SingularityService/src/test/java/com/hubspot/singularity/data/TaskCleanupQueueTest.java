@@ -0,0 +1,66 @@
+package com.hubspot.singularity.data;
+
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.base.Optional;
+import com.hubspot.singularity.SingularityTaskCleanup;
+import com.hubspot.singularity.SingularityTaskCleanup.TaskCleanupType;
+import com.hubspot.singularity.SingularityTaskId;
+
+public class TaskCleanupQueueTest {
+
+  private final SingularityTaskCleanup first = cleanup(new SingularityTaskId("request", "deploy", 1, 1, "host", "rack"));
+  private final SingularityTaskCleanup second = cleanup(new SingularityTaskId("request", "deploy", 2, 2, "host", "rack"));
+
+  private static SingularityTaskCleanup cleanup(SingularityTaskId taskId) {
+    return new SingularityTaskCleanup(Optional.<String> absent(), TaskCleanupType.BOUNCING, System.currentTimeMillis(), taskId);
+  }
+
+  private TaskCleanupQueue startedQueue() {
+    TaskCleanupQueue queue = new TaskCleanupQueue(new MetricRegistry());
+    queue.start();
+    return queue;
+  }
+
+  private void cleanupChanged(TaskCleanupQueue queue, SingularityTaskCleanup cleanup, boolean present) {
+    queue.getListener().childChanged(cleanup.getTaskId().getId(), Optional.<SingularityTaskCleanup> absent(), present ? Optional.of(cleanup) : Optional.<SingularityTaskCleanup> absent());
+  }
+
+  @Test
+  public void testParkedCleanupsAreNotDue() {
+    TaskCleanupQueue queue = startedQueue();
+
+    cleanupChanged(queue, first, true);
+    cleanupChanged(queue, second, true);
+
+    final long now = System.currentTimeMillis();
+
+    Assert.assertEquals(Arrays.asList(first, second), queue.getDueCleanups(now));
+
+    queue.park(first.getTaskId().getId(), now + 1000);
+
+    Assert.assertEquals(Arrays.asList(second), queue.getDueCleanups(now));
+    Assert.assertEquals(Arrays.asList(second, first), queue.getDueCleanups(now + 1000));
+
+    cleanupChanged(queue, second, false);
+
+    Assert.assertTrue(queue.getDueCleanups(now).isEmpty());
+    Assert.assertEquals(1, queue.getNumCleanups());
+  }
+
+  @Test
+  public void testStoppedQueueIgnoresCleanups() {
+    TaskCleanupQueue queue = startedQueue();
+    queue.stop();
+
+    cleanupChanged(queue, first, true);
+
+    Assert.assertEquals(0, queue.getNumCleanups());
+    Assert.assertTrue(queue.getDueCleanups(System.currentTimeMillis()).isEmpty());
+  }
+
+}
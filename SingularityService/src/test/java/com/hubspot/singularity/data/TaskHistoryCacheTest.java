@@ -0,0 +1,64 @@
+package com.hubspot.singularity.data;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.codahale.metrics.MetricRegistry;
+import com.hubspot.singularity.SingularityTask;
+import com.hubspot.singularity.SingularityTaskHistory;
+import com.hubspot.singularity.SingularityTaskId;
+import com.hubspot.singularity.config.SingularityConfiguration;
+
+public class TaskHistoryCacheTest {
+
+  private MetricRegistry registry;
+  private TaskHistoryCache cache;
+
+  @Before
+  public void setup() {
+    SingularityConfiguration configuration = new SingularityConfiguration();
+    configuration.setTaskHistoryCacheMaxBytes(4096);
+
+    registry = new MetricRegistry();
+    cache = new TaskHistoryCache(configuration, registry);
+  }
+
+  private SingularityTaskHistory taskHistory(int instanceNo) {
+    SingularityTask task = mock(SingularityTask.class);
+    when(task.getTaskId()).thenReturn(new SingularityTaskId("request", "deploy", 1, instanceNo, "host", "rack"));
+
+    SingularityTaskHistory taskHistory = mock(SingularityTaskHistory.class);
+    when(taskHistory.getTask()).thenReturn(task);
+
+    return taskHistory;
+  }
+
+  @Test
+  public void testCachedHistoriesAreHits() {
+    SingularityTaskHistory taskHistory = taskHistory(1);
+    String taskId = taskHistory.getTask().getTaskId().getId();
+
+    Assert.assertFalse(cache.get(taskId).isPresent());
+
+    cache.put(taskHistory, 10);
+
+    Assert.assertSame(taskHistory, cache.get(taskId).get());
+    Assert.assertEquals(1, registry.meter(MetricRegistry.name(TaskHistoryCache.class, "hits")).getCount());
+    Assert.assertEquals(1, registry.meter(MetricRegistry.name(TaskHistoryCache.class, "misses")).getCount());
+  }
+
+  @Test
+  public void testHistoriesOverBudgetAreEvicted() {
+    SingularityTaskHistory taskHistory = taskHistory(2);
+
+    cache.put(taskHistory, 8192);
+
+    Assert.assertFalse(cache.get(taskHistory.getTask().getTaskId().getId()).isPresent());
+    Assert.assertEquals(1, registry.meter(MetricRegistry.name(TaskHistoryCache.class, "evictions")).getCount());
+  }
+
+}
@@ -0,0 +1,99 @@
+package com.hubspot.singularity.data;
+
+import java.util.Collections;
+import java.util.Map;
+
+import org.apache.mesos.Protos.TaskID;
+import org.apache.mesos.Protos.TaskState;
+import org.apache.mesos.Protos.TaskStatus;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.base.Optional;
+import com.hubspot.singularity.SingularityTaskId;
+import com.hubspot.singularity.SingularityTaskStatusHolder;
+
+public class TaskStatusTableTest {
+
+  private final SingularityTaskId taskId = new SingularityTaskId("request", "deploy", 1, 1, "host", "rack");
+
+  private SingularityTaskStatusHolder status(TaskState state, long timestamp) {
+    TaskStatus taskStatus = TaskStatus.newBuilder().setTaskId(TaskID.newBuilder().setValue(taskId.getId())).setState(state).build();
+
+    return new SingularityTaskStatusHolder(taskId, Optional.of(taskStatus), timestamp, "server", Optional.<String> absent());
+  }
+
+  private TaskStatusTable startedTable(MetricRegistry registry) {
+    TaskStatusTable table = new TaskStatusTable(registry);
+    table.start(Collections.<SingularityTaskStatusHolder> emptyList());
+    table.putPersisted(new SingularityTaskStatusHolder(taskId, Optional.<TaskStatus> absent(), 0, "server", Optional.of("slave")));
+    return table;
+  }
+
+  @Test
+  public void testStateChangesAreNotWrittenBehind() {
+    MetricRegistry registry = new MetricRegistry();
+    TaskStatusTable table = startedTable(registry);
+
+    // the launched status has no mesos status, so the first status always changes the state
+    Assert.assertFalse(table.putIfSameState(status(TaskState.TASK_RUNNING, 1)));
+    Assert.assertFalse(table.get(taskId).get().getTaskStatus().isPresent());
+
+    table.putPersisted(status(TaskState.TASK_RUNNING, 1));
+
+    Assert.assertFalse(table.putIfSameState(status(TaskState.TASK_FAILED, 2)));
+    Assert.assertEquals(0, table.getNumUnpersisted());
+    Assert.assertEquals(0, registry.counter(MetricRegistry.name(TaskStatusTable.class, "writtenBehind")).getCount());
+  }
+
+  @Test
+  public void testOnlyLatestRepeatedStateIsWrittenBehind() {
+    MetricRegistry registry = new MetricRegistry();
+    TaskStatusTable table = startedTable(registry);
+
+    table.putPersisted(status(TaskState.TASK_RUNNING, 1));
+
+    Assert.assertTrue(table.putIfSameState(status(TaskState.TASK_RUNNING, 2)));
+    Assert.assertTrue(table.putIfSameState(status(TaskState.TASK_RUNNING, 3)));
+    Assert.assertEquals(3, table.get(taskId).get().getServerTimestamp());
+
+    Map<SingularityTaskId, SingularityTaskStatusHolder> drained = table.drainUnpersisted();
+
+    Assert.assertEquals(1, drained.size());
+    Assert.assertEquals(3, drained.get(taskId).getServerTimestamp());
+    Assert.assertEquals(2, registry.counter(MetricRegistry.name(TaskStatusTable.class, "writtenBehind")).getCount());
+    Assert.assertEquals(1, registry.counter(MetricRegistry.name(TaskStatusTable.class, "coalesced")).getCount());
+  }
+
+  @Test
+  public void testRemovedStatusIsNotFlushed() {
+    TaskStatusTable table = startedTable(new MetricRegistry());
+
+    table.putPersisted(status(TaskState.TASK_RUNNING, 1));
+    table.putIfSameState(status(TaskState.TASK_RUNNING, 2));
+
+    Assert.assertTrue(table.removePersisted(taskId));
+    Assert.assertFalse(table.removePersisted(taskId));
+
+    Assert.assertFalse(table.get(taskId).isPresent());
+    Assert.assertTrue(table.drainUnpersisted().isEmpty());
+  }
+
+  @Test
+  public void testFailedFlushDoesNotOverwriteNewerWrite() {
+    TaskStatusTable table = startedTable(new MetricRegistry());
+
+    table.putPersisted(status(TaskState.TASK_RUNNING, 1));
+    table.putIfSameState(status(TaskState.TASK_RUNNING, 2));
+
+    Map<SingularityTaskId, SingularityTaskStatusHolder> drained = table.drainUnpersisted();
+
+    table.putPersisted(status(TaskState.TASK_FINISHED, 3));
+    table.restoreUnpersisted(drained);
+
+    Assert.assertTrue(table.drainUnpersisted().isEmpty());
+    Assert.assertEquals(TaskState.TASK_FINISHED, table.get(taskId).get().getTaskStatus().get().getState());
+  }
+
+}
@@ -0,0 +1,92 @@
+package com.hubspot.singularity.data;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.curator.framework.recipes.cache.ChildData;
+import org.apache.curator.framework.recipes.cache.PathChildrenCacheEvent;
+import org.apache.zookeeper.data.Stat;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.base.Charsets;
+import com.google.common.base.Function;
+import com.hubspot.singularity.SingularityCuratorTestBase;
+
+public class ZkChildrenMirrorTest extends SingularityCuratorTestBase {
+
+  private static final String PATH = "/mirror";
+
+  private ZkChildrenMirror<String> mirror;
+
+  @Before
+  public void setup() throws Exception {
+    cf.create().creatingParentsIfNeeded().forPath(PATH + "/child", bytes("zk"));
+
+    mirror = new ZkChildrenMirror<>(cf, new MetricRegistry(), PATH, true, new Function<ChildData, String>() {
+
+      @Override
+      public String apply(ChildData input) {
+        return new String(input.getData(), Charsets.UTF_8);
+      }
+
+    });
+
+    mirror.start();
+  }
+
+  @After
+  public void teardown() {
+    mirror.stop();
+  }
+
+  private byte[] bytes(String data) {
+    return data.getBytes(Charsets.UTF_8);
+  }
+
+  private void awaitChildren(List<String> expected) throws InterruptedException {
+    final long deadline = System.currentTimeMillis() + 1000;
+
+    while (!mirror.getChildren().equals(expected) && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+
+    assertEquals(expected, mirror.getChildren());
+  }
+
+  @Test
+  public void testLocalPutIsReplacedWithZkData() throws Exception {
+    mirror.put("child", "local");
+
+    assertEquals(Collections.singletonList("local"), mirror.getChildren());
+
+    // not drift, the mirror just didn't know the child's version
+    assertEquals(0, mirror.checkConsistency());
+    assertEquals(Collections.singletonList("zk"), mirror.getChildren());
+  }
+
+  @Test
+  public void testStaleDataIsRepaired() throws Exception {
+    final Stat stat = new Stat();
+    final byte[] data = cf.getData().storingStatIn(stat).forPath(PATH + "/child");
+
+    cf.setData().forPath(PATH + "/child", bytes("updated"));
+
+    awaitChildren(Collections.singletonList("updated"));
+
+    // a late delivery of the original data
+    mirror.childEvent(cf, new PathChildrenCacheEvent(PathChildrenCacheEvent.Type.CHILD_UPDATED, new ChildData(PATH + "/child", stat, data)));
+
+    assertEquals(Collections.singletonList("zk"), mirror.getChildren());
+
+    assertEquals(1, mirror.checkConsistency());
+    assertEquals(Collections.singletonList("updated"), mirror.getChildren());
+
+    assertEquals(0, mirror.checkConsistency());
+  }
+
+}
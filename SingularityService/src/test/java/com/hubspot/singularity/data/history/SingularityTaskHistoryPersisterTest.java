@@ -0,0 +1,157 @@
+package com.hubspot.singularity.data.history;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.anyCollectionOf;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.hubspot.singularity.SingularityPendingDeploy;
+import com.hubspot.singularity.SingularityTaskHistory;
+import com.hubspot.singularity.SingularityTaskId;
+import com.hubspot.singularity.config.SingularityConfiguration;
+import com.hubspot.singularity.data.DeployManager;
+import com.hubspot.singularity.data.TaskManager;
+
+public class SingularityTaskHistoryPersisterTest {
+
+  private final List<SingularityTaskId> taskIds = Lists.newArrayList();
+  private final Map<SingularityTaskId, SingularityTaskHistory> taskHistories = Maps.newHashMap();
+  private final List<List<SingularityTaskHistory>> batches = Collections.synchronizedList(Lists.<List<SingularityTaskHistory>> newArrayList());
+
+  private TaskManager taskManager;
+  private HistoryManager historyManager;
+  private MetricRegistry registry;
+  private SingularityTaskHistoryPersister persister;
+
+  @Before
+  public void setup() {
+    for (int i = 1; i <= 5; i++) {
+      SingularityTaskId taskId = new SingularityTaskId("request", "deploy", 1, i, "host", "rack");
+
+      taskIds.add(taskId);
+      taskHistories.put(taskId, mock(SingularityTaskHistory.class));
+    }
+
+    taskManager = mock(TaskManager.class);
+    when(taskManager.getAllTaskIds()).thenReturn(taskIds);
+    when(taskManager.getActiveTaskIds()).thenReturn(Collections.<SingularityTaskId> emptyList());
+    when(taskManager.getLBCleanupTasks()).thenReturn(Collections.<SingularityTaskId> emptyList());
+
+    when(taskManager.getTaskHistories(anyCollectionOf(SingularityTaskId.class))).thenAnswer(new Answer<Map<SingularityTaskId, SingularityTaskHistory>>() {
+
+      @Override
+      @SuppressWarnings("unchecked")
+      public Map<SingularityTaskId, SingularityTaskHistory> answer(InvocationOnMock invocation) {
+        Map<SingularityTaskId, SingularityTaskHistory> chunk = Maps.newHashMap();
+
+        for (SingularityTaskId taskId : (Collection<SingularityTaskId>) invocation.getArguments()[0]) {
+          chunk.put(taskId, taskHistories.get(taskId));
+        }
+
+        return chunk;
+      }
+
+    });
+
+    DeployManager deployManager = mock(DeployManager.class);
+    when(deployManager.getPendingDeploys()).thenReturn(Collections.<SingularityPendingDeploy> emptyList());
+
+    historyManager = mock(HistoryManager.class);
+
+    SingularityConfiguration configuration = new SingularityConfiguration();
+    configuration.setPersistTaskHistoryBatchSize(2);
+    configuration.setPersistTaskHistoryThreads(2);
+
+    registry = new MetricRegistry();
+    persister = new SingularityTaskHistoryPersister(taskManager, deployManager, historyManager, configuration, registry);
+  }
+
+  @After
+  public void teardown() {
+    persister.stop();
+  }
+
+  private long getCount(String meter) {
+    return registry.meter(MetricRegistry.name(SingularityTaskHistoryPersister.class, meter)).getCount();
+  }
+
+  @Test
+  public void testTasksAreInsertedInChunksAndThenDeleted() {
+    doAnswer(new Answer<Void>() {
+
+      @Override
+      @SuppressWarnings("unchecked")
+      public Void answer(InvocationOnMock invocation) {
+        batches.add((List<SingularityTaskHistory>) invocation.getArguments()[0]);
+        return null;
+      }
+
+    }).when(historyManager).saveTaskHistories(anyListOf(SingularityTaskHistory.class));
+
+    persister.checkInactiveTaskIds();
+
+    List<Integer> batchSizes = Lists.newArrayList();
+
+    for (List<SingularityTaskHistory> batch : batches) {
+      batchSizes.add(batch.size());
+    }
+
+    Collections.sort(batchSizes);
+
+    assertEquals(Lists.newArrayList(1, 2, 2), batchSizes);
+
+    for (SingularityTaskId taskId : taskIds) {
+      verify(taskManager).deleteTaskHistory(taskId);
+    }
+
+    verify(historyManager, never()).saveTaskHistory(taskHistories.get(taskIds.get(0)));
+    assertEquals(5, getCount("transferred"));
+    assertEquals(0, getCount("failed"));
+  }
+
+  @Test
+  public void testTasksWhichFailToInsertAreKeptInZk() {
+    doThrow(new RuntimeException("batch failed")).when(historyManager).saveTaskHistories(anyListOf(SingularityTaskHistory.class));
+
+    final SingularityTaskId failedTaskId = taskIds.get(2);
+    doThrow(new RuntimeException("task failed")).when(historyManager).saveTaskHistory(taskHistories.get(failedTaskId));
+
+    persister.checkInactiveTaskIds();
+
+    // every task of a failed batch is retried on its own
+    for (SingularityTaskId taskId : taskIds) {
+      verify(historyManager).saveTaskHistory(taskHistories.get(taskId));
+    }
+
+    verify(taskManager, never()).deleteTaskHistory(failedTaskId);
+
+    for (SingularityTaskId taskId : taskIds) {
+      if (!taskId.equals(failedTaskId)) {
+        verify(taskManager).deleteTaskHistory(taskId);
+      }
+    }
+
+    assertEquals(4, getCount("transferred"));
+    assertEquals(1, getCount("failed"));
+  }
+
+}
@@ -0,0 +1,72 @@
+package com.hubspot.singularity.data.transcoders;
+
+import java.util.Random;
+
+import org.iq80.snappy.Snappy;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.base.Charsets;
+import com.google.common.base.Strings;
+import com.hubspot.singularity.config.SingularityConfiguration;
+
+public class ZkCompressorTest {
+
+  private static final byte[] SMALL = "{\"id\":\"small\"}".getBytes(Charsets.UTF_8);
+  private static final byte[] LARGE = ("{\"id\":\"" + Strings.repeat("large", 500) + "\"}").getBytes(Charsets.UTF_8);
+
+  private ZkCompressor compressor(boolean compress) {
+    SingularityConfiguration configuration = new SingularityConfiguration();
+    configuration.setCompressLargeDataObjects(compress);
+
+    return new ZkCompressor(configuration, new MetricRegistry());
+  }
+
+  @Test
+  public void testCodecChoice() {
+    ZkCompressor compressor = compressor(true);
+
+    byte[] small = compressor.compress(SMALL);
+    byte[] large = compressor.compress(LARGE);
+
+    Assert.assertEquals(ZkCompressor.MAGIC, small[0]);
+    Assert.assertEquals(ZkCompressor.Codec.NONE.getId(), small[1]);
+    Assert.assertEquals(ZkCompressor.MAGIC, large[0]);
+    Assert.assertEquals(ZkCompressor.Codec.SNAPPY.getId(), large[1]);
+    Assert.assertTrue(large.length < LARGE.length);
+
+    Assert.assertArrayEquals(SMALL, compressor.uncompress(small));
+    Assert.assertArrayEquals(LARGE, compressor.uncompress(large));
+  }
+
+  @Test
+  public void testIncompressibleObjectsAreStoredAsIs() {
+    byte[] random = new byte[4096];
+    new Random(1).nextBytes(random);
+
+    ZkCompressor compressor = compressor(true);
+    byte[] framed = compressor.compress(random);
+
+    Assert.assertEquals(ZkCompressor.Codec.NONE.getId(), framed[1]);
+    Assert.assertArrayEquals(random, compressor.uncompress(framed));
+  }
+
+  @Test
+  public void testReadsAnyPayloadRegardlessOfFlag() {
+    for (boolean compress : new boolean[] { true, false }) {
+      ZkCompressor compressor = compressor(compress);
+
+      Assert.assertArrayEquals(LARGE, compressor.uncompress(LARGE));
+      Assert.assertArrayEquals(LARGE, compressor.uncompress(Snappy.compress(LARGE)));
+      Assert.assertArrayEquals(LARGE, compressor.uncompress(compressor(true).compress(LARGE)));
+      Assert.assertArrayEquals(SMALL, compressor.uncompress(compressor(true).compress(SMALL)));
+    }
+  }
+
+  @Test
+  public void testFlagOffWritesPlainData() {
+    Assert.assertArrayEquals(LARGE, compressor(false).compress(LARGE));
+  }
+
+}
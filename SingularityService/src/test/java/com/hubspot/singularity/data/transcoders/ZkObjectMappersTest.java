@@ -0,0 +1,89 @@
+package com.hubspot.singularity.data.transcoders;
+
+import io.dropwizard.jackson.Jackson;
+
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.google.common.base.Optional;
+import com.hubspot.jackson.datatype.protobuf.ProtobufModule;
+import com.hubspot.singularity.RequestState;
+import com.hubspot.singularity.SingularityRequestBuilder;
+import com.hubspot.singularity.SingularityRequestWithState;
+import com.hubspot.singularity.config.SingularityConfiguration;
+import com.hubspot.singularity.config.ZkDataFormat;
+
+public class ZkObjectMappersTest {
+
+  private static final ObjectMapper OBJECT_MAPPER = Jackson.newObjectMapper()
+      .setSerializationInclusion(Include.NON_NULL)
+      .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false)
+      .registerModule(new ProtobufModule());
+
+  private SingularityRequestWithStateTranscoder transcoder(ZkDataFormat format) {
+    SingularityConfiguration configuration = new SingularityConfiguration();
+    configuration.setZookeeperDataFormat(format);
+
+    return new SingularityRequestWithStateTranscoder(new ZkObjectMappers(OBJECT_MAPPER, configuration));
+  }
+
+  private SingularityRequestWithState request() {
+    return new SingularityRequestWithState(new SingularityRequestBuilder("request")
+        .setInstances(Optional.of(3))
+        .setOwners(Optional.of(Arrays.asList("owner@example.com")))
+        .build(), RequestState.ACTIVE);
+  }
+
+  @Test
+  public void testMixedFormatReads() {
+    SingularityRequestWithStateTranscoder jsonTranscoder = transcoder(ZkDataFormat.JSON);
+    SingularityRequestWithStateTranscoder smileTranscoder = transcoder(ZkDataFormat.SMILE);
+
+    byte[] json = jsonTranscoder.toBytes(request());
+    byte[] smile = smileTranscoder.toBytes(request());
+
+    Assert.assertEquals(ZkDataFormat.JSON, ZkObjectMappers.getFormat(json));
+    Assert.assertEquals(ZkDataFormat.SMILE, ZkObjectMappers.getFormat(smile));
+
+    for (SingularityRequestWithStateTranscoder transcoder : Arrays.asList(jsonTranscoder, smileTranscoder)) {
+      for (byte[] data : Arrays.asList(json, smile)) {
+        SingularityRequestWithState read = transcoder.transcode(data);
+
+        Assert.assertEquals(request().toString(), read.toString());
+      }
+    }
+  }
+
+  @Test
+  public void testSmileIsSmaller() {
+    byte[] json = transcoder(ZkDataFormat.JSON).toBytes(request());
+    byte[] smile = transcoder(ZkDataFormat.SMILE).toBytes(request());
+
+    Assert.assertTrue(smile.length < json.length);
+  }
+
+  @Test
+  public void testSmileMapperSharesJsonConfiguration() {
+    ObjectMapper jsonObjectMapper = OBJECT_MAPPER.copy().configure(SerializationFeature.WRITE_ENUMS_USING_INDEX, true);
+    ObjectMapper smileObjectMapper = new ZkObjectMappers(jsonObjectMapper, new SingularityConfiguration()).getObjectMapper(ZkDataFormat.SMILE);
+
+    Assert.assertTrue(smileObjectMapper.getFactory() instanceof SmileFactory);
+    Assert.assertTrue(smileObjectMapper.isEnabled(SerializationFeature.WRITE_ENUMS_USING_INDEX));
+    Assert.assertFalse(smileObjectMapper.isEnabled(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES));
+    Assert.assertEquals(Include.NON_NULL, smileObjectMapper.getSerializationConfig().getSerializationInclusion());
+  }
+
+  @Test
+  public void testShortPayloadsAreJson() {
+    Assert.assertEquals(ZkDataFormat.JSON, ZkObjectMappers.getFormat(new byte[0]));
+    Assert.assertEquals(ZkDataFormat.JSON, ZkObjectMappers.getFormat(new byte[] { ':', ')' }));
+  }
+
+}
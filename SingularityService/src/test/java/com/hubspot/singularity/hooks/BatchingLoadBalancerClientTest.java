@@ -0,0 +1,298 @@
+package com.hubspot.singularity.hooks;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.base.Optional;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.hubspot.baragon.models.BaragonRequestState;
+import com.hubspot.singularity.LoadBalancerRequestType;
+import com.hubspot.singularity.LoadBalancerRequestType.LoadBalancerRequestId;
+import com.hubspot.singularity.SingularityDeploy;
+import com.hubspot.singularity.SingularityDeployBuilder;
+import com.hubspot.singularity.SingularityLoadBalancerUpdate;
+import com.hubspot.singularity.SingularityLoadBalancerUpdate.LoadBalancerMethod;
+import com.hubspot.singularity.SingularityRequest;
+import com.hubspot.singularity.SingularityRequestBuilder;
+import com.hubspot.singularity.SingularityTask;
+import com.hubspot.singularity.config.SingularityConfiguration;
+
+public class BatchingLoadBalancerClientTest {
+
+  private final SingularityRequest request = new SingularityRequestBuilder("request").build();
+  private final SingularityDeploy deploy = new SingularityDeployBuilder("request", "deploy").build();
+  private final List<SingularityTask> none = Collections.emptyList();
+
+  private final Map<String, BaragonRequestState> states = Maps.newConcurrentMap();
+
+  private SingularityConfiguration configuration;
+  private LoadBalancerClientImpl delegate;
+  private MetricRegistry registry;
+  private BatchingLoadBalancerClient lbClient;
+
+  private Answer<SingularityLoadBalancerUpdate> respond(final LoadBalancerMethod method) {
+    return new Answer<SingularityLoadBalancerUpdate>() {
+
+      @Override
+      public SingularityLoadBalancerUpdate answer(InvocationOnMock invocation) {
+        LoadBalancerRequestId loadBalancerRequestId = (LoadBalancerRequestId) invocation.getArguments()[0];
+        BaragonRequestState state = states.containsKey(loadBalancerRequestId.toString()) ? states.get(loadBalancerRequestId.toString()) : BaragonRequestState.WAITING;
+
+        return new SingularityLoadBalancerUpdate(state, loadBalancerRequestId, Optional.<String> absent(), System.currentTimeMillis(), method, Optional.<String> absent());
+      }
+
+    };
+  }
+
+  @Before
+  public void setup() {
+    configuration = new SingularityConfiguration();
+    configuration.setLoadBalancerBatchWindowMillis(50);
+
+    delegate = mock(LoadBalancerClientImpl.class);
+
+    when(delegate.enqueue(any(LoadBalancerRequestId.class), any(SingularityRequest.class), any(SingularityDeploy.class), anyListOf(SingularityTask.class), anyListOf(SingularityTask.class))).thenAnswer(respond(LoadBalancerMethod.ENQUEUE));
+    when(delegate.getState(any(LoadBalancerRequestId.class))).thenAnswer(respond(LoadBalancerMethod.CHECK_STATE));
+    when(delegate.cancel(any(LoadBalancerRequestId.class))).thenAnswer(respond(LoadBalancerMethod.CANCEL));
+  }
+
+  @After
+  public void teardown() {
+    if (lbClient != null) {
+      lbClient.stop();
+    }
+  }
+
+  private void startClient() {
+    registry = new MetricRegistry();
+    lbClient = new BatchingLoadBalancerClient(configuration, delegate, registry);
+    lbClient.start();
+  }
+
+  private LoadBalancerRequestId id(String taskId, LoadBalancerRequestType requestType) {
+    return new LoadBalancerRequestId(taskId, requestType, Optional.<Integer> absent());
+  }
+
+  private LoadBalancerRequestId add(String taskId, SingularityTask task) {
+    LoadBalancerRequestId loadBalancerRequestId = id(taskId, LoadBalancerRequestType.ADD);
+    SingularityLoadBalancerUpdate update = lbClient.enqueue(loadBalancerRequestId, request, deploy, Collections.singletonList(task), none);
+
+    assertEquals(BaragonRequestState.WAITING, update.getLoadBalancerState());
+    assertEquals(loadBalancerRequestId.toString(), update.getLoadBalancerRequestId().toString());
+
+    return loadBalancerRequestId;
+  }
+
+  private LoadBalancerRequestId verifySent(List<SingularityTask> add, List<SingularityTask> remove) {
+    ArgumentCaptor<LoadBalancerRequestId> sentAs = ArgumentCaptor.forClass(LoadBalancerRequestId.class);
+
+    verify(delegate, timeout(1000)).enqueue(sentAs.capture(), eq(request), eq(deploy), eq(add), eq(remove));
+
+    return sentAs.getValue();
+  }
+
+  private void awaitBatches(long count) throws InterruptedException {
+    final long deadline = System.currentTimeMillis() + 1000;
+
+    while (registry.meter(MetricRegistry.name(BatchingLoadBalancerClient.class, "batches")).getCount() < count && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+
+    assertEquals(count, registry.meter(MetricRegistry.name(BatchingLoadBalancerClient.class, "batches")).getCount());
+  }
+
+  @Test
+  public void testTasksOfTheSameRequestAndTypeAreMerged() throws Exception {
+    startClient();
+
+    SingularityTask first = mock(SingularityTask.class);
+    SingularityTask second = mock(SingularityTask.class);
+
+    LoadBalancerRequestId firstId = add("first", first);
+    LoadBalancerRequestId secondId = add("second", second);
+
+    LoadBalancerRequestId batchId = verifySent(Arrays.asList(first, second), none);
+    awaitBatches(1);
+
+    states.put(batchId.toString(), BaragonRequestState.SUCCESS);
+
+    // each task checks on the batch by its own id
+    SingularityLoadBalancerUpdate firstUpdate = lbClient.getState(firstId);
+    assertEquals(BaragonRequestState.SUCCESS, firstUpdate.getLoadBalancerState());
+    assertEquals(firstId.toString(), firstUpdate.getLoadBalancerRequestId().toString());
+
+    assertEquals(BaragonRequestState.SUCCESS, lbClient.getState(secondId).getLoadBalancerState());
+
+    LoadBalancerRequestId deployId = id("request-deploy", LoadBalancerRequestType.DEPLOY);
+    lbClient.enqueue(deployId, request, deploy, Collections.singletonList(first), none);
+    verify(delegate).enqueue(deployId, request, deploy, Collections.singletonList(first), none);
+  }
+
+  @Test
+  public void testAddsAndRemovesAreNotMerged() {
+    startClient();
+
+    SingularityTask added = mock(SingularityTask.class);
+    SingularityTask removed = mock(SingularityTask.class);
+
+    LoadBalancerRequestId addId = add("added", added);
+    LoadBalancerRequestId removeId = id("removed", LoadBalancerRequestType.REMOVE);
+    lbClient.enqueue(removeId, request, deploy, none, Collections.singletonList(removed));
+
+    // a batch of one is sent under the task's own id
+    assertEquals(addId.toString(), verifySent(Collections.singletonList(added), none).toString());
+    assertEquals(removeId.toString(), verifySent(none, Collections.singletonList(removed)).toString());
+  }
+
+  @Test
+  public void testFailedBatchIsSplitIntoTasks() throws Exception {
+    startClient();
+
+    SingularityTask good = mock(SingularityTask.class);
+    SingularityTask bad = mock(SingularityTask.class);
+
+    LoadBalancerRequestId goodId = add("good", good);
+    LoadBalancerRequestId badId = add("bad", bad);
+
+    LoadBalancerRequestId batchId = verifySent(Arrays.asList(good, bad), none);
+    awaitBatches(1);
+
+    states.put(batchId.toString(), BaragonRequestState.FAILED);
+
+    assertEquals(BaragonRequestState.WAITING, lbClient.getState(goodId).getLoadBalancerState());
+    assertEquals(BaragonRequestState.WAITING, lbClient.getState(badId).getLoadBalancerState());
+
+    assertEquals(goodId.toString(), verifySent(Collections.singletonList(good), none).toString());
+    assertEquals(badId.toString(), verifySent(Collections.singletonList(bad), none).toString());
+
+    states.put(goodId.toString(), BaragonRequestState.SUCCESS);
+    states.put(badId.toString(), BaragonRequestState.FAILED);
+
+    assertEquals(BaragonRequestState.SUCCESS, lbClient.getState(goodId).getLoadBalancerState());
+    assertEquals(BaragonRequestState.FAILED, lbClient.getState(badId).getLoadBalancerState());
+
+    // a task sent on its own isn't split again
+    verify(delegate, times(3)).enqueue(any(LoadBalancerRequestId.class), eq(request), eq(deploy), anyListOf(SingularityTask.class), anyListOf(SingularityTask.class));
+  }
+
+  @Test
+  public void testTasksCanOnlyBeCanceledOnTheirOwn() throws Exception {
+    configuration.setLoadBalancerBatchWindowMillis(60000);
+    configuration.setMaxLoadBalancerBatchSize(2);
+    startClient();
+
+    SingularityTask canceled = mock(SingularityTask.class);
+    SingularityTask first = mock(SingularityTask.class);
+    SingularityTask second = mock(SingularityTask.class);
+
+    LoadBalancerRequestId canceledId = add("canceled", canceled);
+
+    SingularityLoadBalancerUpdate cancelUpdate = lbClient.cancel(canceledId);
+    assertEquals(BaragonRequestState.CANCELED, cancelUpdate.getLoadBalancerState());
+    assertEquals(LoadBalancerMethod.CANCEL, cancelUpdate.getMethod());
+
+    // fills the batch, so it is sent without waiting out the window
+    LoadBalancerRequestId firstId = add("first", first);
+    add("second", second);
+
+    LoadBalancerRequestId batchId = verifySent(Arrays.asList(first, second), none);
+    awaitBatches(1);
+
+    states.put(batchId.toString(), BaragonRequestState.WAITING);
+
+    cancelUpdate = lbClient.cancel(firstId);
+    assertEquals(BaragonRequestState.WAITING, cancelUpdate.getLoadBalancerState());
+    assertEquals(firstId.toString(), cancelUpdate.getLoadBalancerRequestId().toString());
+
+    LoadBalancerRequestId unknownId = id("unknown", LoadBalancerRequestType.ADD);
+    lbClient.cancel(unknownId);
+
+    verify(delegate).cancel(unknownId);
+    verify(delegate, never()).cancel(batchId);
+    verify(delegate, never()).cancel(canceledId);
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testConcurrentRemovesAreSentInFullBatches() throws Exception {
+    configuration.setLoadBalancerBatchWindowMillis(200);
+    configuration.setMaxLoadBalancerBatchSize(25);
+    startClient();
+
+    final List<SingularityTask> tasks = Lists.newArrayList();
+
+    for (int i = 0; i < 100; i++) {
+      tasks.add(mock(SingularityTask.class));
+    }
+
+    ExecutorService executorService = Executors.newFixedThreadPool(10);
+    List<Future<?>> futures = Lists.newArrayList();
+
+    for (int i = 0; i < tasks.size(); i++) {
+      final LoadBalancerRequestId removeId = id("task" + i, LoadBalancerRequestType.REMOVE);
+      final SingularityTask task = tasks.get(i);
+
+      futures.add(executorService.submit(new Runnable() {
+
+        @Override
+        public void run() {
+          lbClient.enqueue(removeId, request, deploy, none, Collections.singletonList(task));
+        }
+
+      }));
+    }
+
+    for (Future<?> future : futures) {
+      future.get();
+    }
+
+    executorService.shutdown();
+
+    // sends whatever is still waiting out its window
+    lbClient.stop();
+
+    ArgumentCaptor<List> removed = ArgumentCaptor.forClass(List.class);
+    verify(delegate, atLeastOnce()).enqueue(any(LoadBalancerRequestId.class), eq(request), eq(deploy), eq(none), removed.capture());
+
+    List<SingularityTask> sent = Lists.newArrayList();
+
+    for (List<SingularityTask> batch : removed.getAllValues()) {
+      assertTrue(batch.size() <= 25);
+      sent.addAll(batch);
+    }
+
+    // a request per task would have been 100
+    assertTrue(removed.getAllValues().size() < 10);
+    assertEquals(Sets.newHashSet(tasks), Sets.newHashSet(sent));
+    assertEquals(tasks.size(), sent.size());
+  }
+
+}
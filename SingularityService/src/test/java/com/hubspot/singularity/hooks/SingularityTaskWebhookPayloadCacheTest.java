@@ -0,0 +1,136 @@
+package com.hubspot.singularity.hooks;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import com.codahale.metrics.MetricRegistry;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.base.Optional;
+import com.google.common.collect.Lists;
+import com.hubspot.singularity.ExtendedTaskState;
+import com.hubspot.singularity.SingularityTask;
+import com.hubspot.singularity.SingularityTaskHistoryUpdate;
+import com.hubspot.singularity.SingularityTaskId;
+import com.hubspot.singularity.SingularityTaskWebhook;
+import com.hubspot.singularity.config.SingularityConfiguration;
+import com.hubspot.singularity.data.history.TaskHistoryHelper;
+
+public class SingularityTaskWebhookPayloadCacheTest {
+
+  private final SingularityTaskId taskId = new SingularityTaskId("request", "deploy", 1, 1, "host", "rack");
+
+  private TaskHistoryHelper taskHistoryHelper;
+  private ObjectMapper objectMapper;
+  private MetricRegistry registry;
+  private SingularityTaskWebhookPayloadCache cache;
+
+  @Before
+  public void setup() throws Exception {
+    taskHistoryHelper = mock(TaskHistoryHelper.class);
+    objectMapper = mock(ObjectMapper.class);
+    registry = new MetricRegistry();
+
+    when(objectMapper.writeValueAsBytes(any(SingularityTaskWebhook.class))).thenReturn(new byte[] { 1 });
+
+    cache = new SingularityTaskWebhookPayloadCache(new SingularityConfiguration(), taskHistoryHelper, objectMapper, registry);
+  }
+
+  private SingularityTaskHistoryUpdate update(long timestamp, ExtendedTaskState state) {
+    return new SingularityTaskHistoryUpdate(taskId, timestamp, state, Optional.<String> absent());
+  }
+
+  @Test
+  public void testPayloadIsSharedAcrossWebhooks() throws Exception {
+    when(taskHistoryHelper.getTask(taskId)).thenReturn(Optional.of(mock(SingularityTask.class)));
+
+    for (int i = 0; i < 3; i++) {
+      assertArrayEquals(new byte[] { 1 }, cache.getPayload(update(1, ExtendedTaskState.TASK_RUNNING)).get());
+    }
+
+    cache.getPayload(update(2, ExtendedTaskState.TASK_FINISHED));
+
+    verify(taskHistoryHelper, times(1)).getTask(taskId);
+    verify(objectMapper, times(2)).writeValueAsBytes(any(SingularityTaskWebhook.class));
+
+    assertEquals(2, registry.meter(MetricRegistry.name(SingularityTaskWebhookPayloadCache.class, "payloads", "hits")).getCount());
+    assertEquals(2, registry.meter(MetricRegistry.name(SingularityTaskWebhookPayloadCache.class, "payloads", "misses")).getCount());
+  }
+
+  @Test
+  public void testMissingTaskIsNotCached() {
+    when(taskHistoryHelper.getTask(taskId)).thenReturn(Optional.<SingularityTask> absent());
+
+    assertFalse(cache.getPayload(update(1, ExtendedTaskState.TASK_RUNNING)).isPresent());
+    assertFalse(cache.getPayload(update(1, ExtendedTaskState.TASK_RUNNING)).isPresent());
+
+    verify(taskHistoryHelper, times(2)).getTask(taskId);
+  }
+
+  @Test
+  public void testConcurrentMissesLoadOnce() throws Exception {
+    final CountDownLatch loading = new CountDownLatch(1);
+    final CountDownLatch released = new CountDownLatch(1);
+
+    when(taskHistoryHelper.getTask(taskId)).thenAnswer(new Answer<Optional<SingularityTask>>() {
+
+      @Override
+      public Optional<SingularityTask> answer(InvocationOnMock invocation) throws Exception {
+        loading.countDown();
+        released.await();
+        return Optional.of(mock(SingularityTask.class));
+      }
+
+    });
+
+    ExecutorService executorService = Executors.newFixedThreadPool(2);
+
+    try {
+      List<Future<Optional<byte[]>>> payloads = Lists.newArrayList();
+
+      for (int i = 0; i < 2; i++) {
+        payloads.add(executorService.submit(new Callable<Optional<byte[]>>() {
+
+          @Override
+          public Optional<byte[]> call() {
+            return cache.getPayload(update(1, ExtendedTaskState.TASK_RUNNING));
+          }
+
+        }));
+
+        loading.await(1, TimeUnit.SECONDS);
+      }
+
+      Thread.sleep(100);
+      released.countDown();
+
+      for (Future<Optional<byte[]>> payload : payloads) {
+        assertArrayEquals(new byte[] { 1 }, payload.get(1, TimeUnit.SECONDS).get());
+      }
+    } finally {
+      executorService.shutdownNow();
+    }
+
+    verify(taskHistoryHelper, times(1)).getTask(taskId);
+    verify(objectMapper, times(1)).writeValueAsBytes(any(SingularityTaskWebhook.class));
+  }
+
+}
@@ -0,0 +1,273 @@
+package com.hubspot.singularity.hooks;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Collections;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import com.codahale.metrics.MetricRegistry;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.base.Charsets;
+import com.google.common.base.Optional;
+import com.hubspot.singularity.ExtendedTaskState;
+import com.hubspot.singularity.SingularityTaskHistoryUpdate;
+import com.hubspot.singularity.SingularityTaskId;
+import com.hubspot.singularity.SingularityWebhook;
+import com.hubspot.singularity.WebhookType;
+import com.hubspot.singularity.config.SingularityConfiguration;
+import com.hubspot.singularity.data.WebhookManager;
+import com.ning.http.client.AsyncCompletionHandler;
+import com.ning.http.client.AsyncHandler;
+import com.ning.http.client.AsyncHttpClient;
+import com.ning.http.client.AsyncHttpClient.BoundRequestBuilder;
+import com.ning.http.client.Response;
+
+public class SingularityWebhookDispatcherTest {
+
+  private static class Post {
+
+    private final String body;
+    private final AsyncCompletionHandler<Response> handler;
+    private final long sentAt;
+
+    private Post(String body, AsyncCompletionHandler<Response> handler) {
+      this.body = body;
+      this.handler = handler;
+      this.sentAt = System.currentTimeMillis();
+    }
+
+  }
+
+  private final SingularityTaskId taskId = new SingularityTaskId("request", "deploy", 1, 1, "host", "rack");
+  private final SingularityWebhook webhook = new SingularityWebhook("http://localhost/hook", Optional.<Long> absent(), Optional.<String> absent(), WebhookType.TASK);
+  private final SingularityWebhook batchingWebhook = new SingularityWebhook("http://localhost/batch", Optional.<Long> absent(), Optional.<String> absent(), WebhookType.TASK, Optional.of(Boolean.TRUE));
+
+  private final BlockingQueue<Post> posts = new LinkedBlockingQueue<>();
+
+  private SingularityConfiguration configuration;
+  private WebhookManager webhookManager;
+  private SingularityTaskWebhookPayloadCache taskPayloadCache;
+  private MetricRegistry registry;
+  private SingularityWebhookDispatcher dispatcher;
+
+  @Before
+  @SuppressWarnings("unchecked")
+  public void setup() throws Exception {
+    configuration = new SingularityConfiguration();
+    configuration.setMaxConcurrentRequestsPerWebhook(1);
+    configuration.setWebhookRetryInitialDelayMillis(200);
+
+    webhookManager = mock(WebhookManager.class);
+    taskPayloadCache = mock(SingularityTaskWebhookPayloadCache.class);
+    registry = new MetricRegistry();
+
+    when(webhookManager.getTaskHistoryUpdateId(any(SingularityTaskHistoryUpdate.class))).thenAnswer(new Answer<String>() {
+
+      @Override
+      public String answer(InvocationOnMock invocation) {
+        return String.valueOf(((SingularityTaskHistoryUpdate) invocation.getArguments()[0]).getTimestamp());
+      }
+
+    });
+
+    final AtomicReference<byte[]> body = new AtomicReference<>();
+    final BoundRequestBuilder postRequest = mock(BoundRequestBuilder.class);
+
+    when(postRequest.setBody(any(byte[].class))).thenAnswer(new Answer<BoundRequestBuilder>() {
+
+      @Override
+      public BoundRequestBuilder answer(InvocationOnMock invocation) {
+        body.set((byte[]) invocation.getArguments()[0]);
+        return postRequest;
+      }
+
+    });
+
+    when(postRequest.execute(any(AsyncHandler.class))).thenAnswer(new Answer<Object>() {
+
+      @Override
+      public Object answer(InvocationOnMock invocation) {
+        posts.add(new Post(new String(body.get(), Charsets.UTF_8), (AsyncCompletionHandler<Response>) invocation.getArguments()[0]));
+        return null;
+      }
+
+    });
+
+    AsyncHttpClient http = mock(AsyncHttpClient.class);
+    when(http.preparePost(anyString())).thenReturn(postRequest);
+
+    dispatcher = new SingularityWebhookDispatcher(configuration, http, new ObjectMapper(), webhookManager, taskPayloadCache, registry);
+    dispatcher.start();
+    dispatcher.isLeader();
+  }
+
+  @After
+  public void teardown() {
+    dispatcher.stop();
+  }
+
+  private SingularityTaskHistoryUpdate update(long timestamp) {
+    SingularityTaskHistoryUpdate update = new SingularityTaskHistoryUpdate(taskId, timestamp, ExtendedTaskState.TASK_RUNNING, Optional.<String> absent());
+
+    when(taskPayloadCache.getPayload(update)).thenReturn(Optional.of(String.valueOf(timestamp).getBytes(Charsets.UTF_8)));
+
+    return update;
+  }
+
+  private Post nextPost() throws Exception {
+    Post post = posts.poll(2, TimeUnit.SECONDS);
+    assertNotNull(post);
+    return post;
+  }
+
+  private long complete(Post post, int statusCode) throws Exception {
+    Response response = mock(Response.class);
+    when(response.getStatusCode()).thenReturn(statusCode);
+
+    long completedAt = System.currentTimeMillis();
+    post.handler.onCompleted(response);
+    return completedAt;
+  }
+
+  private long getCount(String meter) {
+    return registry.meter(MetricRegistry.name(SingularityWebhookDispatcher.class, meter)).getCount();
+  }
+
+  @Test
+  public void testQueuedUpdatesAreDeduped() throws Exception {
+    SingularityTaskHistoryUpdate update = update(1);
+
+    assertTrue(dispatcher.enqueueTaskUpdate(webhook, update));
+    assertFalse(dispatcher.enqueueTaskUpdate(webhook, update));
+
+    complete(nextPost(), 200);
+
+    verify(webhookManager, timeout(1000)).deleteTaskUpdate(webhook, update);
+    assertNull(posts.poll(300, TimeUnit.MILLISECONDS));
+  }
+
+  @Test
+  public void testOnlyTheLeaderDeliversUpdates() throws Exception {
+    verify(webhookManager).addListener(dispatcher);
+
+    dispatcher.notLeader();
+
+    verify(webhookManager).removeListener(dispatcher);
+    assertFalse(dispatcher.enqueueTaskUpdate(webhook, update(1)));
+    assertNull(posts.poll(200, TimeUnit.MILLISECONDS));
+
+    dispatcher.isLeader();
+
+    assertTrue(dispatcher.enqueueTaskUpdate(webhook, update(1)));
+    assertEquals("1", nextPost().body);
+  }
+
+  @Test
+  public void testSweepDoesNotRequeueAnUpdateDeliveredWhileItRan() throws Exception {
+    SingularityTaskHistoryUpdate update = update(1);
+
+    dispatcher.enqueueTaskUpdate(webhook, update);
+    complete(nextPost(), 200);
+
+    verify(webhookManager, timeout(1000)).deleteTaskUpdate(webhook, update);
+    Thread.sleep(100);
+
+    // a sweep which read the queue before the update was deleted
+    assertFalse(dispatcher.enqueueTaskUpdate(webhook, update));
+
+    // the next sweep reads the queue after the delete, so it can no longer see the update
+    dispatcher.retainWebhooks(Collections.singletonList(webhook));
+
+    assertTrue(dispatcher.enqueueTaskUpdate(webhook, update));
+  }
+
+  @Test
+  public void testUpdatesQueuedWhileAPostIsInFlightAreBatched() throws Exception {
+    dispatcher.enqueueTaskUpdate(batchingWebhook, update(1));
+
+    Post first = nextPost();
+    assertEquals("[1]", first.body);
+
+    dispatcher.enqueueTaskUpdate(batchingWebhook, update(2));
+    dispatcher.enqueueTaskUpdate(batchingWebhook, update(3));
+
+    assertNull(posts.poll(200, TimeUnit.MILLISECONDS));
+
+    complete(first, 200);
+
+    assertEquals("[2,3]", nextPost().body);
+  }
+
+  @Test
+  public void testFailedPostsAreRetriedWithBackoffUntilAttemptsRunOut() throws Exception {
+    configuration.setMaxWebhookAttempts(2);
+
+    SingularityTaskHistoryUpdate update = update(1);
+    dispatcher.enqueueTaskUpdate(webhook, update);
+
+    long failedAt = complete(nextPost(), 500);
+
+    Post retry = nextPost();
+    assertEquals("1", retry.body);
+    assertTrue(retry.sentAt - failedAt >= configuration.getWebhookRetryInitialDelayMillis());
+
+    complete(retry, 500);
+
+    verify(webhookManager, timeout(1000)).deleteTaskUpdate(webhook, update);
+    assertNull(posts.poll(500, TimeUnit.MILLISECONDS));
+    assertEquals(2, getCount("failed"));
+    assertEquals(1, getCount("dropped"));
+  }
+
+  @Test
+  public void testUnbuildableUpdateIsRetriedWithoutHoldingUpItsBatch() throws Exception {
+    SingularityTaskHistoryUpdate unbuildable = update(2);
+    when(taskPayloadCache.getPayload(unbuildable)).thenThrow(new RuntimeException("task lookup failed")).thenReturn(Optional.of("2".getBytes(Charsets.UTF_8)));
+
+    dispatcher.enqueueTaskUpdate(batchingWebhook, update(1));
+
+    Post first = nextPost();
+
+    dispatcher.enqueueTaskUpdate(batchingWebhook, unbuildable);
+    dispatcher.enqueueTaskUpdate(batchingWebhook, update(3));
+
+    complete(first, 200);
+
+    Post second = nextPost();
+    assertEquals("[3]", second.body);
+
+    // still waiting on its own backoff, so it can't be queued twice
+    assertFalse(dispatcher.enqueueTaskUpdate(batchingWebhook, unbuildable));
+
+    complete(second, 200);
+
+    Post retry = nextPost();
+    assertEquals("[2]", retry.body);
+
+    complete(retry, 200);
+
+    verify(webhookManager, timeout(1000)).deleteTaskUpdate(batchingWebhook, unbuildable);
+    assertEquals(1, getCount("failed"));
+    assertEquals(0, getCount("dropped"));
+  }
+
+}
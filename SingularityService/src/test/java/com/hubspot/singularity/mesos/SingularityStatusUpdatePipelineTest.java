@@ -0,0 +1,126 @@
+package com.hubspot.singularity.mesos;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.mesos.Protos.TaskID;
+import org.apache.mesos.Protos.TaskState;
+import org.apache.mesos.Protos.TaskStatus;
+import org.apache.mesos.SchedulerDriver;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.collect.Lists;
+import com.hubspot.singularity.SingularityAbort;
+import com.hubspot.singularity.config.SingularityConfiguration;
+import com.hubspot.singularity.sentry.SingularityExceptionNotifier;
+
+public class SingularityStatusUpdatePipelineTest {
+
+  private final SchedulerDriver driver = mock(SchedulerDriver.class);
+  private final List<TaskState> applied = Lists.newCopyOnWriteArrayList();
+  private final CountDownLatch released = new CountDownLatch(1);
+
+  private MetricRegistry registry;
+  private SingularityStatusUpdatePipeline pipeline;
+
+  @Before
+  public void setup() {
+    SingularityConfiguration configuration = new SingularityConfiguration();
+    configuration.setStatusUpdateThreads(1);
+    configuration.setMaxQueuedStatusUpdatesPerThread(1);
+    configuration.setStatusUpdateDrainMillis(100);
+
+    SingularityMesosScheduler scheduler = mock(SingularityMesosScheduler.class);
+
+    doAnswer(new Answer<Void>() {
+
+      @Override
+      public Void answer(InvocationOnMock invocation) throws Exception {
+        released.await();
+        applied.add(((TaskStatus) invocation.getArguments()[1]).getState());
+        return null;
+      }
+
+    }).when(scheduler).statusUpdate(any(SchedulerDriver.class), any(TaskStatus.class));
+
+    registry = new MetricRegistry();
+    pipeline = new SingularityStatusUpdatePipeline(scheduler, configuration, mock(SingularityExceptionNotifier.class), mock(SingularityAbort.class), registry);
+  }
+
+  @After
+  public void teardown() {
+    released.countDown();
+    pipeline.stop();
+  }
+
+  private TaskStatus status(TaskState state) {
+    return TaskStatus.newBuilder().setTaskId(TaskID.newBuilder().setValue("task")).setState(state).build();
+  }
+
+  private long getCount(String meter) {
+    return registry.meter(MetricRegistry.name(SingularityStatusUpdatePipeline.class, meter)).getCount();
+  }
+
+  @Test
+  public void testEnqueueBlocksWhileTheWorkerIsFull() throws Exception {
+    // one running, one queued
+    pipeline.enqueue(driver, status(TaskState.TASK_STARTING));
+    pipeline.enqueue(driver, status(TaskState.TASK_RUNNING));
+
+    final CountDownLatch enqueued = new CountDownLatch(1);
+
+    new Thread() {
+
+      @Override
+      public void run() {
+        pipeline.enqueue(driver, status(TaskState.TASK_FINISHED));
+        enqueued.countDown();
+      }
+
+    }.start();
+
+    assertFalse(enqueued.await(200, TimeUnit.MILLISECONDS));
+    assertEquals(1, getCount("blocked"));
+
+    released.countDown();
+
+    assertTrue(enqueued.await(1, TimeUnit.SECONDS));
+
+    final long deadline = System.currentTimeMillis() + 1000;
+
+    while (pipeline.getNumQueued() > 0 && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+
+    assertEquals(Lists.newArrayList(TaskState.TASK_STARTING, TaskState.TASK_RUNNING, TaskState.TASK_FINISHED), applied);
+    assertEquals(0, getCount("dropped"));
+  }
+
+  @Test
+  public void testUpdatesLeftAfterDrainingAreCounted() {
+    pipeline.enqueue(driver, status(TaskState.TASK_STARTING));
+    pipeline.enqueue(driver, status(TaskState.TASK_RUNNING));
+
+    pipeline.stop();
+
+    assertEquals(1, getCount("dropped"));
+
+    pipeline.enqueue(driver, status(TaskState.TASK_FINISHED));
+
+    assertEquals(2, getCount("dropped"));
+  }
+
+}
@@ -0,0 +1,142 @@
+package com.hubspot.singularity.scheduler;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.codahale.metrics.MetricRegistry;
+import com.hubspot.singularity.config.SingularityConfiguration;
+import com.ning.http.client.AsyncCompletionHandler;
+import com.ning.http.client.RequestBuilder;
+import com.ning.http.client.Response;
+
+public class SingularityHealthcheckExecutorTest {
+
+  private final AtomicInteger inFlight = new AtomicInteger();
+  private final AtomicInteger maxInFlight = new AtomicInteger();
+
+  private Server server;
+  private String uri;
+  private SingularityHealthcheckExecutor healthcheckExecutor;
+
+  @Before
+  public void setup() throws Exception {
+    server = new Server(0);
+    server.setHandler(new AbstractHandler() {
+
+      @Override
+      public void handle(String target, org.eclipse.jetty.server.Request baseRequest, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        final int current = inFlight.incrementAndGet();
+
+        synchronized (maxInFlight) {
+          maxInFlight.set(Math.max(maxInFlight.get(), current));
+        }
+
+        try {
+          Thread.sleep(20);
+        } catch (InterruptedException ie) {
+          Thread.currentThread().interrupt();
+        }
+
+        inFlight.decrementAndGet();
+
+        response.setStatus(HttpServletResponse.SC_OK);
+        response.getWriter().write("OK");
+        baseRequest.setHandled(true);
+      }
+
+    });
+    server.start();
+
+    uri = String.format("http://localhost:%d/healthcheck", ((ServerConnector) server.getConnectors()[0]).getLocalPort());
+  }
+
+  @After
+  public void teardown() throws Exception {
+    if (healthcheckExecutor != null) {
+      healthcheckExecutor.stop();
+    }
+
+    server.stop();
+  }
+
+  private void startExecutor(int maxConcurrentPerHost, double maxPerSecond) {
+    SingularityConfiguration configuration = new SingularityConfiguration();
+    configuration.setHealthcheckMaxConcurrentPerHost(maxConcurrentPerHost);
+    configuration.setHealthcheckMaxPerSecond(maxPerSecond);
+
+    healthcheckExecutor = new SingularityHealthcheckExecutor(configuration, new MetricRegistry());
+  }
+
+  private int runHealthchecks(int numHealthchecks) throws InterruptedException {
+    final AtomicInteger succeeded = new AtomicInteger();
+    final CountDownLatch done = new CountDownLatch(numHealthchecks);
+
+    for (int i = 0; i < numHealthchecks; i++) {
+      healthcheckExecutor.execute("localhost", new RequestBuilder("GET").setUrl(uri).build(), new AsyncCompletionHandler<Response>() {
+
+        @Override
+        public Response onCompleted(Response response) throws Exception {
+          if (response.getStatusCode() == HttpServletResponse.SC_OK) {
+            succeeded.incrementAndGet();
+          }
+
+          done.countDown();
+          return response;
+        }
+
+        @Override
+        public void onThrowable(Throwable t) {
+          done.countDown();
+        }
+
+      });
+    }
+
+    Assert.assertTrue(done.await(10, TimeUnit.SECONDS));
+
+    return succeeded.get();
+  }
+
+  @Test
+  public void testHealthchecksWaitForAFreeSlotOnTheirHost() throws Exception {
+    startExecutor(2, 0);
+
+    Assert.assertEquals(50, runHealthchecks(50));
+    Assert.assertTrue(maxInFlight.get() <= 2);
+
+    final long deadline = System.currentTimeMillis() + 1000;
+
+    while (healthcheckExecutor.getNumInFlight() > 0 && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+
+    Assert.assertEquals(0, healthcheckExecutor.getNumInFlight());
+    Assert.assertEquals(0, healthcheckExecutor.getNumWaiting());
+  }
+
+  @Test
+  public void testHealthchecksAreStartedNoFasterThanTheRateLimit() throws Exception {
+    startExecutor(10, 20);
+
+    final long start = System.currentTimeMillis();
+
+    Assert.assertEquals(10, runHealthchecks(10));
+
+    // the first is issued immediately, each of the rest waits out 1/20th of a second
+    Assert.assertTrue(System.currentTimeMillis() - start >= 400);
+  }
+
+}
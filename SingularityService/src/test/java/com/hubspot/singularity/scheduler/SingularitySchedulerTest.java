@@ -1,7 +1,9 @@
 package com.hubspot.singularity.scheduler;
 
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
@@ -22,9 +24,15 @@ import org.junit.After;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 
+import com.codahale.metrics.MetricRegistry;
 import com.google.common.base.Optional;
+import com.google.common.base.Strings;
 import com.google.common.base.Throwables;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 import com.google.inject.Inject;
 import com.google.inject.Provider;
@@ -32,9 +40,11 @@ import com.google.inject.name.Named;
 import com.hubspot.baragon.models.BaragonRequestState;
 import com.hubspot.mesos.MesosUtils;
 import com.hubspot.singularity.DeployState;
+import com.hubspot.singularity.ExtendedTaskState;
 import com.hubspot.singularity.LoadBalancerRequestType;
 import com.hubspot.singularity.LoadBalancerRequestType.LoadBalancerRequestId;
 import com.hubspot.singularity.RequestState;
+import com.hubspot.singularity.SingularityAbort;
 import com.hubspot.singularity.SingularityCuratorTestBase;
 import com.hubspot.singularity.SingularityDeploy;
 import com.hubspot.singularity.SingularityDeployBuilder;
@@ -53,21 +63,31 @@ import com.hubspot.singularity.SingularityRequestBuilder;
 import com.hubspot.singularity.SingularityRequestDeployState;
 import com.hubspot.singularity.SingularityRequestHistory.RequestHistoryType;
 import com.hubspot.singularity.SingularityTask;
+import com.hubspot.singularity.SingularityTaskCleanup;
+import com.hubspot.singularity.SingularityTaskCleanup.TaskCleanupType;
+import com.hubspot.singularity.SingularityState;
+import com.hubspot.singularity.SingularityTaskHistory;
+import com.hubspot.singularity.SingularityTaskHistoryUpdate;
 import com.hubspot.singularity.SingularityTaskId;
 import com.hubspot.singularity.SingularityTaskRequest;
 import com.hubspot.singularity.SingularityTaskStatusHolder;
 import com.hubspot.singularity.SlavePlacement;
 import com.hubspot.singularity.api.SingularityDeployRequest;
 import com.hubspot.singularity.api.SingularityPauseRequest;
+import com.hubspot.singularity.config.OfferPackingStrategy;
 import com.hubspot.singularity.config.SingularityConfiguration;
 import com.hubspot.singularity.data.DeployManager;
 import com.hubspot.singularity.data.RequestManager;
+import com.hubspot.singularity.data.StateAggregator;
+import com.hubspot.singularity.data.StateManager;
 import com.hubspot.singularity.data.TaskManager;
 import com.hubspot.singularity.mesos.SchedulerDriverSupplier;
 import com.hubspot.singularity.mesos.SingularityMesosScheduler;
+import com.hubspot.singularity.mesos.SingularityStatusUpdatePipeline;
 import com.hubspot.singularity.resources.DeployResource;
 import com.hubspot.singularity.resources.RequestResource;
 import com.hubspot.singularity.scheduler.SingularityTaskReconciliation.ReconciliationState;
+import com.hubspot.singularity.sentry.SingularityExceptionNotifier;
 import com.ning.http.client.AsyncHttpClient;
 
 public class SingularitySchedulerTest extends SingularityCuratorTestBase {
@@ -83,6 +103,12 @@ public class SingularitySchedulerTest extends SingularityCuratorTestBase {
   @Inject
   private TaskManager taskManager;
   @Inject
+  private StateManager stateManager;
+  @Inject
+  private StateAggregator stateAggregator;
+  @Inject
+  private MetricRegistry registry;
+  @Inject
   private SchedulerDriverSupplier driverSupplier;
   private SchedulerDriver driver;
   @Inject
@@ -106,6 +132,10 @@ public class SingularitySchedulerTest extends SingularityCuratorTestBase {
   @Inject
   private SingularityTaskReconciliation taskReconciliation;
   @Inject
+  private SingularityExceptionNotifier exceptionNotifier;
+  @Inject
+  private SingularityAbort abort;
+  @Inject
   @Named(SingularityMainModule.SERVER_ID_PROPERTY)
   private String serverId;
 
@@ -879,4 +909,365 @@ public class SingularitySchedulerTest extends SingularityCuratorTestBase {
     Assert.assertTrue(!taskReconciliation.isReconciliationRunning());
   }
 
+  @Test
+  public void testReconciliationRequestsStatusesInPages() {
+    configuration.setCheckReconcileWhenRunningEveryMillis(1);
+    configuration.setReconcileTasksPageSize(1);
+
+    initRequest();
+    initFirstDeploy();
+
+    SingularityTask taskOne = launchTask(request, firstDeploy, TaskState.TASK_RUNNING);
+    SingularityTask taskTwo = launchTask(request, firstDeploy, TaskState.TASK_RUNNING);
+
+    saveLastActiveTaskStatus(taskOne, Optional.of(buildTaskStatus(taskOne)), -1000);
+    saveLastActiveTaskStatus(taskTwo, Optional.of(buildTaskStatus(taskTwo)), -1000);
+
+    Assert.assertTrue(taskReconciliation.startReconciliation() == ReconciliationState.STARTED);
+
+    sleep(50);
+
+    Mockito.verify(driver, Mockito.atLeastOnce()).reconcileTasks(Arrays.asList(buildTaskStatus(taskOne)));
+    Mockito.verify(driver, Mockito.atLeastOnce()).reconcileTasks(Arrays.asList(buildTaskStatus(taskTwo)));
+    Assert.assertTrue(taskReconciliation.isReconciliationRunning());
+
+    statusUpdate(taskOne, TaskState.TASK_RUNNING);
+    statusUpdate(taskTwo, TaskState.TASK_RUNNING);
+
+    sleep(50);
+
+    Assert.assertTrue(!taskReconciliation.isReconciliationRunning());
+  }
+
+  @Test
+  public void testReconciliationRequestsOnePagePerCheck() {
+    configuration.setCheckReconcileWhenRunningEveryMillis(200);
+    configuration.setReconcileTasksPageSize(1);
+
+    initRequest();
+    initFirstDeploy();
+
+    SingularityTask taskOne = launchTask(request, firstDeploy, TaskState.TASK_RUNNING);
+    sleep(5);
+    SingularityTask taskTwo = launchTask(request, firstDeploy, TaskState.TASK_RUNNING);
+
+    saveLastActiveTaskStatus(taskOne, Optional.of(buildTaskStatus(taskOne)), -1000);
+    saveLastActiveTaskStatus(taskTwo, Optional.of(buildTaskStatus(taskTwo)), -1000);
+
+    Assert.assertTrue(taskReconciliation.startReconciliation() == ReconciliationState.STARTED);
+
+    sleep(300);
+
+    // only the first check has run, and it asked for the first page only
+    Mockito.verify(driver, Mockito.times(1)).reconcileTasks(Arrays.asList(buildTaskStatus(taskOne)));
+    Mockito.verify(driver, Mockito.never()).reconcileTasks(Arrays.asList(buildTaskStatus(taskTwo)));
+
+    sleep(200);
+
+    Mockito.verify(driver, Mockito.times(1)).reconcileTasks(Arrays.asList(buildTaskStatus(taskTwo)));
+
+    statusUpdate(taskOne, TaskState.TASK_RUNNING);
+    statusUpdate(taskTwo, TaskState.TASK_RUNNING);
+
+    sleep(300);
+
+    Assert.assertTrue(!taskReconciliation.isReconciliationRunning());
+  }
+
+  @Test
+  public void testTaskMirrorsFollowZk() throws Exception {
+    initRequest();
+    initFirstDeploy();
+
+    taskManager.startMirrors();
+
+    try {
+      SingularityTask taskOne = startTask(firstDeploy);
+      SingularityTask taskTwo = startTask(firstDeploy);
+
+      Assert.assertEquals(2, taskManager.getNumActiveTasks());
+      Assert.assertTrue(taskManager.isActiveTask(taskOne.getTaskId().getId()));
+
+      statusUpdate(taskOne, TaskState.TASK_FINISHED);
+
+      Assert.assertEquals(1, taskManager.getNumActiveTasks());
+      Assert.assertTrue(!taskManager.isActiveTask(taskOne.getTaskId().getId()));
+
+      // removed behind the manager's back, should be repaired by the watch or the consistency check
+      cf.delete().forPath("/tasks/active/" + taskTwo.getTaskId().getId());
+
+      taskManager.checkMirrors();
+
+      Assert.assertEquals(0, taskManager.getNumActiveTasks());
+      Assert.assertEquals(0, taskManager.checkMirrors());
+    } finally {
+      taskManager.stopMirrors();
+    }
+  }
+
+  @Test
+  public void testBatchedTaskWrites() {
+    initRequest();
+    initFirstDeploy();
+
+    SingularityTask firstTask = startTask(firstDeploy);
+    sleep(5);
+    SingularityTask secondTask = startTask(firstDeploy);
+    sleep(5);
+    SingularityTask thirdTask = startTask(firstDeploy);
+
+    // the request's history parent is created before the transaction, so even the first launch commits as one transaction
+    Assert.assertEquals(3, registry.timer("com.hubspot.singularity.data.ZkWriteBatch.createTasks.commit").getCount());
+    Assert.assertEquals(0, registry.counter("com.hubspot.singularity.data.ZkWriteBatch.createTasks.fallbacks").getCount());
+
+    for (SingularityTask task : Arrays.asList(firstTask, secondTask, thirdTask)) {
+      Assert.assertTrue(taskManager.isActiveTask(task.getTaskId().getId()));
+      Assert.assertTrue(taskManager.getTaskHistory(task.getTaskId()).isPresent());
+    }
+
+    Assert.assertTrue(taskManager.getPendingTaskIds().isEmpty());
+
+    // the cleanup root doesn't exist yet for the first cleanup
+    for (SingularityTask task : Arrays.asList(secondTask, thirdTask)) {
+      taskManager.createCleanupTasks(Arrays.asList(new SingularityTaskCleanup(Optional.<String> absent(), TaskCleanupType.SCALING_DOWN, System.currentTimeMillis(), task.getTaskId())));
+    }
+
+    Assert.assertEquals(1, registry.counter("com.hubspot.singularity.data.ZkWriteBatch.createCleanupTasks.fallbacks").getCount());
+    Assert.assertEquals(2, taskManager.getCleanupTaskIds().size());
+  }
+
+  @Test
+  public void testLargeBatchesAreSplitIntoTransactions() {
+    final String transactions = "com.hubspot.singularity.data.ZkWriteBatch.createPendingTasks.transactions";
+
+    // creates the pending root, which a transaction can't do
+    taskManager.createPendingTasks(Arrays.asList(new SingularityPendingTask(new SingularityPendingTaskId("request", "deploy", 1, 1, PendingType.IMMEDIATE), Optional.<String> absent())));
+
+    Assert.assertEquals(1, registry.counter(transactions).getCount());
+
+    List<SingularityPendingTask> pendingTasks = Lists.newArrayList();
+
+    for (int instanceNo = 2; instanceNo <= 601; instanceNo++) {
+      pendingTasks.add(new SingularityPendingTask(new SingularityPendingTaskId("request", "deploy", 1, instanceNo, PendingType.IMMEDIATE), Optional.<String> absent()));
+    }
+
+    taskManager.createPendingTasks(pendingTasks);
+
+    Assert.assertEquals(4, registry.counter(transactions).getCount());
+    Assert.assertEquals(601, taskManager.getPendingTaskIds().size());
+
+    // two of these together would be more than a transaction may carry
+    final String cmdLineArgs = Strings.repeat("x", 300 * 1024);
+
+    pendingTasks.clear();
+
+    for (int instanceNo = 602; instanceNo <= 604; instanceNo++) {
+      pendingTasks.add(new SingularityPendingTask(new SingularityPendingTaskId("request", "deploy", 1, instanceNo, PendingType.IMMEDIATE), Optional.of(cmdLineArgs)));
+    }
+
+    taskManager.createPendingTasks(pendingTasks);
+
+    Assert.assertEquals(7, registry.counter(transactions).getCount());
+    Assert.assertEquals(604, taskManager.getPendingTaskIds().size());
+  }
+
+  @Test
+  public void testBestFitPacksOffers() {
+    initRequest();
+    initFirstDeploy();
+
+    configuration.setOfferPackingStrategy(OfferPackingStrategy.BEST_FIT);
+
+    requestResource.submit(request.toBuilder().setInstances(Optional.of(2)).build(), Optional.<String> absent());
+    scheduler.drainPendingQueue(stateCacheProvider.get());
+
+    sms.resourceOffers(driver, Arrays.asList(createOffer(2, 1024, "slave1", "host1"), createOffer(10, 1024, "slave2", "host2")));
+
+    Assert.assertEquals(2, taskManager.getActiveTaskIds().size());
+
+    for (SingularityTaskId taskId : taskManager.getActiveTaskIds()) {
+      Assert.assertEquals("host1", taskId.getHost());
+    }
+  }
+
+  @Test
+  public void testOfferMatchingManyOffers() {
+    initRequest();
+    initFirstDeploy();
+
+    // split the offers between threads
+    configuration.setOfferMatchingOffersPerThread(4);
+
+    requestResource.submit(request.toBuilder().setInstances(Optional.of(25)).build(), Optional.<String> absent());
+    scheduler.drainPendingQueue(stateCacheProvider.get());
+
+    List<Offer> offers = Lists.newArrayListWithCapacity(40);
+
+    for (int i = 0; i < 40; i++) {
+      offers.add(createOffer(2, 1024, "slave" + i, "host" + i));
+    }
+
+    sms.resourceOffers(driver, offers);
+
+    Assert.assertEquals(25, taskManager.getActiveTaskIds().size());
+    Assert.assertTrue(taskManager.getPendingTaskIds().isEmpty());
+
+    Assert.assertEquals(1, registry.timer("com.hubspot.singularity.mesos.SingularityOfferMatcher.matchOffers").getCount());
+
+    Set<String> hosts = Sets.newHashSet();
+
+    for (SingularityTaskId taskId : taskManager.getActiveTaskIds()) {
+      hosts.add(taskId.getHost());
+    }
+
+    // the default strategy spreads tasks over the emptiest offers
+    Assert.assertEquals(25, hosts.size());
+  }
+
+  private void assertAggregatedStateMatchesRecomputed() {
+    SingularityState aggregated = stateManager.generateState(true);
+
+    stateAggregator.stop();
+    SingularityState recomputed = stateManager.generateState(true);
+    stateAggregator.start(deployManager.getAllRequestDeployStatesByRequestId());
+
+    Assert.assertEquals(recomputed.getActiveTasks(), aggregated.getActiveTasks());
+    Assert.assertEquals(recomputed.getScheduledTasks(), aggregated.getScheduledTasks());
+    Assert.assertEquals(recomputed.getActiveRequests(), aggregated.getActiveRequests());
+    Assert.assertEquals(recomputed.getPausedRequests(), aggregated.getPausedRequests());
+    Assert.assertEquals(recomputed.getPendingRequests(), aggregated.getPendingRequests());
+    Assert.assertEquals(recomputed.getLateTasks(), aggregated.getLateTasks());
+    Assert.assertEquals(recomputed.getFutureTasks(), aggregated.getFutureTasks());
+    Assert.assertEquals(Sets.newHashSet(recomputed.getOverProvisionedRequestIds()), Sets.newHashSet(aggregated.getOverProvisionedRequestIds()));
+    Assert.assertEquals(Sets.newHashSet(recomputed.getUnderProvisionedRequestIds()), Sets.newHashSet(aggregated.getUnderProvisionedRequestIds()));
+  }
+
+  @Test
+  public void testAggregatedStateFollowsChanges() {
+    initRequest();
+    initFirstDeploy();
+
+    taskManager.startMirrors();
+    requestManager.startMirrors();
+    deployManager.startMirrors();
+    stateAggregator.start(deployManager.getAllRequestDeployStatesByRequestId());
+
+    try {
+      startTask(firstDeploy);
+
+      assertAggregatedStateMatchesRecomputed();
+
+      requestResource.submit(request.toBuilder().setInstances(Optional.of(3)).build(), Optional.<String> absent());
+
+      Assert.assertEquals(Arrays.asList(requestId), stateManager.generateState(true).getUnderProvisionedRequestIds());
+      assertAggregatedStateMatchesRecomputed();
+
+      scheduler.drainPendingQueue(stateCacheProvider.get());
+
+      Assert.assertTrue(stateManager.generateState(true).getUnderProvisionedRequestIds().isEmpty());
+      assertAggregatedStateMatchesRecomputed();
+
+      requestManager.update(request.toBuilder().setInstances(Optional.of(1)).build(), Optional.<String> absent());
+
+      Assert.assertEquals(Arrays.asList(requestId), stateManager.generateState(true).getOverProvisionedRequestIds());
+      assertAggregatedStateMatchesRecomputed();
+    } finally {
+      stateAggregator.stop();
+      deployManager.stopMirrors();
+      requestManager.stopMirrors();
+      taskManager.stopMirrors();
+    }
+  }
+
+  @Test
+  public void testTaskHistoriesMatchTaskHistory() {
+    initRequest();
+    initFirstDeploy();
+    initSecondDeploy();
+
+    SingularityTask firstTask = startTask(firstDeploy);
+    SingularityTask secondTask = startTask(secondDeploy);
+
+    taskManager.saveTaskDirectory(firstTask.getTaskId(), "/tmp/first");
+    statusUpdate(firstTask, TaskState.TASK_FINISHED);
+
+    SingularityTaskId missingTaskId = new SingularityTaskId(requestId, firstDeployId, System.currentTimeMillis(), 5, "host", "rack");
+
+    Map<SingularityTaskId, SingularityTaskHistory> histories = taskManager.getTaskHistories(Arrays.asList(firstTask.getTaskId(), secondTask.getTaskId(), missingTaskId));
+
+    Assert.assertEquals(2, histories.size());
+
+    for (SingularityTask task : Arrays.asList(firstTask, secondTask)) {
+      SingularityTaskHistory expected = taskManager.getTaskHistory(task.getTaskId()).get();
+      SingularityTaskHistory actual = histories.get(task.getTaskId());
+
+      Assert.assertEquals(expected.getTask().getTaskId(), actual.getTask().getTaskId());
+      Assert.assertEquals(expected.getDirectory(), actual.getDirectory());
+      Assert.assertEquals(expected.getTaskUpdates().size(), actual.getTaskUpdates().size());
+      Assert.assertEquals(expected.getHealthcheckResults().size(), actual.getHealthcheckResults().size());
+      Assert.assertEquals(expected.getLoadBalancerUpdates().size(), actual.getLoadBalancerUpdates().size());
+
+      for (int i = 0; i < expected.getTaskUpdates().size(); i++) {
+        Assert.assertEquals(expected.getTaskUpdates().get(i).getTaskState(), actual.getTaskUpdates().get(i).getTaskState());
+      }
+    }
+
+    Assert.assertEquals(Optional.of("/tmp/first"), histories.get(firstTask.getTaskId()).getDirectory());
+  }
+
+  @Test
+  public void testStatusUpdatePipelineAppliesUpdatesForATaskInOrder() throws Exception {
+    initRequest();
+    initFirstDeploy();
+
+    SingularityTask task = launchTask(request, firstDeploy, TaskState.TASK_STARTING);
+
+    // records the order the pipeline hands updates to the scheduler in, then applies them
+    final List<TaskState> applied = Collections.synchronizedList(Lists.<TaskState> newArrayList());
+    final SingularityMesosScheduler recordingScheduler = Mockito.spy(sms);
+
+    Mockito.doAnswer(new Answer<Void>() {
+
+      @Override
+      public Void answer(InvocationOnMock invocation) throws Throwable {
+        applied.add(((TaskStatus) invocation.getArguments()[1]).getState());
+        invocation.callRealMethod();
+        return null;
+      }
+
+    }).when(recordingScheduler).statusUpdate(Mockito.any(SchedulerDriver.class), Mockito.any(TaskStatus.class));
+
+    final SingularityStatusUpdatePipeline pipeline = new SingularityStatusUpdatePipeline(recordingScheduler, configuration, exceptionNotifier, abort, new MetricRegistry());
+
+    final List<TaskState> sent = Arrays.asList(TaskState.TASK_RUNNING, TaskState.TASK_RUNNING, TaskState.TASK_FINISHED);
+
+    try {
+      for (TaskState state : sent) {
+        pipeline.enqueue(driver, TaskStatus.newBuilder().setTaskId(task.getMesosTask().getTaskId()).setState(state).build());
+      }
+
+      for (int i = 0; i < 100 && pipeline.getNumQueued() > 0; i++) {
+        Thread.sleep(50);
+      }
+    } finally {
+      pipeline.stop();
+    }
+
+    Assert.assertEquals(0, pipeline.getNumQueued());
+    Assert.assertEquals(sent, applied);
+
+    Assert.assertTrue(taskManager.getActiveTaskIds().isEmpty());
+    Assert.assertFalse(taskManager.getLastActiveTaskStatus(task.getTaskId()).isPresent());
+
+    SingularityTaskHistory history = taskManager.getTaskHistory(task.getTaskId()).get();
+
+    List<ExtendedTaskState> states = Lists.newArrayList();
+
+    for (SingularityTaskHistoryUpdate update : history.getTaskUpdates()) {
+      states.add(update.getTaskState());
+    }
+
+    Assert.assertEquals(Arrays.asList(ExtendedTaskState.TASK_LAUNCHED, ExtendedTaskState.TASK_STARTING, ExtendedTaskState.TASK_RUNNING, ExtendedTaskState.TASK_FINISHED), states);
+  }
+
 }
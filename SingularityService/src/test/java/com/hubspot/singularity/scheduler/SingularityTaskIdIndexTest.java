@@ -0,0 +1,73 @@
+package com.hubspot.singularity.scheduler;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.hubspot.singularity.SingularityTaskId;
+
+public class SingularityTaskIdIndexTest {
+
+  private List<SingularityTaskId> buildTaskIds(int numTasks) {
+    List<SingularityTaskId> taskIds = Lists.newArrayListWithCapacity(numTasks);
+
+    for (int i = 0; i < numTasks; i++) {
+      taskIds.add(new SingularityTaskId("request" + (i % 50), "deploy" + (i % 3), i, i, "host" + (i % 200), "rack" + (i % 5)));
+    }
+
+    return taskIds;
+  }
+
+  @Test
+  public void testIndexMatchesScans() {
+    List<SingularityTaskId> activeTaskIds = buildTaskIds(10000);
+    List<SingularityTaskId> cleaningTaskIds = Lists.newArrayList();
+
+    for (int i = 0; i < activeTaskIds.size(); i += 7) {
+      cleaningTaskIds.add(activeTaskIds.get(i));
+    }
+
+    SingularityTaskIdIndex index = new SingularityTaskIdIndex(activeTaskIds, cleaningTaskIds);
+
+    for (String requestId : Arrays.asList("request0", "request17", "request49", "missing")) {
+      Assert.assertEquals(SingularityTaskId.matchingAndNotIn(activeTaskIds, requestId, cleaningTaskIds), index.getActiveNotCleaningTaskIds(requestId));
+
+      for (String deployId : Arrays.asList("deploy0", "deploy1", "deploy2")) {
+        Assert.assertEquals(SingularityTaskId.matchingAndNotIn(activeTaskIds, requestId, deployId, cleaningTaskIds), index.getActiveNotCleaningTaskIds(requestId, deployId));
+      }
+    }
+
+    Assert.assertEquals(50, index.getTaskIdsOnHost("host3").size());
+    Assert.assertEquals(2000, index.getTaskIdsOnRack("rack4").size());
+  }
+
+  @Test
+  public void testIndexTracksChanges() {
+    SingularityTaskId first = new SingularityTaskId("request", "deploy", 1, 1, "host1", "rack1");
+    SingularityTaskId second = new SingularityTaskId("request", "deploy", 2, 2, "host2", "rack1");
+
+    SingularityTaskIdIndex index = new SingularityTaskIdIndex(Arrays.asList(first), Arrays.<SingularityTaskId> asList());
+
+    index.addActiveTaskId(second);
+
+    Assert.assertEquals(Sets.newHashSet(first, second), index.getTaskIdsForDeploy("request", "deploy"));
+    Assert.assertEquals(2, index.getTaskIdsOnRack("rack1").size());
+
+    index.addCleaningTaskId(first);
+
+    Assert.assertTrue(index.isCleaning(first));
+    Assert.assertEquals(Arrays.asList(second), index.getActiveNotCleaningTaskIds("request", "deploy"));
+
+    index.removeActiveTaskId(second);
+
+    Assert.assertTrue(!index.isActive(second));
+    Assert.assertTrue(index.getTaskIdsOnHost("host2").isEmpty());
+    Assert.assertTrue(index.getActiveNotCleaningTaskIds("request").isEmpty());
+    Assert.assertEquals(1, index.getNumActiveTaskIds());
+  }
+
+}
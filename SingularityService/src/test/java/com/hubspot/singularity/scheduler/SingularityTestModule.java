@@ -22,6 +22,7 @@ import ch.qos.logback.classic.Level;
 import ch.qos.logback.classic.Logger;
 import ch.qos.logback.classic.LoggerContext;
 
+import com.codahale.metrics.MetricRegistry;
 import com.fasterxml.jackson.annotation.JsonInclude.Include;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -102,6 +103,7 @@ public class SingularityTestModule implements Module {
     mainBinder.install(new GuiceBundle.GuiceEnforcerModule());
 
     mainBinder.bind(TestingServer.class).toInstance(ts);
+    mainBinder.bind(MetricRegistry.class).toInstance(new MetricRegistry());
 
     mainBinder.install(Modules.override(new SingularityMainModule())
         .with(new Module() {
@@ -0,0 +1,109 @@
+package com.hubspot.singularity.scheduler;
+
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.hubspot.singularity.config.SingularityConfiguration;
+import com.hubspot.singularity.scheduler.SingularityTimerWheel.Timeout;
+
+public class SingularityTimerWheelTest {
+
+  private SingularityTimerWheel timerWheel(int wheelSize) {
+    SingularityConfiguration configuration = new SingularityConfiguration();
+    configuration.setTimerWheelTickMillis(100);
+    configuration.setTimerWheelSize(wheelSize);
+
+    return new SingularityTimerWheel(configuration, new MetricRegistry());
+  }
+
+  private Runnable increment(final AtomicInteger counter) {
+    return new Runnable() {
+
+      @Override
+      public void run() {
+        counter.incrementAndGet();
+      }
+
+    };
+  }
+
+  @Test
+  public void testChecksRunOnlyOnceDue() {
+    SingularityTimerWheel timerWheel = timerWheel(4);
+    AtomicInteger runs = new AtomicInteger();
+
+    long now = System.currentTimeMillis();
+
+    // several times round the wheel
+    timerWheel.schedule(increment(runs), 1, TimeUnit.SECONDS, MoreExecutors.sameThreadExecutor());
+
+    timerWheel.advanceTo(now + 500);
+    Assert.assertEquals(0, runs.get());
+    Assert.assertEquals(1, timerWheel.getNumScheduled());
+
+    timerWheel.advanceTo(now + 1300);
+    Assert.assertEquals(1, runs.get());
+    Assert.assertEquals(0, timerWheel.getNumScheduled());
+
+    timerWheel.schedule(increment(runs), 0, TimeUnit.SECONDS, MoreExecutors.sameThreadExecutor());
+    Assert.assertEquals(2, runs.get());
+  }
+
+  @Test
+  public void testCanceledChecksDoNotRun() {
+    SingularityTimerWheel timerWheel = timerWheel(512);
+    AtomicInteger runs = new AtomicInteger();
+
+    long now = System.currentTimeMillis();
+
+    Timeout canceled = timerWheel.schedule(increment(runs), 1, TimeUnit.SECONDS, MoreExecutors.sameThreadExecutor());
+    Timeout expired = timerWheel.schedule(increment(runs), 1, TimeUnit.SECONDS, MoreExecutors.sameThreadExecutor());
+
+    Assert.assertTrue(timerWheel.cancel(canceled));
+    Assert.assertFalse(timerWheel.cancel(canceled));
+
+    timerWheel.advanceTo(now + 1300);
+
+    Assert.assertEquals(1, runs.get());
+    Assert.assertFalse(timerWheel.cancel(expired));
+  }
+
+  @Test
+  public void testDispatchedChecksCanBeCanceledUntilTheyRun() {
+    SingularityTimerWheel timerWheel = timerWheel(512);
+    AtomicInteger runs = new AtomicInteger();
+
+    final List<Runnable> queued = Lists.newArrayList();
+    Executor queueingExecutor = new Executor() {
+
+      @Override
+      public void execute(Runnable command) {
+        queued.add(command);
+      }
+
+    };
+
+    Timeout canceled = timerWheel.schedule(increment(runs), 0, TimeUnit.SECONDS, queueingExecutor);
+    Timeout ran = timerWheel.schedule(increment(runs), 0, TimeUnit.SECONDS, queueingExecutor);
+
+    Assert.assertEquals(2, queued.size());
+    Assert.assertTrue(timerWheel.cancel(canceled));
+
+    for (Runnable command : queued) {
+      command.run();
+    }
+
+    Assert.assertEquals(1, runs.get());
+    Assert.assertFalse(timerWheel.cancel(ran));
+    Assert.assertFalse(timerWheel.cancel(canceled));
+  }
+
+}